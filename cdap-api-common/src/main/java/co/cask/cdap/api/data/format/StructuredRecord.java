@@ -20,24 +20,40 @@ import co.cask.cdap.api.annotation.Beta;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.schema.Schema;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 /**
- * Instance of a record structured by a {@link Schema}. Fields are accessible by name.
+ * Instance of a record structured by a {@link Schema}. Fields are accessible by name, or by the position of
+ * the field in the schema, which can be resolved once through {@link Schema#getFieldIndex(String)}.
  */
 @Beta
 public class StructuredRecord implements Serializable {
-  private final Schema schema;
-  private final Map<String, Object> fields;
 
   private static final long serialVersionUID = -4648752378975451591L;
 
-  private StructuredRecord(Schema schema, Map<String, Object> fields) {
+  // The Java serialized form is the schema and a map from field name to value, for compatibility with records
+  // serialized before the values were kept in an array.
+  private static final ObjectStreamField[] serialPersistentFields = {
+    new ObjectStreamField("schema", Schema.class),
+    new ObjectStreamField("fields", Map.class)
+  };
+
+  private Schema schema;
+  // Field values in the order of the fields in the schema
+  private Object[] values;
+
+  private StructuredRecord(Schema schema, Object[] values) {
     this.schema = schema;
-    this.fields = fields;
+    this.values = values;
   }
 
   /**
@@ -58,7 +74,24 @@ public class StructuredRecord implements Serializable {
    */
   @SuppressWarnings("unchecked")
   public <T> T get(String fieldName) {
-    return (T) fields.get(fieldName);
+    int fieldIndex = schema.getFieldIndex(fieldName);
+    return fieldIndex < 0 ? null : (T) values[fieldIndex];
+  }
+
+  /**
+   * Get the value of a field in the record by the position of the field in the schema.
+   *
+   * @param fieldIndex position of the field in {@link Schema#getFields()}.
+   * @param <T> type of object of the field value.
+   * @return value of the field.
+   * @throws IndexOutOfBoundsException if the index is not a valid field position.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(int fieldIndex) {
+    if (fieldIndex < 0 || fieldIndex >= values.length) {
+      throw new IndexOutOfBoundsException("Field index " + fieldIndex + " is out of range [0, " + values.length + ")");
+    }
+    return (T) values[fieldIndex];
   }
 
   /**
@@ -75,17 +108,45 @@ public class StructuredRecord implements Serializable {
     return new Builder(schema);
   }
 
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    List<Schema.Field> schemaFields = schema.getFields();
+    Map<String, Object> fields = new HashMap<>();
+    for (int i = 0; i < values.length; i++) {
+      fields.put(schemaFields.get(i).getName(), values[i]);
+    }
+    ObjectOutputStream.PutField putField = out.putFields();
+    putField.put("schema", schema);
+    putField.put("fields", fields);
+    out.writeFields();
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField getField = in.readFields();
+    Schema schema = (Schema) getField.get("schema", null);
+    Map<?, ?> fields = (Map<?, ?>) getField.get("fields", null);
+    List<Schema.Field> schemaFields = schema.getFields();
+    Object[] values = new Object[schemaFields.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = fields.get(schemaFields.get(i).getName());
+    }
+    this.schema = schema;
+    this.values = values;
+  }
+
   /**
-   * Builder for creating a {@link StructuredRecord}.
+   * Builder for creating a {@link StructuredRecord}. A builder can be reused for creating multiple records of
+   * the same schema. Values set to the builder are retained after {@link #build()}, until they are set again.
    * TODO: enforce schema correctness?
    */
   public static class Builder {
     private final Schema schema;
-    private Map<String, Object> fields;
+    private final Object[] values;
+    private final boolean[] valueSet;
 
     private Builder(Schema schema) {
       this.schema = schema;
-      this.fields = new HashMap<>();
+      this.values = new Object[schema.getFields().size()];
+      this.valueSet = new boolean[values.length];
     }
 
     /**
@@ -98,8 +159,25 @@ public class StructuredRecord implements Serializable {
      *                                   value is given.
      */
     public Builder set(String fieldName, Object value) {
-      validateAndGetField(fieldName, value);
-      fields.put(fieldName, value);
+      setValue(validateAndGetIndex(fieldName, value), value);
+      return this;
+    }
+
+    /**
+     * Set the field at the given position of the schema to the given value.
+     *
+     * @param fieldIndex Position of the field in {@link Schema#getFields()}.
+     * @param value Value for the field.
+     * @return This builder.
+     * @throws UnexpectedFormatException if the index is not a valid field position, or the field is not nullable
+     *                                   but a null value is given.
+     */
+    public Builder set(int fieldIndex, Object value) {
+      if (fieldIndex < 0 || fieldIndex >= values.length) {
+        throw new UnexpectedFormatException("field index " + fieldIndex + " is not in the schema.");
+      }
+      validate(schema.getFields().get(fieldIndex), value);
+      setValue(fieldIndex, value);
       return this;
     }
 
@@ -114,8 +192,8 @@ public class StructuredRecord implements Serializable {
      *                                   value is given, or the string cannot be converted to the type for the field.
      */
     public Builder convertAndSet(String fieldName, String strVal) throws UnexpectedFormatException {
-      Schema.Field field = validateAndGetField(fieldName, strVal);
-      fields.put(fieldName, convertString(field.getSchema(), strVal));
+      int idx = validateAndGetIndex(fieldName, strVal);
+      setValue(idx, convertString(schema.getFields().get(idx).getSchema(), strVal));
       return this;
     }
 
@@ -126,20 +204,19 @@ public class StructuredRecord implements Serializable {
      * @throws UnexpectedFormatException if there is at least one non-nullable field without a value.
      */
     public StructuredRecord build() throws UnexpectedFormatException {
-      // check that all non-nullable fields have a value.
-      for (Schema.Field field : schema.getFields()) {
-        String fieldName = field.getName();
-        if (!fields.containsKey(fieldName)) {
-          // if the field is not nullable and there is no value set for the field, this is invalid.
-          if (!field.getSchema().isNullable()) {
-            throw new UnexpectedFormatException("Field " + fieldName + " must contain a value.");
-          } else {
-            // otherwise, set the value for the field to null
-            fields.put(fieldName, null);
-          }
+      // check that all non-nullable fields have a value. Fields without value are null.
+      List<Schema.Field> fields = schema.getFields();
+      for (int i = 0; i < valueSet.length; i++) {
+        if (!valueSet[i] && !fields.get(i).getSchema().isNullable()) {
+          throw new UnexpectedFormatException("Field " + fields.get(i).getName() + " must contain a value.");
         }
       }
-      return new StructuredRecord(schema, fields);
+      return new StructuredRecord(schema, Arrays.copyOf(values, values.length));
+    }
+
+    private void setValue(int idx, Object value) {
+      values[idx] = value;
+      valueSet[idx] = true;
     }
 
     private Object convertString(Schema schema, String strVal) throws UnexpectedFormatException {
@@ -181,15 +258,19 @@ public class StructuredRecord implements Serializable {
       }
     }
 
-    private Schema.Field validateAndGetField(String fieldName, Object val) {
-      Schema.Field field = schema.getField(fieldName);
-      if (field == null) {
+    private int validateAndGetIndex(String fieldName, Object val) {
+      int idx = schema.getFieldIndex(fieldName);
+      if (idx < 0) {
         throw new UnexpectedFormatException("field " + fieldName + " is not in the schema.");
       }
+      validate(schema.getFields().get(idx), val);
+      return idx;
+    }
+
+    private void validate(Schema.Field field, Object val) {
       if (!field.getSchema().isNullable() && val == null) {
-        throw new UnexpectedFormatException("field " + fieldName + " cannot be set to a null value.");
+        throw new UnexpectedFormatException("field " + field.getName() + " cannot be set to a null value.");
       }
-      return field;
     }
   }
 
@@ -204,12 +285,12 @@ public class StructuredRecord implements Serializable {
 
     StructuredRecord that = (StructuredRecord) o;
 
-    return Objects.equals(schema, that.schema) && Objects.equals(fields, that.fields);
+    return Objects.equals(schema, that.schema) && Arrays.equals(values, that.values);
 
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(schema, fields);
+    return 31 * Objects.hashCode(schema) + Arrays.hashCode(values);
   }
 }
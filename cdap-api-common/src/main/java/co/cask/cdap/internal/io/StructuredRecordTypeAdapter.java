@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Class for serialize/deserialize {@link StructuredRecord} object to/from json through
+ * {@link com.google.gson.Gson Gson}. A record is serialized as a json object with the schema, and the non-null
+ * field values keyed by field name. Field values are deserialized to the types Gson uses for {@link Object}.
+ * <p>
+ *  Expected usage:
+ *
+ *  <pre>
+ *    Gson gson = new GsonBuilder()
+ *                  .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
+ *                  .registerTypeAdapter(StructuredRecord.class, new StructuredRecordTypeAdapter())
+ *                  .create();
+ *  </pre>
+ * </p>
+ */
+public final class StructuredRecordTypeAdapter implements JsonSerializer<StructuredRecord>,
+                                                          JsonDeserializer<StructuredRecord> {
+
+  private static final String SCHEMA = "schema";
+  private static final String FIELDS = "fields";
+
+  @Override
+  public JsonElement serialize(StructuredRecord record, Type typeOfSrc, JsonSerializationContext context) {
+    List<Schema.Field> schemaFields = record.getSchema().getFields();
+    JsonObject fields = new JsonObject();
+    for (int i = 0; i < schemaFields.size(); i++) {
+      Object value = record.get(i);
+      if (value != null) {
+        fields.add(schemaFields.get(i).getName(), context.serialize(value));
+      }
+    }
+    JsonObject json = new JsonObject();
+    json.add(SCHEMA, context.serialize(record.getSchema(), Schema.class));
+    json.add(FIELDS, fields);
+    return json;
+  }
+
+  @Override
+  public StructuredRecord deserialize(JsonElement json, Type typeOfT,
+                                      JsonDeserializationContext context) throws JsonParseException {
+    if (!json.isJsonObject()) {
+      throw new JsonParseException("Expected a json object for a StructuredRecord, but got " + json);
+    }
+    JsonObject jsonObj = json.getAsJsonObject();
+    Schema schema = context.deserialize(jsonObj.get(SCHEMA), Schema.class);
+    JsonObject fields = jsonObj.getAsJsonObject(FIELDS);
+
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (Schema.Field field : schema.getFields()) {
+      JsonElement value = fields == null ? null : fields.get(field.getName());
+      if (value != null && !value.isJsonNull()) {
+        builder.set(field.getName(), context.deserialize(value, Object.class));
+      }
+    }
+    return builder.build();
+  }
+}
@@ -31,4 +31,14 @@ public abstract class Split {
   public long getLength() {
     return 0;
   }
+
+  /**
+   * By default splits have no locality information.
+   *
+   * @return Optional names of the hosts where the data of this split is local, for example the region server
+   *         that serves a table split. Used only as a hint for scheduling the processing of the split.
+   */
+  public String[] getLocations() {
+    return new String[0];
+  }
 }
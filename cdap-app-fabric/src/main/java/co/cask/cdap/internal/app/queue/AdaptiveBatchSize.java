@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.queue;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * The number of entries to dequeue in one batch. A fixed batch size never changes. An adaptive batch size grows
+ * when full batches are processed well within the transaction timeout and shrinks when processing takes a
+ * significant part of the transaction timeout, so that the batch size follows the processing cost of the entries.
+ * Instances are not thread safe; they are only accessed by the thread that dequeues and processes the entries.
+ */
+public final class AdaptiveBatchSize {
+
+  // The batch size grows if processing a full batch takes less than this fraction of the transaction timeout
+  private static final int GROW_TIMEOUT_FRACTION = 10;
+
+  // The batch size shrinks if processing a batch takes more than this fraction of the transaction timeout
+  private static final int SHRINK_TIMEOUT_FRACTION = 4;
+
+  private final int minSize;
+  private final int maxSize;
+  private int size;
+
+  /**
+   * Creates a batch size that never changes.
+   */
+  public static AdaptiveBatchSize fixed(int size) {
+    return new AdaptiveBatchSize(size, size, size);
+  }
+
+  /**
+   * Creates a batch size that starts with the given initial size and adapts between one and the given max size.
+   */
+  public static AdaptiveBatchSize adaptive(int initialSize, int maxSize) {
+    return new AdaptiveBatchSize(initialSize, 1, Math.max(initialSize, maxSize));
+  }
+
+  private AdaptiveBatchSize(int size, int minSize, int maxSize) {
+    Preconditions.checkArgument(size > 0, "Batch size should be > 0: %s", size);
+    this.size = size;
+    this.minSize = minSize;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the number of entries to dequeue in the next batch.
+   */
+  public int get() {
+    return size;
+  }
+
+  /**
+   * Returns {@code true} if the batch size can change.
+   */
+  public boolean isAdaptive() {
+    return minSize != maxSize;
+  }
+
+  /**
+   * Adjusts the batch size based on the processing of a batch.
+   *
+   * @param dequeued number of entries in the batch
+   * @param processNanos time in nanoseconds spent on processing the batch and committing the transaction
+   * @param txTimeoutNanos transaction timeout in nanoseconds
+   */
+  public void update(int dequeued, long processNanos, long txTimeoutNanos) {
+    if (processNanos > txTimeoutNanos / SHRINK_TIMEOUT_FRACTION) {
+      size = Math.max(minSize, size / 2);
+    } else if (dequeued >= size && processNanos < txTimeoutNanos / GROW_TIMEOUT_FRACTION) {
+      // Only grow after full batches. A batch that is not full means the queue is drained already.
+      size = (int) Math.min((long) maxSize, size * 2L);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("size", size)
+      .add("min", minSize)
+      .add("max", maxSize)
+      .toString();
+  }
+}
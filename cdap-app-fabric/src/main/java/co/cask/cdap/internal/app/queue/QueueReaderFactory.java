@@ -45,12 +45,13 @@ public final class QueueReaderFactory {
   }
 
   public <T> QueueReader<T> createQueueReader(Supplier<QueueConsumer> consumerSupplier,
-                                              int batchSize, Function<ByteBuffer, T> decoder) {
+                                              AdaptiveBatchSize batchSize, Function<ByteBuffer, T> decoder) {
     return new SingleQueue2Reader<>(consumerSupplier, batchSize, decoder);
   }
 
   public <T> QueueReader<T> createStreamReader(StreamId streamId, Supplier<StreamConsumer> consumerSupplier,
-                                               int batchSize, Function<StreamEvent, T> transformer) throws Exception {
+                                               AdaptiveBatchSize batchSize,
+                                               Function<StreamEvent, T> transformer) throws Exception {
     authorizationEnforcer.enforce(streamId, authenticationContext.getPrincipal(), Action.READ);
     return new StreamQueueReader<>(streamId, consumerSupplier, batchSize, transformer, authenticationContext,
                                    authorizationEnforcer);
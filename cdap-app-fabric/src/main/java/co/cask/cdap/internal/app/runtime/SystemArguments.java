@@ -49,6 +49,9 @@ public final class SystemArguments {
   private static final String RETRY_POLICY_DELAY_BASE_MS = "system." + Constants.Retry.DELAY_BASE_MS;
   private static final String RETRY_POLICY_DELAY_MAX_MS = "system." + Constants.Retry.DELAY_MAX_MS;
   public static final String TRANSACTION_TIMEOUT = "system.data.tx.timeout";
+  public static final String FLOWLET_BATCH_ADAPTIVE = "system.flowlet.batch.adaptive";
+  public static final String FLOWLET_BATCH_MAX_SIZE = "system.flowlet.batch.max.size";
+  private static final int DEFAULT_FLOWLET_BATCH_MAX_SIZE = 1000;
 
   public static Map<String, String> getLogLevels(Map<String, String> args) {
     Map<String, String> logLevels = new HashMap<>();
@@ -147,6 +150,23 @@ public final class SystemArguments {
     }
   }
 
+  /**
+   * Returns whether the dequeue batch size of flowlet process methods annotated with
+   * {@link co.cask.cdap.api.annotation.Batch} adapts to the processing time, based on the given arguments.
+   */
+  public static boolean isAdaptiveFlowletBatch(Map<String, String> args) {
+    return Boolean.parseBoolean(args.get(FLOWLET_BATCH_ADAPTIVE));
+  }
+
+  /**
+   * Returns the maximum dequeue batch size of flowlet process methods with adaptive batch size,
+   * based on the given arguments.
+   */
+  public static int getFlowletMaxBatchSize(Map<String, String> args) {
+    Integer maxSize = getPositiveInt(args, FLOWLET_BATCH_MAX_SIZE, "flowlet max batch size");
+    return maxSize == null ? DEFAULT_FLOWLET_BATCH_MAX_SIZE : maxSize;
+  }
+
   /**
    * Get the retry strategy for a program given its arguments and the CDAP defaults for the program type.
    *
@@ -76,12 +76,15 @@ import org.apache.tephra.TransactionFailureException;
 import org.apache.tephra.TransactionSystemClient;
 import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -90,6 +93,7 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * This class manages artifacts as well as metadata for each artifact. Artifacts and their metadata cannot be changed
@@ -143,12 +147,32 @@ import java.util.concurrent.Callable;
  *
  * With this schema we can perform a scan to look up AppClasses, a scan to look up plugins that extend a specific
  * artifact, and a scan to look up artifacts.
+ *
+ * Since plugin rows contain the plugins from artifacts in every namespace, plugins are also written to a plugin
+ * index that is partitioned by the namespace of the plugin artifact, with
+ * rowkey i:{artifact-namespace}:{parent-namespace}:{parent-name}:{plugin-type}:{plugin-name},
+ * column {artifact-name}:{artifact-version}, and PluginData as the value.
+ * For the example above, the plugin index will look like:
+ *
+ * rowkey                                    columns
+ * i:default:system:etlbatch:source:db       custom-sources:1.0.0 -> {PluginData}
+ * i:system:system:etlbatch:sink:stream      etlbatch-lib:3.1.0 -> {PluginData}
+ * i:system:system:etlbatch:sink:table       etlbatch-lib:3.1.0 -> {PluginData}
+ *
+ * Plugin lookups for a namespace then only need to read the index rows of that namespace and the system namespace.
+ * Plugin rows written before the plugin index existed are added to the index by {@link #upgrade()}. Until then,
+ * lookups are served from the plugin rows.
  */
 public class ArtifactStore {
+  private static final Logger LOG = LoggerFactory.getLogger(ArtifactStore.class);
   private static final String ARTIFACTS_PATH = "artifacts";
   private static final String ARTIFACT_PREFIX = "r";
   private static final String PLUGIN_PREFIX = "p";
   private static final String APPCLASS_PREFIX = "a";
+  private static final String PLUGIN_INDEX_PREFIX = "i";
+  // Marks that the plugin index contains all plugins, so that plugin lookups can be served from it
+  private static final byte[] PLUGIN_INDEX_MARKER_ROW = Bytes.toBytes("m:pluginIndex");
+  private static final byte[] PLUGIN_INDEX_MARKER_COLUMN = Bytes.toBytes("built");
   private static final DatasetId META_ID = NamespaceId.SYSTEM.dataset("artifact.meta");
   private static final DatasetProperties META_PROPERTIES =
     TableProperties.builder().setConflictDetection(ConflictDetection.COLUMN).build();
@@ -433,13 +457,7 @@ public class ArtifactStore {
             throw new ArtifactNotFoundException(parentArtifactId.toEntityId());
           }
 
-          // should be able to scan by column prefix as well... instead, we have to filter out by namespace
-          try (Scanner scanner = metaTable.scan(scanPlugins(parentArtifactId))) {
-            Row row;
-            while ((row = scanner.next()) != null) {
-              addPluginsToMap(namespace, parentArtifactId, plugins, row);
-            }
-          }
+          addPlugins(metaTable, namespace, parentArtifactId, null, plugins);
           return Collections.unmodifiableSortedMap(plugins);
         }
       });
@@ -481,13 +499,7 @@ public class ArtifactStore {
             throw new ArtifactNotFoundException(parentArtifactId.toEntityId());
           }
 
-          try (Scanner scanner = metaTable.scan(scanPlugins(parentArtifactId, type))) {
-            Row row;
-            while ((row = scanner.next()) != null) {
-              addPluginsToMap(namespace, parentArtifactId, plugins, row);
-            }
-          }
-
+          addPlugins(metaTable, namespace, parentArtifactId, type, plugins);
           return Collections.unmodifiableSortedMap(plugins);
         }
       });
@@ -544,9 +556,25 @@ public class ArtifactStore {
 
             PluginKey pluginKey = new PluginKey(parentArtifactId.getNamespace(),
                                                 parentArtifactId.getName(), type, name);
+            if (isPluginIndexBuilt(metaTable)) {
+              for (NamespaceId pluginNamespace : getPluginNamespaces(namespace)) {
+                Row row = metaTable.get(new PluginIndexKey(pluginNamespace, pluginKey).getRowKey());
+                // column is the artifact name and version, value is the serialized PluginData
+                for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+                  ImmutablePair<ArtifactDescriptor, PluginClass> pluginEntry =
+                    getPluginEntry(PluginIndexColumn.parse(pluginNamespace, column.getKey()), parentArtifactId,
+                                   column.getValue());
+                  if (pluginEntry != null) {
+                    plugins.put(pluginEntry.getFirst(), pluginEntry.getSecond());
+                  }
+                }
+              }
+              return Collections.unmodifiableSortedMap(plugins);
+            }
+
             Row row = metaTable.get(pluginKey.getRowKey());
             if (!row.isEmpty()) {
-              // column is the artifact name and version, value is the serialized PluginClass
+              // column is the artifact namespace, name and version, value is the serialized PluginData
               for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
                 ImmutablePair<ArtifactDescriptor, PluginClass> pluginEntry =
                   getPluginEntry(namespace, parentArtifactId, column);
@@ -742,6 +770,45 @@ public class ArtifactStore {
     }
   }
 
+  /**
+   * Adds the plugins of all existing artifacts to the plugin index. Plugin lookups are served from the plugin index
+   * once it has been built. Plugins of artifacts that are added afterwards are always written to the plugin index.
+   *
+   * @throws IOException if there was an exception reading or writing the metastore
+   */
+  public void upgrade() throws IOException {
+    try {
+      transactional.execute(new TxRunnable() {
+        @Override
+        public void run(DatasetContext context) throws Exception {
+          Table metaTable = getMetaTable(context);
+          if (metaTable.get(PLUGIN_INDEX_MARKER_ROW, PLUGIN_INDEX_MARKER_COLUMN) != null) {
+            return;
+          }
+
+          int count = 0;
+          Scan pluginsScan = new Scan(Bytes.toBytes(PLUGIN_PREFIX + ":"), Bytes.toBytes(PLUGIN_PREFIX + ";"));
+          try (Scanner scanner = metaTable.scan(pluginsScan)) {
+            Row row;
+            while ((row = scanner.next()) != null) {
+              PluginKey pluginKey = PluginKey.parse(row.getRow());
+              for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+                Id.Artifact artifactId = ArtifactColumn.parse(column.getKey()).artifactId;
+                PluginIndexKey indexKey = new PluginIndexKey(artifactId.getNamespace().toEntityId(), pluginKey);
+                metaTable.put(indexKey.getRowKey(), new PluginIndexColumn(artifactId).getColumn(), column.getValue());
+                count++;
+              }
+            }
+          }
+          metaTable.put(PLUGIN_INDEX_MARKER_ROW, PLUGIN_INDEX_MARKER_COLUMN, Bytes.toBytes(true));
+          LOG.info("Added {} plugins to the plugin index", count);
+        }
+      });
+    } catch (TransactionFailureException e) {
+      throw Transactions.propagate(e, IOException.class);
+    }
+  }
+
   /**
    * Clear all data in the given namespace. Used only in unit tests.
    *
@@ -777,6 +844,17 @@ public class ArtifactStore {
             }
           }
 
+          // delete the plugin index of artifacts in this namespace
+          Scan pluginIndexScan = new Scan(
+            Bytes.toBytes(String.format("%s:%s:", PLUGIN_INDEX_PREFIX, namespace.getNamespace())),
+            Bytes.toBytes(String.format("%s:%s;", PLUGIN_INDEX_PREFIX, namespace.getNamespace()))
+          );
+          try (Scanner scanner = metaTable.scan(pluginIndexScan)) {
+            while ((row = scanner.next()) != null) {
+              metaTable.delete(row.getRow());
+            }
+          }
+
           // delete app classes in this namespace
           try (Scanner scanner = metaTable.scan(scanAppClasses(namespace))) {
             while ((row = scanner.next()) != null) {
@@ -811,12 +889,23 @@ public class ArtifactStore {
 
   // write a new artifact snapshot and clean up the old snapshot data
   private void writeMeta(Table table, Id.Artifact artifactId, ArtifactData data) throws IOException {
+    // If there is no plugin yet, the plugin index is complete from the start
+    if (table.get(PLUGIN_INDEX_MARKER_ROW, PLUGIN_INDEX_MARKER_COLUMN) == null) {
+      try (Scanner scanner = table.scan(new Scan(Bytes.toBytes(PLUGIN_PREFIX + ":"),
+                                                 Bytes.toBytes(PLUGIN_PREFIX + ";")))) {
+        if (scanner.next() == null) {
+          table.put(PLUGIN_INDEX_MARKER_ROW, PLUGIN_INDEX_MARKER_COLUMN, Bytes.toBytes(true));
+        }
+      }
+    }
+
     ArtifactCell artifactCell = new ArtifactCell(artifactId);
     table.put(artifactCell.rowkey, artifactCell.column, Bytes.toBytes(GSON.toJson(data)));
 
     // column for plugin meta and app meta. {artifact-name}:{artifact-version}
     // does not need to contain namespace because namespace is in the rowkey
     byte[] artifactColumn = new ArtifactColumn(artifactId).getColumn();
+    byte[] pluginIndexColumn = new PluginIndexColumn(artifactId).getColumn();
 
     ArtifactClasses classes = data.meta.getClasses();
     Location artifactLocation = Locations.getLocationFromAbsolutePath(locationFactory, data.getLocationPath());
@@ -831,6 +920,9 @@ public class ArtifactStore {
         byte[] pluginDataBytes = Bytes.toBytes(
           GSON.toJson(new PluginData(pluginClass, artifactRange, artifactLocation)));
         table.put(pluginKey.getRowKey(), artifactColumn, pluginDataBytes);
+        // i:{artifact-namespace}:{namespace}:{type}:{name}
+        table.put(new PluginIndexKey(artifactId.getNamespace().toEntityId(), pluginKey).getRowKey(),
+                  pluginIndexColumn, pluginDataBytes);
       }
     }
 
@@ -851,6 +943,7 @@ public class ArtifactStore {
     // delete old plugins
     final ArtifactData oldMeta = GSON.fromJson(Bytes.toString(oldData), ArtifactData.class);
     byte[] artifactColumn = new ArtifactColumn(artifactId).getColumn();
+    byte[] pluginIndexColumn = new PluginIndexColumn(artifactId).getColumn();
 
     for (PluginClass pluginClass : oldMeta.meta.getClasses().getPlugins()) {
       // delete metadata for each artifact this plugin extends
@@ -859,6 +952,8 @@ public class ArtifactStore {
         PluginKey pluginKey = new PluginKey(
           artifactRange.getNamespace().toId(), artifactRange.getName(), pluginClass.getType(), pluginClass.getName());
         table.delete(pluginKey.getRowKey(), artifactColumn);
+        table.delete(new PluginIndexKey(artifactId.getNamespace().toEntityId(), pluginKey).getRowKey(),
+                     pluginIndexColumn);
       }
     }
 
@@ -930,25 +1025,63 @@ public class ArtifactStore {
     }
   }
 
-  // this method examines all plugins in the given row and checks if they extend the given parent artifact
-  // and are from an artifact in the given namespace.
-  // if so, information about the plugin artifact and the plugin details are added to the given map.
-  private void addPluginsToMap(NamespaceId namespace, Id.Artifact parentArtifactId,
-                               SortedMap<ArtifactDescriptor, Set<PluginClass>> map,
-                               Row row) throws IOException {
-    // column is the artifact namespace, name, and version. value is the serialized PluginData
-    for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
-      ImmutablePair<ArtifactDescriptor, PluginClass> pluginEntry = getPluginEntry(namespace, parentArtifactId, column);
-      if (pluginEntry != null) {
-        ArtifactDescriptor artifactDescriptor = pluginEntry.getFirst();
-        if (!map.containsKey(artifactDescriptor)) {
-          map.put(artifactDescriptor, Sets.<PluginClass>newHashSet());
+  /**
+   * Adds the plugins that extend the given parent artifact and are from an artifact in the given namespace or the
+   * system namespace to the given map. If a plugin type is given, only plugins of that type are added.
+   */
+  private void addPlugins(Table table, NamespaceId namespace, Id.Artifact parentArtifactId, @Nullable String type,
+                          SortedMap<ArtifactDescriptor, Set<PluginClass>> map) throws IOException {
+    if (isPluginIndexBuilt(table)) {
+      for (NamespaceId pluginNamespace : getPluginNamespaces(namespace)) {
+        try (Scanner scanner = table.scan(scanPluginIndex(pluginNamespace, parentArtifactId, type))) {
+          Row row;
+          while ((row = scanner.next()) != null) {
+            // column is the artifact name and version. value is the serialized PluginData
+            for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+              addToMap(map, getPluginEntry(PluginIndexColumn.parse(pluginNamespace, column.getKey()),
+                                           parentArtifactId, column.getValue()));
+            }
+          }
+        }
+      }
+      return;
+    }
+
+    // should be able to scan by column prefix as well... instead, we have to filter out by namespace
+    Scan scan = type == null ? scanPlugins(parentArtifactId) : scanPlugins(parentArtifactId, type);
+    try (Scanner scanner = table.scan(scan)) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        // column is the artifact namespace, name, and version. value is the serialized PluginData
+        for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+          addToMap(map, getPluginEntry(namespace, parentArtifactId, column));
         }
-        map.get(artifactDescriptor).add(pluginEntry.getSecond());
       }
     }
   }
 
+  private void addToMap(SortedMap<ArtifactDescriptor, Set<PluginClass>> map,
+                        @Nullable ImmutablePair<ArtifactDescriptor, PluginClass> pluginEntry) {
+    if (pluginEntry != null) {
+      ArtifactDescriptor artifactDescriptor = pluginEntry.getFirst();
+      if (!map.containsKey(artifactDescriptor)) {
+        map.put(artifactDescriptor, Sets.<PluginClass>newHashSet());
+      }
+      map.get(artifactDescriptor).add(pluginEntry.getSecond());
+    }
+  }
+
+  private boolean isPluginIndexBuilt(Table table) {
+    return table.get(PLUGIN_INDEX_MARKER_ROW, PLUGIN_INDEX_MARKER_COLUMN) != null;
+  }
+
+  /**
+   * Returns the namespaces of plugin artifacts that are visible to the given namespace.
+   */
+  private Set<NamespaceId> getPluginNamespaces(NamespaceId namespace) {
+    return Sets.newLinkedHashSet(Arrays.asList(namespace, NamespaceId.SYSTEM));
+  }
+
   /**
    * Decode the PluginClass from the table column if it is from an artifact in the given namespace and
    * extends the given parent artifact. If the plugin's artifact is not in the given namespace, or it does not
@@ -964,12 +1097,22 @@ public class ArtifactStore {
     if (!Id.Namespace.SYSTEM.equals(artifactNamespace) && !artifactNamespace.equals(namespace.toId())) {
       return null;
     }
-    PluginData pluginData = GSON.fromJson(Bytes.toString(column.getValue()), PluginData.class);
+    return getPluginEntry(artifactColumn.artifactId, parentArtifactId, column.getValue());
+  }
+
+  /**
+   * Decode the PluginClass of the given plugin artifact if it extends the given parent artifact.
+   * If the plugin does not extend the given parent artifact, return null.
+   */
+  private ImmutablePair<ArtifactDescriptor, PluginClass> getPluginEntry(Id.Artifact pluginArtifactId,
+                                                                        Id.Artifact parentArtifactId,
+                                                                        byte[] value) {
+    PluginData pluginData = GSON.fromJson(Bytes.toString(value), PluginData.class);
 
     // filter out plugins that don't extend this version of the parent artifact
     if (pluginData.usableBy.versionIsInRange(parentArtifactId.getVersion())) {
       ArtifactDescriptor artifactDescriptor = new ArtifactDescriptor(
-        artifactColumn.artifactId.toArtifactId(),
+        pluginArtifactId.toArtifactId(),
         Locations.getLocationFromAbsolutePath(locationFactory, pluginData.getArtifactLocationPath()));
       return ImmutablePair.of(artifactDescriptor, pluginData.pluginClass);
     }
@@ -1000,6 +1143,13 @@ public class ArtifactStore {
                                   parentArtifactId.getName(), type)));
   }
 
+  private Scan scanPluginIndex(NamespaceId pluginNamespace, Id.Artifact parentArtifactId, @Nullable String type) {
+    String prefix = Joiner.on(':').skipNulls().join(PLUGIN_INDEX_PREFIX, pluginNamespace.getNamespace(),
+                                                    parentArtifactId.getNamespace().getId(),
+                                                    parentArtifactId.getName(), type);
+    return new Scan(Bytes.toBytes(prefix + ":"), Bytes.toBytes(prefix + ";"));
+  }
+
   private Scan scanAppClasses(NamespaceId namespace) {
     return new Scan(
       Bytes.toBytes(String.format("%s:%s:", APPCLASS_PREFIX, namespace.getNamespace())),
@@ -1038,6 +1188,50 @@ public class ArtifactStore {
       return Bytes.toBytes(
         Joiner.on(':').join(PLUGIN_PREFIX, parentArtifactNamespace.getId(), parentArtifactName, type, name));
     }
+
+    private static PluginKey parse(byte[] rowkey) {
+      Iterator<String> parts = Splitter.on(':').limit(5).split(Bytes.toString(rowkey)).iterator();
+      // first part is the plugin prefix
+      parts.next();
+      return new PluginKey(Id.Namespace.from(parts.next()), parts.next(), parts.next(), parts.next());
+    }
+  }
+
+  // utilities for creating row keys for the plugin index.
+  // Keys are of the form 'i:{artifact-namespace}:{parent-namespace}:{parent-name}:{type}:{name}'
+  private static class PluginIndexKey {
+    private final NamespaceId artifactNamespace;
+    private final PluginKey pluginKey;
+
+    private PluginIndexKey(NamespaceId artifactNamespace, PluginKey pluginKey) {
+      this.artifactNamespace = artifactNamespace;
+      this.pluginKey = pluginKey;
+    }
+
+    // i:default:system:etlbatch:source:db
+    private byte[] getRowKey() {
+      return Bytes.toBytes(Joiner.on(':').join(PLUGIN_INDEX_PREFIX, artifactNamespace.getNamespace(),
+                                               pluginKey.parentArtifactNamespace.getId(),
+                                               pluginKey.parentArtifactName, pluginKey.type, pluginKey.name));
+    }
+  }
+
+  // column for the plugin index. Does not contain the namespace because namespace is in the rowkey
+  private static class PluginIndexColumn {
+    private final Id.Artifact artifactId;
+
+    private PluginIndexColumn(Id.Artifact artifactId) {
+      this.artifactId = artifactId;
+    }
+
+    private byte[] getColumn() {
+      return Bytes.toBytes(String.format("%s:%s", artifactId.getName(), artifactId.getVersion().getVersion()));
+    }
+
+    private static Id.Artifact parse(NamespaceId namespace, byte[] columnBytes) {
+      Iterator<String> parts = Splitter.on(':').limit(2).split(Bytes.toString(columnBytes)).iterator();
+      return Id.Artifact.from(namespace.toId(), parts.next(), parts.next());
+    }
   }
 
   private static class ArtifactColumn {
@@ -0,0 +1,334 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.artifact;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.lang.jar.BundleJarUtil;
+import co.cask.cdap.common.utils.DirUtils;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A cache of expanded artifact jars, shared by all artifact and plugin ClassLoaders created in the same process.
+ * Jars are keyed by the SHA-256 checksum of their content, hence the same artifact is only expanded once no matter
+ * where it is copied to. Each caller gets a {@link Handle} to the expanded directory, which must be closed when the
+ * directory is no longer used. Directories that are not used by any {@link Handle} are kept for later use and are
+ * deleted in least recently used order once the total size of the cache exceeds
+ * {@link Constants.AppFabric#ARTIFACT_UNPACK_CACHE_SIZE_MB}. When multiple threads ask for the same jar, only one
+ * of them expands it while the others wait for the result.
+ *
+ * The number of cache hits and misses are emitted as the {@code artifact.unpack.cache.hits} and
+ * {@code artifact.unpack.cache.misses} metrics, and the time spent on expanding jars is emitted as the
+ * {@code artifact.unpack.time.ms} metric.
+ */
+public final class ArtifactUnpackCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ArtifactUnpackCache.class);
+  private static final ConcurrentMap<File, ArtifactUnpackCache> INSTANCES = new ConcurrentHashMap<>();
+
+  private final File baseDir;
+  private final long maxBytes;
+  // Checksums of jars, keyed by the jar location, size and modification time
+  private final Cache<String, String> checksums;
+  // Access ordered, so that iteration starts from the least recently used entry. Guarded by this.
+  private final Map<String, Entry> entries;
+  private long totalBytes;
+  private File cacheDir;
+  private volatile MetricsContext metricsContext;
+
+  /**
+   * Returns the {@link ArtifactUnpackCache} shared by everything in this process that uses the temporary directory
+   * of the given configuration.
+   */
+  public static ArtifactUnpackCache get(CConfiguration cConf) {
+    File tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
+                           cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
+    ArtifactUnpackCache cache = INSTANCES.get(tmpDir);
+    if (cache != null) {
+      return cache;
+    }
+    cache = new ArtifactUnpackCache(tmpDir, cConf.getLong(Constants.AppFabric.ARTIFACT_UNPACK_CACHE_SIZE_MB, 1024L)
+      * 1024L * 1024L);
+    ArtifactUnpackCache existing = INSTANCES.putIfAbsent(tmpDir, cache);
+    return existing == null ? cache : existing;
+  }
+
+  @VisibleForTesting
+  ArtifactUnpackCache(File baseDir, long maxBytes) {
+    this.baseDir = baseDir;
+    this.maxBytes = maxBytes;
+    this.checksums = CacheBuilder.newBuilder().maximumSize(1000).build();
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.metricsContext = new NoopMetricsContext();
+  }
+
+  /**
+   * Sets the {@link MetricsContext} for emitting cache metrics.
+   */
+  public void setMetricsContext(MetricsContext metricsContext) {
+    this.metricsContext = metricsContext;
+  }
+
+  /**
+   * Returns a {@link Handle} to a directory where the given jar has been expanded. The directory must not be
+   * modified, since it is shared with other users of the same jar.
+   *
+   * @param jarLocation the location of the jar
+   * @return a {@link Handle} that must be closed when the directory is no longer used
+   * @throws IOException if failed to read or expand the jar
+   */
+  public Handle unpack(Location jarLocation) throws IOException {
+    String checksum = getChecksum(jarLocation);
+    Entry entry;
+    boolean populate;
+    synchronized (this) {
+      entry = entries.get(checksum);
+      populate = entry == null;
+      if (populate) {
+        entry = new Entry(checksum);
+        entries.put(checksum, entry);
+      }
+      entry.refCount++;
+    }
+
+    if (populate) {
+      metricsContext.increment("artifact.unpack.cache.misses", 1L);
+      populate(entry, jarLocation);
+    } else {
+      metricsContext.increment("artifact.unpack.cache.hits", 1L);
+    }
+
+    try {
+      return new Handle(entry, Uninterruptibles.getUninterruptibly(entry.result));
+    } catch (ExecutionException e) {
+      release(entry);
+      Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Returns the total size in bytes of all expanded jars in the cache.
+   */
+  @VisibleForTesting
+  synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+
+  private String getChecksum(final Location jarLocation) throws IOException {
+    String key = jarLocation.toURI() + ":" + jarLocation.length() + ":" + jarLocation.lastModified();
+    String checksum = checksums.getIfPresent(key);
+    if (checksum == null) {
+      checksum = ByteStreams.hash(Locations.newInputSupplier(jarLocation), Hashing.sha256()).toString();
+      checksums.put(key, checksum);
+    }
+    return checksum;
+  }
+
+  /**
+   * Expands the jar for the given entry and completes the entry with the result.
+   */
+  private void populate(Entry entry, Location jarLocation) {
+    long startTime = System.nanoTime();
+    File tmpDir = null;
+    try {
+      File targetDir;
+      synchronized (this) {
+        tmpDir = DirUtils.createTempDir(getCacheDir());
+        targetDir = new File(getCacheDir(), entry.checksum);
+      }
+
+      // Expand to a temporary directory first, so that the target directory only exists when it is complete
+      BundleJarUtil.unJar(jarLocation, tmpDir);
+      Files.move(tmpDir.toPath(), targetDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      long size = getSize(targetDir.toPath());
+
+      long unpackTimeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+      metricsContext.increment("artifact.unpack.time.ms", unpackTimeMillis);
+      LOG.debug("Expanded {} to {} in {} ms", jarLocation, targetDir, unpackTimeMillis);
+
+      synchronized (this) {
+        entry.dir = targetDir;
+        entry.size = size;
+        totalBytes += size;
+      }
+      entry.result.set(targetDir);
+    } catch (Throwable t) {
+      synchronized (this) {
+        entries.remove(entry.checksum);
+      }
+      if (tmpDir != null) {
+        deleteQuietly(tmpDir);
+      }
+      entry.result.setException(t);
+    }
+    evict();
+  }
+
+  private void release(Entry entry) {
+    synchronized (this) {
+      entry.refCount--;
+    }
+    evict();
+  }
+
+  /**
+   * Deletes unused directories in least recently used order until the cache size is within the limit.
+   */
+  private void evict() {
+    List<File> evicted = new ArrayList<>();
+    synchronized (this) {
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (totalBytes > maxBytes && iterator.hasNext()) {
+        Entry entry = iterator.next();
+        if (entry.refCount > 0 || entry.dir == null) {
+          continue;
+        }
+        iterator.remove();
+        totalBytes -= entry.size;
+
+        // Move the directory out of the way before deleting it outside of the lock,
+        // so that the same jar can be expanded again while the directory is being deleted
+        File trashDir = DirUtils.createTempDir(getCacheDir());
+        if (!entry.dir.renameTo(new File(trashDir, entry.checksum))) {
+          deleteQuietly(entry.dir);
+        }
+        evicted.add(trashDir);
+      }
+    }
+    for (File dir : evicted) {
+      deleteQuietly(dir);
+    }
+  }
+
+  // Must be called while holding the lock of this object
+  private File getCacheDir() {
+    if (cacheDir == null) {
+      cacheDir = DirUtils.createTempDir(baseDir);
+      final File dir = cacheDir;
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+        @Override
+        public void run() {
+          deleteQuietly(dir);
+        }
+      });
+    }
+    return cacheDir;
+  }
+
+  private static long getSize(Path dir) throws IOException {
+    final long[] size = new long[1];
+    Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        size[0] += attrs.size();
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return size[0];
+  }
+
+  private static void deleteQuietly(File dir) {
+    try {
+      DirUtils.deleteDirectoryContents(dir);
+    } catch (IOException e) {
+      LOG.warn("Failed to delete directory {}", dir, e);
+    }
+  }
+
+  /**
+   * A handle to an expanded jar in the cache. The directory may be deleted once the handle is closed.
+   */
+  public final class Handle implements Closeable {
+
+    private final Entry entry;
+    private final File directory;
+    private final AtomicBoolean closed;
+
+    private Handle(Entry entry, File directory) {
+      this.entry = entry;
+      this.directory = directory;
+      this.closed = new AtomicBoolean();
+    }
+
+    /**
+     * Returns the directory where the jar has been expanded.
+     */
+    public File getDirectory() {
+      return directory;
+    }
+
+    @Override
+    public void close() {
+      if (closed.compareAndSet(false, true)) {
+        release(entry);
+      }
+    }
+  }
+
+  /**
+   * A cache entry for the expanded jar with a given checksum.
+   */
+  private static final class Entry {
+
+    private final String checksum;
+    private final SettableFuture<File> result;
+    // The fields below are guarded by the cache
+    private int refCount;
+    private File dir;
+    private long size;
+
+    private Entry(String checksum) {
+      this.checksum = checksum;
+      this.result = SettableFuture.create();
+    }
+  }
+}
@@ -27,6 +27,8 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.logging.LoggingContext;
 import co.cask.cdap.common.logging.LoggingContextAccessor;
 import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.data2.transaction.queue.QueueEnqueueNotifier;
+import co.cask.cdap.internal.app.queue.AdaptiveBatchSize;
 import co.cask.cdap.internal.app.queue.SingleItemQueueReader;
 import co.cask.cdap.internal.app.runtime.DataFabricFacade;
 import co.cask.cdap.security.spi.authorization.UnauthorizedException;
@@ -35,12 +37,14 @@ import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.tephra.TransactionContext;
 import org.apache.tephra.TransactionFailureException;
+import org.apache.twill.common.Cancellable;
 import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,15 +52,19 @@ import org.slf4j.LoggerFactory;
 import java.util.Collection;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
- * This class responsible invoking process methods of a {@link Flowlet}.
+ * This class responsible invoking process methods of a {@link Flowlet}. Process methods whose inputs are notified
+ * on enqueue are woken up by the enqueue notification instead of polling their empty inputs, and process methods
+ * with an adaptive batch size have it adjusted after each batch based on the processing time.
  */
 final class FlowletProcessDriver extends AbstractExecutionThreadService {
 
@@ -67,6 +75,10 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
   private final Callback txCallback;
   private final LoggingContext loggingContext;
   private final PriorityQueue<FlowletProcessEntry<?>> processQueue;
+  private final QueueEnqueueNotifier enqueueNotifier;
+  private final Set<QueueName> wakeUpQueues;
+  private final Semaphore wakeUpSignal;
+  private final List<Cancellable> wakeUpCancellables;
 
   private Thread runThread;
   private ExecutorService processExecutor;
@@ -74,16 +86,23 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
   FlowletProcessDriver(BasicFlowletContext flowletContext,
                        DataFabricFacade dataFabricFacade,
                        Callback txCallback,
+                       QueueEnqueueNotifier enqueueNotifier,
                        Collection<? extends ProcessSpecification<?>> processSpecifications) {
     this.flowletContext = flowletContext;
     this.dataFabricFacade = dataFabricFacade;
     this.txCallback = txCallback;
     this.loggingContext = flowletContext.getLoggingContext();
+    this.enqueueNotifier = enqueueNotifier;
+    this.wakeUpSignal = new Semaphore(0);
+    this.wakeUpCancellables = Lists.newArrayList();
 
     processQueue = new PriorityQueue<>(processSpecifications.size());
+    ImmutableSet.Builder<QueueName> wakeUpQueues = ImmutableSet.builder();
     for (ProcessSpecification<?> spec : processSpecifications) {
       processQueue.offer(FlowletProcessEntry.create(spec));
+      wakeUpQueues.addAll(spec.getWakeUpQueues());
     }
+    this.wakeUpQueues = wakeUpQueues.build();
   }
 
   /**
@@ -99,6 +118,10 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     this.loggingContext = other.loggingContext;
     this.processQueue = new PriorityQueue<>(other.processQueue.size());
     Iterables.addAll(processQueue, other.processQueue);
+    this.enqueueNotifier = other.enqueueNotifier;
+    this.wakeUpQueues = other.wakeUpQueues;
+    this.wakeUpSignal = new Semaphore(0);
+    this.wakeUpCancellables = Lists.newArrayList();
   }
 
   @Override
@@ -111,10 +134,24 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     runThread = Thread.currentThread();
     processExecutor = Executors.newSingleThreadExecutor(
       Threads.createDaemonThreadFactory(getServiceName() + "-executor"));
+
+    Runnable wakeUpListener = new Runnable() {
+      @Override
+      public void run() {
+        wakeUpSignal.release();
+      }
+    };
+    for (QueueName queueName : wakeUpQueues) {
+      wakeUpCancellables.add(enqueueNotifier.addListener(queueName, wakeUpListener));
+    }
   }
 
   @Override
   protected void shutDown() throws Exception {
+    for (Cancellable cancellable : wakeUpCancellables) {
+      cancellable.cancel();
+    }
+    wakeUpCancellables.clear();
     processExecutor.shutdown();
   }
 
@@ -134,7 +171,7 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     while (isRunning()) {
       try {
         // If the queue head need to wait, we had to wait.
-        processQueue.peek().await();
+        awaitProcessQueue();
       } catch (InterruptedException e) {
         // Triggered by shutdown, simply continue and let the isRunning() check to deal with that.
         continue;
@@ -171,6 +208,34 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     }
   }
 
+  /**
+   * Waits until the head of the process queue is ready for dequeue, or until entries are enqueued to the inputs of
+   * process methods that are woken up on enqueue.
+   */
+  private void awaitProcessQueue() throws InterruptedException {
+    FlowletProcessEntry<?> head = processQueue.peek();
+    if (wakeUpQueues.isEmpty()) {
+      head.await();
+      return;
+    }
+
+    long waitTime = head.getNextDeque() - System.nanoTime();
+    boolean notified = waitTime > 0 && wakeUpSignal.tryAcquire(waitTime, TimeUnit.NANOSECONDS);
+    // Also consume the notifications that arrived while the last round of process methods was running
+    notified = wakeUpSignal.drainPermits() > 0 || notified;
+    if (!notified) {
+      return;
+    }
+
+    // Make the backing off entries ready for dequeue and reorder the process queue accordingly
+    List<FlowletProcessEntry<?>> entries = Lists.newArrayListWithCapacity(processQueue.size());
+    drainQueue(processQueue, entries);
+    for (FlowletProcessEntry<?> entry : entries) {
+      entry.wakeUp();
+    }
+    processQueue.addAll(entries);
+  }
+
   private void drainQueue(PriorityQueue<FlowletProcessEntry<?>> queue,
                           List<? super FlowletProcessEntry<?>> collection) {
     FlowletProcessEntry<?> entry = queue.poll();
@@ -243,8 +308,15 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
 
         // Call the process method and commit the transaction. The current process entry will put
         // back to queue in the postProcess method (either a retry copy or itself).
+        long processStartTime = System.nanoTime();
         ProcessMethod.ProcessResult<?> result = processMethod.invoke(input);
         postProcess(processMethodCallback(processQueue, entry, input), txContext, input, result);
+
+        AdaptiveBatchSize batchSize = entry.getProcessSpec().getAdaptiveBatchSize();
+        if (batchSize != null) {
+          batchSize.update(input.size(), System.nanoTime() - processStartTime,
+                           TimeUnit.SECONDS.toNanos(flowletContext.getDefaultTxTimeout()));
+        }
         return true;
 
       } catch (Throwable t) {
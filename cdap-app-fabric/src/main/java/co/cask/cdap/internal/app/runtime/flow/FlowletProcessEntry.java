@@ -40,15 +40,21 @@ final class FlowletProcessEntry<T> implements Comparable<FlowletProcessEntry> {
   // Doubling back-off time during exponential increase, up to maximum back-off time.
   private static final int BACKOFF_EXP = 2;
 
+  // Maximum back-off time in nanoseconds when the process method is woken up on enqueue, 5s. Dequeue is only
+  // attempted as a safety net while the inputs are empty.
+  private static final long WAKE_UP_BACKOFF_MAX = TimeUnit.SECONDS.toNanos(5);
+
   private final ProcessSpecification<T> processSpec;
   private final ProcessSpecification<T> retrySpec;
   private final boolean isTick;
+  private final boolean wakeUpOnEnqueue;
 
   /**
    * {@code System.nanoTime} when the next deque should happen.
    */
   private long nextDeque;
   private long currentBackOff = BACKOFF_MIN;
+  private boolean backingOff;
 
   static <T> FlowletProcessEntry<T> create(ProcessSpecification<T> processSpec) {
     long nextDeque;
@@ -71,6 +77,7 @@ final class FlowletProcessEntry<T> implements Comparable<FlowletProcessEntry> {
     this.retrySpec = retrySpec;
     this.nextDeque = nextDeque;
     this.isTick = processSpec.isTick();
+    this.wakeUpOnEnqueue = retrySpec == null && !processSpec.getWakeUpQueues().isEmpty();
   }
 
   long getNextDeque() {
@@ -100,14 +107,34 @@ final class FlowletProcessEntry<T> implements Comparable<FlowletProcessEntry> {
   public void resetBackOff() {
     nextDeque = System.nanoTime() + processSpec.getCallDelay();
     currentBackOff = BACKOFF_MIN;
+    backingOff = false;
   }
 
   public void backOff() {
     nextDeque = System.nanoTime() + currentBackOff;
+    backingOff = true;
     if (currentBackOff < BACKOFF_EXP_START) {
       currentBackOff += BACKOFF_CONSTANT_INCREMENT;
     } else {
-      currentBackOff = Math.min(currentBackOff * BACKOFF_EXP, BACKOFF_MAX);
+      currentBackOff = Math.min(currentBackOff * BACKOFF_EXP, wakeUpOnEnqueue ? WAKE_UP_BACKOFF_MAX : BACKOFF_MAX);
+    }
+  }
+
+  /**
+   * Returns {@code true} if this entry is woken up when entries are enqueued to its inputs.
+   */
+  public boolean isWakeUpOnEnqueue() {
+    return wakeUpOnEnqueue;
+  }
+
+  /**
+   * Makes this entry ready for dequeue if it is backing off due to empty inputs and is woken up on enqueue.
+   * The back-off time is kept, so that it keeps growing if the dequeue still finds nothing.
+   */
+  public void wakeUp() {
+    if (wakeUpOnEnqueue && backingOff) {
+      nextDeque = System.nanoTime();
+      backingOff = false;
     }
   }
 
@@ -63,8 +63,10 @@ import co.cask.cdap.data2.queue.DequeueStrategy;
 import co.cask.cdap.data2.queue.QueueClientFactory;
 import co.cask.cdap.data2.queue.QueueConsumer;
 import co.cask.cdap.data2.registry.RuntimeUsageRegistry;
+import co.cask.cdap.data2.transaction.queue.QueueEnqueueNotifier;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
 import co.cask.cdap.data2.transaction.stream.StreamConsumer;
+import co.cask.cdap.internal.app.queue.AdaptiveBatchSize;
 import co.cask.cdap.internal.app.queue.QueueReaderFactory;
 import co.cask.cdap.internal.app.queue.RoundRobinQueueReader;
 import co.cask.cdap.internal.app.queue.SimpleQueueSpecificationGenerator;
@@ -74,6 +76,7 @@ import co.cask.cdap.internal.app.runtime.DataSetFieldSetter;
 import co.cask.cdap.internal.app.runtime.MetricsFieldSetter;
 import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
 import co.cask.cdap.internal.app.runtime.ProgramRunners;
+import co.cask.cdap.internal.app.runtime.SystemArguments;
 import co.cask.cdap.internal.io.DatumWriterFactory;
 import co.cask.cdap.internal.io.ReflectionDatumReader;
 import co.cask.cdap.internal.io.SchemaGenerator;
@@ -145,6 +148,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
   private final SecureStore secureStore;
   private final SecureStoreManager secureStoreManager;
   private final MessagingService messageService;
+  private final QueueEnqueueNotifier enqueueNotifier;
 
   @Inject
   public FlowletProgramRunner(CConfiguration cConfiguration,
@@ -160,7 +164,8 @@ public final class FlowletProgramRunner implements ProgramRunner {
                               RuntimeUsageRegistry runtimeUsageRegistry,
                               SecureStore secureStore,
                               SecureStoreManager secureStoreManager,
-                              MessagingService messagingService) {
+                              MessagingService messagingService,
+                              QueueEnqueueNotifier enqueueNotifier) {
     this.cConf = cConfiguration;
     this.schemaGenerator = schemaGenerator;
     this.datumWriterFactory = datumWriterFactory;
@@ -175,6 +180,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
     this.secureStore = secureStore;
     this.secureStoreManager = secureStoreManager;
     this.messageService = messagingService;
+    this.enqueueNotifier = enqueueNotifier;
   }
 
   @SuppressWarnings("unchecked")
@@ -272,7 +278,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
       Service serviceHook = createServiceHook(flowletName, consumerSuppliers, controllerRef);
       FlowletRuntimeService driver = new FlowletRuntimeService(flowlet, flowletContext, processSpecs,
                                                              createCallback(flowlet, flowletDef.getFlowletSpec()),
-                                                             dataFabricFacade, serviceHook);
+                                                             dataFabricFacade, enqueueNotifier, serviceHook);
 
       FlowletProgramController controller = new FlowletProgramController(program.getId(), flowletName,
                                                                          flowletContext, driver,
@@ -346,7 +352,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
         Schema schema;
         TypeToken<?> dataType;
         ConsumerConfig consumerConfig;
-        int batchSize = 1;
+        AdaptiveBatchSize batchSize = AdaptiveBatchSize.fixed(1);
 
         if (tickAnnotation != null) {
           inputNames = ImmutableSet.of();
@@ -370,7 +376,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
                                           "Only ParameterizedType is supported for batch Iterator.");
               dataType = flowletType.resolveType(((ParameterizedType) dataType.getType()).getActualTypeArguments()[0]);
             }
-            batchSize = processBatchSize;
+            batchSize = createBatchSize(processBatchSize, flowletContext);
           }
 
           try {
@@ -446,6 +452,21 @@ public final class FlowletProgramRunner implements ProgramRunner {
     return null;
   }
 
+  /**
+   * Creates the dequeue batch size for a process method with the given batch size, which adapts to the processing
+   * time if it is enabled through the runtime arguments.
+   */
+  private AdaptiveBatchSize createBatchSize(int batchSize, BasicFlowletContext flowletContext) {
+    Map<String, String> arguments = flowletContext.getRuntimeArguments();
+    if (!SystemArguments.isAdaptiveFlowletBatch(arguments)) {
+      return AdaptiveBatchSize.fixed(batchSize);
+    }
+    AdaptiveBatchSize adaptiveBatchSize =
+      AdaptiveBatchSize.adaptive(batchSize, SystemArguments.getFlowletMaxBatchSize(arguments));
+    LOG.debug("Using adaptive batch size {} for flowlet={}", adaptiveBatchSize, flowletContext);
+    return adaptiveBatchSize;
+  }
+
   private int getNumGroups(Iterable<QueueSpecification> queueSpecs, QueueName queueName) {
     int numGroups = 0;
     for (QueueSpecification queueSpec : queueSpecs) {
@@ -559,9 +580,11 @@ public final class FlowletProgramRunner implements ProgramRunner {
     return new ProcessSpecificationFactory() {
       @Override
       public <T> ProcessSpecification create(Set<String> inputNames, Schema schema, TypeToken<T> dataType,
-                                             ProcessMethod<T> method, ConsumerConfig consumerConfig, int batchSize,
-                                             Tick tickAnnotation) throws Exception {
+                                             ProcessMethod<T> method, ConsumerConfig consumerConfig,
+                                             AdaptiveBatchSize batchSize, Tick tickAnnotation) throws Exception {
         List<QueueReader<T>> queueReaders = Lists.newLinkedList();
+        Set<QueueName> inputQueues = Sets.newHashSet();
+        boolean hasStreamInput = false;
 
         for (Map.Entry<Node, Set<QueueSpecification>> entry : queueSpecs.column(flowletName).entrySet()) {
           for (QueueSpecification queueSpec : entry.getValue()) {
@@ -572,7 +595,9 @@ public final class FlowletProgramRunner implements ProgramRunner {
               || inputNames.contains(FlowletDefinition.ANY_INPUT))) {
 
               Node sourceNode = entry.getKey();
+              inputQueues.add(queueName);
               if (sourceNode.getType() == FlowletConnection.Type.STREAM) {
+                hasStreamInput = true;
                 ConsumerSupplier<StreamConsumer> consumerSupplier = ConsumerSupplier.create(flowletContext.getOwners(),
                                                                                             runtimeUsageRegistry,
                                                                                             dataFabricFacade,
@@ -612,7 +637,11 @@ public final class FlowletProgramRunner implements ProgramRunner {
         if (!inputNames.isEmpty() && queueReaders.isEmpty()) {
           return null;
         }
-        return new ProcessSpecification<>(new RoundRobinQueueReader<>(queueReaders), method, tickAnnotation);
+        // Only rely on enqueue notifications if there is no input that is polled. Stream events are not notified.
+        Set<QueueName> wakeUpQueues = enqueueNotifier.isEnabled() && !hasStreamInput
+          ? inputQueues : ImmutableSet.<QueueName>of();
+        return new ProcessSpecification<>(new RoundRobinQueueReader<>(queueReaders), method, tickAnnotation,
+                                          batchSize, wakeUpQueues);
       }
     };
   }
@@ -728,8 +757,8 @@ public final class FlowletProgramRunner implements ProgramRunner {
      * no input is available for the given method.
      */
     <T> ProcessSpecification create(Set<String> inputNames, Schema schema, TypeToken<T> dataType,
-                                    ProcessMethod<T> method, ConsumerConfig consumerConfig, int batchSize,
-                                    Tick tickAnnotation) throws Exception;
+                                    ProcessMethod<T> method, ConsumerConfig consumerConfig,
+                                    AdaptiveBatchSize batchSize, Tick tickAnnotation) throws Exception;
   }
 
   /**
@@ -22,6 +22,7 @@ import co.cask.cdap.api.flow.flowlet.Flowlet;
 import co.cask.cdap.api.flow.flowlet.FlowletContext;
 import co.cask.cdap.common.logging.LoggingContextAccessor;
 import co.cask.cdap.data2.transaction.Transactions;
+import co.cask.cdap.data2.transaction.queue.QueueEnqueueNotifier;
 import co.cask.cdap.internal.app.runtime.DataFabricFacade;
 import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.AbstractIdleService;
@@ -44,6 +45,7 @@ final class FlowletRuntimeService extends AbstractIdleService {
   private final Collection<? extends ProcessSpecification<?>> processSpecs;
   private final Callback txCallback;
   private final DataFabricFacade dataFabricFacade;
+  private final QueueEnqueueNotifier enqueueNotifier;
   private final Service serviceHook;
 
   private FlowletProcessDriver flowletProcessDriver;
@@ -51,12 +53,13 @@ final class FlowletRuntimeService extends AbstractIdleService {
   FlowletRuntimeService(Flowlet flowlet, BasicFlowletContext flowletContext,
                         Collection<? extends ProcessSpecification<?>> processSpecs,
                         Callback txCallback, DataFabricFacade dataFabricFacade,
-                        Service serviceHook) {
+                        QueueEnqueueNotifier enqueueNotifier, Service serviceHook) {
     this.flowlet = flowlet;
     this.flowletContext = flowletContext;
     this.processSpecs = processSpecs;
     this.txCallback = txCallback;
     this.dataFabricFacade = dataFabricFacade;
+    this.enqueueNotifier = enqueueNotifier;
     this.serviceHook = serviceHook;
   }
 
@@ -64,7 +67,8 @@ final class FlowletRuntimeService extends AbstractIdleService {
   protected void startUp() throws Exception {
     LoggingContextAccessor.setLoggingContext(flowletContext.getLoggingContext());
     flowletContext.getProgramMetrics().increment("process.instance", 1);
-    flowletProcessDriver = new FlowletProcessDriver(flowletContext, dataFabricFacade, txCallback, processSpecs);
+    flowletProcessDriver = new FlowletProcessDriver(flowletContext, dataFabricFacade, txCallback,
+                                                    enqueueNotifier, processSpecs);
 
     serviceHook.startAndWait();
     initFlowlet();
@@ -18,9 +18,14 @@ package co.cask.cdap.internal.app.runtime.flow;
 
 import co.cask.cdap.api.annotation.Tick;
 import co.cask.cdap.app.queue.QueueReader;
+import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.internal.app.queue.AdaptiveBatchSize;
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
 
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  *
@@ -31,12 +36,21 @@ final class ProcessSpecification<T> {
   private final ProcessMethod<T> processMethod;
   private final Tick tickAnnotation;
   private final boolean isTick;
+  private final AdaptiveBatchSize batchSize;
+  private final Set<QueueName> wakeUpQueues;
 
   ProcessSpecification(QueueReader<T> queueReader, ProcessMethod<T> processMethod, Tick tickAnnotation) {
+    this(queueReader, processMethod, tickAnnotation, null, ImmutableSet.<QueueName>of());
+  }
+
+  ProcessSpecification(QueueReader<T> queueReader, ProcessMethod<T> processMethod, Tick tickAnnotation,
+                       @Nullable AdaptiveBatchSize batchSize, Set<QueueName> wakeUpQueues) {
     this.queueReader = queueReader;
     this.processMethod = processMethod;
     this.tickAnnotation = tickAnnotation;
     this.isTick = tickAnnotation != null;
+    this.batchSize = batchSize;
+    this.wakeUpQueues = ImmutableSet.copyOf(wakeUpQueues);
   }
 
   QueueReader<T> getQueueReader() {
@@ -63,6 +77,23 @@ final class ProcessSpecification<T> {
     return isTick;
   }
 
+  /**
+   * Returns the dequeue batch size used by the queue reader if it adapts to the processing time,
+   * or {@code null} otherwise.
+   */
+  @Nullable
+  AdaptiveBatchSize getAdaptiveBatchSize() {
+    return batchSize != null && batchSize.isAdaptive() ? batchSize : null;
+  }
+
+  /**
+   * Returns the input queues that notify on enqueue. It is empty unless enqueues to all inputs are notified, in
+   * which case there is no need to poll the queue reader while the inputs are empty.
+   */
+  Set<QueueName> getWakeUpQueues() {
+    return wakeUpQueues;
+  }
+
   private long convertToNano(long time, TimeUnit unit) {
     return TimeUnit.NANOSECONDS.convert(time, unit);
   }
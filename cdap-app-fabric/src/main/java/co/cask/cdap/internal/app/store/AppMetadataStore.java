@@ -24,6 +24,7 @@ import co.cask.cdap.api.workflow.WorkflowToken;
 import co.cask.cdap.app.runtime.ProgramController;
 import co.cask.cdap.common.app.RunIds;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.dataset2.lib.table.MDSKey;
 import co.cask.cdap.data2.dataset2.lib.table.MetadataStoreDataset;
 import co.cask.cdap.internal.app.ApplicationSpecificationAdapter;
@@ -87,8 +88,15 @@ public class AppMetadataStore extends MetadataStoreDataset {
   private static final String TYPE_WORKFLOW_NODE_STATE = "wns";
   private static final String TYPE_WORKFLOW_TOKEN = "wft";
   private static final String TYPE_NAMESPACE = "namespace";
+  private static final String TYPE_RUN_RECORD_ID_INDEX = "runRecordIdIdx";
+  private static final String TYPE_RUN_RECORD_TIME_INDEX = "runRecordTimeIdx";
+  private static final String TYPE_RUN_RECORD_TIME_INDEX_BUILT = "runRecordTimeIdxBuilt";
+
+  // Completed run records are indexed in every time bucket of this size in which they were running
+  private static final long RUN_RECORD_TIME_BUCKET_SECS = TimeUnit.DAYS.toSeconds(1);
 
   private final CConfiguration cConf;
+  private final ApplicationMetaCache appMetaCache;
 
   private static final Function<RunRecordMeta, RunId> RUN_RECORD_META_TO_RUN_ID_FUNCTION =
     new Function<RunRecordMeta, RunId>() {
@@ -99,8 +107,17 @@ public class AppMetadataStore extends MetadataStoreDataset {
     };
 
   public AppMetadataStore(Table table, CConfiguration cConf) {
+    this(table, cConf, null);
+  }
+
+  AppMetadataStore(Table table, CConfiguration cConf, @Nullable ApplicationMetaCache appMetaCache) {
     super(table);
     this.cConf = cConf;
+    this.appMetaCache = appMetaCache;
+    addValueCodec(RunRecordMeta.class, new RunRecordMetaCodec());
+    addValueCodec(ApplicationMeta.class, new ApplicationMetaCodec(GSON));
+    addValueCodec(WorkflowNodeStateDetail.class, new WorkflowNodeStateDetailCodec(GSON));
+    setValueCodecWrites(cConf.getBoolean(Constants.AppFabric.STORE_BINARY_VALUES_ENABLED, false));
   }
 
   @Override
@@ -115,8 +132,21 @@ public class AppMetadataStore extends MetadataStoreDataset {
 
   @Nullable
   public ApplicationMeta getApplication(String namespaceId, String appId, String versionId) {
-    return getFirst(new MDSKey.Builder().add(TYPE_APP_META, namespaceId, appId, versionId).build(),
-                    ApplicationMeta.class);
+    MDSKey key = new MDSKey.Builder().add(TYPE_APP_META, namespaceId, appId, versionId).build();
+    if (appMetaCache == null) {
+      return getFirst(key, ApplicationMeta.class);
+    }
+    byte[] value = getFirstValue(key);
+    if (value == null) {
+      return null;
+    }
+    return appMetaCache.get(new NamespaceId(namespaceId).app(appId, versionId), value,
+                            new Function<byte[], ApplicationMeta>() {
+      @Override
+      public ApplicationMeta apply(byte[] bytes) {
+        return decodeValue(bytes, ApplicationMeta.class);
+      }
+    });
   }
 
   public List<ApplicationMeta> getAllApplications(String namespaceId) {
@@ -144,21 +174,32 @@ public class AppMetadataStore extends MetadataStoreDataset {
   public void writeApplication(String namespaceId, String appId, String versionId, ApplicationSpecification spec) {
     write(new MDSKey.Builder().add(TYPE_APP_META, namespaceId, appId, versionId).build(),
           new ApplicationMeta(appId, spec));
+    invalidateAppMeta(namespaceId, appId, versionId);
   }
 
   public void deleteApplication(String namespaceId, String appId, String versionId) {
     deleteAll(new MDSKey.Builder().add(TYPE_APP_META, namespaceId, appId, versionId).build());
+    invalidateAppMeta(namespaceId, appId, versionId);
   }
 
   public void deleteApplications(String namespaceId) {
     deleteAll(new MDSKey.Builder().add(TYPE_APP_META, namespaceId).build());
+    if (appMetaCache != null) {
+      appMetaCache.invalidate(new NamespaceId(namespaceId));
+    }
+  }
+
+  private void invalidateAppMeta(String namespaceId, String appId, String versionId) {
+    if (appMetaCache != null) {
+      appMetaCache.invalidate(new NamespaceId(namespaceId).app(appId, versionId));
+    }
   }
 
   // todo: do we need appId? may be use from appSpec?
   public void updateAppSpec(String namespaceId, String appId, String versionId, ApplicationSpecification spec) {
     LOG.trace("App spec to be updated: id: {}: spec: {}", appId, GSON.toJson(spec));
     MDSKey key = new MDSKey.Builder().add(TYPE_APP_META, namespaceId, appId, versionId).build();
-    ApplicationMeta existing = getFirst(key, ApplicationMeta.class);
+    ApplicationMeta existing = getApplication(namespaceId, appId, versionId);
     if (existing == null) {
       String msg = String.format("No meta for namespace %s app %s exists", namespaceId, appId);
       LOG.error(msg);
@@ -168,6 +209,7 @@ public class AppMetadataStore extends MetadataStoreDataset {
     LOG.trace("Application exists in mds: id: {}, spec: {}", existing);
     ApplicationMeta updated = ApplicationMeta.updateSpec(existing, spec);
     write(key, updated);
+    invalidateAppMeta(namespaceId, appId, versionId);
   }
 
   /**
@@ -221,7 +263,7 @@ public class AppMetadataStore extends MetadataStoreDataset {
     RunRecordMeta record = get(key, RunRecordMeta.class);
     if (record != null) {
       // Update the parent Workflow run record by adding node id and program run id in the properties
-      Map<String, String> properties = record.getProperties();
+      Map<String, String> properties = new LinkedHashMap<>(record.getProperties());
       properties.put(workflowNodeId, pid);
       write(key, new RunRecordMeta(record, properties));
     }
@@ -245,9 +287,13 @@ public class AppMetadataStore extends MetadataStoreDataset {
       builder.put("workflowrunid", workflowrunId);
     }
 
+    // On a new store, this marks the time index as built before the first run is completed
+    isRunTimeIndexBuilt();
+
     RunRecordMeta meta =
       new RunRecordMeta(pid, startTs, null, ProgramRunStatus.RUNNING, builder.build(), systemArgs, twillRunId);
     write(key, meta);
+    writeRunIdIndex(programId, pid, TYPE_RUN_RECORD_STARTED);
   }
 
   public void recordProgramSuspend(ProgramId program, String pid) {
@@ -288,6 +334,7 @@ public class AppMetadataStore extends MetadataStoreDataset {
       .add(pid)
       .build();
     write(key, new RunRecordMeta(record, null, toStatus));
+    writeRunIdIndex(programId, pid, toType);
   }
 
   public void recordProgramStop(ProgramId programId, String pid, long stopTs, ProgramRunStatus runStatus,
@@ -315,7 +362,50 @@ public class AppMetadataStore extends MetadataStoreDataset {
       .add(getInvertedTsKeyPart(started.getStartTs()))
       .add(pid).build();
 
-    write(key, new RunRecordMeta(started, stopTs, runStatus));
+    RunRecordMeta completed = new RunRecordMeta(started, stopTs, runStatus);
+    write(key, completed);
+    writeRunIdIndex(programId, pid, TYPE_RUN_RECORD_COMPLETED);
+    for (MDSKey indexKey : getRunTimeIndexKeys(programId, completed)) {
+      write(indexKey, stopTs);
+    }
+  }
+
+  /**
+   * Records the type of the run record that currently holds the given run, so that {@link #getRun(ProgramId, String)}
+   * does not need to probe every type of run record.
+   */
+  private void writeRunIdIndex(ProgramId programId, String pid, String recordType) {
+    write(getProgramKeyBuilder(TYPE_RUN_RECORD_ID_INDEX, programId).add(pid).build(), recordType);
+  }
+
+  /**
+   * Returns the keys of the time index rows of a completed run record, one for each time bucket from the start to
+   * the stop time of the run. The index rows have the stop time as the value, and key format:
+   * runRecordTimeIdx.bucket.startTs.namespace.appName.appVersion.programType.programName.runId
+   */
+  private List<MDSKey> getRunTimeIndexKeys(ProgramId programId, RunRecordMeta record) {
+    long startBucket = getTimeBucket(record.getStartTs());
+    long stopBucket = record.getStopTs() == null ? startBucket : Math.max(startBucket,
+                                                                          getTimeBucket(record.getStopTs()));
+    List<MDSKey> keys = new ArrayList<>();
+    for (long bucket = startBucket; bucket <= stopBucket; bucket++) {
+      keys.add(new MDSKey.Builder()
+                 .add(TYPE_RUN_RECORD_TIME_INDEX)
+                 .add(bucket)
+                 .add(record.getStartTs())
+                 .add(programId.getNamespace())
+                 .add(programId.getApplication())
+                 .add(programId.getVersion())
+                 .add(programId.getType().name())
+                 .add(programId.getProgram())
+                 .add(record.getPid())
+                 .build());
+    }
+    return keys;
+  }
+
+  private long getTimeBucket(long timeInSecs) {
+    return timeInSecs / RUN_RECORD_TIME_BUCKET_SECS;
   }
 
   public Map<ProgramRunId, RunRecordMeta> getRuns(ProgramRunStatus status, Predicate<RunRecordMeta> filter) {
@@ -357,6 +447,13 @@ public class AppMetadataStore extends MetadataStoreDataset {
   // Any changes made here will have to be made over there too.
   // JIRA https://issues.cask.co/browse/CDAP-2172
   public RunRecordMeta getRun(ProgramId program, final String runid) {
+    String recordType = get(getProgramKeyBuilder(TYPE_RUN_RECORD_ID_INDEX, program).add(runid).build(), String.class);
+    if (recordType != null) {
+      return TYPE_RUN_RECORD_COMPLETED.equals(recordType)
+        ? getCompletedRun(program, runid) : getUnfinishedRun(program, recordType, runid);
+    }
+
+    // Runs recorded before the run id index was added are not in the index
     // Query active run record first
     RunRecordMeta running = getUnfinishedRun(program, TYPE_RUN_RECORD_STARTED, runid);
     // If program is running, this will be non-null
@@ -561,15 +658,62 @@ public class AppMetadataStore extends MetadataStoreDataset {
   }
 
   public void deleteProgramHistory(String namespaceId, String appId) {
+    deleteRunTimeIndex(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId, appId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_STARTED, namespaceId, appId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId, appId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_SUSPENDED, namespaceId, appId).build());
+    deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_ID_INDEX, namespaceId, appId).build());
   }
 
   public void deleteProgramHistory(String namespaceId) {
+    deleteRunTimeIndex(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_STARTED, namespaceId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_SUSPENDED, namespaceId).build());
+    deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_ID_INDEX, namespaceId).build());
+  }
+
+  /**
+   * Deletes the time index rows of all the completed run records with the given key prefix.
+   */
+  private void deleteRunTimeIndex(MDSKey completedKey) {
+    for (MDSKey indexKey : getRunTimeIndexKeys(completedKey)) {
+      deleteAll(indexKey);
+    }
+  }
+
+  private List<MDSKey> getRunTimeIndexKeys(MDSKey completedKey) {
+    final List<MDSKey> indexKeys = new ArrayList<>();
+    scan(completedKey, null, RunRecordMeta.class,
+         new Function<MetadataStoreDataset.KeyValue<RunRecordMeta>, Boolean>() {
+      @Override
+      public Boolean apply(MetadataStoreDataset.KeyValue<RunRecordMeta> input) {
+        ProgramId programId;
+        try {
+          programId = getVersionedProgramId(input.getKey());
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+          // Run records without application version in the key were never added to the time index
+          return true;
+        }
+        indexKeys.addAll(getRunTimeIndexKeys(programId, input.getValue()));
+        return true;
+      }
+    });
+    return indexKeys;
+  }
+
+  /**
+   * Returns the {@link ProgramId}, including the application version, of a run record key.
+   */
+  private static ProgramId getVersionedProgramId(MDSKey key) {
+    MDSKey.Splitter splitter = key.split();
+    splitter.skipString(); // skip recordType
+    String namespace = splitter.getString();
+    String application = splitter.getString();
+    String version = splitter.getString();
+    String type = splitter.getString();
+    String program = splitter.getString();
+    return new ApplicationId(namespace, application, version).program(ProgramType.valueOf(type), program);
   }
 
   public void createNamespace(NamespaceMeta metadata) {
@@ -630,8 +774,12 @@ public class AppMetadataStore extends MetadataStoreDataset {
     LOG.trace("Scan timeout = {}ms", scanTimeoutMills);
 
     Set<RunId> runIds = new HashSet<>();
-    Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_COMPLETED, startTimeInSecs, endTimeInSecs,
-                                                        scanTimeoutMills));
+    if (isRunTimeIndexBuilt()) {
+      runIds.addAll(getCompletedRunningInRange(startTimeInSecs, endTimeInSecs));
+    } else {
+      Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_COMPLETED, startTimeInSecs, endTimeInSecs,
+                                                          scanTimeoutMills));
+    }
     Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_SUSPENDED, startTimeInSecs, endTimeInSecs,
                                                         scanTimeoutMills));
     Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_STARTED, startTimeInSecs, endTimeInSecs,
@@ -639,6 +787,75 @@ public class AppMetadataStore extends MetadataStoreDataset {
     return runIds;
   }
 
+  /**
+   * Returns the completed runs that were running between the given start and end time, using the time index.
+   * Only the time buckets that overlap with the given range are scanned.
+   */
+  private Set<RunId> getCompletedRunningInRange(final long startTimeInSecs, final long endTimeInSecs) {
+    final Set<RunId> runIds = new HashSet<>();
+    if (endTimeInSecs <= 0) {
+      return runIds;
+    }
+    MDSKey startKey = new MDSKey.Builder().add(TYPE_RUN_RECORD_TIME_INDEX).add(getTimeBucket(startTimeInSecs)).build();
+    MDSKey stopKey = new MDSKey.Builder().add(TYPE_RUN_RECORD_TIME_INDEX)
+      .add(getTimeBucket(endTimeInSecs - 1) + 1).build();
+    scan(startKey, stopKey, Long.class, new Function<MetadataStoreDataset.KeyValue<Long>, Boolean>() {
+      @Override
+      public Boolean apply(MetadataStoreDataset.KeyValue<Long> input) {
+        MDSKey.Splitter splitter = input.getKey().split();
+        splitter.skipString(); // skip recordType
+        splitter.skipLong(); // skip bucket
+        long startTs = splitter.getLong();
+        // Same condition as the time filter in getRunningInRangeForStatus
+        if (startTs < endTimeInSecs && (input.getValue() == null || input.getValue() >= startTimeInSecs)) {
+          splitter.skipString(); // skip namespace
+          splitter.skipString(); // skip appName
+          splitter.skipString(); // skip appVersion
+          splitter.skipString(); // skip programType
+          splitter.skipString(); // skip programName
+          runIds.add(RunIds.fromString(splitter.getString()));
+        }
+        return true;
+      }
+    });
+    return runIds;
+  }
+
+  /**
+   * Returns whether every completed run record is in the time index. That is the case once the index has been
+   * built by {@link #upgradeVersionKeys()}, or if there was no completed run record before the index was added.
+   */
+  private boolean isRunTimeIndexBuilt() {
+    MDSKey builtKey = new MDSKey.Builder().add(TYPE_RUN_RECORD_TIME_INDEX_BUILT).build();
+    if (exists(builtKey)) {
+      return true;
+    }
+    if (!list(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED).build(), RunRecordMeta.class, 1).isEmpty()) {
+      return false;
+    }
+    write(builtKey, true);
+    return true;
+  }
+
+  /**
+   * Rebuilds the run id and time indexes of all completed run records.
+   */
+  private void buildRunIndexes() {
+    LOG.info("Building run record indexes");
+    MDSKey completedKey = new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED).build();
+    deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_TIME_INDEX).build());
+    Map<MDSKey, RunRecordMeta> completed = listKV(completedKey, RunRecordMeta.class);
+    for (Map.Entry<MDSKey, RunRecordMeta> entry : completed.entrySet()) {
+      ProgramId programId = getVersionedProgramId(entry.getKey());
+      RunRecordMeta record = entry.getValue();
+      writeRunIdIndex(programId, record.getPid(), TYPE_RUN_RECORD_COMPLETED);
+      for (MDSKey indexKey : getRunTimeIndexKeys(programId, record)) {
+        write(indexKey, record.getStopTs());
+      }
+    }
+    write(new MDSKey.Builder().add(TYPE_RUN_RECORD_TIME_INDEX_BUILT).build(), true);
+  }
+
   private Iterable<RunId> getRunningInRangeForStatus(String statusKey, final long startTimeInSecs,
                                                      final long endTimeInSecs, long maxScanTimeMillis) {
     List<Iterable<RunId>> batches = getRunningInRangeForStatus(statusKey, startTimeInSecs, endTimeInSecs,
@@ -687,6 +904,7 @@ public class AppMetadataStore extends MetadataStoreDataset {
     upgradeVersionKeys(TYPE_RUN_RECORD_COMPLETED, RunRecordMeta.class);
     upgradeVersionKeys(TYPE_WORKFLOW_NODE_STATE, WorkflowNodeStateDetail.class);
     upgradeVersionKeys(TYPE_WORKFLOW_TOKEN, BasicWorkflowToken.class);
+    buildRunIndexes();
   }
 
   /**
@@ -35,9 +35,13 @@ public class ApplicationMeta {
   private final long lastUpdateTs;
 
   public ApplicationMeta(String id, ApplicationSpecification spec) {
+    this(id, spec, System.currentTimeMillis());
+  }
+
+  ApplicationMeta(String id, ApplicationSpecification spec, long lastUpdateTs) {
     this.id = id;
     this.spec = spec;
-    this.lastUpdateTs = System.currentTimeMillis();
+    this.lastUpdateTs = lastUpdateTs;
   }
 
   public static ApplicationMeta updateSpec(ApplicationMeta original, ApplicationSpecification newSpec) {
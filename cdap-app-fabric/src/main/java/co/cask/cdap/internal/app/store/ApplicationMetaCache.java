@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.store;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.proto.id.ApplicationId;
+import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * An in-process cache of decoded {@link ApplicationMeta}, so that the
+ * {@link co.cask.cdap.api.app.ApplicationSpecification} of an application is not decoded again on every lookup.
+ * Entries are keyed by the versioned {@link ApplicationId} and hold the stored value they were decoded from.
+ * A lookup always reads the stored value inside of the caller's transaction and only returns the cached entry if
+ * the stored value is unchanged, hence callers see exactly what their transaction sees. Invalidation on writes and
+ * deletes only releases entries that are known to be stale. The number of cache hits and misses are emitted as the
+ * {@code app.spec.cache.hits} and {@code app.spec.cache.misses} metrics.
+ */
+final class ApplicationMetaCache {
+
+  private final Cache<ApplicationId, Entry> cache;
+  private volatile MetricsContext metricsContext;
+
+  ApplicationMetaCache(long maxSize) {
+    this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+    this.metricsContext = new NoopMetricsContext();
+  }
+
+  void setMetricsContext(MetricsContext metricsContext) {
+    this.metricsContext = metricsContext;
+  }
+
+  /**
+   * Returns the {@link ApplicationMeta} for the given stored value.
+   *
+   * @param appId the versioned application id
+   * @param value the stored value of the application
+   * @param decoder the function to decode the stored value if it is not in the cache
+   * @return the decoded {@link ApplicationMeta}
+   */
+  ApplicationMeta get(ApplicationId appId, byte[] value, Function<byte[], ApplicationMeta> decoder) {
+    Entry entry = cache.getIfPresent(appId);
+    if (entry != null && Arrays.equals(entry.value, value)) {
+      metricsContext.increment("app.spec.cache.hits", 1L);
+      return entry.meta;
+    }
+    metricsContext.increment("app.spec.cache.misses", 1L);
+    ApplicationMeta meta = decoder.apply(value);
+    cache.put(appId, new Entry(value, meta));
+    return meta;
+  }
+
+  /**
+   * Removes the entry of the given application version.
+   */
+  void invalidate(ApplicationId appId) {
+    cache.invalidate(appId);
+  }
+
+  /**
+   * Removes the entries of all applications in the given namespace.
+   */
+  void invalidate(NamespaceId namespaceId) {
+    Iterator<ApplicationId> iterator = cache.asMap().keySet().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().getParent().equals(namespaceId)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * A decoded {@link ApplicationMeta} together with the stored value it was decoded from.
+   */
+  private static final class Entry {
+    private final byte[] value;
+    private final ApplicationMeta meta;
+
+    private Entry(byte[] value, ApplicationMeta meta) {
+      this.value = value;
+      this.meta = meta;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.store;
+
+import co.cask.cdap.api.app.ApplicationSpecification;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.data2.dataset2.lib.table.MDSValueCodec;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+
+/**
+ * A {@link MDSValueCodec} for {@link ApplicationMeta}. The {@link ApplicationSpecification} is kept as JSON
+ * inside the binary value, since it is a deep polymorphic structure that relies on the
+ * {@link co.cask.cdap.internal.app.ApplicationSpecificationAdapter} type adapters.
+ */
+final class ApplicationMetaCodec implements MDSValueCodec<ApplicationMeta> {
+
+  private static final int VERSION = 1;
+
+  private final Gson gson;
+
+  ApplicationMetaCodec(Gson gson) {
+    this.gson = gson;
+  }
+
+  @Override
+  public int getVersion() {
+    return VERSION;
+  }
+
+  @Override
+  public void encode(ApplicationMeta value, Encoder encoder) throws IOException {
+    encoder.writeString(value.getId());
+    encoder.writeLong(value.getLastUpdateTs());
+    encoder.writeString(gson.toJson(value.getSpec(), ApplicationSpecification.class));
+  }
+
+  @Override
+  public ApplicationMeta decode(int version, Decoder decoder) throws IOException {
+    if (version != VERSION) {
+      throw new IOException("Unsupported version " + version + " for decoding ApplicationMeta");
+    }
+    String id = decoder.readString();
+    long lastUpdateTs = decoder.readLong();
+    ApplicationSpecification spec = gson.fromJson(decoder.readString(), ApplicationSpecification.class);
+    return new ApplicationMeta(id, spec, lastUpdateTs);
+  }
+}
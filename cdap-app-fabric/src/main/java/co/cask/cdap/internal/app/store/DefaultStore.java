@@ -28,6 +28,7 @@ import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.api.flow.FlowSpecification;
 import co.cask.cdap.api.flow.FlowletDefinition;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.schedule.ScheduleSpecification;
 import co.cask.cdap.api.service.ServiceSpecification;
 import co.cask.cdap.api.worker.WorkerSpecification;
@@ -65,6 +66,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.MapDifference;
@@ -106,11 +108,13 @@ public class DefaultStore implements Store {
   private final CConfiguration configuration;
   private final DatasetFramework dsFramework;
   private final Transactional transactional;
+  private final ApplicationMetaCache appMetaCache;
 
   @Inject
   public DefaultStore(CConfiguration conf, DatasetFramework framework, TransactionSystemClient txClient) {
     this.configuration = conf;
     this.dsFramework = framework;
+    this.appMetaCache = new ApplicationMetaCache(conf.getLong(Constants.AppMetaStore.SPEC_CACHE_SIZE, 100L));
     this.transactional = Transactions.createTransactionalWithRetry(
       Transactions.createTransactional(new MultiThreadDatasetCache(
         new SystemDatasetInstantiator(framework), new TransactionSystemClientAdapter(txClient),
@@ -119,6 +123,14 @@ public class DefaultStore implements Store {
     );
   }
 
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    // Use optional Guice injection since the store is also used by tools that don't emit metrics
+    appMetaCache.setMetricsContext(metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.APP_FABRIC_HTTP)));
+  }
+
   /**
    * Adds datasets and types to the given {@link DatasetFramework} used by app mds.
    *
@@ -133,7 +145,7 @@ public class DefaultStore implements Store {
                                                                                      DatasetManagementException {
     Table table = DatasetsUtil.getOrCreateDataset(datasetContext, dsFramework, APP_META_INSTANCE_ID,
                                                   Table.class.getName(), DatasetProperties.EMPTY);
-    return new AppMetadataStore(table, configuration);
+    return new AppMetadataStore(table, configuration, appMetaCache);
   }
 
   private WorkflowDataset getWorkflowDataset(DatasetContext datasetContext) throws IOException,
@@ -878,6 +890,14 @@ public class DefaultStore implements Store {
     }
   }
 
+  /**
+   * Returns the hit and miss statistics of the cache of decoded application specifications.
+   */
+  @VisibleForTesting
+  CacheStats getAppSpecCacheStats() {
+    return appMetaCache.getStats();
+  }
+
   private ApplicationSpecification getApplicationSpec(AppMetadataStore mds, ApplicationId id) {
     ApplicationMeta meta = mds.getApplication(id.getNamespace(), id.getApplication(), id.getVersion());
     return meta == null ? null : meta.getSpec();
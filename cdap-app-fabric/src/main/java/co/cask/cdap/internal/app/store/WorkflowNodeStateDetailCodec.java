@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.store;
+
+import co.cask.cdap.api.workflow.NodeStatus;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.data2.dataset2.lib.table.MDSValueCodec;
+import co.cask.cdap.proto.BasicThrowable;
+import co.cask.cdap.proto.WorkflowNodeStateDetail;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+
+/**
+ * A {@link MDSValueCodec} for {@link WorkflowNodeStateDetail}. The failure cause, which is only present for failed
+ * nodes, is kept as JSON inside the binary value.
+ */
+final class WorkflowNodeStateDetailCodec implements MDSValueCodec<WorkflowNodeStateDetail> {
+
+  private static final int VERSION = 1;
+
+  private final Gson gson;
+
+  WorkflowNodeStateDetailCodec(Gson gson) {
+    this.gson = gson;
+  }
+
+  @Override
+  public int getVersion() {
+    return VERSION;
+  }
+
+  @Override
+  public void encode(WorkflowNodeStateDetail value, Encoder encoder) throws IOException {
+    encoder.writeString(value.getNodeId());
+    encoder.writeString(value.getNodeStatus().name());
+    String runId = value.getRunId();
+    encoder.writeBool(runId != null);
+    if (runId != null) {
+      encoder.writeString(runId);
+    }
+    BasicThrowable failureCause = value.getFailureCause();
+    encoder.writeBool(failureCause != null);
+    if (failureCause != null) {
+      encoder.writeString(gson.toJson(failureCause));
+    }
+  }
+
+  @Override
+  public WorkflowNodeStateDetail decode(int version, Decoder decoder) throws IOException {
+    if (version != VERSION) {
+      throw new IOException("Unsupported version " + version + " for decoding WorkflowNodeStateDetail");
+    }
+    String nodeId = decoder.readString();
+    NodeStatus nodeStatus = NodeStatus.valueOf(decoder.readString());
+    String runId = decoder.readBool() ? decoder.readString() : null;
+    BasicThrowable failureCause = decoder.readBool() ? gson.fromJson(decoder.readString(), BasicThrowable.class) : null;
+    return new WorkflowNodeStateDetail(nodeId, nodeStatus, runId, failureCause);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.queue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link AdaptiveBatchSize}.
+ */
+public class AdaptiveBatchSizeTest {
+
+  private static final long TX_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+  @Test
+  public void testFixed() {
+    AdaptiveBatchSize batchSize = AdaptiveBatchSize.fixed(10);
+    Assert.assertFalse(batchSize.isAdaptive());
+    batchSize.update(10, 0, TX_TIMEOUT);
+    Assert.assertEquals(10, batchSize.get());
+    batchSize.update(10, TX_TIMEOUT, TX_TIMEOUT);
+    Assert.assertEquals(10, batchSize.get());
+  }
+
+  @Test
+  public void testAdaptive() {
+    AdaptiveBatchSize batchSize = AdaptiveBatchSize.adaptive(10, 50);
+    Assert.assertTrue(batchSize.isAdaptive());
+
+    // Fast processing of full batches grows the batch size, up to the max size
+    batchSize.update(10, TimeUnit.SECONDS.toNanos(1), TX_TIMEOUT);
+    Assert.assertEquals(20, batchSize.get());
+    batchSize.update(20, TimeUnit.SECONDS.toNanos(1), TX_TIMEOUT);
+    Assert.assertEquals(40, batchSize.get());
+    batchSize.update(40, TimeUnit.SECONDS.toNanos(1), TX_TIMEOUT);
+    Assert.assertEquals(50, batchSize.get());
+
+    // Batches that are not full or that take a moderate time to process don't change the batch size
+    batchSize.update(30, TimeUnit.SECONDS.toNanos(1), TX_TIMEOUT);
+    Assert.assertEquals(50, batchSize.get());
+    batchSize.update(50, TimeUnit.SECONDS.toNanos(5), TX_TIMEOUT);
+    Assert.assertEquals(50, batchSize.get());
+
+    // Slow processing shrinks the batch size, down to one
+    for (int i = 0; i < 10; i++) {
+      batchSize.update(batchSize.get(), TimeUnit.SECONDS.toNanos(20), TX_TIMEOUT);
+    }
+    Assert.assertEquals(1, batchSize.get());
+  }
+}
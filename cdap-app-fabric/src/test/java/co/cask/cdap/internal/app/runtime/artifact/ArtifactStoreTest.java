@@ -17,14 +17,25 @@
 package co.cask.cdap.internal.app.runtime.artifact;
 
 import co.cask.cdap.WordCountApp;
+import co.cask.cdap.api.Transactional;
+import co.cask.cdap.api.TxRunnable;
 import co.cask.cdap.api.artifact.ArtifactScope;
 import co.cask.cdap.api.artifact.ArtifactVersion;
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.DatasetContext;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.api.plugin.PluginClass;
 import co.cask.cdap.api.plugin.PluginPropertyField;
 import co.cask.cdap.common.ArtifactAlreadyExistsException;
 import co.cask.cdap.common.ArtifactNotFoundException;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.data.dataset.SystemDatasetInstantiator;
+import co.cask.cdap.data2.dataset2.DatasetFramework;
+import co.cask.cdap.data2.dataset2.MultiThreadDatasetCache;
+import co.cask.cdap.data2.transaction.TransactionSystemClientAdapter;
+import co.cask.cdap.data2.transaction.Transactions;
 import co.cask.cdap.internal.AppFabricTestHelper;
 import co.cask.cdap.internal.app.runtime.artifact.app.inspection.InspectionApp;
 import co.cask.cdap.internal.app.runtime.plugin.PluginNotExistsException;
@@ -47,6 +58,8 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
+import com.google.inject.Injector;
+import org.apache.tephra.TransactionSystemClient;
 import org.apache.twill.filesystem.Location;
 import org.junit.After;
 import org.junit.Assert;
@@ -715,6 +728,57 @@ public class ArtifactStoreTest {
     Assert.assertEquals(expected, actual);
   }
 
+  @Test
+  public void testPluginIndexUpgrade() throws Exception {
+    ArtifactRange parentArtifacts = new ArtifactRange(
+      NamespaceId.DEFAULT, "parent", new ArtifactVersion("1.0.0"), new ArtifactVersion("2.0.0"));
+    Id.Artifact parentArtifactId = Id.Artifact.from(Id.Namespace.DEFAULT, "parent", "1.0.0");
+    writeArtifact(parentArtifactId, new ArtifactMeta(ArtifactClasses.builder().build()), "content");
+
+    PluginClass plugin1 =
+      new PluginClass("atype", "plugin1", "", "c.c.c.plugin1", "cfg", ImmutableMap.<String, PluginPropertyField>of());
+    PluginClass plugin2 =
+      new PluginClass("btype", "plugin2", "", "c.c.c.plugin2", "cfg", ImmutableMap.<String, PluginPropertyField>of());
+    Id.Artifact artifact1 = Id.Artifact.from(Id.Namespace.DEFAULT, "plugins1", "1.0.0");
+    writeArtifact(artifact1, new ArtifactMeta(ArtifactClasses.builder().addPlugins(plugin1, plugin2).build(),
+                                              ImmutableSet.of(parentArtifacts)), "something");
+    ArtifactDescriptor artifact1Info = artifactStore.getArtifact(artifact1).getDescriptor();
+
+    // Remove the plugin index to simulate plugins that were added before the plugin index existed
+    deleteMetaRows("i", true);
+
+    // Lookups should be served from the plugin rows until the plugin index is built
+    Id.Artifact artifact2 = Id.Artifact.from(Id.Namespace.DEFAULT, "plugins2", "1.0.0");
+    writeArtifact(artifact2, new ArtifactMeta(ArtifactClasses.builder().addPlugins(plugin1).build(),
+                                              ImmutableSet.of(parentArtifacts)), "something");
+    ArtifactDescriptor artifact2Info = artifactStore.getArtifact(artifact2).getDescriptor();
+    assertPlugins(parentArtifactId, artifact1Info, artifact2Info, plugin1, plugin2);
+
+    // After building the plugin index, lookups should be served from the plugin index only
+    artifactStore.upgrade();
+    deleteMetaRows("p", false);
+    assertPlugins(parentArtifactId, artifact1Info, artifact2Info, plugin1, plugin2);
+
+    // Deleting an artifact should remove it from the plugin index
+    artifactStore.delete(artifact2);
+    Assert.assertEquals(ImmutableMap.of(artifact1Info, plugin1),
+                        artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId, "atype", "plugin1"));
+  }
+
+  private void assertPlugins(Id.Artifact parentArtifactId, ArtifactDescriptor artifact1Info,
+                             ArtifactDescriptor artifact2Info, PluginClass plugin1, PluginClass plugin2)
+    throws Exception {
+    Assert.assertEquals(ImmutableMap.of(artifact1Info, ImmutableSet.of(plugin1, plugin2),
+                                        artifact2Info, ImmutableSet.of(plugin1)),
+                        artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId));
+    Assert.assertEquals(ImmutableMap.of(artifact1Info, ImmutableSet.of(plugin2)),
+                        artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId, "btype"));
+    Assert.assertEquals(ImmutableMap.of(artifact1Info, plugin1, artifact2Info, plugin1),
+                        artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId, "atype", "plugin1"));
+    // Plugins are only visible to the namespace of the plugin artifact and the system namespace
+    Assert.assertTrue(artifactStore.getPluginClasses(Ids.namespace("ns1"), parentArtifactId).isEmpty());
+  }
+
   @Test
   public void testPluginParentInclusiveExclusiveVersions() throws Exception {
     // write artifacts that extend:
@@ -1044,6 +1108,32 @@ public class ArtifactStoreTest {
                         CharStreams.toString(new InputStreamReader(location.getInputStream(), Charsets.UTF_8)));
   }
 
+  /**
+   * Deletes all rows with the given prefix from the artifact meta table, and the plugin index marker if requested.
+   */
+  private void deleteMetaRows(final String prefix, final boolean deleteMarker) throws Exception {
+    Injector injector = AppFabricTestHelper.getInjector();
+    Transactional transactional = Transactions.createTransactional(new MultiThreadDatasetCache(
+      new SystemDatasetInstantiator(injector.getInstance(DatasetFramework.class)),
+      new TransactionSystemClientAdapter(injector.getInstance(TransactionSystemClient.class)),
+      NamespaceId.SYSTEM, Collections.<String, String>emptyMap(), null, null));
+    transactional.execute(new TxRunnable() {
+      @Override
+      public void run(DatasetContext context) throws Exception {
+        Table table = context.getDataset("artifact.meta");
+        try (Scanner scanner = table.scan(Bytes.toBytes(prefix + ":"), Bytes.toBytes(prefix + ";"))) {
+          Row row;
+          while ((row = scanner.next()) != null) {
+            table.delete(row.getRow());
+          }
+        }
+        if (deleteMarker) {
+          table.delete(Bytes.toBytes("m:pluginIndex"));
+        }
+      }
+    });
+  }
+
   private void writeArtifact(
     Id.Artifact artifactId, ArtifactMeta meta,
     String contents) throws ArtifactAlreadyExistsException, IOException, WriteConflictException {
@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.artifact;
+
+import co.cask.cdap.common.io.Locations;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Unit tests for {@link ArtifactUnpackCache}.
+ */
+public class ArtifactUnpackCacheTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testSharedUnpack() throws IOException {
+    ArtifactUnpackCache cache = new ArtifactUnpackCache(TMP_FOLDER.newFolder(), Long.MAX_VALUE);
+
+    // Same content in different locations should be expanded only once
+    Location jar1 = createJar(new File(TMP_FOLDER.newFolder(), "plugin-1.0.0.jar"), "content");
+    Location jar2 = createJar(new File(TMP_FOLDER.newFolder(), "plugin-copy.jar"), "content");
+    Location jar3 = createJar(new File(TMP_FOLDER.newFolder(), "plugin-2.0.0.jar"), "other content");
+
+    try (
+      ArtifactUnpackCache.Handle handle1 = cache.unpack(jar1);
+      ArtifactUnpackCache.Handle handle2 = cache.unpack(jar2);
+      ArtifactUnpackCache.Handle handle3 = cache.unpack(jar3)
+    ) {
+      Assert.assertEquals(handle1.getDirectory(), handle2.getDirectory());
+      Assert.assertNotEquals(handle1.getDirectory(), handle3.getDirectory());
+      Assert.assertEquals("content", Files.toString(new File(handle1.getDirectory(), "file.txt"), Charsets.UTF_8));
+      Assert.assertEquals("other content",
+                          Files.toString(new File(handle3.getDirectory(), "file.txt"), Charsets.UTF_8));
+      Assert.assertEquals("content".length() + "other content".length(), cache.getTotalBytes());
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    // Only allows two of the expanded jars to be kept when they are not used
+    ArtifactUnpackCache cache = new ArtifactUnpackCache(TMP_FOLDER.newFolder(), 20);
+
+    Location jar1 = createJar(new File(TMP_FOLDER.newFolder(), "plugin-1.0.0.jar"), "content1");
+    Location jar2 = createJar(new File(TMP_FOLDER.newFolder(), "plugin-2.0.0.jar"), "content2");
+    Location jar3 = createJar(new File(TMP_FOLDER.newFolder(), "plugin-3.0.0.jar"), "content3");
+
+    File dir1;
+    File dir2;
+    try (ArtifactUnpackCache.Handle handle = cache.unpack(jar1)) {
+      dir1 = handle.getDirectory();
+    }
+    try (ArtifactUnpackCache.Handle handle = cache.unpack(jar2)) {
+      dir2 = handle.getDirectory();
+    }
+    try (ArtifactUnpackCache.Handle handle = cache.unpack(jar1)) {
+      Assert.assertEquals(dir1, handle.getDirectory());
+    }
+    Assert.assertEquals(16L, cache.getTotalBytes());
+
+    // Expanding the third jar should evict the least recently used one
+    ArtifactUnpackCache.Handle handle3 = cache.unpack(jar3);
+    Assert.assertTrue(dir1.isDirectory());
+    Assert.assertFalse(dir2.exists());
+    Assert.assertEquals(16L, cache.getTotalBytes());
+
+    // Directories that are in use should never be evicted
+    ArtifactUnpackCache.Handle handle2 = cache.unpack(jar2);
+    Assert.assertEquals("content2", Files.toString(new File(handle2.getDirectory(), "file.txt"), Charsets.UTF_8));
+    Assert.assertFalse(dir1.exists());
+    Assert.assertTrue(handle3.getDirectory().isDirectory());
+    Assert.assertEquals(16L, cache.getTotalBytes());
+
+    // Closing a handle more than once should have no effect
+    handle3.close();
+    handle3.close();
+    handle2.close();
+    Assert.assertTrue(handle2.getDirectory().isDirectory());
+    Assert.assertTrue(handle3.getDirectory().isDirectory());
+    Assert.assertEquals(16L, cache.getTotalBytes());
+  }
+
+  @Test
+  public void testConcurrentUnpack() throws Exception {
+    final ArtifactUnpackCache cache = new ArtifactUnpackCache(TMP_FOLDER.newFolder(), Long.MAX_VALUE);
+    final Location jar = createJar(new File(TMP_FOLDER.newFolder(), "plugin-1.0.0.jar"), "content");
+
+    ExecutorService executor = Executors.newFixedThreadPool(10);
+    try {
+      List<Future<ArtifactUnpackCache.Handle>> futures = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        futures.add(executor.submit(new Callable<ArtifactUnpackCache.Handle>() {
+          @Override
+          public ArtifactUnpackCache.Handle call() throws Exception {
+            return cache.unpack(jar);
+          }
+        }));
+      }
+
+      Set<File> dirs = new HashSet<>();
+      for (Future<ArtifactUnpackCache.Handle> future : futures) {
+        ArtifactUnpackCache.Handle handle = future.get();
+        dirs.add(handle.getDirectory());
+        handle.close();
+      }
+      Assert.assertEquals(1, dirs.size());
+      Assert.assertEquals("content".length(), cache.getTotalBytes());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testMissingJar() throws IOException {
+    ArtifactUnpackCache cache = new ArtifactUnpackCache(TMP_FOLDER.newFolder(), Long.MAX_VALUE);
+    cache.unpack(Locations.toLocation(new File(TMP_FOLDER.newFolder(), "missing.jar")));
+  }
+
+  private Location createJar(File file, String content) throws IOException {
+    try (JarOutputStream output = new JarOutputStream(new FileOutputStream(file))) {
+      output.putNextEntry(new JarEntry("file.txt"));
+      output.write(content.getBytes(Charsets.UTF_8));
+      output.closeEntry();
+    }
+    return Locations.toLocation(file);
+  }
+}
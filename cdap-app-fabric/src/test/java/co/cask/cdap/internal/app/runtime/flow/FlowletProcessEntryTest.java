@@ -16,6 +16,8 @@
 package co.cask.cdap.internal.app.runtime.flow;
 
 import co.cask.cdap.api.annotation.Tick;
+import co.cask.cdap.common.queue.QueueName;
+import com.google.common.collect.ImmutableSet;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -43,6 +45,38 @@ public class FlowletProcessEntryTest {
     Assert.assertEquals(Long.MAX_VALUE, entry.getNextDeque());
   }
 
+  @Test
+  public void testWakeUp() {
+    FlowletProcessEntry<Object> entry = FlowletProcessEntry.create(
+      new ProcessSpecification<>(null, null, null, null,
+                                 ImmutableSet.of(QueueName.fromFlowlet("ns", "app", "flow", "flowlet", "out"))));
+    Assert.assertTrue(entry.isWakeUpOnEnqueue());
+
+    // Back off long enough so that the entry is not ready without being woken up
+    for (int i = 0; i < 100; i++) {
+      entry.backOff();
+    }
+    Assert.assertFalse(entry.shouldProcess());
+    entry.wakeUp();
+    Assert.assertTrue(entry.shouldProcess());
+
+    // Waking up an entry that is not backing off should not change the next dequeue time
+    entry.resetBackOff();
+    long nextDeque = entry.getNextDeque();
+    entry.wakeUp();
+    Assert.assertEquals(nextDeque, entry.getNextDeque());
+
+    // Entries without wake up queues are never woken up
+    FlowletProcessEntry<Object> pollingEntry = FlowletProcessEntry.create(
+      new ProcessSpecification<>(null, null, null));
+    Assert.assertFalse(pollingEntry.isWakeUpOnEnqueue());
+    for (int i = 0; i < 100; i++) {
+      pollingEntry.backOff();
+    }
+    pollingEntry.wakeUp();
+    Assert.assertFalse(pollingEntry.shouldProcess());
+  }
+
   private long floorNanosToSec(long nanoseconds) {
     return TimeUnit.SECONDS.toNanos(TimeUnit.NANOSECONDS.toSeconds(nanoseconds));
   }
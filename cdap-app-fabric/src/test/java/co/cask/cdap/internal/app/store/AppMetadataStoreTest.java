@@ -22,6 +22,7 @@ import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.common.app.RunIds;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
+import co.cask.cdap.data2.dataset2.lib.table.MDSKey;
 import co.cask.cdap.data2.transaction.TransactionExecutorFactory;
 import co.cask.cdap.internal.AppFabricTestHelper;
 import co.cask.cdap.proto.ProgramRunStatus;
@@ -34,6 +35,7 @@ import co.cask.cdap.proto.id.ProgramRunId;
 import com.google.common.base.Function;
 import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.inject.Injector;
 import org.apache.tephra.TransactionAware;
@@ -238,6 +240,124 @@ public class AppMetadataStoreTest {
     });
   }
 
+  @Test
+  public void testRunRecordIndexes() throws Exception {
+    DatasetId storeTable = NamespaceId.DEFAULT.dataset("testRunRecordIndexes");
+    datasetFramework.addInstance(Table.class.getName(), storeTable, DatasetProperties.EMPTY);
+
+    Table table = datasetFramework.getDataset(storeTable, ImmutableMap.<String, String>of(), null);
+    Assert.assertNotNull(table);
+    final AppMetadataStore metadataStoreDataset = new AppMetadataStore(table, cConf);
+    TransactionExecutor txnl = txExecutorFactory.createExecutor(
+      Collections.singleton((TransactionAware) metadataStoreDataset));
+
+    final long day = TimeUnit.DAYS.toSeconds(1);
+    final ProgramId flow = NamespaceId.DEFAULT.app("app1").flow("flow1");
+    final ProgramId worker = NamespaceId.DEFAULT.app("app2").worker("worker1");
+    // A short run, a run spanning three days, a suspended run and a running run
+    final RunId shortRun = RunIds.generate(TimeUnit.SECONDS.toMillis(day + 10));
+    final RunId longRun = RunIds.generate(TimeUnit.SECONDS.toMillis(day / 2));
+    final RunId suspendedRun = RunIds.generate(TimeUnit.SECONDS.toMillis(5 * day));
+    final RunId runningRun = RunIds.generate(TimeUnit.SECONDS.toMillis(6 * day));
+
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        for (RunId runId : new RunId[] { shortRun, longRun, suspendedRun, runningRun }) {
+          ProgramId program = runId == longRun ? worker : flow;
+          metadataStoreDataset.recordProgramStart(program, runId.getId(), RunIds.getTime(runId, TimeUnit.SECONDS),
+                                                  null, ImmutableMap.<String, String>of(), null);
+        }
+        metadataStoreDataset.recordProgramStop(flow, shortRun.getId(), day + 20, ProgramRunStatus.COMPLETED, null);
+        metadataStoreDataset.recordProgramStop(worker, longRun.getId(), 3 * day + 10, ProgramRunStatus.FAILED, null);
+        metadataStoreDataset.recordProgramSuspend(flow, suspendedRun.getId());
+      }
+    });
+
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        Assert.assertEquals(ProgramRunStatus.COMPLETED,
+                            metadataStoreDataset.getRun(flow, shortRun.getId()).getStatus());
+        Assert.assertEquals(ProgramRunStatus.FAILED, metadataStoreDataset.getRun(worker, longRun.getId()).getStatus());
+        Assert.assertEquals(ProgramRunStatus.SUSPENDED,
+                            metadataStoreDataset.getRun(flow, suspendedRun.getId()).getStatus());
+        Assert.assertEquals(ProgramRunStatus.RUNNING,
+                            metadataStoreDataset.getRun(flow, runningRun.getId()).getStatus());
+
+        Assert.assertEquals(ImmutableSet.of(shortRun, longRun, suspendedRun, runningRun),
+                            metadataStoreDataset.getRunningInRange(0, Long.MAX_VALUE));
+        Assert.assertEquals(ImmutableSet.of(longRun), metadataStoreDataset.getRunningInRange(day + 21, 2 * day + 1));
+        Assert.assertEquals(ImmutableSet.of(shortRun, longRun),
+                            metadataStoreDataset.getRunningInRange(day + 15, day + 16));
+        Assert.assertEquals(ImmutableSet.of(longRun, suspendedRun, runningRun),
+                            metadataStoreDataset.getRunningInRange(3 * day + 10, 7 * day));
+        Assert.assertEquals(ImmutableSet.of(suspendedRun, runningRun),
+                            metadataStoreDataset.getRunningInRange(3 * day + 11, 7 * day));
+        Assert.assertEquals(ImmutableSet.of(), metadataStoreDataset.getRunningInRange(0, day / 2));
+
+        // Deleting the history of an application removes its runs from the indexes
+        metadataStoreDataset.deleteProgramHistory(NamespaceId.DEFAULT.getNamespace(), worker.getApplication());
+        Assert.assertNull(metadataStoreDataset.getRun(worker, longRun.getId()));
+        Assert.assertEquals(ImmutableSet.of(shortRun, suspendedRun, runningRun),
+                            metadataStoreDataset.getRunningInRange(0, Long.MAX_VALUE));
+
+        // Upgrading rebuilds the indexes
+        metadataStoreDataset.upgradeVersionKeys();
+        Assert.assertEquals(ImmutableSet.of(shortRun), metadataStoreDataset.getRunningInRange(day, day + 15));
+        Assert.assertEquals(ProgramRunStatus.COMPLETED,
+                            metadataStoreDataset.getRun(flow, shortRun.getId()).getStatus());
+      }
+    });
+  }
+
+  @Test
+  public void testRunRecordIndexesUpgrade() throws Exception {
+    DatasetId storeTable = NamespaceId.DEFAULT.dataset("testRunRecordIndexesUpgrade");
+    datasetFramework.addInstance(Table.class.getName(), storeTable, DatasetProperties.EMPTY);
+
+    Table table = datasetFramework.getDataset(storeTable, ImmutableMap.<String, String>of(), null);
+    Assert.assertNotNull(table);
+    final AppMetadataStore metadataStoreDataset = new AppMetadataStore(table, cConf);
+    TransactionExecutor txnl = txExecutorFactory.createExecutor(
+      Collections.singleton((TransactionAware) metadataStoreDataset));
+
+    final ProgramId flow = NamespaceId.DEFAULT.app("app1").flow("flow1");
+    final RunId legacyRun = RunIds.generate(TimeUnit.SECONDS.toMillis(100));
+    final RunId newRun = RunIds.generate(TimeUnit.SECONDS.toMillis(300));
+
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        // A completed run record written before the indexes were added
+        MDSKey key = new MDSKey.Builder()
+          .add("runRecordCompleted", flow.getNamespace(), flow.getApplication(), flow.getVersion(),
+               flow.getType().name(), flow.getProgram())
+          .add(Long.MAX_VALUE - 100)
+          .add(legacyRun.getId())
+          .build();
+        metadataStoreDataset.write(key, new RunRecordMeta(legacyRun.getId(), 100, 200L, ProgramRunStatus.COMPLETED,
+                                                          null, null, null));
+        metadataStoreDataset.recordProgramStart(flow, newRun.getId(), 300, null,
+                                                ImmutableMap.<String, String>of(), null);
+        metadataStoreDataset.recordProgramStop(flow, newRun.getId(), 400, ProgramRunStatus.COMPLETED, null);
+      }
+    });
+
+    for (int i = 0; i < 2; i++) {
+      txnl.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          Assert.assertEquals(ImmutableSet.of(legacyRun, newRun), metadataStoreDataset.getRunningInRange(150, 350));
+          Assert.assertEquals(ImmutableSet.of(legacyRun), metadataStoreDataset.getRunningInRange(0, 250));
+          Assert.assertEquals(200L, (long) metadataStoreDataset.getRun(flow, legacyRun.getId()).getStopTs());
+          // The indexes are used after the upgrade
+          metadataStoreDataset.upgradeVersionKeys();
+        }
+      });
+    }
+  }
+
   private static class CountingTicker extends Ticker {
     private final long elementsPerMillis;
     private int numProcessed = 0;
@@ -70,6 +70,7 @@ import co.cask.cdap.proto.id.ProgramId;
 import co.cask.cdap.proto.id.ProgramRunId;
 import co.cask.cdap.store.DefaultNamespaceStore;
 import com.google.common.base.Function;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
@@ -446,6 +447,36 @@ public class DefaultStoreTest {
     assertChangedFooAppSpecAndInMetadataStore(stored);
   }
 
+  @Test
+  public void testApplicationSpecCache() throws Exception {
+    ApplicationId id = new ApplicationId("account1", "application1");
+    store.addApplication(id, Specifications.from(new FooApp()));
+
+    CacheStats before = store.getAppSpecCacheStats();
+    ApplicationSpecification spec = store.getApplication(id);
+    Assert.assertEquals("FooApp", spec.getName());
+    // The decoded specification should be reused as long as it is unchanged
+    Assert.assertSame(spec, store.getApplication(id));
+    Assert.assertTrue(store.applicationExists(id));
+    CacheStats stats = store.getAppSpecCacheStats().minus(before);
+    Assert.assertEquals(1L, stats.missCount());
+    Assert.assertEquals(2L, stats.hitCount());
+
+    // Other versions of the same application are cached separately
+    ApplicationId versionId = new ApplicationId("account1", "application1", "v1");
+    Assert.assertNull(store.getApplication(versionId));
+    store.addApplication(versionId, Specifications.from(new ChangedFooApp()));
+    Assert.assertNotNull(store.getApplication(versionId).getFlows().get("flow3"));
+    Assert.assertSame(spec, store.getApplication(id));
+
+    // Updates and deletes should never be hidden by the cache
+    store.addApplication(id, Specifications.from(new ChangedFooApp()));
+    assertChangedFooAppSpecAndInMetadataStore(store.getApplication(id));
+    store.removeApplication(id);
+    Assert.assertNull(store.getApplication(id));
+    Assert.assertNotNull(store.getApplication(versionId));
+  }
+
   private static class FooApp extends AbstractApplication {
     @Override
     public void configure() {
@@ -15,12 +15,18 @@
  */
 package co.cask.cdap.internal.app.store.preview;
 
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.common.app.RunIds;
 import co.cask.cdap.internal.AppFabricTestHelper;
+import co.cask.cdap.internal.io.SchemaTypeAdapter;
+import co.cask.cdap.internal.io.StructuredRecordTypeAdapter;
 import co.cask.cdap.proto.NamespaceMeta;
 import co.cask.cdap.proto.id.ApplicationId;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 import com.google.inject.Injector;
 
@@ -38,7 +44,10 @@ import java.util.Map;
  */
 public class DefaultPreviewStoreTest {
 
-  private static final Gson GSON = new Gson();
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
+    .registerTypeAdapter(StructuredRecord.class, new StructuredRecordTypeAdapter())
+    .create();
   private static DefaultPreviewStore store;
 
   @BeforeClass
@@ -93,4 +102,28 @@ public class DefaultPreviewStoreTest {
     firstApplicationData = store.get(firstApplicationId, "mytracer");
     Assert.assertEquals(0, firstApplicationData.size());
   }
+
+  @Test
+  public void testStructuredRecord() throws Exception {
+    ApplicationId applicationId = new ApplicationId(NamespaceMeta.DEFAULT.getName(), RunIds.generate().getId());
+    Schema schema = Schema.recordOf("user",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("email", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    StructuredRecord record = StructuredRecord.builder(schema).set("id", 1).set("name", "alice").build();
+    store.put(applicationId, "mytracer", "records", record);
+
+    List<JsonElement> values = store.get(applicationId, "mytracer").get("records");
+    Assert.assertEquals(1, values.size());
+    JsonObject json = values.get(0).getAsJsonObject();
+    Assert.assertEquals(schema, GSON.fromJson(json.get("schema"), Schema.class));
+    JsonObject fields = json.getAsJsonObject("fields");
+    Assert.assertEquals(1, fields.get("id").getAsInt());
+    Assert.assertEquals("alice", fields.get("name").getAsString());
+    Assert.assertFalse(fields.has("email"));
+
+    StructuredRecord restored = GSON.fromJson(json, StructuredRecord.class);
+    Assert.assertEquals("alice", restored.get("name"));
+    Assert.assertEquals("alice", restored.get(1));
+  }
 }
@@ -38,9 +38,11 @@ import co.cask.cdap.etl.mock.batch.MockRuntimeDatasetSource;
 import co.cask.cdap.etl.mock.batch.MockSink;
 import co.cask.cdap.etl.mock.batch.MockSource;
 import co.cask.cdap.etl.mock.batch.NodeStatesAction;
+import co.cask.cdap.etl.mock.batch.aggregator.CombinableFieldCountAggregator;
 import co.cask.cdap.etl.mock.batch.aggregator.FieldCountAggregator;
 import co.cask.cdap.etl.mock.batch.aggregator.GroupFilterAggregator;
 import co.cask.cdap.etl.mock.batch.aggregator.IdentityAggregator;
+import co.cask.cdap.etl.mock.batch.joiner.DupeFlagger;
 import co.cask.cdap.etl.mock.batch.joiner.MockJoiner;
 import co.cask.cdap.etl.mock.test.HydratorTestBase;
 import co.cask.cdap.etl.mock.transform.DropNullTransform;
@@ -86,6 +88,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
 
 /**
  *
@@ -636,12 +639,22 @@ public class DataPipelineTest extends HydratorTestBase {
 
   @Test
   public void testMapRedParallelAggregators() throws Exception {
-    testParallelAggregators(Engine.MAPREDUCE);
+    testParallelAggregators(Engine.MAPREDUCE, false);
   }
 
   @Test
   public void testSparkParallelAggregators() throws Exception {
-    testParallelAggregators(Engine.SPARK);
+    testParallelAggregators(Engine.SPARK, false);
+  }
+
+  @Test
+  public void testMapRedParallelCombinableAggregators() throws Exception {
+    testParallelAggregators(Engine.MAPREDUCE, true);
+  }
+
+  @Test
+  public void testSparkParallelCombinableAggregators() throws Exception {
+    testParallelAggregators(Engine.SPARK, true);
   }
 
   private void testSequentialAggregators(Engine engine) throws Exception {
@@ -704,16 +717,85 @@ public class DataPipelineTest extends HydratorTestBase {
     validateMetric(1, appId, "sink.records.out");
   }
 
-  private void testParallelAggregators(Engine engine) throws Exception {
-    String source1Name = "pAggInput1-" + engine.name();
-    String source2Name = "pAggInput2-" + engine.name();
-    String sink1Name = "pAggOutput1-" + engine.name();
-    String sink2Name = "pAggOutput2-" + engine.name();
+  @Test
+  public void testMapRedRecordKeys() throws Exception {
+    /*
+     * source1 --|--> dupeFlagger --> sink1
+     *           |
+     * source2 --|
+     *
+     * source1 --> aggregator --> sink2
+     *
+     * records are joined and grouped by themselves, so the keys have the schema of the sources, which is known
+     * to the MapReduce job
+     */
+    Schema schema = Schema.recordOf(
+      "testRecord",
+      Schema.Field.of("name", Schema.of(Schema.Type.STRING))
+    );
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder("* * * * *")
+      .setEngine(Engine.MAPREDUCE)
+      .addStage(new ETLStage("source1", MockSource.getPlugin("recordKeysInput1", schema)))
+      .addStage(new ETLStage("source2", MockSource.getPlugin("recordKeysInput2", schema)))
+      .addStage(new ETLStage("sink1", MockSink.getPlugin("recordKeysOutput1")))
+      .addStage(new ETLStage("sink2", MockSink.getPlugin("recordKeysOutput2")))
+      .addStage(new ETLStage("dupeFlagger", DupeFlagger.getPlugin("source1", "isDupe")))
+      .addStage(new ETLStage("aggregator", IdentityAggregator.getPlugin()))
+      .addConnection("source1", "dupeFlagger")
+      .addConnection("source2", "dupeFlagger")
+      .addConnection("dupeFlagger", "sink1")
+      .addConnection("source1", "aggregator")
+      .addConnection("aggregator", "sink2")
+      .build();
+
+    AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
+    ApplicationId appId = NamespaceId.DEFAULT.app("RecordKeysApp");
+    ApplicationManager appManager = deployApplication(appId.toId(), appRequest);
+
+    StructuredRecord recordSamuel = StructuredRecord.builder(schema).set("name", "samuel").build();
+    StructuredRecord recordBob = StructuredRecord.builder(schema).set("name", "bob").build();
+
+    DataSetManager<Table> inputManager = getDataset(NamespaceId.DEFAULT.dataset("recordKeysInput1"));
+    MockSource.writeInput(inputManager, ImmutableList.of(recordSamuel, recordBob, recordBob));
+    inputManager = getDataset(NamespaceId.DEFAULT.dataset("recordKeysInput2"));
+    MockSource.writeInput(inputManager, ImmutableList.of(recordBob));
+
+    WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
+    workflowManager.start();
+    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+
+    Schema flaggedSchema = Schema.recordOf(
+      "testRecord.flagged",
+      Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("isDupe", Schema.of(Schema.Type.BOOLEAN))
+    );
+    Set<StructuredRecord> expected = ImmutableSet.of(
+      StructuredRecord.builder(flaggedSchema).set("name", "samuel").set("isDupe", false).build(),
+      StructuredRecord.builder(flaggedSchema).set("name", "bob").set("isDupe", true).build());
+    DataSetManager<Table> sinkManager = getDataset("recordKeysOutput1");
+    Assert.assertEquals(expected, Sets.newHashSet(MockSink.readOutput(sinkManager)));
+
+    sinkManager = getDataset("recordKeysOutput2");
+    List<StructuredRecord> grouped = MockSink.readOutput(sinkManager);
+    Assert.assertEquals(3, grouped.size());
+    Assert.assertEquals(ImmutableSet.of(recordSamuel, recordBob), Sets.newHashSet(grouped));
+  }
+
+  private void testParallelAggregators(Engine engine, boolean combinable) throws Exception {
+    String suffix = engine.name() + (combinable ? "-combinable" : "");
+    String source1Name = "pAggInput1-" + suffix;
+    String source2Name = "pAggInput2-" + suffix;
+    String sink1Name = "pAggOutput1-" + suffix;
+    String sink2Name = "pAggOutput2-" + suffix;
     Schema inputSchema = Schema.recordOf(
       "testRecord",
       Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
       Schema.Field.of("item", Schema.of(Schema.Type.LONG))
     );
+    ETLPlugin agg1 = combinable ? CombinableFieldCountAggregator.getPlugin("user", "string")
+      : FieldCountAggregator.getPlugin("user", "string");
+    ETLPlugin agg2 = combinable ? CombinableFieldCountAggregator.getPlugin("item", "long")
+      : FieldCountAggregator.getPlugin("item", "long");
     /*
        source1 --|--> agg1 --> sink1
                  |
@@ -725,8 +807,8 @@ public class DataPipelineTest extends HydratorTestBase {
       .addStage(new ETLStage("source2", MockSource.getPlugin(source2Name, inputSchema)))
       .addStage(new ETLStage("sink1", MockSink.getPlugin(sink1Name)))
       .addStage(new ETLStage("sink2", MockSink.getPlugin(sink2Name)))
-      .addStage(new ETLStage("agg1", FieldCountAggregator.getPlugin("user", "string")))
-      .addStage(new ETLStage("agg2", FieldCountAggregator.getPlugin("item", "long")))
+      .addStage(new ETLStage("agg1", agg1))
+      .addStage(new ETLStage("agg2", agg2))
       .addConnection("source1", "agg1")
       .addConnection("source1", "agg2")
       .addConnection("source2", "agg1")
@@ -736,7 +818,7 @@ public class DataPipelineTest extends HydratorTestBase {
       .build();
 
     AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
-    ApplicationId appId = NamespaceId.DEFAULT.app("ParallelAggApp-" + engine);
+    ApplicationId appId = NamespaceId.DEFAULT.app("ParallelAggApp-" + suffix);
     ApplicationManager appManager = deployApplication(appId.toId(), appRequest);
 
     // write few records to each source
@@ -989,7 +1071,16 @@ public class DataPipelineTest extends HydratorTestBase {
     testInnerJoinWithMultiOutput(Engine.SPARK);
   }
 
+  @Test
+  public void testBroadcastInnerJoinSpark() throws Exception {
+    testInnerJoinWithMultiOutput(Engine.SPARK, "t2,t3");
+  }
+
   public void testInnerJoinWithMultiOutput(Engine engine) throws Exception {
+    testInnerJoinWithMultiOutput(engine, null);
+  }
+
+  public void testInnerJoinWithMultiOutput(Engine engine, @Nullable String broadcastInputs) throws Exception {
     Schema inputSchema1 = Schema.recordOf(
       "customerRecord",
       Schema.Field.of("customer_id", Schema.of(Schema.Type.STRING)),
@@ -1011,14 +1102,15 @@ public class DataPipelineTest extends HydratorTestBase {
       Schema.Field.of("c_name", Schema.of(Schema.Type.STRING))
     );
 
-    String input1Name = "source1InnerJoinInput-" + engine;
-    String input2Name = "source2InnerJoinInput-" + engine;
-    String input3Name = "source3InnerJoinInput-" + engine;
-    String outputName = "innerJoinOutput-" + engine;
-    String outputName2 = "innerJoinOutput2-" + engine;
-    String joinerName = "innerJoiner-" + engine;
-    String sinkName = "innerJoinSink-" + engine;
-    String sinkName2 = "innerJoinSink-2" + engine;
+    String suffix = broadcastInputs == null ? engine.name() : engine + "-broadcast";
+    String input1Name = "source1InnerJoinInput-" + suffix;
+    String input2Name = "source2InnerJoinInput-" + suffix;
+    String input3Name = "source3InnerJoinInput-" + suffix;
+    String outputName = "innerJoinOutput-" + suffix;
+    String outputName2 = "innerJoinOutput2-" + suffix;
+    String joinerName = "innerJoiner-" + suffix;
+    String sinkName = "innerJoinSink-" + suffix;
+    String sinkName2 = "innerJoinSink-2" + suffix;
     ETLBatchConfig etlConfig = ETLBatchConfig.builder("* * * * *")
       .addStage(new ETLStage("source1", MockSource.getPlugin(input1Name, inputSchema1)))
       .addStage(new ETLStage("source2", MockSource.getPlugin(input2Name, inputSchema2)))
@@ -1028,7 +1120,7 @@ public class DataPipelineTest extends HydratorTestBase {
       .addStage(new ETLStage("t3", IdentityTransform.getPlugin()))
       .addStage(new ETLStage(joinerName, MockJoiner.getPlugin("t1.customer_id=t2.cust_id=t3.c_id&" +
                                                                   "t1.customer_name=t2.cust_name=t3.c_name",
-                                                                "t1,t2,t3", "")))
+                                                                "t1,t2,t3", "", broadcastInputs)))
       .addStage(new ETLStage(sinkName, MockSink.getPlugin(outputName)))
       .addStage(new ETLStage(sinkName2, MockSink.getPlugin(outputName2)))
       .addConnection("source1", "t1")
@@ -1043,7 +1135,7 @@ public class DataPipelineTest extends HydratorTestBase {
       .build();
 
     AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
-    ApplicationId appId = NamespaceId.DEFAULT.app("InnerJoinApp-" + engine);
+    ApplicationId appId = NamespaceId.DEFAULT.app("InnerJoinApp-" + suffix);
     ApplicationManager appManager = deployApplication(appId.toId(), appRequest);
 
     Schema outSchema = Schema.recordOf(
@@ -1122,7 +1214,17 @@ public class DataPipelineTest extends HydratorTestBase {
     testOuterJoin(Engine.SPARK);
   }
 
+  @Test
+  public void testBroadcastOuterJoinSpark() throws Exception {
+    // bob has no item and martha has neither an item nor a transaction, so the broadcast side is missing for them
+    testOuterJoin(Engine.SPARK, "t2,t3");
+  }
+
   public void testOuterJoin(Engine engine) throws Exception {
+    testOuterJoin(engine, null);
+  }
+
+  public void testOuterJoin(Engine engine, @Nullable String broadcastInputs) throws Exception {
     Schema inputSchema1 = Schema.recordOf(
       "customerRecord",
       Schema.Field.of("customer_id", Schema.of(Schema.Type.STRING)),
@@ -1144,12 +1246,13 @@ public class DataPipelineTest extends HydratorTestBase {
       Schema.Field.of("c_name", Schema.of(Schema.Type.STRING))
     );
 
-    String input1Name = "source1OuterJoinInput-" + engine;
-    String input2Name = "source2OuterJoinInput-" + engine;
-    String input3Name = "source3OuterJoinInput-" + engine;
-    String outputName = "outerJoinOutput-" + engine;
-    String joinerName = "outerJoiner-" + engine;
-    String sinkName = "outerJoinSink-" + engine;
+    String suffix = broadcastInputs == null ? engine.name() : engine + "-broadcast";
+    String input1Name = "source1OuterJoinInput-" + suffix;
+    String input2Name = "source2OuterJoinInput-" + suffix;
+    String input3Name = "source3OuterJoinInput-" + suffix;
+    String outputName = "outerJoinOutput-" + suffix;
+    String joinerName = "outerJoiner-" + suffix;
+    String sinkName = "outerJoinSink-" + suffix;
     ETLBatchConfig etlConfig = ETLBatchConfig.builder("* * * * *")
       .addStage(new ETLStage("source1", MockSource.getPlugin(input1Name, inputSchema1)))
       .addStage(new ETLStage("source2", MockSource.getPlugin(input2Name, inputSchema2)))
@@ -1158,7 +1261,8 @@ public class DataPipelineTest extends HydratorTestBase {
       .addStage(new ETLStage("t2", IdentityTransform.getPlugin()))
       .addStage(new ETLStage("t3", IdentityTransform.getPlugin()))
       .addStage(new ETLStage(joinerName, MockJoiner.getPlugin("t1.customer_id=t2.cust_id=t3.c_id&" +
-                                                                  "t1.customer_name=t2.cust_name=t3.c_name", "t1", "")))
+                                                                  "t1.customer_name=t2.cust_name=t3.c_name", "t1", "",
+                                                                  broadcastInputs)))
       .addStage(new ETLStage(sinkName, MockSink.getPlugin(outputName)))
       .addConnection("source1", "t1")
       .addConnection("source2", "t2")
@@ -1171,7 +1275,7 @@ public class DataPipelineTest extends HydratorTestBase {
       .build();
 
     AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
-    ApplicationId appId = NamespaceId.DEFAULT.app("OuterJoinApp-" + engine);
+    ApplicationId appId = NamespaceId.DEFAULT.app("OuterJoinApp-" + suffix);
     ApplicationManager appManager = deployApplication(appId.toId(), appRequest);
 
     Schema outSchema = Schema.recordOf(
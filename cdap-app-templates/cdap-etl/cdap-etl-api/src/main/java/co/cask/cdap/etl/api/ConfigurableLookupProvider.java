@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.api;
+
+import co.cask.cdap.api.annotation.Beta;
+
+/**
+ * A {@link LookupProvider} that can also provide {@link Lookup} instances configured by a {@link LookupTableConfig}.
+ * Plugins can check whether their context implements this interface to use the caching described by the
+ * {@link CacheConfig} of a lookup table.
+ */
+@Beta
+public interface ConfigurableLookupProvider extends LookupProvider {
+
+  /**
+   * Provides a {@link Lookup} configured by the given {@link LookupTableConfig}. If caching is enabled in the
+   * config, the returned {@link Lookup} caches values as described by the {@link CacheConfig}.
+   *
+   * @param table the name of the {@link Lookup} table
+   * @param config configuration of the {@link Lookup} table
+   * @param <T> the type of value returned by the {@link Lookup}
+   * @return a {@link Lookup} instance
+   */
+  <T> Lookup<T> provide(String table, LookupTableConfig config);
+}
@@ -16,11 +16,14 @@
 
 package co.cask.cdap.etl.api;
 
+import java.util.Collections;
+
 /**
  * Join configuration to hold information about join to be performed
  */
 public class JoinConfig {
   private Iterable<String> requiredInputs;
+  private Iterable<String> broadcastInputs;
 
   /**
    * Creates new instance of {@link JoinConfig}
@@ -30,7 +33,22 @@ public class JoinConfig {
    * meet join criteria.
    */
   public JoinConfig(Iterable<String> requiredInputs) {
+    this(requiredInputs, Collections.<String>emptyList());
+  }
+
+  /**
+   * Creates new instance of {@link JoinConfig} with inputs that are small enough to be held in memory by every
+   * task that performs the join. Execution engines that support it join these inputs by sending them to every task,
+   * so that the other inputs do not need to be shuffled. Inputs are only broadcast when they are the right side of
+   * an inner or left outer join, so at least one required input must not be broadcast for any input to be broadcast.
+   * This is typically used when enriching a large input with a small dimension input.
+   *
+   * @param requiredInputs iterable of input stage names, as described in {@link #JoinConfig(Iterable)}
+   * @param broadcastInputs iterable of input stage names that can be broadcast
+   */
+  public JoinConfig(Iterable<String> requiredInputs, Iterable<String> broadcastInputs) {
     this.requiredInputs = requiredInputs;
+    this.broadcastInputs = broadcastInputs;
   }
 
   /**
@@ -40,4 +58,12 @@ public class JoinConfig {
   public Iterable<String> getRequiredInputs() {
     return requiredInputs;
   }
+
+  /**
+   * Returns inputs that can be broadcast to every task that performs the join.
+   * @return iterable of broadcast inputs
+   */
+  public Iterable<String> getBroadcastInputs() {
+    return broadcastInputs;
+  }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.api.batch;
+
+import co.cask.cdap.api.annotation.Beta;
+import co.cask.cdap.etl.api.Emitter;
+
+import java.util.Iterator;
+
+/**
+ * A {@link BatchAggregator} whose aggregation can be computed in parts. Group values are first turned into
+ * partial aggregates, partial aggregates of the same group are merged together, and the final aggregate of a
+ * group is turned into output objects. This allows the pipeline to combine the values of a group before they
+ * are shuffled, so that only one partial aggregate per group is sent from each map task instead of every value.
+ * Count, sum, min and max style aggregations are good candidates.
+ *
+ * The partial aggregate type has the same restrictions as the group value type of a {@link BatchAggregator}.
+ * Group keys are held by the pipeline until the partial aggregates are sent, hence they must not be modified
+ * after being emitted from {@link #groupBy(Object, Emitter)}.
+ *
+ * @param <GROUP_KEY> group key type. Must be a supported type
+ * @param <GROUP_VALUE> group value type
+ * @param <AGG_VALUE> partial aggregate type. Must be a supported type
+ * @param <OUT> output object type
+ */
+@Beta
+public abstract class CombinableBatchAggregator<GROUP_KEY, GROUP_VALUE, AGG_VALUE, OUT>
+  extends BatchAggregator<GROUP_KEY, GROUP_VALUE, OUT> {
+
+  /**
+   * Creates a partial aggregate that contains a single group value.
+   *
+   * @param groupValue the group value
+   * @return the partial aggregate
+   * @throws Exception if there is some error creating the partial aggregate
+   */
+  public abstract AGG_VALUE initializeAggregate(GROUP_VALUE groupValue) throws Exception;
+
+  /**
+   * Merges two partial aggregates of the same group. The given partial aggregates are not used after this call,
+   * hence one of them may be modified and returned.
+   *
+   * @param aggregate1 the first partial aggregate
+   * @param aggregate2 the second partial aggregate
+   * @return the merged partial aggregate
+   * @throws Exception if there is some error merging the partial aggregates
+   */
+  public abstract AGG_VALUE mergeAggregates(AGG_VALUE aggregate1, AGG_VALUE aggregate2) throws Exception;
+
+  /**
+   * Emits the output objects for the final aggregate of a group.
+   *
+   * @param groupKey the key for the group
+   * @param aggregate the aggregate of all values in the group
+   * @param emitter the emitter to emit aggregate values for the group
+   * @throws Exception if there is some error finalizing the aggregate
+   */
+  public abstract void finalizeAggregate(GROUP_KEY groupKey, AGG_VALUE aggregate,
+                                         Emitter<OUT> emitter) throws Exception;
+
+  /**
+   * Adds a group value to a partial aggregate of the same group. The given partial aggregate is not used after
+   * this call, hence it may be modified and returned. By default, this merges the partial aggregate with the
+   * partial aggregate created from the group value. Override it to avoid creating the intermediate aggregate.
+   *
+   * @param aggregate the partial aggregate
+   * @param groupValue the group value to add
+   * @return the partial aggregate including the group value
+   * @throws Exception if there is some error adding the group value
+   */
+  public AGG_VALUE mergeValue(AGG_VALUE aggregate, GROUP_VALUE groupValue) throws Exception {
+    return mergeAggregates(aggregate, initializeAggregate(groupValue));
+  }
+
+  /**
+   * Aggregates all objects in the same group by folding them into a partial aggregate and finalizing it.
+   * This is used when the pipeline does not combine group values before they are shuffled.
+   */
+  @Override
+  public final void aggregate(GROUP_KEY groupKey, Iterator<GROUP_VALUE> groupValues,
+                              Emitter<OUT> emitter) throws Exception {
+    if (!groupValues.hasNext()) {
+      return;
+    }
+    AGG_VALUE aggregate = initializeAggregate(groupValues.next());
+    while (groupValues.hasNext()) {
+      aggregate = mergeValue(aggregate, groupValues.next());
+    }
+    finalizeAggregate(groupKey, aggregate, emitter);
+  }
+}
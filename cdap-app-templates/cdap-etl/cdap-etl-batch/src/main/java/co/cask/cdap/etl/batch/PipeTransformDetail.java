@@ -54,6 +54,22 @@ public class PipeTransformDetail implements Destroyable {
     }
   }
 
+  /**
+   * Processes a record emitted by the given stage. Unlike {@link #process(KeyValue)}, the record is only wrapped
+   * with the stage name if this stage needs it.
+   */
+  public void process(String inputStageName, Object value) {
+    try {
+      if (removeStageName) {
+        transformation.transform(value, emitter);
+      } else {
+        transformation.transform(new KeyValue<>(inputStageName, value), emitter);
+      }
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   public void addTransformation(String stageName, PipeTransformDetail pipeTransformDetail) {
     emitter.addTransformDetail(stageName, pipeTransformDetail);
   }
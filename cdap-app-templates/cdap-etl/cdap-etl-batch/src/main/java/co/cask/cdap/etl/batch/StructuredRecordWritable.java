@@ -16,31 +16,90 @@
 
 package co.cask.cdap.etl.batch;
 
-import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
-import co.cask.cdap.format.StructuredRecordStringConverter;
+import co.cask.cdap.format.StructuredRecordBinaryCodec;
+import co.cask.cdap.internal.io.SchemaTypeAdapter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.WritableComparable;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
 import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Wrapper around a {@link StructuredRecord} so that it can be used as the output key and/or value of a mapper.
- * This is not very performant and must be improved soon (CDAP-5347).
+ * Records are serialized with {@link StructuredRecordBinaryCodec}. Schemas that are registered in the job
+ * configuration through {@link #setSchemas(Configuration, Collection)} are serialized as a schema hash only,
+ * while other schemas are serialized inline with every record. Instances created by Hadoop get the registered
+ * schemas through {@link #setConf(Configuration)}. Other instances need to be created with a codec from
+ * {@link #createCodec(Configuration)} to make use of the registered schemas. Since the keys that Hadoop creates
+ * for sorting and grouping are never configured, instances used as map output keys must serialize inline.
  */
-public class StructuredRecordWritable implements WritableComparable<StructuredRecordWritable> {
+public class StructuredRecordWritable implements WritableComparable<StructuredRecordWritable>, Configurable {
+
+  private static final String SCHEMAS_KEY = "cdap.etl.structured.record.schemas";
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
+    .create();
+  private static final Type SCHEMAS_TYPE = new TypeToken<Set<Schema>>() { }.getType();
+  // Codec that serializes all schemas inline. It doesn't depend on any configuration, hence can be shared.
+  private static final StructuredRecordBinaryCodec INLINE_SCHEMA_CODEC = new StructuredRecordBinaryCodec();
+
   private StructuredRecord record;
+  private Configuration conf;
+  private StructuredRecordBinaryCodec codec;
 
   // required by Hadoop
   @SuppressWarnings("unused")
   public StructuredRecordWritable() {
+    this(null, INLINE_SCHEMA_CODEC);
   }
 
   public StructuredRecordWritable(StructuredRecord record) {
+    this(record, INLINE_SCHEMA_CODEC);
+  }
+
+  /**
+   * Creates an instance that serializes with the given codec.
+   *
+   * @param record the record, or {@code null} if it will be set or read later
+   * @param codec the codec created by {@link #createCodec(Configuration)}
+   */
+  public StructuredRecordWritable(@Nullable StructuredRecord record, StructuredRecordBinaryCodec codec) {
     this.record = record;
+    this.codec = codec;
+  }
+
+  /**
+   * Registers the given record schemas in the configuration so that records of those schemas are serialized
+   * without the schema.
+   */
+  public static void setSchemas(Configuration conf, Collection<Schema> schemas) {
+    conf.set(SCHEMAS_KEY, GSON.toJson(schemas, SCHEMAS_TYPE));
+  }
+
+  /**
+   * Creates a {@link StructuredRecordBinaryCodec} that knows about the schemas registered in the given
+   * configuration. Since creating a codec parses the schemas, the codec should be reused for all records
+   * of the same job.
+   */
+  public static StructuredRecordBinaryCodec createCodec(Configuration conf) {
+    String schemas = conf.get(SCHEMAS_KEY);
+    if (schemas == null) {
+      return INLINE_SCHEMA_CODEC;
+    }
+    Set<Schema> knownSchemas = GSON.fromJson(schemas, SCHEMAS_TYPE);
+    return new StructuredRecordBinaryCodec(knownSchemas);
   }
 
   public void set(StructuredRecord record) {
@@ -51,31 +110,25 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
     return record;
   }
 
-  @SuppressWarnings("ConstantConditions")
   @Override
-  public void write(DataOutput out) throws IOException {
-    byte[] schemaBytes = Bytes.toBytes(record.getSchema().toString());
-    out.writeInt(schemaBytes.length);
-    out.write(schemaBytes);
+  public void setConf(Configuration conf) {
+    this.conf = conf;
+    this.codec = createCodec(conf);
+  }
+
+  @Override
+  public Configuration getConf() {
+    return conf;
+  }
 
-    byte[] recordBytes = Bytes.toBytes(StructuredRecordStringConverter.toJsonString(record));
-    out.writeInt(recordBytes.length);
-    out.write(recordBytes);
+  @Override
+  public void write(DataOutput out) throws IOException {
+    codec.encode(record, out);
   }
 
   @Override
   public void readFields(DataInput in) throws IOException {
-    int schemaLen = in.readInt();
-    byte[] schemaBytes = new byte[schemaLen];
-    in.readFully(schemaBytes, 0, schemaLen);
-    String schemaStr = Bytes.toString(schemaBytes);
-    Schema schema = Schema.parseJson(schemaStr);
-
-    int recordLen = in.readInt();
-    byte[] recordBytes = new byte[recordLen];
-    in.readFully(recordBytes, 0, recordLen);
-    String recordStr = Bytes.toString(recordBytes);
-    this.record = StructuredRecordStringConverter.fromJsonString(recordStr, schema);
+    this.record = codec.decode(in);
   }
 
   @Override
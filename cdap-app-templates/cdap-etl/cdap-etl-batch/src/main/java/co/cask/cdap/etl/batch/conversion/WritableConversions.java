@@ -18,7 +18,9 @@ package co.cask.cdap.etl.batch.conversion;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.etl.batch.StructuredRecordWritable;
+import co.cask.cdap.format.StructuredRecordBinaryCodec;
 import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.BooleanWritable;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.DoubleWritable;
@@ -153,6 +155,39 @@ public class WritableConversions {
     return (WritableConversion<KEY, VAL>) CONVERSIONS.get(className);
   }
 
+  /**
+   * Get the conversion functions to and from the WritableComparable for the specified class, using the given
+   * job configuration. Unlike {@link #getConversion(String)}, the {@link StructuredRecord} conversion returned
+   * by this method serializes records with the schemas registered in the configuration, so it must not be used
+   * for map output keys. Returns null if none exists.
+   *
+   * @param className the name of the class to convert to/from a WritableComparable
+   * @param conf the job configuration
+   * @return conversion functions to and from the WritableComparable for the specified class
+   */
+  @Nullable
+  public static <KEY, VAL extends Writable> WritableConversion<KEY, VAL> getConversion(String className,
+                                                                                      Configuration conf) {
+    if (!StructuredRecord.class.getName().equals(className)) {
+      return getConversion(className);
+    }
+    final StructuredRecordBinaryCodec codec = StructuredRecordWritable.createCodec(conf);
+    WritableConversion<StructuredRecord, StructuredRecordWritable> conversion =
+      new WritableConversion<StructuredRecord, StructuredRecordWritable>() {
+        @Override
+        public StructuredRecordWritable toWritable(StructuredRecord val) {
+          return new StructuredRecordWritable(val, codec);
+        }
+
+        @Override
+        public StructuredRecord fromWritable(StructuredRecordWritable val) {
+          return val.get();
+        }
+      };
+    //noinspection unchecked
+    return (WritableConversion<KEY, VAL>) conversion;
+  }
+
   private WritableConversions() {
     // no-op to prevent instantiation of a helper class
   }
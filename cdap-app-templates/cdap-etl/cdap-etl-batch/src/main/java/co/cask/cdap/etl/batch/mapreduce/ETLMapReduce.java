@@ -34,9 +34,11 @@ import co.cask.cdap.etl.api.batch.BatchJoiner;
 import co.cask.cdap.etl.api.batch.BatchSink;
 import co.cask.cdap.etl.api.batch.BatchSinkContext;
 import co.cask.cdap.etl.api.batch.BatchSourceContext;
+import co.cask.cdap.etl.api.batch.CombinableBatchAggregator;
 import co.cask.cdap.etl.batch.BatchPhaseSpec;
 import co.cask.cdap.etl.batch.LoggedBatchConfigurable;
 import co.cask.cdap.etl.batch.PipelinePluginInstantiator;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
 import co.cask.cdap.etl.batch.conversion.WritableConversion;
 import co.cask.cdap.etl.batch.conversion.WritableConversions;
 import co.cask.cdap.etl.common.CompositeFinisher;
@@ -84,6 +86,10 @@ public class ETLMapReduce extends AbstractMapReduce {
   static final String SINK_OUTPUTS_KEY = "cdap.etl.sink.outputs";
   static final String MAP_KEY_CLASS = "cdap.etl.map.key.class";
   static final String MAP_VAL_CLASS = "cdap.etl.map.val.class";
+  // maximum number of groups combined in memory by a mapper before their partial aggregates are written out
+  static final String COMBINE_MAX_GROUPS = "cdap.etl.combine.max.groups";
+  // number of stage metric updates accumulated by a task before they are emitted
+  static final String METRICS_FLUSH_INTERVAL = "cdap.etl.metrics.flush.interval";
   static final Type RUNTIME_ARGS_TYPE = new TypeToken<Map<String, Map<String, String>>>() { }.getType();
   static final Type INPUT_ALIAS_TYPE = new TypeToken<Map<String, String>>() { }.getType();
   static final Type SINK_OUTPUTS_TYPE = new TypeToken<Map<String, SinkOutput>>() { }.getType();
@@ -253,7 +259,10 @@ public class ETLMapReduce extends AbstractMapReduce {
         if (outputKeyClass == null) {
           outputKeyClass = TypeChecker.getGroupKeyClass(aggregator);
         }
-        if (outputValClass == null) {
+        if (aggregator instanceof CombinableBatchAggregator) {
+          // group values are combined into partial aggregates in the mappers, hence those are shuffled instead
+          outputValClass = TypeChecker.getAggregateValueClass((CombinableBatchAggregator) aggregator);
+        } else if (outputValClass == null) {
           outputValClass = TypeChecker.getGroupValueClass(aggregator);
         }
         hConf.set(MAP_KEY_CLASS, outputKeyClass.getName());
@@ -287,6 +296,8 @@ public class ETLMapReduce extends AbstractMapReduce {
         // for joiner plugin map output is tagged with stageName
         job.setMapOutputValueClass(TaggedWritable.class);
       }
+      // Registers the record schemas in the pipeline so that records are shuffled without their schema
+      StructuredRecordWritable.setSchemas(hConf, phase.getRecordSchemas());
     } else {
       job.setNumReduceTasks(0);
     }
@@ -361,6 +372,15 @@ public class ETLMapReduce extends AbstractMapReduce {
       }
     }
 
+    @Override
+    protected void cleanup(Mapper.Context context) throws IOException, InterruptedException {
+      try {
+        transformRunner.flush();
+      } catch (Exception e) {
+        Throwables.propagate(e);
+      }
+    }
+
     @Override
     public void destroy() {
       transformRunner.destroy();
@@ -396,6 +416,15 @@ public class ETLMapReduce extends AbstractMapReduce {
       }
     }
 
+    @Override
+    protected void cleanup(Reducer.Context context) throws IOException, InterruptedException {
+      try {
+        transformRunner.flush();
+      } catch (Exception e) {
+        Throwables.propagate(e);
+      }
+    }
+
     @Override
     public void destroy() {
       transformRunner.destroy();
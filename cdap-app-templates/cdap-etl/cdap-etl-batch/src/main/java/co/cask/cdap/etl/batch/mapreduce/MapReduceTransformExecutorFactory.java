@@ -23,18 +23,19 @@ import co.cask.cdap.etl.api.Aggregator;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.JoinElement;
 import co.cask.cdap.etl.api.Joiner;
-import co.cask.cdap.etl.api.StageMetrics;
 import co.cask.cdap.etl.api.Transformation;
 import co.cask.cdap.etl.api.batch.BatchAggregator;
 import co.cask.cdap.etl.api.batch.BatchJoiner;
 import co.cask.cdap.etl.api.batch.BatchJoinerRuntimeContext;
 import co.cask.cdap.etl.api.batch.BatchRuntimeContext;
 import co.cask.cdap.etl.api.batch.BatchSource;
+import co.cask.cdap.etl.api.batch.CombinableBatchAggregator;
 import co.cask.cdap.etl.batch.PipelinePluginInstantiator;
 import co.cask.cdap.etl.batch.TransformExecutorFactory;
 import co.cask.cdap.etl.batch.conversion.WritableConversion;
 import co.cask.cdap.etl.batch.conversion.WritableConversions;
 import co.cask.cdap.etl.batch.join.Join;
+import co.cask.cdap.etl.common.BufferedStageMetrics;
 import co.cask.cdap.etl.common.DatasetContextLookupProvider;
 import co.cask.cdap.etl.common.DefaultMacroEvaluator;
 import co.cask.cdap.etl.common.DefaultStageMetrics;
@@ -47,10 +48,13 @@ import com.google.common.collect.Iterators;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.mapreduce.JobContext;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
 
@@ -60,11 +64,19 @@ import javax.annotation.Nullable;
  * @param <T> the type of input for the created transform executors
  */
 public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFactory<T> {
+  private static final int DEFAULT_COMBINE_MAX_GROUPS = 10000;
+  private static final int DEFAULT_METRICS_FLUSH_INTERVAL = 1000;
+
   private final Map<String, Map<String, String>> pluginRuntimeArgs;
   private final MapReduceTaskContext taskContext;
   private final String mapOutputKeyClassName;
   private final String mapOutputValClassName;
   private final int numberOfRecordsPreview;
+  private final int combineMaxGroups;
+  private final Configuration hConf;
+  private final List<MapperCombinerAggregatorTransformation<?, ?, ?, ?, ?>> combiners;
+  private final int metricsFlushInterval;
+  private final List<BufferedStageMetrics> bufferedStageMetrics;
 
   public MapReduceTransformExecutorFactory(MapReduceTaskContext taskContext,
                                            PipelinePluginInstantiator pluginInstantiator,
@@ -82,6 +94,31 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
     this.mapOutputKeyClassName = hConf.get(ETLMapReduce.MAP_KEY_CLASS);
     this.mapOutputValClassName = hConf.get(ETLMapReduce.MAP_VAL_CLASS);
     this.numberOfRecordsPreview = numberOfRecordsPreview;
+    this.hConf = hConf;
+    this.combineMaxGroups = hConf.getInt(ETLMapReduce.COMBINE_MAX_GROUPS, DEFAULT_COMBINE_MAX_GROUPS);
+    this.combiners = new ArrayList<>();
+    this.metricsFlushInterval = hConf.getInt(ETLMapReduce.METRICS_FLUSH_INTERVAL, DEFAULT_METRICS_FLUSH_INTERVAL);
+    this.bufferedStageMetrics = new ArrayList<>();
+  }
+
+  /**
+   * Emits the partial aggregates of all groups that are combined in memory by the transform executors
+   * created by this factory, followed by the stage metrics accumulated by them.
+   */
+  public void flush() throws Exception {
+    for (MapperCombinerAggregatorTransformation<?, ?, ?, ?, ?> combiner : combiners) {
+      combiner.flush();
+    }
+    flushMetrics();
+  }
+
+  /**
+   * Emits the stage metrics accumulated by the transform executors created by this factory.
+   */
+  public void flushMetrics() {
+    for (BufferedStageMetrics stageMetrics : bufferedStageMetrics) {
+      stageMetrics.flush();
+    }
   }
 
   @Override
@@ -104,15 +141,29 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
                                                                      taskContext.getNamespace());
     String stageName = stageInfo.getName();
     String pluginType = stageInfo.getPluginType();
-    StageMetrics stageMetrics = new DefaultStageMetrics(metrics, stageName);
+    BufferedStageMetrics stageMetrics = new BufferedStageMetrics(new DefaultStageMetrics(metrics, stageName),
+                                                                 metricsFlushInterval);
+    bufferedStageMetrics.add(stageMetrics);
     if (BatchAggregator.PLUGIN_TYPE.equals(pluginType)) {
       BatchAggregator<?, ?, ?> batchAggregator = pluginInstantiator.newPluginInstance(stageName, macroEvaluator);
       BatchRuntimeContext runtimeContext = createRuntimeContext(stageInfo);
       batchAggregator.initialize(runtimeContext);
-      if (isMapPhase) {
+      if (isMapPhase && batchAggregator instanceof CombinableBatchAggregator) {
+        MapperCombinerAggregatorTransformation<?, ?, ?, ?, ?> combiner =
+          new MapperCombinerAggregatorTransformation((CombinableBatchAggregator) batchAggregator,
+                                                     mapOutputKeyClassName, mapOutputValClassName, combineMaxGroups,
+                                                     hConf);
+        combiners.add(combiner);
+        return getTrackedEmitKeyStep(combiner, stageMetrics, taskContext.getDataTracer(stageName));
+      } else if (isMapPhase) {
         return getTrackedEmitKeyStep(new MapperAggregatorTransformation(batchAggregator, mapOutputKeyClassName,
-                                                                        mapOutputValClassName),
+                                                                        mapOutputValClassName, hConf),
                                      stageMetrics, taskContext.getDataTracer(stageName));
+      } else if (batchAggregator instanceof CombinableBatchAggregator) {
+        return getTrackedAggregateStep(
+          new ReducerCombinerAggregatorTransformation((CombinableBatchAggregator) batchAggregator,
+                                                      mapOutputKeyClassName, mapOutputValClassName, hConf),
+          stageMetrics, taskContext.getDataTracer(stageName));
       } else {
         return getTrackedAggregateStep(new ReducerAggregatorTransformation(batchAggregator,
                                                                            mapOutputKeyClassName,
@@ -125,8 +176,8 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
       batchJoiner.initialize(runtimeContext);
       if (isMapPhase) {
         return getTrackedEmitKeyStep(
-          new MapperJoinerTransformation(batchJoiner, mapOutputKeyClassName, mapOutputValClassName), stageMetrics,
-          taskContext.getDataTracer(stageName));
+          new MapperJoinerTransformation(batchJoiner, mapOutputKeyClassName, mapOutputValClassName, hConf),
+          stageMetrics, taskContext.getDataTracer(stageName));
       } else {
         return getTrackedMergeStep(
           new ReducerJoinerTransformation(batchJoiner, mapOutputKeyClassName, mapOutputValClassName,
@@ -161,11 +212,13 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
     private final WritableConversion<INPUT_RECORD, OUT_VALUE> inputConversion;
 
     MapperJoinerTransformation(Joiner<JOIN_KEY, INPUT_RECORD, OUT> joiner, String joinKeyClassName,
-                               String joinInputClassName) {
+                               String joinInputClassName, Configuration hConf) {
       this.joiner = joiner;
+      // map output keys are serialized with their schema, since Hadoop creates the keys it deserializes for
+      // sorting and grouping without the job configuration
       WritableConversion<JOIN_KEY, OUT_KEY> keyConversion = WritableConversions.getConversion(joinKeyClassName);
       WritableConversion<INPUT_RECORD, OUT_VALUE> inputConversion =
-        WritableConversions.getConversion(joinInputClassName);
+        WritableConversions.getConversion(joinInputClassName, hConf);
       this.keyConversion = keyConversion == null ? new CastConversion<JOIN_KEY, OUT_KEY>() : keyConversion;
       this.inputConversion = inputConversion == null ? new CastConversion<INPUT_RECORD, OUT_VALUE>() : inputConversion;
     }
@@ -249,12 +302,16 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
 
     MapperAggregatorTransformation(Aggregator<GROUP_KEY, GROUP_VAL, ?> aggregator,
                                    String groupKeyClassName,
-                                   String groupValClassName) {
+                                   String groupValClassName,
+                                   Configuration hConf) {
       this.aggregator = aggregator;
       this.groupKeyEmitter =
         new NoErrorEmitter<>("Error records cannot be emitted from the groupBy method of an aggregator");
+      // map output keys are serialized with their schema, since Hadoop creates the keys it deserializes for
+      // sorting and grouping without the job configuration
       WritableConversion<GROUP_KEY, OUT_KEY> keyConversion = WritableConversions.getConversion(groupKeyClassName);
-      WritableConversion<GROUP_VAL, OUT_VAL> valConversion = WritableConversions.getConversion(groupValClassName);
+      WritableConversion<GROUP_VAL, OUT_VAL> valConversion =
+        WritableConversions.getConversion(groupValClassName, hConf);
       // if the conversion is null, it means the user is using a Writable already
       this.keyConversion = keyConversion == null ? new CastConversion<GROUP_KEY, OUT_KEY>() : keyConversion;
       this.valConversion = valConversion == null ? new CastConversion<GROUP_VAL, OUT_VAL>() : valConversion;
@@ -313,6 +370,118 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
     }
   }
 
+  /**
+   * A Transformation that combines the group values of a {@link CombinableBatchAggregator} before they are
+   * shuffled. Values are folded into one partial aggregate per group key in memory. The partial aggregates are
+   * emitted when the number of groups reaches the given maximum and when the mapper finishes.
+   *
+   * @param <GROUP_KEY> type of group key output by the aggregator
+   * @param <GROUP_VAL> type of group value used by the aggregator
+   * @param <AGG_VAL>   type of partial aggregate used by the aggregator
+   * @param <OUT_KEY>   type of output key for mapreduce. Must implement WritableComparable
+   * @param <OUT_VAL>   type of output value for mapreduce. Must implement Writable
+   */
+  private static class MapperCombinerAggregatorTransformation<GROUP_KEY, GROUP_VAL, AGG_VAL,
+    OUT_KEY extends Writable, OUT_VAL extends Writable>
+    implements Transformation<GROUP_VAL, KeyValue<OUT_KEY, OUT_VAL>> {
+    private final CombinableBatchAggregator<GROUP_KEY, GROUP_VAL, AGG_VAL, ?> aggregator;
+    private final NoErrorEmitter<GROUP_KEY> groupKeyEmitter;
+    private final WritableConversion<GROUP_KEY, OUT_KEY> keyConversion;
+    private final WritableConversion<AGG_VAL, OUT_VAL> aggConversion;
+    private final int maxGroups;
+    private final Map<GROUP_KEY, AGG_VAL> aggregates;
+    private Emitter<KeyValue<OUT_KEY, OUT_VAL>> emitter;
+
+    MapperCombinerAggregatorTransformation(CombinableBatchAggregator<GROUP_KEY, GROUP_VAL, AGG_VAL, ?> aggregator,
+                                           String groupKeyClassName, String aggValClassName, int maxGroups,
+                                           Configuration hConf) {
+      this.aggregator = aggregator;
+      this.groupKeyEmitter =
+        new NoErrorEmitter<>("Error records cannot be emitted from the groupBy method of an aggregator");
+      // map output keys are serialized with their schema, since Hadoop creates the keys it deserializes for
+      // sorting and grouping without the job configuration
+      WritableConversion<GROUP_KEY, OUT_KEY> keyConversion = WritableConversions.getConversion(groupKeyClassName);
+      WritableConversion<AGG_VAL, OUT_VAL> aggConversion = WritableConversions.getConversion(aggValClassName, hConf);
+      this.keyConversion = keyConversion == null ? new CastConversion<GROUP_KEY, OUT_KEY>() : keyConversion;
+      this.aggConversion = aggConversion == null ? new CastConversion<AGG_VAL, OUT_VAL>() : aggConversion;
+      this.maxGroups = maxGroups;
+      this.aggregates = new HashMap<>();
+    }
+
+    @Override
+    public void transform(GROUP_VAL input, Emitter<KeyValue<OUT_KEY, OUT_VAL>> emitter) throws Exception {
+      this.emitter = emitter;
+      groupKeyEmitter.reset();
+      aggregator.groupBy(input, groupKeyEmitter);
+      for (GROUP_KEY groupKey : groupKeyEmitter.getEntries()) {
+        AGG_VAL aggregate = aggregates.get(groupKey);
+        if (aggregate == null) {
+          if (aggregates.size() >= maxGroups) {
+            flush();
+          }
+          aggregates.put(groupKey, aggregator.initializeAggregate(input));
+        } else {
+          aggregates.put(groupKey, aggregator.mergeValue(aggregate, input));
+        }
+      }
+    }
+
+    void flush() {
+      for (Map.Entry<GROUP_KEY, AGG_VAL> entry : aggregates.entrySet()) {
+        emitter.emit(new KeyValue<>(keyConversion.toWritable(entry.getKey()),
+                                    aggConversion.toWritable(entry.getValue())));
+      }
+      aggregates.clear();
+    }
+  }
+
+  /**
+   * A Transformation that merges the partial aggregates of a {@link CombinableBatchAggregator} for a group and
+   * finalizes the result.
+   *
+   * @param <GROUP_KEY>  type of group key output by the aggregator
+   * @param <AGG_VAL>    type of partial aggregate used by the aggregator
+   * @param <REDUCE_KEY> type of reduce key for mapreduce. Must implement WritableComparable
+   * @param <REDUCE_VAL> type of reduce value for mapreduce. Must implement Writable
+   */
+  private static class ReducerCombinerAggregatorTransformation<GROUP_KEY, AGG_VAL, OUT,
+    REDUCE_KEY extends WritableComparable, REDUCE_VAL extends Writable>
+    implements Transformation<KeyValue<REDUCE_KEY, Iterator<REDUCE_VAL>>, OUT> {
+    private final CombinableBatchAggregator<GROUP_KEY, ?, AGG_VAL, OUT> aggregator;
+    private final WritableConversion<GROUP_KEY, REDUCE_KEY> keyConversion;
+    private final WritableConversion<AGG_VAL, REDUCE_VAL> aggConversion;
+    // mapreduce reuses the reduce value instance, so it must be copied if the aggregator uses it directly
+    private final Configuration copyConf;
+
+    ReducerCombinerAggregatorTransformation(CombinableBatchAggregator<GROUP_KEY, ?, AGG_VAL, OUT> aggregator,
+                                            String groupKeyClassName, String aggValClassName,
+                                            Configuration hConf) {
+      this.aggregator = aggregator;
+      WritableConversion<GROUP_KEY, REDUCE_KEY> keyConversion = WritableConversions.getConversion(groupKeyClassName);
+      WritableConversion<AGG_VAL, REDUCE_VAL> aggConversion = WritableConversions.getConversion(aggValClassName);
+      this.keyConversion = keyConversion == null ? new CastConversion<GROUP_KEY, REDUCE_KEY>() : keyConversion;
+      this.aggConversion = aggConversion == null ? new CastConversion<AGG_VAL, REDUCE_VAL>() : aggConversion;
+      this.copyConf = aggConversion == null ? hConf : null;
+    }
+
+    @Override
+    public void transform(KeyValue<REDUCE_KEY, Iterator<REDUCE_VAL>> input, Emitter<OUT> emitter) throws Exception {
+      Iterator<REDUCE_VAL> iter = input.getValue();
+      if (!iter.hasNext()) {
+        return;
+      }
+      AGG_VAL aggregate = getAggregate(iter.next());
+      while (iter.hasNext()) {
+        aggregate = aggregator.mergeAggregates(aggregate, getAggregate(iter.next()));
+      }
+      aggregator.finalizeAggregate(keyConversion.fromWritable(input.getKey()), aggregate, emitter);
+    }
+
+    private AGG_VAL getAggregate(REDUCE_VAL value) {
+      return aggConversion.fromWritable(copyConf == null ? value : WritableUtils.clone(value, copyConf));
+    }
+  }
+
   /**
    * Conversion that doesn't do anything but cast types to each other.
    * This is used in the MapperAggregatorTransformation and ReducerAggregatorTransformation when the user is already
@@ -16,7 +16,6 @@
 
 package co.cask.cdap.etl.batch.mapreduce;
 
-import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.etl.api.Destroyable;
 import co.cask.cdap.etl.batch.PipeTransformDetail;
 
@@ -38,8 +37,7 @@ public class PipeTransformExecutor<IN> implements Destroyable {
 
   public void runOneIteration(IN input) throws Exception {
     for (String stageName : startingPoints) {
-      PipeTransformDetail transformDetail = transformDetailMap.get(stageName);
-        transformDetail.process(new KeyValue<String, Object>(stageName, input));
+      transformDetailMap.get(stageName).process(stageName, input);
     }
   }
 
@@ -16,6 +16,8 @@
 
 package co.cask.cdap.etl.batch.mapreduce;
 
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
+import co.cask.cdap.format.StructuredRecordBinaryCodec;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.ObjectWritable;
@@ -29,6 +31,8 @@ import java.io.IOException;
 
 /**
  * Map output for which includes stageName and the record provided. This can be used to tag map output with stageName.
+ * A {@link StructuredRecordWritable} record is serialized directly, while other records are serialized through
+ * {@link ObjectWritable}, which includes the record class name.
  * @param <RECORD> Writable record to be serialized along with stageName
  */
 public class TaggedWritable<RECORD extends Writable> implements
@@ -37,6 +41,7 @@ public class TaggedWritable<RECORD extends Writable> implements
   private RECORD record;
   private Configuration conf;
   private ObjectWritable recordWritable;
+  private StructuredRecordBinaryCodec codec;
 
   // required by Hadoop
   @SuppressWarnings("unused")
@@ -89,15 +94,30 @@ public class TaggedWritable<RECORD extends Writable> implements
   @Override
   public void write(DataOutput out) throws IOException {
     Text.writeString(out, stageName);
-    ObjectWritable recordWritable = new ObjectWritable(record);
-    recordWritable.write(out);
+    if (record instanceof StructuredRecordWritable) {
+      out.writeBoolean(true);
+      record.write(out);
+    } else {
+      out.writeBoolean(false);
+      ObjectWritable recordWritable = new ObjectWritable(record);
+      recordWritable.write(out);
+    }
   }
 
+  @SuppressWarnings("unchecked")
   @Override
   public void readFields(DataInput in) throws IOException {
     this.stageName = Text.readString(in);
-    this.recordWritable.readFields(in);
-    this.record = (RECORD) recordWritable.get();
+    if (in.readBoolean()) {
+      // A new instance is needed for each record since the reducer may hold on to the record
+      StructuredRecordWritable structuredRecord =
+        codec == null ? new StructuredRecordWritable() : new StructuredRecordWritable(null, codec);
+      structuredRecord.readFields(in);
+      this.record = (RECORD) structuredRecord;
+    } else {
+      this.recordWritable.readFields(in);
+      this.record = (RECORD) recordWritable.get();
+    }
   }
 
   @Override
@@ -106,6 +126,8 @@ public class TaggedWritable<RECORD extends Writable> implements
     recordWritable = new ObjectWritable();
     // ObjectWritable does not set conf while reading fields
     recordWritable.setConf(conf);
+    // Create the codec once rather than for every record read
+    codec = StructuredRecordWritable.createCodec(conf);
   }
 
   @Override
@@ -39,6 +39,8 @@ public class TransformEmitter implements PipeEmitter<PipeTransformDetail> {
   private final ErrorOutputWriter<Object, Object> errorOutputWriter;
   private final Map<String, PipeTransformDetail> outputConsumers;
   private final Map<String, PipeTransformDetail> errorConsumers;
+  // the output consumers as an array, so that emitting doesn't need to create an iterator for each record
+  private PipeTransformDetail[] outputConsumerArray;
   private boolean shouldLogErrorWarning;
 
   public TransformEmitter(String stageName, @Nullable ErrorOutputWriter<Object, Object> errorOutputWriter) {
@@ -46,13 +48,14 @@ public class TransformEmitter implements PipeEmitter<PipeTransformDetail> {
     this.errorOutputWriter = errorOutputWriter;
     this.outputConsumers = new HashMap<>();
     this.errorConsumers = new HashMap<>();
+    this.outputConsumerArray = new PipeTransformDetail[0];
     this.shouldLogErrorWarning = true;
   }
 
   @Override
   public void emit(Object value) {
-    for (PipeTransformDetail pipeTransformDetail : outputConsumers.values()) {
-      pipeTransformDetail.process(new KeyValue<>(stageName, value));
+    for (PipeTransformDetail pipeTransformDetail : outputConsumerArray) {
+      pipeTransformDetail.process(stageName, value);
     }
   }
 
@@ -66,7 +69,7 @@ public class TransformEmitter implements PipeEmitter<PipeTransformDetail> {
     for (PipeTransformDetail pipeTransformDetail : errorConsumers.values()) {
       ErrorRecord errorRecord = new BasicErrorRecord<>(invalidEntry.getInvalidRecord(), stageName,
                                                        invalidEntry.getErrorCode(), invalidEntry.getErrorMsg());
-      pipeTransformDetail.process(new KeyValue<>(stageName, (Object) errorRecord));
+      pipeTransformDetail.process(stageName, errorRecord);
     }
     try {
       if (errorOutputWriter != null) {
@@ -84,6 +87,7 @@ public class TransformEmitter implements PipeEmitter<PipeTransformDetail> {
       errorConsumers.put(stageName, pipeTransformDetail);
     } else {
       outputConsumers.put(stageName, pipeTransformDetail);
+      outputConsumerArray = outputConsumers.values().toArray(new PipeTransformDetail[outputConsumers.size()]);
     }
   }
 }
@@ -26,7 +26,6 @@ import co.cask.cdap.etl.api.batch.BatchAggregator;
 import co.cask.cdap.etl.api.batch.BatchJoiner;
 import co.cask.cdap.etl.batch.BatchPhaseSpec;
 import co.cask.cdap.etl.batch.PipelinePluginInstantiator;
-import co.cask.cdap.etl.batch.TransformExecutorFactory;
 import co.cask.cdap.etl.common.Constants;
 import co.cask.cdap.etl.common.Destroyables;
 import co.cask.cdap.etl.common.PipelinePhase;
@@ -61,6 +60,7 @@ public class TransformRunner<KEY, VALUE> {
     .registerTypeAdapter(SetMultimap.class, new SetMultimapCodec<>())
     .create();
   private final Map<String, ErrorOutputWriter<Object, Object>> transformErrorSinkMap;
+  private final MapReduceTransformExecutorFactory<KeyValue<KEY, VALUE>> transformExecutorFactory;
   private final PipeTransformExecutor<KeyValue<KEY, VALUE>> transformExecutor;
   private final OutputWriter<Object, Object> outputWriter;
 
@@ -109,7 +109,7 @@ public class TransformRunner<KEY, VALUE> {
       }
     }
 
-    TransformExecutorFactory<KeyValue<KEY, VALUE>> transformExecutorFactory =
+    this.transformExecutorFactory =
       new MapReduceTransformExecutorFactory<>(context, pluginInstantiator, metrics, runtimeArgs, sourceStage,
                                               phaseSpec.getNumOfRecordsPreview());
     this.transformExecutor = transformExecutorFactory.create(phase, outputWriter, transformErrorSinkMap);
@@ -158,7 +158,17 @@ public class TransformRunner<KEY, VALUE> {
     transformExecutor.runOneIteration(input);
   }
 
+  /**
+   * Writes out the partial aggregates that are combined in memory by the mapper and emits the stage metrics
+   * that are accumulated by the task.
+   */
+  public void flush() throws Exception {
+    transformExecutorFactory.flush();
+  }
+
   public void destroy() {
+    // emit any metrics accumulated after the last flush, for example if the task failed
+    transformExecutorFactory.flushMetrics();
     Destroyables.destroyQuietly(transformExecutor);
   }
 }
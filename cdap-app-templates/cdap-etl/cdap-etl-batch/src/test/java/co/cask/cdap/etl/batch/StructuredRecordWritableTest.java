@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.batch;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Tests for {@link StructuredRecordWritable}.
+ */
+public class StructuredRecordWritableTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "user",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema OTHER_SCHEMA = Schema.recordOf(
+    "item", Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)));
+
+  @Test
+  public void testInlineSchema() throws IOException {
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("id", 1L).set("name", "alice").build();
+
+    StructuredRecordWritable copy = new StructuredRecordWritable();
+    copy.setConf(new Configuration(false));
+    copy.readFields(toInput(write(new StructuredRecordWritable(record))));
+    Assert.assertEquals(record, copy.get());
+  }
+
+  @Test
+  public void testRegisteredSchema() throws IOException {
+    Configuration conf = new Configuration(false);
+    StructuredRecordWritable.setSchemas(conf, ImmutableList.of(SCHEMA));
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("id", 2L).build();
+
+    DataOutputBuffer inline = write(new StructuredRecordWritable(record));
+    DataOutputBuffer registered =
+      write(new StructuredRecordWritable(record, StructuredRecordWritable.createCodec(conf)));
+    // A registered schema is not written with the record
+    Assert.assertTrue(registered.getLength() < inline.getLength());
+
+    StructuredRecordWritable copy = new StructuredRecordWritable();
+    copy.setConf(conf);
+    copy.readFields(toInput(registered));
+    Assert.assertEquals(record, copy.get());
+
+    // Records of other schemas are still written with their schema
+    StructuredRecord other = StructuredRecord.builder(OTHER_SCHEMA).set("price", 1.5d).build();
+    copy.readFields(toInput(write(new StructuredRecordWritable(other, StructuredRecordWritable.createCodec(conf)))));
+    Assert.assertEquals(other, copy.get());
+  }
+
+  @Test
+  public void testConfigurationsAreIndependent() throws IOException {
+    Configuration conf = new Configuration(false);
+    StructuredRecordWritable.setSchemas(conf, ImmutableList.of(SCHEMA));
+    StructuredRecordWritable writable = new StructuredRecordWritable();
+    writable.setConf(conf);
+
+    // Configuring an instance for another job must not change how the first instance serializes records
+    Configuration otherConf = new Configuration(false);
+    StructuredRecordWritable.setSchemas(otherConf, ImmutableList.of(OTHER_SCHEMA));
+    new StructuredRecordWritable().setConf(otherConf);
+
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("id", 3L).set("name", "bob").build();
+    writable.set(record);
+    DataOutputBuffer output = write(writable);
+
+    StructuredRecordWritable copy = new StructuredRecordWritable();
+    copy.setConf(conf);
+    copy.readFields(toInput(output));
+    Assert.assertEquals(record, copy.get());
+
+    // An instance created without a configuration writes the schema inline, hence can be read with any configuration
+    copy = new StructuredRecordWritable();
+    copy.setConf(otherConf);
+    copy.readFields(toInput(write(new StructuredRecordWritable(record))));
+    Assert.assertEquals(record, copy.get());
+  }
+
+  private static DataOutputBuffer write(Writable writable) throws IOException {
+    DataOutputBuffer output = new DataOutputBuffer();
+    writable.write(output);
+    return output;
+  }
+
+  private static DataInputBuffer toInput(DataOutputBuffer output) {
+    DataInputBuffer input = new DataInputBuffer();
+    input.reset(output.getData(), output.getLength());
+    return input;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.batch.mapreduce;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Tests for {@link TaggedWritable}.
+ */
+public class TaggedWritableTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "user",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+
+  @Test
+  public void testStructuredRecord() throws IOException {
+    Configuration conf = new Configuration(false);
+    StructuredRecordWritable.setSchemas(conf, ImmutableList.of(SCHEMA));
+    StructuredRecord record1 = StructuredRecord.builder(SCHEMA).set("id", 1L).set("name", "alice").build();
+    StructuredRecord record2 = StructuredRecord.builder(SCHEMA).set("id", 2L).set("name", "bob").build();
+
+    DataOutputBuffer output = new DataOutputBuffer();
+    new TaggedWritable<>("users", new StructuredRecordWritable(record1, StructuredRecordWritable.createCodec(conf)))
+      .write(output);
+    new TaggedWritable<>("users", new StructuredRecordWritable(record2)).write(output);
+
+    DataInputBuffer input = new DataInputBuffer();
+    input.reset(output.getData(), output.getLength());
+    TaggedWritable<StructuredRecordWritable> copy = new TaggedWritable<>();
+    copy.setConf(conf);
+
+    copy.readFields(input);
+    Assert.assertEquals("users", copy.getStageName());
+    StructuredRecordWritable first = copy.getRecord();
+    Assert.assertEquals(record1, first.get());
+
+    copy.readFields(input);
+    Assert.assertEquals("users", copy.getStageName());
+    Assert.assertEquals(record2, copy.getRecord().get());
+    // Records are read into new instances since the reducer may hold on to them
+    Assert.assertNotSame(first, copy.getRecord());
+    Assert.assertEquals(record1, first.get());
+  }
+
+  @Test
+  public void testWritable() throws IOException {
+    DataOutputBuffer output = new DataOutputBuffer();
+    new TaggedWritable<Writable>("words", new Text("hello")).write(output);
+
+    DataInputBuffer input = new DataInputBuffer();
+    input.reset(output.getData(), output.getLength());
+    TaggedWritable<Writable> copy = new TaggedWritable<>();
+    copy.setConf(new Configuration(false));
+    copy.readFields(input);
+    Assert.assertEquals("words", copy.getStageName());
+    Assert.assertEquals(new Text("hello"), copy.getRecord());
+  }
+}
@@ -19,8 +19,11 @@ package co.cask.cdap.etl.common;
 import co.cask.cdap.api.dataset.Dataset;
 import co.cask.cdap.api.dataset.lib.KeyValueTable;
 import co.cask.cdap.api.dataset.table.Table;
+import co.cask.cdap.etl.api.ConfigurableLookupProvider;
 import co.cask.cdap.etl.api.Lookup;
 import co.cask.cdap.etl.api.LookupProvider;
+import co.cask.cdap.etl.api.LookupTableConfig;
+import co.cask.cdap.etl.api.StageMetrics;
 import co.cask.cdap.etl.api.lookup.KeyValueTableLookup;
 import co.cask.cdap.etl.api.lookup.TableLookup;
 
@@ -29,7 +32,25 @@ import javax.annotation.Nullable;
 /**
  * {@link Lookup} that provides common functionality.
  */
-public abstract class AbstractLookupProvider implements LookupProvider {
+public abstract class AbstractLookupProvider implements ConfigurableLookupProvider {
+
+  @Override
+  public <T> Lookup<T> provide(String table, LookupTableConfig config) {
+    return provide(this, table, config, NoopMetrics.INSTANCE);
+  }
+
+  /**
+   * Provides a {@link Lookup} from the given {@link LookupProvider} configured by the given
+   * {@link LookupTableConfig}, emitting cache metrics to the given {@link StageMetrics}.
+   */
+  static <T> Lookup<T> provide(LookupProvider provider, String table,
+                               LookupTableConfig config, StageMetrics metrics) {
+    Lookup<T> lookup = provider.provide(table, config.getDatasetProperties());
+    if (!config.isCacheEnabled()) {
+      return lookup;
+    }
+    return new CachingLookup<>(table, lookup, config.getCacheConfig(), metrics);
+  }
 
   @SuppressWarnings("unchecked")
   protected <T> Lookup<T> getLookup(String table, @Nullable Dataset dataset) {
@@ -18,8 +18,10 @@ package co.cask.cdap.etl.common;
 
 import co.cask.cdap.api.metrics.Metrics;
 import co.cask.cdap.api.plugin.PluginContext;
+import co.cask.cdap.etl.api.ConfigurableLookupProvider;
 import co.cask.cdap.etl.api.Lookup;
 import co.cask.cdap.etl.api.LookupProvider;
+import co.cask.cdap.etl.api.LookupTableConfig;
 import co.cask.cdap.etl.api.TransformContext;
 import co.cask.cdap.etl.planner.StageInfo;
 
@@ -30,7 +32,8 @@ import java.util.Map;
  * This context scopes plugin ids by the id of the stage. This allows multiple transforms to use plugins with
  * the same id without clobbering each other.
  */
-public abstract class AbstractTransformContext extends AbstractStageContext implements TransformContext {
+public abstract class AbstractTransformContext extends AbstractStageContext
+  implements TransformContext, ConfigurableLookupProvider {
 
   private final LookupProvider lookup;
 
@@ -44,4 +47,9 @@ public abstract class AbstractTransformContext extends AbstractStageContext impl
   public <T> Lookup<T> provide(String table, Map<String, String> arguments) {
     return lookup.provide(table, arguments);
   }
+
+  @Override
+  public <T> Lookup<T> provide(String table, LookupTableConfig config) {
+    return AbstractLookupProvider.provide(lookup, table, config, getMetrics());
+  }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.etl.api.StageMetrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A {@link StageMetrics} that accumulates stage counts locally and emits them to another {@link StageMetrics}
+ * in batches. Counts are emitted after the given number of count calls and when {@link #flush()} is called.
+ * Gauges and pipeline metrics are emitted directly.
+ */
+@NotThreadSafe
+public class BufferedStageMetrics implements StageMetrics {
+
+  private final StageMetrics delegate;
+  private final int flushInterval;
+  private final Map<String, int[]> counts;
+  private int pending;
+
+  /**
+   * @param delegate the {@link StageMetrics} to emit counts to
+   * @param flushInterval number of count calls to accumulate before emitting them
+   */
+  public BufferedStageMetrics(StageMetrics delegate, int flushInterval) {
+    this.delegate = delegate;
+    this.flushInterval = flushInterval;
+    this.counts = new HashMap<>();
+  }
+
+  @Override
+  public void count(String metricName, int delta) {
+    int[] count = counts.get(metricName);
+    if (count == null) {
+      count = new int[1];
+      counts.put(metricName, count);
+    }
+    count[0] += delta;
+    if (++pending >= flushInterval) {
+      flush();
+    }
+  }
+
+  @Override
+  public void gauge(String metricName, long value) {
+    delegate.gauge(metricName, value);
+  }
+
+  @Override
+  public void pipelineCount(String metricName, int delta) {
+    delegate.pipelineCount(metricName, delta);
+  }
+
+  @Override
+  public void pipelineGauge(String metricName, long value) {
+    delegate.pipelineGauge(metricName, value);
+  }
+
+  /**
+   * Emits all accumulated counts.
+   */
+  public void flush() {
+    for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+      int[] count = entry.getValue();
+      if (count[0] != 0) {
+        delegate.count(entry.getKey(), count[0]);
+        count[0] = 0;
+      }
+    }
+    pending = 0;
+  }
+}
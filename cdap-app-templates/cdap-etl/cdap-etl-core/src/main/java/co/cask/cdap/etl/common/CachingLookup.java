@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.etl.api.CacheConfig;
+import co.cask.cdap.etl.api.Lookup;
+import co.cask.cdap.etl.api.StageMetrics;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Lookup} that caches the results of another {@link Lookup} as described by a {@link CacheConfig}.
+ * The cache holds at most {@link CacheConfig#getMaxSize()} entries, evicting the least recently used ones, and
+ * entries expire {@link CacheConfig#getExpirySeconds()} seconds after they are loaded. A non-positive value
+ * disables the corresponding bound. Keys that are not found in the underlying {@link Lookup} are cached as well.
+ * Batch lookups only go to the underlying {@link Lookup} once, for all keys that are not in the cache.
+ * The number of cache hits and misses are emitted as the {@code lookup.<table>.cache.hits} and
+ * {@code lookup.<table>.cache.misses} stage metrics.
+ *
+ * @param <T> the type of value returned by the {@link Lookup}
+ */
+public class CachingLookup<T> implements Lookup<T> {
+
+  private final Lookup<T> delegate;
+  private final Cache<String, Optional<T>> cache;
+  private final StageMetrics metrics;
+  private final String hitsMetric;
+  private final String missesMetric;
+
+  public CachingLookup(String table, Lookup<T> delegate, CacheConfig cacheConfig, StageMetrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+    this.hitsMetric = "lookup." + table + ".cache.hits";
+    this.missesMetric = "lookup." + table + ".cache.misses";
+
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+    if (cacheConfig.getMaxSize() > 0) {
+      builder.maximumSize(cacheConfig.getMaxSize());
+    }
+    if (cacheConfig.getExpirySeconds() > 0) {
+      builder.expireAfterWrite(cacheConfig.getExpirySeconds(), TimeUnit.SECONDS);
+    }
+    this.cache = builder.build();
+  }
+
+  @Override
+  public T lookup(String key) {
+    Optional<T> value = cache.getIfPresent(key);
+    if (value != null) {
+      metrics.count(hitsMetric, 1);
+      return value.orNull();
+    }
+    metrics.count(missesMetric, 1);
+    T result = delegate.lookup(key);
+    cache.put(key, Optional.fromNullable(result));
+    return result;
+  }
+
+  @Override
+  public Map<String, T> lookup(String... keys) {
+    return lookup(ImmutableSet.copyOf(keys));
+  }
+
+  @Override
+  public Map<String, T> lookup(Set<String> keys) {
+    Map<String, T> results = new HashMap<>();
+    Set<String> missingKeys = new HashSet<>();
+    for (String key : keys) {
+      Optional<T> value = cache.getIfPresent(key);
+      if (value == null) {
+        missingKeys.add(key);
+      } else if (value.isPresent()) {
+        results.put(key, value.get());
+      }
+    }
+
+    int hits = keys.size() - missingKeys.size();
+    if (hits > 0) {
+      metrics.count(hitsMetric, hits);
+    }
+    if (missingKeys.isEmpty()) {
+      return results;
+    }
+
+    metrics.count(missesMetric, missingKeys.size());
+    Map<String, T> loaded = delegate.lookup(missingKeys);
+    for (String key : missingKeys) {
+      T value = loaded.get(key);
+      cache.put(key, Optional.fromNullable(value));
+      if (value != null) {
+        results.put(key, value);
+      }
+    }
+    return results;
+  }
+}
@@ -16,10 +16,12 @@
 
 package co.cask.cdap.etl.common;
 
+import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.etl.planner.Dag;
 import co.cask.cdap.etl.planner.StageInfo;
 import com.google.common.base.Joiner;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -99,6 +101,20 @@ public class PipelinePhase implements Iterable<StageInfo> {
     return dag == null ? new HashSet<String>() : dag.getSinks();
   }
 
+  /**
+   * Get the set of record schemas that are used as input, output or error schema of any stage in the phase.
+   *
+   * @return set of record schemas used in the phase
+   */
+  public Set<Schema> getRecordSchemas() {
+    Set<Schema> schemas = new HashSet<>();
+    for (StageInfo stage : stagesByName.values()) {
+      addRecordSchemas(schemas, stage.getInputSchemas().values());
+      addRecordSchemas(schemas, Arrays.asList(stage.getOutputSchema(), stage.getErrorSchema()));
+    }
+    return schemas;
+  }
+
   @Nullable
   public Dag getDag() {
     return dag;
@@ -135,6 +151,14 @@ public class PipelinePhase implements Iterable<StageInfo> {
     return new PipelinePhase(subsetStages, subsetDag);
   }
 
+  private void addRecordSchemas(Set<Schema> schemas, Collection<Schema> stageSchemas) {
+    for (Schema schema : stageSchemas) {
+      if (schema != null && schema.getType() == Schema.Type.RECORD) {
+        schemas.add(schema);
+      }
+    }
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -32,19 +32,22 @@ public class TrackedEmitter<T> implements Emitter<T> {
   private final StageMetrics stageMetrics;
   private final String emitMetricName;
   private final DataTracer dataTracer;
+  // whether tracing is enabled doesn't change during a run, so it is only checked once
+  private final boolean tracingEnabled;
 
   public TrackedEmitter(Emitter<T> delegate, StageMetrics stageMetrics, String emitMetricName, DataTracer dataTracer) {
     this.delegate = delegate;
     this.stageMetrics = stageMetrics;
     this.emitMetricName = emitMetricName;
     this.dataTracer = dataTracer;
+    this.tracingEnabled = dataTracer.isEnabled();
   }
 
   @Override
   public void emit(T value) {
     delegate.emit(value);
     stageMetrics.count(emitMetricName, 1);
-    if (dataTracer.isEnabled()) {
+    if (tracingEnabled) {
       dataTracer.info(emitMetricName, value);
     }
   }
@@ -53,8 +56,12 @@ public class TrackedEmitter<T> implements Emitter<T> {
   public void emitError(InvalidEntry<T> value) {
     delegate.emitError(value);
     stageMetrics.count(RECORDS_ERROR, 1);
-    if (dataTracer.isEnabled()) {
+    if (tracingEnabled) {
       dataTracer.info(RECORDS_ERROR, value);
     }
   }
+
+  Emitter<T> getDelegate() {
+    return delegate;
+  }
 }
@@ -39,6 +39,8 @@ public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destr
   private final String metricInName;
   private final String metricOutName;
   private final DataTracer dataTracer;
+  // the emitter is usually the same for every call, so the tracking emitter around it is reused
+  private TrackedEmitter<OUT> trackedEmitter;
 
   public TrackedTransform(Transformation<IN, OUT> transform, StageMetrics metrics, DataTracer dataTracer) {
     this(transform, metrics, RECORDS_IN, RECORDS_OUT, dataTracer);
@@ -58,8 +60,14 @@ public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destr
     if (metricInName != null) {
       metrics.count(metricInName, 1);
     }
-    transform.transform(input, metricOutName == null ? emitter :
-      new TrackedEmitter<>(emitter, metrics, metricOutName, dataTracer));
+    if (metricOutName == null) {
+      transform.transform(input, emitter);
+      return;
+    }
+    if (trackedEmitter == null || trackedEmitter.getDelegate() != emitter) {
+      trackedEmitter = new TrackedEmitter<>(emitter, metrics, metricOutName, dataTracer);
+    }
+    transform.transform(input, trackedEmitter);
   }
 
   @Override
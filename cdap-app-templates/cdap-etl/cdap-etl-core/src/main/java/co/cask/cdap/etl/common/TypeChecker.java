@@ -19,6 +19,7 @@ package co.cask.cdap.etl.common;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.etl.api.Aggregator;
 import co.cask.cdap.etl.api.Joiner;
+import co.cask.cdap.etl.api.batch.CombinableBatchAggregator;
 import com.google.common.reflect.TypeToken;
 
 /**
@@ -37,6 +38,10 @@ public class TypeChecker {
     return getParameterClass(aggregator, Aggregator.class, 1);
   }
 
+  public static Class<?> getAggregateValueClass(CombinableBatchAggregator aggregator) {
+    return getParameterClass(aggregator, CombinableBatchAggregator.class, 2);
+  }
+
   public static Class<?> getJoinKeyClass(Joiner joiner) {
     return getParameterClass(joiner, Joiner.class, 0);
   }
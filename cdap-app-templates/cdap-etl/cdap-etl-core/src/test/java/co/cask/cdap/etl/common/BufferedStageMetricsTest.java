@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BufferedStageMetrics}.
+ */
+public class BufferedStageMetricsTest {
+
+  @Test
+  public void testFlush() {
+    MockMetrics metrics = new MockMetrics();
+    BufferedStageMetrics stageMetrics = new BufferedStageMetrics(new DefaultStageMetrics(metrics, "stage"), 3);
+
+    stageMetrics.count("records.in", 1);
+    stageMetrics.count("records.out", 2);
+    Assert.assertEquals(0, metrics.getCount("stage.records.in"));
+    Assert.assertEquals(0, metrics.getCount("stage.records.out"));
+
+    // the third count call should emit all accumulated counts
+    stageMetrics.count("records.in", 1);
+    Assert.assertEquals(2, metrics.getCount("stage.records.in"));
+    Assert.assertEquals(2, metrics.getCount("stage.records.out"));
+
+    stageMetrics.count("records.out", 5);
+    Assert.assertEquals(2, metrics.getCount("stage.records.out"));
+    stageMetrics.flush();
+    Assert.assertEquals(2, metrics.getCount("stage.records.in"));
+    Assert.assertEquals(7, metrics.getCount("stage.records.out"));
+
+    // gauges are not buffered
+    stageMetrics.gauge("size", 10L);
+    Assert.assertEquals(10L, metrics.getGauge("stage.size"));
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.etl.api.CacheConfig;
+import co.cask.cdap.etl.api.Lookup;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for {@link CachingLookup}.
+ */
+public class CachingLookupTest {
+
+  @Test
+  public void testCaching() {
+    MockMetrics metrics = new MockMetrics();
+    MapLookup delegate = new MapLookup(ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3"));
+    Lookup<String> lookup = new CachingLookup<>("tbl", delegate, new CacheConfig(0, 10),
+                                                new DefaultStageMetrics(metrics, "stage"));
+
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertNull(lookup.lookup("missing"));
+    Assert.assertNull(lookup.lookup("missing"));
+    Assert.assertEquals(2, delegate.calls.size());
+    Assert.assertEquals(2, metrics.getCount("stage.lookup.tbl.cache.hits"));
+    Assert.assertEquals(2, metrics.getCount("stage.lookup.tbl.cache.misses"));
+
+    // Only the keys that are not cached should be looked up, in a single batch
+    Assert.assertEquals(ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3"),
+                        lookup.lookup("k1", "k2", "k3", "missing"));
+    Assert.assertEquals(3, delegate.calls.size());
+    Assert.assertEquals(ImmutableSet.of("k2", "k3"), delegate.calls.get(2));
+    Assert.assertEquals(4, metrics.getCount("stage.lookup.tbl.cache.hits"));
+    Assert.assertEquals(4, metrics.getCount("stage.lookup.tbl.cache.misses"));
+
+    Assert.assertEquals(ImmutableMap.of("k2", "v2", "k3", "v3"), lookup.lookup(ImmutableSet.of("k2", "k3")));
+    Assert.assertEquals(3, delegate.calls.size());
+  }
+
+  @Test
+  public void testMaxSize() {
+    MapLookup delegate = new MapLookup(ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3"));
+    Lookup<String> lookup = new CachingLookup<>("tbl", delegate, new CacheConfig(0, 2), NoopMetrics.INSTANCE);
+
+    lookup.lookup("k1");
+    lookup.lookup("k2");
+    lookup.lookup("k1");
+    lookup.lookup("k3");
+    Assert.assertEquals(3, delegate.calls.size());
+
+    // k2 was the least recently used key, hence should be evicted
+    lookup.lookup("k1");
+    Assert.assertEquals(3, delegate.calls.size());
+    lookup.lookup("k2");
+    Assert.assertEquals(4, delegate.calls.size());
+  }
+
+  /**
+   * A {@link Lookup} backed by a {@link Map} that records the keys of each call.
+   */
+  private static final class MapLookup implements Lookup<String> {
+
+    private final Map<String, String> data;
+    private final List<Set<String>> calls = new ArrayList<>();
+
+    private MapLookup(Map<String, String> data) {
+      this.data = data;
+    }
+
+    @Override
+    public String lookup(String key) {
+      calls.add(ImmutableSet.of(key));
+      return data.get(key);
+    }
+
+    @Override
+    public Map<String, String> lookup(String... keys) {
+      return lookup(ImmutableSet.copyOf(keys));
+    }
+
+    @Override
+    public Map<String, String> lookup(Set<String> keys) {
+      calls.add(ImmutableSet.copyOf(keys));
+      Map<String, String> result = new HashMap<>();
+      for (String key : keys) {
+        if (data.containsKey(key)) {
+          result.put(key, data.get(key));
+        }
+      }
+      return result;
+    }
+  }
+}
@@ -51,4 +51,16 @@ public interface SparkPairCollection<K, V> {
 
   <T> SparkPairCollection<K, Tuple2<Optional<V>, Optional<T>>> fullOuterJoin(SparkPairCollection<K, T> other,
                                                                              int numPartitions);
+
+  /**
+   * Inner joins with a collection that is small enough to be held in memory by every task. Implementations may
+   * send the other collection to every task instead of shuffling both collections.
+   */
+  <T> SparkPairCollection<K, Tuple2<V, T>> broadcastJoin(SparkPairCollection<K, T> other);
+
+  /**
+   * Left outer joins with a collection that is small enough to be held in memory by every task. Implementations
+   * may send the other collection to every task instead of shuffling both collections.
+   */
+  <T> SparkPairCollection<K, Tuple2<V, Optional<T>>> broadcastLeftOuterJoin(SparkPairCollection<K, T> other);
 }
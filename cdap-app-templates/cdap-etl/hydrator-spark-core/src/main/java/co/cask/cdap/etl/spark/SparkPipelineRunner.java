@@ -20,6 +20,7 @@ import co.cask.cdap.api.macro.MacroEvaluator;
 import co.cask.cdap.api.spark.JavaSparkExecutionContext;
 import co.cask.cdap.etl.api.ErrorRecord;
 import co.cask.cdap.etl.api.ErrorTransform;
+import co.cask.cdap.etl.api.JoinConfig;
 import co.cask.cdap.etl.api.JoinElement;
 import co.cask.cdap.etl.api.Transform;
 import co.cask.cdap.etl.api.batch.BatchAggregator;
@@ -43,6 +44,7 @@ import co.cask.cdap.etl.spark.function.OutputFilter;
 import co.cask.cdap.etl.spark.function.PluginFunctionContext;
 import scala.Tuple2;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -217,19 +219,43 @@ public abstract class SparkPipelineRunner {
         remainingInputs.addAll(inputDataCollections.keySet());
 
         Integer numPartitions = stagePartitions.get(stageName);
+        JoinConfig joinConfig = joiner.getJoinConfig();
+        Set<String> broadcastInputs = new HashSet<>();
+        for (String broadcastInput : joinConfig.getBroadcastInputs()) {
+          broadcastInputs.add(broadcastInput);
+        }
+        if (!inputDataCollections.keySet().containsAll(broadcastInputs)) {
+          throw new IllegalArgumentException(String.format(
+            "Invalid broadcast inputs %s for join stage %s. They must be inputs of the joiner.",
+            broadcastInputs, stageName));
+        }
+
+        // join required inputs that are not broadcast first, so that broadcast inputs are always the right side
+        List<String> requiredInputs = new ArrayList<>();
+        for (String inputStageName : joinConfig.getRequiredInputs()) {
+          if (broadcastInputs.contains(inputStageName)) {
+            requiredInputs.add(inputStageName);
+          } else {
+            requiredInputs.add(0, inputStageName);
+          }
+        }
 
         SparkPairCollection<Object, List<JoinElement<Object>>> joinedInputs = null;
         // inner join on required inputs
-        for (final String inputStageName : joiner.getJoinConfig().getRequiredInputs()) {
+        for (final String inputStageName : requiredInputs) {
           SparkPairCollection<Object, Object> preJoinCollection = preJoinStreams.get(inputStageName);
 
           if (joinedInputs == null) {
             joinedInputs = preJoinCollection.mapValues(new InitialJoinFunction<>(inputStageName));
           } else {
             JoinFlattenFunction<Object> joinFlattenFunction = new JoinFlattenFunction<>(inputStageName);
-            joinedInputs = numPartitions == null ?
-              joinedInputs.join(preJoinCollection).mapValues(joinFlattenFunction) :
-              joinedInputs.join(preJoinCollection, numPartitions).mapValues(joinFlattenFunction);
+            if (broadcastInputs.contains(inputStageName)) {
+              joinedInputs = joinedInputs.broadcastJoin(preJoinCollection).mapValues(joinFlattenFunction);
+            } else {
+              joinedInputs = numPartitions == null ?
+                joinedInputs.join(preJoinCollection).mapValues(joinFlattenFunction) :
+                joinedInputs.join(preJoinCollection, numPartitions).mapValues(joinFlattenFunction);
+            }
           }
           remainingInputs.remove(inputStageName);
         }
@@ -251,9 +277,13 @@ public abstract class SparkPipelineRunner {
             } else {
               LeftJoinFlattenFunction<Object> flattenFunction = new LeftJoinFlattenFunction<>(inputStageName);
 
-              joinedInputs = numPartitions == null ?
-                joinedInputs.leftOuterJoin(preJoinStream).mapValues(flattenFunction) :
-                joinedInputs.leftOuterJoin(preJoinStream, numPartitions).mapValues(flattenFunction);
+              if (broadcastInputs.contains(inputStageName)) {
+                joinedInputs = joinedInputs.broadcastLeftOuterJoin(preJoinStream).mapValues(flattenFunction);
+              } else {
+                joinedInputs = numPartitions == null ?
+                  joinedInputs.leftOuterJoin(preJoinStream).mapValues(flattenFunction) :
+                  joinedInputs.leftOuterJoin(preJoinStream, numPartitions).mapValues(flattenFunction);
+              }
             }
           }
         }
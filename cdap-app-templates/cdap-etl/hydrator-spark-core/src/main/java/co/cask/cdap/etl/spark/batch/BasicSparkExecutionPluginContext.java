@@ -24,9 +24,9 @@ import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.api.plugin.PluginContext;
 import co.cask.cdap.api.spark.JavaSparkExecutionContext;
 import co.cask.cdap.api.stream.StreamEventDecoder;
-import co.cask.cdap.etl.api.Lookup;
 import co.cask.cdap.etl.api.batch.SparkExecutionPluginContext;
 import co.cask.cdap.etl.common.AbstractTransformContext;
+import co.cask.cdap.etl.common.DatasetContextLookupProvider;
 import co.cask.cdap.etl.planner.StageInfo;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
@@ -47,7 +47,7 @@ public class BasicSparkExecutionPluginContext extends AbstractTransformContext i
   public BasicSparkExecutionPluginContext(JavaSparkExecutionContext sec,
                                           JavaSparkContext jsc, DatasetContext datasetContext,
                                           StageInfo stageInfo) {
-    super(sec.getPluginContext(), sec.getMetrics(), null, stageInfo);
+    super(sec.getPluginContext(), sec.getMetrics(), new DatasetContextLookupProvider(datasetContext), stageInfo);
     this.sec = sec;
     this.jsc = jsc;
     this.datasetContext = datasetContext;
@@ -157,9 +157,4 @@ public class BasicSparkExecutionPluginContext extends AbstractTransformContext i
   public void discardDataset(Dataset dataset) {
     datasetContext.discardDataset(dataset);
   }
-
-  @Override
-  public <T> Lookup<T> provide(String table, Map<String, String> arguments) {
-    throw new UnsupportedOperationException("Lookup not supported in Spark");
-  }
 }
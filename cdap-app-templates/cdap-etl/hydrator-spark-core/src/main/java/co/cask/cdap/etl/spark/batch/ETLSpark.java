@@ -102,13 +102,16 @@ public class ETLSpark extends AbstractSpark {
     cleanupFiles = new ArrayList<>();
     CompositeFinisher.Builder finishers = CompositeFinisher.builder();
 
+    Map<String, String> properties = context.getSpecification().getProperties();
+    BatchPhaseSpec phaseSpec = GSON.fromJson(properties.get(Constants.PIPELINEID), BatchPhaseSpec.class);
+
     SparkConf sparkConf = new SparkConf();
     sparkConf.set("spark.driver.extraJavaOptions", "-XX:MaxPermSize=256m");
     sparkConf.set("spark.executor.extraJavaOptions", "-XX:MaxPermSize=256m");
+    // Serializes records with Kryo unless the pipeline sets spark.serializer explicitly
+    StructuredRecordKryoRegistrator.configure(sparkConf, phaseSpec.getPhase().getRecordSchemas());
     context.setSparkConf(sparkConf);
 
-    Map<String, String> properties = context.getSpecification().getProperties();
-    BatchPhaseSpec phaseSpec = GSON.fromJson(properties.get(Constants.PIPELINEID), BatchPhaseSpec.class);
     DatasetContextLookupProvider lookProvider = new DatasetContextLookupProvider(context);
     MacroEvaluator evaluator = new DefaultMacroEvaluator(context.getWorkflowToken(), context.getRuntimeArguments(),
                                                          context.getLogicalStartTime(), context,
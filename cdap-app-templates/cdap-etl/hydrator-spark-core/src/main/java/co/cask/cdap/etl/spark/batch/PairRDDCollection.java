@@ -20,13 +20,21 @@ import co.cask.cdap.api.data.DatasetContext;
 import co.cask.cdap.api.spark.JavaSparkExecutionContext;
 import co.cask.cdap.etl.spark.SparkCollection;
 import co.cask.cdap.etl.spark.SparkPairCollection;
+import co.cask.cdap.etl.spark.function.BroadcastJoinFunction;
+import co.cask.cdap.etl.spark.function.BroadcastLeftJoinFunction;
 import com.google.common.base.Optional;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.function.FlatMapFunction;
 import org.apache.spark.api.java.function.Function;
+import org.apache.spark.broadcast.Broadcast;
 import scala.Tuple2;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Implementation of {@link SparkCollection} that is backed by a JavaPairRDD.
  *
@@ -103,6 +111,36 @@ public class PairRDDCollection<K, V> implements SparkPairCollection<K, V> {
     return wrap(pairRDD.fullOuterJoin((JavaPairRDD<K, T>) other.getUnderlying(), numPartitions));
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, T>> broadcastJoin(SparkPairCollection<K, T> other) {
+    Broadcast<Map<K, List<T>>> broadcast = broadcast((JavaPairRDD<K, T>) other.getUnderlying());
+    return wrap(pairRDD.flatMapToPair(new BroadcastJoinFunction<K, V, T>(broadcast)));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, Optional<T>>> broadcastLeftOuterJoin(SparkPairCollection<K, T> other) {
+    Broadcast<Map<K, List<T>>> broadcast = broadcast((JavaPairRDD<K, T>) other.getUnderlying());
+    return wrap(pairRDD.flatMapToPair(new BroadcastLeftJoinFunction<K, V, T>(broadcast)));
+  }
+
+  /**
+   * Collects the given pair RDD into a map from key to all values of that key and broadcasts it to every executor.
+   */
+  private <T> Broadcast<Map<K, List<T>>> broadcast(JavaPairRDD<K, T> rdd) {
+    Map<K, List<T>> values = new HashMap<>();
+    for (Tuple2<K, T> entry : rdd.collect()) {
+      List<T> keyValues = values.get(entry._1());
+      if (keyValues == null) {
+        keyValues = new ArrayList<>(1);
+        values.put(entry._1(), keyValues);
+      }
+      keyValues.add(entry._2());
+    }
+    return jsc.broadcast(values);
+  }
+
   private <X, Y> SparkPairCollection<X, Y> wrap(JavaPairRDD<X, Y> javaPairRDD) {
     return new PairRDDCollection<>(sec, jsc, datasetContext, sinkFactory, javaPairRDD);
   }
@@ -18,6 +18,7 @@ package co.cask.cdap.etl.spark.batch;
 
 import co.cask.cdap.api.data.DatasetContext;
 import co.cask.cdap.api.spark.JavaSparkExecutionContext;
+import co.cask.cdap.etl.api.batch.CombinableBatchAggregator;
 import co.cask.cdap.etl.api.batch.SparkCompute;
 import co.cask.cdap.etl.api.batch.SparkExecutionPluginContext;
 import co.cask.cdap.etl.api.batch.SparkSink;
@@ -26,7 +27,10 @@ import co.cask.cdap.etl.planner.StageInfo;
 import co.cask.cdap.etl.spark.SparkCollection;
 import co.cask.cdap.etl.spark.SparkPairCollection;
 import co.cask.cdap.etl.spark.function.AggregatorAggregateFunction;
+import co.cask.cdap.etl.spark.function.AggregatorCombineFunction;
+import co.cask.cdap.etl.spark.function.AggregatorFinalizeFunction;
 import co.cask.cdap.etl.spark.function.AggregatorGroupByFunction;
+import co.cask.cdap.etl.spark.function.AggregatorMergeFunction;
 import co.cask.cdap.etl.spark.function.CountingFunction;
 import co.cask.cdap.etl.spark.function.PluginFunctionContext;
 import co.cask.cdap.etl.spark.function.TransformFunction;
@@ -34,6 +38,7 @@ import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.api.java.function.Function2;
 import org.apache.spark.api.java.function.PairFlatMapFunction;
 import scala.Tuple2;
 
@@ -97,6 +102,18 @@ public class RDDCollection<T> implements SparkCollection<T> {
 
     JavaPairRDD<Object, T> keyedCollection = rdd.flatMapToPair(groupByFunction);
 
+    if (CombinableBatchAggregator.class.isAssignableFrom(
+      sec.getPluginContext().loadPluginClass(stageInfo.getName()))) {
+      // combine values into partial aggregates before the shuffle instead of shuffling every value
+      AggregatorCombineFunction<T, Object> combineFunction = new AggregatorCombineFunction<>(pluginFunctionContext);
+      Function2<Object, Object, Object> mergeFunction = new AggregatorMergeFunction<>(pluginFunctionContext);
+      JavaPairRDD<Object, Object> combinedCollection = partitions == null ?
+        keyedCollection.combineByKey(combineFunction, combineFunction, mergeFunction) :
+        keyedCollection.combineByKey(combineFunction, combineFunction, mergeFunction, partitions);
+      return wrap(combinedCollection.flatMap(new AggregatorFinalizeFunction<Object, Object, Object>(
+        pluginFunctionContext)));
+    }
+
     JavaPairRDD<Object, Iterable<T>> groupedCollection = partitions == null ?
       keyedCollection.groupByKey() : keyedCollection.groupByKey(partitions);
 
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark.batch;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.format.StructuredRecordBinaryCodec;
+import co.cask.cdap.internal.io.SchemaTypeAdapter;
+import com.esotericsoftware.kryo.Kryo;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.apache.spark.SparkConf;
+import org.apache.spark.SparkEnv;
+import org.apache.spark.serializer.KryoRegistrator;
+import org.apache.spark.serializer.KryoSerializer;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link KryoRegistrator} that registers {@link StructuredRecordKryoSerializer} for {@link StructuredRecord}.
+ * Record schemas that are registered in the {@link SparkConf} through {@link #configure(SparkConf, Collection)}
+ * are serialized as a schema hash only, while other schemas are serialized inline with every record.
+ * The codec is created from the {@link SparkConf} of the running application each time classes are registered
+ * with a new {@link Kryo} instance, so nothing is shared between applications running in the same JVM.
+ */
+public class StructuredRecordKryoRegistrator implements KryoRegistrator {
+
+  // Only properties with the "spark." prefix are guaranteed to be propagated to executors
+  private static final String SCHEMAS_KEY = "spark.cdap.etl.structured.record.schemas";
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
+    .create();
+  private static final Type SCHEMAS_TYPE = new TypeToken<Set<Schema>>() { }.getType();
+
+  /**
+   * Configures the given {@link SparkConf} to use Kryo serialization with this registrator and registers the
+   * given record schemas in the configuration.
+   * <p>
+   * This changes the default serializer of the pipeline from the Java serializer to Kryo. Pipelines that
+   * need a different serializer can still set {@code spark.serializer} explicitly, in which case it is left as is
+   * and records are serialized by that serializer instead. Likewise, an explicitly set
+   * {@code spark.kryo.registrator} is left as is.
+   * </p>
+   */
+  public static void configure(SparkConf sparkConf, Collection<Schema> schemas) {
+    sparkConf.setIfMissing("spark.serializer", KryoSerializer.class.getName());
+    sparkConf.setIfMissing("spark.kryo.registrator", StructuredRecordKryoRegistrator.class.getName());
+    sparkConf.set(SCHEMAS_KEY, GSON.toJson(schemas, SCHEMAS_TYPE));
+  }
+
+  @Override
+  public void registerClasses(Kryo kryo) {
+    SparkEnv env = SparkEnv.get();
+    String schemas = env == null ? null : getSchemas(env.conf());
+    kryo.register(StructuredRecord.class, new StructuredRecordKryoSerializer(createCodec(schemas)));
+  }
+
+  /**
+   * Creates a {@link StructuredRecordBinaryCodec} that knows about the given schemas.
+   *
+   * @param schemas the json of the registered schemas, or {@code null} to serialize all schemas inline
+   */
+  static StructuredRecordBinaryCodec createCodec(@Nullable String schemas) {
+    if (schemas == null) {
+      return new StructuredRecordBinaryCodec();
+    }
+    Set<Schema> knownSchemas = GSON.fromJson(schemas, SCHEMAS_TYPE);
+    return new StructuredRecordBinaryCodec(knownSchemas);
+  }
+
+  /**
+   * Returns the json of the record schemas registered in the given {@link SparkConf}, or {@code null} if there are
+   * none.
+   */
+  @Nullable
+  static String getSchemas(SparkConf sparkConf) {
+    return sparkConf.get(SCHEMAS_KEY, null);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark.batch;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.format.StructuredRecordBinaryCodec;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Kryo {@link Serializer} for {@link StructuredRecord} that uses {@link StructuredRecordBinaryCodec}.
+ */
+final class StructuredRecordKryoSerializer extends Serializer<StructuredRecord> {
+
+  private final StructuredRecordBinaryCodec codec;
+
+  StructuredRecordKryoSerializer(StructuredRecordBinaryCodec codec) {
+    // StructuredRecord is immutable
+    super(false, true);
+    this.codec = codec;
+  }
+
+  @Override
+  public void write(Kryo kryo, Output output, StructuredRecord record) {
+    try {
+      codec.encode(record, new DataOutputStream(output));
+    } catch (IOException e) {
+      throw new KryoException(e);
+    }
+  }
+
+  @Override
+  public StructuredRecord read(Kryo kryo, Input input, Class<StructuredRecord> type) {
+    try {
+      return codec.decode(new DataInputStream(input));
+    } catch (IOException e) {
+      throw new KryoException(e);
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark.function;
+
+import co.cask.cdap.etl.api.batch.CombinableBatchAggregator;
+import org.apache.spark.api.java.function.Function2;
+
+/**
+ * Function that uses a CombinableBatchAggregator to merge partial aggregates. It is used as the merge combiners
+ * function of a combineByKey.
+ * Non-serializable fields are lazily created since this is used in a Spark closure.
+ *
+ * @param <AGG_VAL> type of partial aggregate
+ */
+public class AggregatorMergeFunction<AGG_VAL> implements Function2<AGG_VAL, AGG_VAL, AGG_VAL> {
+  private final PluginFunctionContext pluginFunctionContext;
+  private transient CombinableBatchAggregator<?, ?, AGG_VAL, ?> aggregator;
+
+  public AggregatorMergeFunction(PluginFunctionContext pluginFunctionContext) {
+    this.pluginFunctionContext = pluginFunctionContext;
+  }
+
+  @Override
+  public AGG_VAL call(AGG_VAL aggregate1, AGG_VAL aggregate2) throws Exception {
+    if (aggregator == null) {
+      CombinableBatchAggregator<?, ?, AGG_VAL, ?> aggregator = pluginFunctionContext.createPlugin();
+      aggregator.initialize(pluginFunctionContext.createBatchRuntimeContext());
+      this.aggregator = aggregator;
+    }
+    return aggregator.mergeAggregates(aggregate1, aggregate2);
+  }
+}
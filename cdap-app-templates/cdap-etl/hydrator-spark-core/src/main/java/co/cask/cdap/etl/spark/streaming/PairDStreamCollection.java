@@ -94,6 +94,17 @@ public class PairDStreamCollection<K, V> implements SparkPairCollection<K, V> {
     return wrap(pairStream.fullOuterJoin((JavaPairDStream<K, T>) other.getUnderlying(), numPartitions));
   }
 
+  // a stream cannot be collected ahead of time to be broadcast, hence broadcast joins fall back to shuffle joins
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, T>> broadcastJoin(SparkPairCollection<K, T> other) {
+    return join(other);
+  }
+
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, Optional<T>>> broadcastLeftOuterJoin(SparkPairCollection<K, T> other) {
+    return leftOuterJoin(other);
+  }
+
   private <T, U> PairDStreamCollection<T, U> wrap(JavaPairDStream<T, U> pairStream) {
     return new PairDStreamCollection<>(sec, pairStream);
   }
@@ -23,9 +23,9 @@ import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.api.plugin.PluginContext;
 import co.cask.cdap.api.spark.JavaSparkExecutionContext;
 import co.cask.cdap.api.stream.StreamEventDecoder;
-import co.cask.cdap.etl.api.Lookup;
 import co.cask.cdap.etl.api.batch.SparkExecutionPluginContext;
 import co.cask.cdap.etl.common.AbstractTransformContext;
+import co.cask.cdap.etl.common.TxLookupProvider;
 import co.cask.cdap.etl.planner.StageInfo;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
@@ -45,7 +45,7 @@ public class SparkStreamingExecutionContext extends AbstractTransformContext imp
 
   public SparkStreamingExecutionContext(JavaSparkExecutionContext sec, JavaSparkContext jsc,
                                         long batchTime, StageInfo stageInfo) {
-    super(sec.getPluginContext(), sec.getMetrics(), null, stageInfo);
+    super(sec.getPluginContext(), sec.getMetrics(), new TxLookupProvider(sec), stageInfo);
     this.sec = sec;
     this.jsc = jsc;
     this.batchTime = batchTime;
@@ -155,9 +155,4 @@ public class SparkStreamingExecutionContext extends AbstractTransformContext imp
   public void discardDataset(Dataset dataset) {
     throw new UnsupportedOperationException("Not supported in Spark Streaming.");
   }
-
-  @Override
-  public <T> Lookup<T> provide(String table, Map<String, String> arguments) {
-    throw new UnsupportedOperationException("Not supported in Spark Streaming.");
-  }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.spark.batch;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.JavaSerializer;
+import com.google.common.collect.ImmutableList;
+import org.apache.spark.SparkConf;
+import org.apache.spark.serializer.KryoSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Tests for {@link StructuredRecordKryoSerializer} and {@link StructuredRecordKryoRegistrator}.
+ */
+public class StructuredRecordKryoSerializerTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "user",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema OTHER_SCHEMA = Schema.recordOf(
+    "item", Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)));
+
+  @Test
+  public void testInlineSchema() {
+    List<StructuredRecord> records = Arrays.asList(
+      StructuredRecord.builder(SCHEMA).set("id", 1L).set("name", "alice").build(),
+      StructuredRecord.builder(OTHER_SCHEMA).set("price", 1.5d).build());
+    Assert.assertEquals(records, roundTrip(null, records));
+  }
+
+  @Test
+  public void testRegisteredSchema() {
+    SparkConf sparkConf = new SparkConf(false);
+    StructuredRecordKryoRegistrator.configure(sparkConf, ImmutableList.of(SCHEMA));
+    String schemas = StructuredRecordKryoRegistrator.getSchemas(sparkConf);
+    Assert.assertNotNull(schemas);
+
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("id", 2L).build();
+    List<StructuredRecord> records = Arrays.asList(
+      record, StructuredRecord.builder(OTHER_SCHEMA).set("price", 2.5d).build());
+    Assert.assertEquals(records, roundTrip(schemas, records));
+
+    // A registered schema is not written with the record
+    Assert.assertTrue(serialize(schemas, ImmutableList.of(record)).length
+                        < serialize(null, ImmutableList.of(record)).length);
+  }
+
+  @Test
+  public void testConfigure() {
+    SparkConf sparkConf = new SparkConf(false);
+    StructuredRecordKryoRegistrator.configure(sparkConf, ImmutableList.of(SCHEMA));
+    Assert.assertEquals(KryoSerializer.class.getName(), sparkConf.get("spark.serializer"));
+    Assert.assertEquals(StructuredRecordKryoRegistrator.class.getName(), sparkConf.get("spark.kryo.registrator"));
+
+    // An explicitly set serializer is kept
+    sparkConf = new SparkConf(false);
+    sparkConf.set("spark.serializer", "org.apache.spark.serializer.JavaSerializer");
+    StructuredRecordKryoRegistrator.configure(sparkConf, ImmutableList.of(SCHEMA));
+    Assert.assertEquals("org.apache.spark.serializer.JavaSerializer", sparkConf.get("spark.serializer"));
+  }
+
+  @Test
+  public void testFieldSerializer() {
+    // Without this registrator, Kryo serializes records reflectively with its FieldSerializer.
+    // Schema can't be serialized reflectively, hence it goes through Java serialization.
+    Kryo kryo = new Kryo();
+    kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
+    kryo.register(Schema.class, new JavaSerializer());
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("id", 3L).set("name", "carol").build();
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (Output output = new Output(bos)) {
+      kryo.writeObject(output, record);
+    }
+    try (Input input = new Input(bos.toByteArray())) {
+      StructuredRecord copy = kryo.readObject(input, StructuredRecord.class);
+      Assert.assertEquals(record, copy);
+      Assert.assertEquals("carol", copy.get(1));
+    }
+  }
+
+  private List<StructuredRecord> roundTrip(@Nullable String schemas, List<StructuredRecord> records) {
+    Kryo kryo = createKryo(schemas);
+    StructuredRecord[] copies = new StructuredRecord[records.size()];
+    try (Input input = new Input(serialize(schemas, records))) {
+      for (int i = 0; i < copies.length; i++) {
+        copies[i] = kryo.readObject(input, StructuredRecord.class);
+      }
+    }
+    return Arrays.asList(copies);
+  }
+
+  private byte[] serialize(@Nullable String schemas, List<StructuredRecord> records) {
+    Kryo kryo = createKryo(schemas);
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (Output output = new Output(bos)) {
+      for (StructuredRecord record : records) {
+        kryo.writeObject(output, record);
+      }
+    }
+    return bos.toByteArray();
+  }
+
+  private Kryo createKryo(@Nullable String schemas) {
+    Kryo kryo = new Kryo();
+    kryo.register(StructuredRecord.class,
+                  new StructuredRecordKryoSerializer(StructuredRecordKryoRegistrator.createCodec(schemas)));
+    return kryo;
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.mock.batch.aggregator;
+
+import co.cask.cdap.api.annotation.Macro;
+import co.cask.cdap.api.annotation.Name;
+import co.cask.cdap.api.annotation.Plugin;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.plugin.PluginClass;
+import co.cask.cdap.api.plugin.PluginConfig;
+import co.cask.cdap.api.plugin.PluginPropertyField;
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.PipelineConfigurer;
+import co.cask.cdap.etl.api.StageConfigurer;
+import co.cask.cdap.etl.api.batch.BatchAggregator;
+import co.cask.cdap.etl.api.batch.BatchAggregatorContext;
+import co.cask.cdap.etl.api.batch.BatchRuntimeContext;
+import co.cask.cdap.etl.api.batch.CombinableBatchAggregator;
+import co.cask.cdap.etl.proto.v2.ETLPlugin;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Same as {@link FieldCountAggregator}, except that counts are combined before the shuffle. Used to test
+ * the {@link CombinableBatchAggregator} support.
+ */
+@Plugin(type = BatchAggregator.PLUGIN_TYPE)
+@Name("CombinableFieldCount")
+public class CombinableFieldCountAggregator
+  extends CombinableBatchAggregator<Object, StructuredRecord, Long, StructuredRecord> {
+  public static final PluginClass PLUGIN_CLASS = getPluginClass();
+  private final Config config;
+  private Schema schema;
+
+  public CombinableFieldCountAggregator(Config config) {
+    this.config = config;
+  }
+
+  @Override
+  public void configurePipeline(PipelineConfigurer pipelineConfigurer) throws IllegalArgumentException {
+    StageConfigurer stageConfigurer = pipelineConfigurer.getStageConfigurer();
+    if (!config.containsMacro("fieldType") && !config.containsMacro("fieldName")) {
+      stageConfigurer.setOutputSchema(config.getSchema());
+    }
+  }
+
+  @Override
+  public void prepareRun(BatchAggregatorContext context) throws Exception {
+    if ("long".equalsIgnoreCase(config.fieldType)) {
+      context.setGroupKeyClass(Long.class);
+    } else {
+      context.setGroupKeyClass(String.class);
+    }
+  }
+
+  @Override
+  public void groupBy(StructuredRecord input, Emitter<Object> emitter) throws Exception {
+    if ("long".equalsIgnoreCase(config.fieldType)) {
+      emitter.emit(input.get(config.fieldName));
+      emitter.emit(0L);
+    } else {
+      emitter.emit(input.get(config.fieldName).toString());
+      emitter.emit("all");
+    }
+  }
+
+  @Override
+  public Long initializeAggregate(StructuredRecord groupValue) throws Exception {
+    return 1L;
+  }
+
+  @Override
+  public Long mergeValue(Long aggregate, StructuredRecord groupValue) throws Exception {
+    return aggregate + 1;
+  }
+
+  @Override
+  public Long mergeAggregates(Long aggregate1, Long aggregate2) throws Exception {
+    return aggregate1 + aggregate2;
+  }
+
+  @Override
+  public void finalizeAggregate(Object groupKey, Long aggregate, Emitter<StructuredRecord> emitter) throws Exception {
+    emitter.emit(StructuredRecord.builder(schema)
+                   .set(config.fieldName, groupKey)
+                   .set("ct", aggregate)
+                   .build());
+  }
+
+  @Override
+  public void initialize(BatchRuntimeContext context) throws Exception {
+    schema = config.getSchema();
+    // should never happen, just done to test App correctness in unit tests
+    if (context.getOutputSchema() != null && !schema.equals(context.getOutputSchema())) {
+      throw new IllegalStateException("Output schema does not match what was set at configure time.");
+    }
+  }
+
+  /**
+   * Conf for the aggregator.
+   */
+  public static class Config extends PluginConfig {
+    @Macro
+    private final String fieldName;
+
+    @Macro
+    private final String fieldType;
+
+    public Config() {
+      this.fieldName = "field";
+      this.fieldType = "string";
+    }
+
+    private Schema getSchema() {
+      Schema.Field fieldSchema;
+      if ("string".equalsIgnoreCase(fieldType)) {
+        fieldSchema = Schema.Field.of(fieldName, Schema.of(Schema.Type.STRING));
+      } else if ("long".equalsIgnoreCase(fieldType)) {
+        fieldSchema = Schema.Field.of(fieldName, Schema.of(Schema.Type.LONG));
+      } else {
+        throw new IllegalArgumentException("Unsupported field type " + fieldType);
+      }
+
+      return Schema.recordOf(
+        fieldName + ".count",
+        fieldSchema,
+        Schema.Field.of("ct", Schema.of(Schema.Type.LONG)));
+    }
+  }
+
+  public static ETLPlugin getPlugin(String fieldName, String fieldType) {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("fieldName", fieldName);
+    properties.put("fieldType", fieldType);
+    return new ETLPlugin("CombinableFieldCount", BatchAggregator.PLUGIN_TYPE, properties, null);
+  }
+
+  private static PluginClass getPluginClass() {
+    Map<String, PluginPropertyField> properties = new HashMap<>();
+    properties.put("fieldName", new PluginPropertyField("fieldName", "", "string", true, true));
+    properties.put("fieldType", new PluginPropertyField("fieldType", "", "string", true, true));
+    return new PluginClass(BatchAggregator.PLUGIN_TYPE, "CombinableFieldCount", "",
+                           CombinableFieldCountAggregator.class.getName(), "config", properties);
+  }
+}
@@ -16,8 +16,10 @@
 
 package co.cask.cdap.etl.mock.common;
 
+import co.cask.cdap.etl.api.ConfigurableLookupProvider;
 import co.cask.cdap.etl.api.Lookup;
 import co.cask.cdap.etl.api.LookupProvider;
+import co.cask.cdap.etl.api.LookupTableConfig;
 
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -25,7 +27,7 @@ import javax.annotation.Nullable;
 /**
  * Mock implementation of {@link LookupProvider} used for testing.
  */
-public class MockLookupProvider implements LookupProvider {
+public class MockLookupProvider implements ConfigurableLookupProvider {
 
   private final Lookup lookup;
 
@@ -38,4 +40,10 @@ public class MockLookupProvider implements LookupProvider {
     //noinspection unchecked
     return lookup;
   }
+
+  @Override
+  public <T> Lookup<T> provide(String table, LookupTableConfig config) {
+    //noinspection unchecked
+    return lookup;
+  }
 }
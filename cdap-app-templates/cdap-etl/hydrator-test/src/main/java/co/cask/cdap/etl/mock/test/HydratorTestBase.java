@@ -31,6 +31,7 @@ import co.cask.cdap.etl.mock.batch.MockExternalSource;
 import co.cask.cdap.etl.mock.batch.MockRuntimeDatasetSink;
 import co.cask.cdap.etl.mock.batch.MockRuntimeDatasetSource;
 import co.cask.cdap.etl.mock.batch.NodeStatesAction;
+import co.cask.cdap.etl.mock.batch.aggregator.CombinableFieldCountAggregator;
 import co.cask.cdap.etl.mock.batch.aggregator.FieldCountAggregator;
 import co.cask.cdap.etl.mock.batch.aggregator.GroupFilterAggregator;
 import co.cask.cdap.etl.mock.batch.aggregator.IdentityAggregator;
@@ -73,7 +74,8 @@ public class HydratorTestBase extends TestBase {
     FlattenErrorTransform.PLUGIN_CLASS, FilterErrorTransform.PLUGIN_CLASS
   );
   private static final Set<PluginClass> BATCH_MOCK_PLUGINS = ImmutableSet.of(
-    FieldCountAggregator.PLUGIN_CLASS, IdentityAggregator.PLUGIN_CLASS, GroupFilterAggregator.PLUGIN_CLASS,
+    FieldCountAggregator.PLUGIN_CLASS, CombinableFieldCountAggregator.PLUGIN_CLASS,
+    IdentityAggregator.PLUGIN_CLASS, GroupFilterAggregator.PLUGIN_CLASS,
     MockJoiner.PLUGIN_CLASS, DupeFlagger.PLUGIN_CLASS,
     co.cask.cdap.etl.mock.batch.MockSink.PLUGIN_CLASS, co.cask.cdap.etl.mock.batch.MockSource.PLUGIN_CLASS,
     MockRuntimeDatasetSink.PLUGIN_CLASS, MockRuntimeDatasetSource.PLUGIN_CLASS,
@@ -128,7 +130,8 @@ public class HydratorTestBase extends TestBase {
                       MockExternalSource.class, MockExternalSink.class,
                       DoubleTransform.class, AllErrorTransform.class, IdentityTransform.class,
                       IntValueFilterTransform.class, StringValueFilterTransform.class,
-                      FieldCountAggregator.class, IdentityAggregator.class, FieldsPrefixTransform.class,
+                      FieldCountAggregator.class, CombinableFieldCountAggregator.class,
+                      IdentityAggregator.class, FieldsPrefixTransform.class,
                       StringValueFilterCompute.class,
                       NodeStatesAction.class, LookupTransform.class);
   }
@@ -18,8 +18,10 @@ package co.cask.cdap.etl.mock.transform;
 
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.plugin.PluginProperties;
+import co.cask.cdap.etl.api.ConfigurableLookupProvider;
 import co.cask.cdap.etl.api.Lookup;
 import co.cask.cdap.etl.api.LookupProvider;
+import co.cask.cdap.etl.api.LookupTableConfig;
 import co.cask.cdap.etl.api.StageMetrics;
 import co.cask.cdap.etl.api.TransformContext;
 import co.cask.cdap.etl.mock.common.MockLookupProvider;
@@ -33,7 +35,7 @@ import javax.annotation.Nullable;
 /**
  * Mock context for unit tests
  */
-public class MockTransformContext implements TransformContext {
+public class MockTransformContext implements TransformContext, ConfigurableLookupProvider {
   private final PluginProperties pluginProperties;
   private final MockStageMetrics metrics;
   private final LookupProvider lookup;
@@ -113,4 +115,12 @@ public class MockTransformContext implements TransformContext {
   public <T> Lookup<T> provide(String table, Map<String, String> arguments) {
     return lookup.provide(table, arguments);
   }
+
+  @Override
+  public <T> Lookup<T> provide(String table, LookupTableConfig config) {
+    if (lookup instanceof ConfigurableLookupProvider) {
+      return ((ConfigurableLookupProvider) lookup).provide(table, config);
+    }
+    return lookup.provide(table, config.getDatasetProperties());
+  }
 }
@@ -159,11 +159,13 @@ public final class Constants {
     public static final String MAPREDUCE_INCLUDE_CUSTOM_CLASSES = "mapreduce.include.custom.format.classes";
     public static final String PROGRAM_RUNID_CORRECTOR_INTERVAL_SECONDS = "app.program.runid.corrector.interval";
     public static final String SYSTEM_ARTIFACTS_DIR = "app.artifact.dir";
+    public static final String ARTIFACT_UNPACK_CACHE_SIZE_MB = "app.artifact.unpack.cache.size.mb";
     public static final String PROGRAM_EXTRA_CLASSPATH = "app.program.extra.classpath";
     public static final String SPARK_YARN_CLIENT_REWRITE = "app.program.spark.yarn.client.rewrite.enabled";
     public static final String RUNTIME_EXT_DIR = "app.program.runtime.extensions.dir";
     public static final String PROGRAM_MAX_START_SECONDS = "app.program.max.start.seconds";
     public static final String PROGRAM_MAX_STOP_SECONDS = "app.program.max.stop.seconds";
+    public static final String STORE_BINARY_VALUES_ENABLED = "app.store.binary.values.enabled";
 
     /**
      * Guice named bindings.
@@ -244,6 +246,7 @@ public final class Constants {
    */
   public static final class AppMetaStore {
     public static final String TABLE = "app.meta";
+    public static final String SPEC_CACHE_SIZE = "app.meta.spec.cache.size";
   }
 
   /**
@@ -479,6 +482,7 @@ public final class Constants {
     public static final String SERVER_WORKER_THREADS = "router.server.worker.threads";
     public static final String CLIENT_BOSS_THREADS = "router.client.boss.threads";
     public static final String CLIENT_WORKER_THREADS = "router.client.worker.threads";
+    public static final String CLIENT_POOL_MAX_IDLE_CONNECTIONS = "router.client.pool.max.idle.connections";
     public static final String CONNECTION_TIMEOUT_SECS = "router.connection.idle.timeout.secs";
     public static final String ROUTER_USERSERVICE_FALLBACK_STRAGEY = "router.userservice.fallback.strategy";
     public static final String ROUTER_AUDIT_PATH_CHECK_ENABLED = "router.audit.path.check.enabled";
@@ -733,6 +737,13 @@ public final class Constants {
     public static final String PIPELINE_CHECKPOINT_INTERVAL_MS = "log.process.pipeline.checkpoint.interval.ms";
     public static final String PIPELINE_LOGGER_CACHE_SIZE = "log.process.pipeline.logger.cache.size";
     public static final String PIPELINE_LOGGER_CACHE_EXPIRATION_MS = "log.process.pipeline.logger.cache.expiration.ms";
+    public static final String PIPELINE_SPILL_DIR = "log.process.pipeline.spill.dir";
+    public static final String PIPELINE_SPILL_SIZE = "log.process.pipeline.spill.size";
+
+    // Log reader configurations
+    public static final String LOG_READER_PREFETCH_FILES = "log.reader.prefetch.files";
+    public static final String LOG_READER_MAX_THREADS = "log.reader.max.threads";
+    public static final String LOG_READER_INDEX_CACHE_SIZE = "log.reader.index.cache.size";
 
     // This is a pipeline property only for backward compatibility purpose in 4.1, due to prior to 4.1,
     // the kafka offset prefix is hardcoded to Bytes.toBytes(100)
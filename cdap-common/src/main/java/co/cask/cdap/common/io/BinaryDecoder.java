@@ -28,7 +28,11 @@ import java.nio.ByteBuffer;
  */
 public final class BinaryDecoder implements Decoder {
 
+  // Strings up to this size are decoded through a reusable buffer
+  private static final int MAX_STRING_BUFFER_SIZE = 64 * 1024;
+
   private final InputStream input;
+  private byte[] stringBuffer;
 
   public BinaryDecoder(InputStream input) {
     this.input = input;
@@ -88,7 +92,14 @@ public final class BinaryDecoder implements Decoder {
 
   @Override
   public String readString() throws IOException {
-    return new String(rawReadBytes(), Charsets.UTF_8);
+    int len = readLength();
+    if (len > MAX_STRING_BUFFER_SIZE) {
+      return new String(readFully(new byte[len], len), Charsets.UTF_8);
+    }
+    if (stringBuffer == null || stringBuffer.length < len) {
+      stringBuffer = new byte[Math.max(len, 64)];
+    }
+    return new String(readFully(stringBuffer, len), 0, len, Charsets.UTF_8);
   }
 
   @Override
@@ -130,10 +141,27 @@ public final class BinaryDecoder implements Decoder {
   }
 
   private byte[] rawReadBytes() throws IOException {
-    int toRead = readInt();
-    byte[] bytes = new byte[toRead];
+    int len = readLength();
+    return readFully(new byte[len], len);
+  }
+
+  private int readLength() throws IOException {
+    int len = readInt();
+    if (len < 0) {
+      throw new IOException("Invalid length " + len);
+    }
+    return len;
+  }
+
+  /**
+   * Reads the given number of bytes into the beginning of the given array.
+   *
+   * @return the same array
+   */
+  private byte[] readFully(byte[] bytes, int len) throws IOException {
+    int toRead = len;
     while (toRead > 0) {
-      int byteRead = input.read(bytes, bytes.length - toRead, toRead);
+      int byteRead = input.read(bytes, len - toRead, toRead);
       if (byteRead == -1) {
         throw new EOFException();
       }
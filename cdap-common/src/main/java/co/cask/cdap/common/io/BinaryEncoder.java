@@ -16,8 +16,6 @@
 
 package co.cask.cdap.common.io;
 
-import com.google.common.base.Charsets;
-
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
@@ -27,7 +25,11 @@ import java.nio.ByteBuffer;
  */
 public final class BinaryEncoder implements Encoder {
 
+  // Size of the buffer for encoding strings and copying direct buffers. Larger values are written in chunks.
+  private static final int BUFFER_SIZE = 256;
+
   private final OutputStream output;
+  private byte[] scratch;
 
   public BinaryEncoder(OutputStream output) {
     this.output = output;
@@ -112,7 +114,43 @@ public final class BinaryEncoder implements Encoder {
 
   @Override
   public Encoder writeString(String s) throws IOException {
-    return writeBytes(Charsets.UTF_8.encode(s));
+    // Encodes the string directly as UTF-8 through a reusable buffer. Same as the JDK encoder,
+    // malformed surrogate is replaced with '?'.
+    writeInt(utf8Length(s));
+
+    byte[] buffer = getBuffer();
+    int len = s.length();
+    int pos = 0;
+    for (int i = 0; i < len; i++) {
+      // Make sure there is space for the longest UTF-8 sequence
+      if (pos > buffer.length - 4) {
+        output.write(buffer, 0, pos);
+        pos = 0;
+      }
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        buffer[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[pos++] = (byte) (0xc0 | (c >> 6));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        if (isSurrogatePair(s, i)) {
+          int codePoint = Character.toCodePoint(c, s.charAt(++i));
+          buffer[pos++] = (byte) (0xf0 | (codePoint >> 18));
+          buffer[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+          buffer[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+          buffer[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+        } else {
+          buffer[pos++] = '?';
+        }
+      } else {
+        buffer[pos++] = (byte) (0xe0 | (c >> 12));
+        buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    output.write(buffer, 0, pos);
+    return this;
   }
 
   @Override
@@ -133,13 +171,54 @@ public final class BinaryEncoder implements Encoder {
     if (buffer.hasArray()) {
       output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
     } else {
-      byte[] bytes = new byte[buffer.remaining()];
-      int pos = buffer.position();
-      buffer.get(bytes);
-      output.write(bytes);
-      buffer.position(pos);
+      // Copy through the reusable buffer without changing the position of the given buffer
+      ByteBuffer src = buffer.duplicate();
+      byte[] bytes = getBuffer();
+      while (src.hasRemaining()) {
+        int len = Math.min(bytes.length, src.remaining());
+        src.get(bytes, 0, len);
+        output.write(bytes, 0, len);
+      }
     }
 
     return this;
   }
+
+  private byte[] getBuffer() {
+    if (scratch == null) {
+      scratch = new byte[BUFFER_SIZE];
+    }
+    return scratch;
+  }
+
+  /**
+   * Returns the number of bytes of the given string in UTF-8 encoding.
+   */
+  private static int utf8Length(String s) {
+    int len = s.length();
+    int result = len;
+    for (int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        continue;
+      }
+      if (c < 0x800) {
+        result++;
+      } else if (Character.isSurrogate(c)) {
+        // A surrogate pair takes four bytes, while a malformed surrogate is replaced with one byte.
+        if (isSurrogatePair(s, i)) {
+          result += 2;
+          i++;
+        }
+      } else {
+        result += 2;
+      }
+    }
+    return result;
+  }
+
+  private static boolean isSurrogatePair(String s, int idx) {
+    return Character.isHighSurrogate(s.charAt(idx))
+      && idx + 1 < s.length() && Character.isLowSurrogate(s.charAt(idx + 1));
+  }
 }
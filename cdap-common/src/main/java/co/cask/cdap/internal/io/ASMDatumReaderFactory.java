@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.io.IOException;
+import javax.inject.Inject;
+
+/**
+ * A factory class for creating {@link DatumReader} instance for different data type and schema.
+ * For each combination of source schema, target schema and data type, the schema resolution is compiled once
+ * into a reader that sets fields through the {@link FieldAccessor} generated by the {@link FieldAccessorFactory}.
+ * The compiled readers are cached and shared by all {@link DatumReader} created by this factory.
+ */
+public final class ASMDatumReaderFactory implements DatumReaderFactory {
+
+  private final LoadingCache<CacheKey, DatumReaderCompiler.ValueReader> valueReaders;
+
+  @Inject
+  public ASMDatumReaderFactory(final FieldAccessorFactory fieldAccessorFactory) {
+    final InstantiatorFactory instantiatorFactory = new InstantiatorFactory(true);
+    this.valueReaders = CacheBuilder.newBuilder().build(new CacheLoader<CacheKey, DatumReaderCompiler.ValueReader>() {
+      @Override
+      public DatumReaderCompiler.ValueReader load(CacheKey key) throws Exception {
+        return new DatumReaderCompiler(fieldAccessorFactory, instantiatorFactory)
+          .compile(key.sourceSchema, key.targetSchema, key.type);
+      }
+    });
+  }
+
+  /**
+   * Creates a {@link DatumReader} that is able to decode data into the given data type with the given {@link Schema}.
+   * The instance created is thread safe and reusable.
+   *
+   * @param type Type information of the data type to be decoded.
+   * @param schema Schema of the data type.
+   * @param <T> Type of the data type.
+   * @return A {@link DatumReader} instance.
+   */
+  @Override
+  public <T> DatumReader<T> create(TypeToken<T> type, Schema schema) {
+    return new CompiledDatumReader<>(type, schema);
+  }
+
+  /**
+   * A {@link DatumReader} that delegates to the compiled reader for the source schema. The last used compiled
+   * reader is remembered so that reading data of the same source schema doesn't need a cache lookup.
+   */
+  private final class CompiledDatumReader<T> implements DatumReader<T> {
+
+    private final TypeToken<T> type;
+    private final Schema schema;
+    private volatile ResolvedReader lastReader;
+
+    private CompiledDatumReader(TypeToken<T> type, Schema schema) {
+      this.type = type;
+      this.schema = schema;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T read(Decoder decoder, Schema sourceSchema) throws IOException {
+      ResolvedReader reader = lastReader;
+      if (reader == null || reader.sourceSchema != sourceSchema) {
+        reader = new ResolvedReader(sourceSchema, getValueReader(sourceSchema));
+        lastReader = reader;
+      }
+      return (T) reader.valueReader.read(decoder);
+    }
+
+    private DatumReaderCompiler.ValueReader getValueReader(Schema sourceSchema) throws IOException {
+      try {
+        return valueReaders.getUnchecked(new CacheKey(sourceSchema, schema, type));
+      } catch (UncheckedExecutionException e) {
+        Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+        throw Throwables.propagate(e.getCause());
+      }
+    }
+  }
+
+  /**
+   * A compiled reader for a given source schema.
+   */
+  private static final class ResolvedReader {
+    private final Schema sourceSchema;
+    private final DatumReaderCompiler.ValueReader valueReader;
+
+    private ResolvedReader(Schema sourceSchema, DatumReaderCompiler.ValueReader valueReader) {
+      this.sourceSchema = sourceSchema;
+      this.valueReader = valueReader;
+    }
+  }
+
+  private static final class CacheKey {
+    private final Schema sourceSchema;
+    private final Schema targetSchema;
+    private final TypeToken<?> type;
+
+    private CacheKey(Schema sourceSchema, Schema targetSchema, TypeToken<?> type) {
+      this.sourceSchema = sourceSchema;
+      this.targetSchema = targetSchema;
+      this.type = type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return sourceSchema.equals(other.sourceSchema) && targetSchema.equals(other.targetSchema)
+        && type.equals(other.type);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(sourceSchema, targetSchema, type);
+    }
+  }
+}
@@ -0,0 +1,834 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.Instantiator;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import co.cask.cdap.internal.lang.Fields;
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Longs;
+import com.google.common.reflect.TypeToken;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compiles a pair of source and target {@link Schema} together with the target type into a tree of
+ * {@link ValueReader}. All schema resolution is done once during compilation, following the same projection rules
+ * as {@link ReflectionDatumReader}, so that reading a value only involves decoding and setting fields
+ * through the {@link FieldAccessor}.
+ */
+final class DatumReaderCompiler {
+
+  private final FieldAccessorFactory fieldAccessorFactory;
+  private final InstantiatorFactory instantiatorFactory;
+  // Records that are being compiled, for resolving recursive types
+  private final Map<ReaderKey, RecordReader> records;
+
+  DatumReaderCompiler(FieldAccessorFactory fieldAccessorFactory, InstantiatorFactory instantiatorFactory) {
+    this.fieldAccessorFactory = fieldAccessorFactory;
+    this.instantiatorFactory = instantiatorFactory;
+    this.records = Maps.newHashMap();
+  }
+
+  /**
+   * Compiles a {@link ValueReader} for reading data written with the source schema into the target type.
+   *
+   * @throws IOException if the source schema cannot be resolved to the target schema and type
+   */
+  ValueReader compile(Schema sourceSchema, Schema targetSchema, TypeToken<?> targetType) throws IOException {
+    if (sourceSchema.getType() != Schema.Type.UNION && targetSchema.getType() == Schema.Type.UNION) {
+      // Try every target schemas
+      for (Schema schema : targetSchema.getUnionSchemas()) {
+        try {
+          return doCompile(sourceSchema, schema, targetType);
+        } catch (IOException e) {
+          // Continue
+        }
+      }
+      throw new IOException(String.format("No matching schema to resolve %s to %s", sourceSchema, targetSchema));
+    }
+    return doCompile(sourceSchema, targetSchema, targetType);
+  }
+
+  private ValueReader doCompile(Schema sourceSchema, Schema targetSchema,
+                                TypeToken<?> targetType) throws IOException {
+    Schema.Type sourceType = sourceSchema.getType();
+    Schema.Type targetSchemaType = targetSchema.getType();
+
+    switch (sourceType) {
+      case NULL:
+        check(sourceType == targetSchemaType, "Fails to resolve %s to %s", sourceType, targetSchemaType);
+        return NULL_READER;
+      case BYTES:
+        check(sourceType == targetSchemaType, "Fails to resolve %s to %s", sourceType, targetSchemaType);
+        return compileBytes(targetType);
+      case ENUM:
+        check(sourceType == targetSchemaType, "Fails to resolve %s to %s", sourceType, targetSchemaType);
+        return compileEnum(sourceSchema, targetSchema, targetType);
+      case ARRAY:
+        check(sourceType == targetSchemaType, "Fails to resolve %s to %s", sourceType, targetSchemaType);
+        return compileArray(sourceSchema, targetSchema, targetType);
+      case MAP:
+        check(sourceType == targetSchemaType, "Fails to resolve %s to %s", sourceType, targetSchemaType);
+        return compileMap(sourceSchema, targetSchema, targetType);
+      case RECORD:
+        check(sourceType == targetSchemaType, "Fails to resolve %s to %s", sourceType, targetSchemaType);
+        return compileRecord(sourceSchema, targetSchema, targetType);
+      case UNION:
+        return compileUnion(sourceSchema, targetSchema, targetType);
+    }
+    if (sourceType.isSimpleType()) {
+      return compileSimpleType(sourceType, targetSchemaType, targetType.getRawType());
+    }
+    throw new IOException(String.format("Fails to resolve %s to %s", sourceSchema, targetSchema));
+  }
+
+  private ValueReader compileBytes(TypeToken<?> targetType) {
+    Class<?> rawType = targetType.getRawType();
+    if (rawType.equals(byte[].class)) {
+      return new ValueReader() {
+        @Override
+        public Object read(Decoder decoder) throws IOException {
+          ByteBuffer buffer = decoder.readBytes();
+          if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            if (buffer.remaining() == array.length) {
+              return array;
+            }
+            byte[] bytes = new byte[buffer.remaining()];
+            System.arraycopy(array, buffer.arrayOffset() + buffer.position(), bytes, 0, buffer.remaining());
+            return bytes;
+          }
+          byte[] bytes = new byte[buffer.remaining()];
+          buffer.get(bytes);
+          return bytes;
+        }
+      };
+    }
+    if (rawType.equals(UUID.class)) {
+      return new ValueReader() {
+        @Override
+        public Object read(Decoder decoder) throws IOException {
+          ByteBuffer buffer = decoder.readBytes();
+          if (buffer.remaining() == Longs.BYTES * 2) {
+            return new UUID(buffer.getLong(), buffer.getLong());
+          }
+          return buffer;
+        }
+      };
+    }
+    return new ValueReader() {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        return decoder.readBytes();
+      }
+    };
+  }
+
+  private ValueReader compileEnum(final Schema sourceSchema, Schema targetSchema,
+                                  TypeToken<?> targetType) throws IOException {
+    // Resolves each enum value of the source schema to the target enum constant.
+    final Object[] values = new Object[sourceSchema.getEnumValues().size()];
+    for (int i = 0; i < values.length; i++) {
+      String enumValue = sourceSchema.getEnumValue(i);
+      if (targetSchema.getEnumValues().contains(enumValue)) {
+        try {
+          values[i] = targetType.getRawType().getMethod("valueOf", String.class).invoke(null, enumValue);
+        } catch (Exception e) {
+          throw new IOException(e);
+        }
+      }
+    }
+    return new ValueReader() {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        int idx = decoder.readInt();
+        Object value = idx >= 0 && idx < values.length ? values[idx] : null;
+        if (value == null) {
+          throw new IOException(String.format("Enum value '%s' missing in target.", sourceSchema.getEnumValue(idx)));
+        }
+        return value;
+      }
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  private ValueReader compileArray(Schema sourceSchema, Schema targetSchema,
+                                   final TypeToken<?> targetType) throws IOException {
+    TypeToken<?> componentType = null;
+    if (targetType.isArray()) {
+      componentType = targetType.getComponentType();
+    } else if (Collection.class.isAssignableFrom(targetType.getRawType())) {
+      Type type = targetType.getType();
+      check(type instanceof ParameterizedType, "Only parameterized type is supported for collection.");
+      componentType = TypeToken.of(((ParameterizedType) type).getActualTypeArguments()[0]);
+    }
+    check(componentType != null, "Only array or collection type is support for array value.");
+
+    final ValueReader componentReader = compile(sourceSchema.getComponentSchema(),
+                                                targetSchema.getComponentSchema(), componentType);
+    final Instantiator<?> instantiator = instantiatorFactory.get(targetType);
+    final Class<?> arrayComponentClass = targetType.isArray() ? componentType.getRawType() : null;
+
+    return new ValueReader() {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        Collection<Object> collection = (Collection<Object>) instantiator.create();
+        int len = decoder.readInt();
+        while (len != 0) {
+          for (int i = 0; i < len; i++) {
+            collection.add(componentReader.read(decoder));
+          }
+          len = decoder.readInt();
+        }
+        if (arrayComponentClass == null) {
+          return collection;
+        }
+        Object array = Array.newInstance(arrayComponentClass, collection.size());
+        int idx = 0;
+        for (Object obj : collection) {
+          Array.set(array, idx++, obj);
+        }
+        return array;
+      }
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  private ValueReader compileMap(Schema sourceSchema, Schema targetSchema,
+                                 TypeToken<?> targetType) throws IOException {
+    check(Map.class.isAssignableFrom(targetType.getRawType()), "Only map type is supported for map data.");
+    Type type = targetType.getType();
+    check(type instanceof ParameterizedType, "Only parameterized map is supported.");
+    Type[] typeArgs = ((ParameterizedType) type).getActualTypeArguments();
+
+    Map.Entry<Schema, Schema> sourceEntry = sourceSchema.getMapSchema();
+    Map.Entry<Schema, Schema> targetEntry = targetSchema.getMapSchema();
+    final ValueReader keyReader = compile(sourceEntry.getKey(), targetEntry.getKey(), TypeToken.of(typeArgs[0]));
+    final ValueReader valueReader = compile(sourceEntry.getValue(), targetEntry.getValue(),
+                                            TypeToken.of(typeArgs[1]));
+    final Instantiator<?> instantiator = instantiatorFactory.get(targetType);
+
+    return new ValueReader() {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        Map<Object, Object> map = (Map<Object, Object>) instantiator.create();
+        int len = decoder.readInt();
+        while (len != 0) {
+          for (int i = 0; i < len; i++) {
+            Object key = keyReader.read(decoder);
+            map.put(key, valueReader.read(decoder));
+          }
+          len = decoder.readInt();
+        }
+        return map;
+      }
+    };
+  }
+
+  private ValueReader compileRecord(Schema sourceSchema, Schema targetSchema,
+                                    TypeToken<?> targetType) throws IOException {
+    ReaderKey key = new ReaderKey(sourceSchema, targetSchema, targetType);
+    RecordReader reader = records.get(key);
+    if (reader != null) {
+      // Recursive reference to a record that is being compiled
+      return reader;
+    }
+
+    reader = new RecordReader(instantiatorFactory.get(targetType));
+    records.put(key, reader);
+    try {
+      List<Schema.Field> sourceFields = sourceSchema.getFields();
+      FieldReader[] fieldReaders = new FieldReader[sourceFields.size()];
+      for (int i = 0; i < fieldReaders.length; i++) {
+        Schema.Field sourceField = sourceFields.get(i);
+        Schema.Field targetField = targetSchema.getField(sourceField.getName());
+        if (targetField == null) {
+          fieldReaders[i] = new SkipFieldReader(sourceField.getSchema());
+          continue;
+        }
+        fieldReaders[i] = compileField(sourceField, targetField, targetType);
+      }
+      reader.setFieldReaders(fieldReaders);
+      return reader;
+    } finally {
+      records.remove(key);
+    }
+  }
+
+  private FieldReader compileField(Schema.Field sourceField, Schema.Field targetField,
+                                   TypeToken<?> recordType) throws IOException {
+    Field field;
+    try {
+      field = Fields.findField(recordType.getType(), sourceField.getName());
+    } catch (NoSuchFieldException e) {
+      throw new IOException(e);
+    }
+    FieldAccessor accessor = fieldAccessorFactory.getFieldAccessor(recordType, sourceField.getName());
+    Schema sourceSchema = sourceField.getSchema();
+    Schema targetSchema = targetField.getSchema();
+
+    // Primitive fields with the same source and target type are set without boxing
+    Class<?> fieldClass = field.getType();
+    if (fieldClass.isPrimitive() && sourceSchema.getType() == targetSchema.getType()) {
+      switch (sourceSchema.getType()) {
+        case BOOLEAN:
+          if (fieldClass.equals(boolean.class)) {
+            return new BooleanFieldReader(accessor);
+          }
+          break;
+        case INT:
+          if (fieldClass.equals(int.class)) {
+            return new IntFieldReader(accessor);
+          }
+          break;
+        case LONG:
+          if (fieldClass.equals(long.class)) {
+            return new LongFieldReader(accessor);
+          }
+          break;
+        case FLOAT:
+          if (fieldClass.equals(float.class)) {
+            return new FloatFieldReader(accessor);
+          }
+          break;
+        case DOUBLE:
+          if (fieldClass.equals(double.class)) {
+            return new DoubleFieldReader(accessor);
+          }
+          break;
+      }
+    }
+    return new ValueFieldReader(accessor,
+                                compile(sourceSchema, targetSchema, recordType.resolveType(field.getGenericType())));
+  }
+
+  private ValueReader compileUnion(Schema sourceSchema, Schema targetSchema,
+                                   TypeToken<?> targetType) throws IOException {
+    List<Schema> sourceSchemas = sourceSchema.getUnionSchemas();
+    final ValueReader[] readers = new ValueReader[sourceSchemas.size()];
+    for (int idx = 0; idx < readers.length; idx++) {
+      readers[idx] = compileUnionBranch(sourceSchema, idx, targetSchema, targetType);
+    }
+    return new ValueReader() {
+      @Override
+      public Object read(Decoder decoder) throws IOException {
+        int idx = decoder.readInt();
+        if (idx < 0 || idx >= readers.length) {
+          throw new IOException("Invalid union index " + idx);
+        }
+        return readers[idx].read(decoder);
+      }
+    };
+  }
+
+  private ValueReader compileUnionBranch(Schema sourceSchema, int idx, Schema targetSchema, TypeToken<?> targetType) {
+    Schema sourceValueSchema = sourceSchema.getUnionSchema(idx);
+    if (targetSchema.getType() != Schema.Type.UNION) {
+      try {
+        return compile(sourceValueSchema, targetSchema, targetType);
+      } catch (IOException e) {
+        return new FailureReader(e.getMessage());
+      }
+    }
+
+    // Try the target schema at the same index first before resorting to linearly try the union schema.
+    Schema targetValueSchema = targetSchema.getUnionSchema(idx);
+    if (targetValueSchema != null && targetValueSchema.getType() == sourceValueSchema.getType()) {
+      try {
+        return compile(sourceValueSchema, targetValueSchema, targetType);
+      } catch (IOException e) {
+        // OK to ignore it, as we'll do union schema resolution
+      }
+    }
+    for (Schema schema : targetSchema.getUnionSchemas()) {
+      try {
+        return compile(sourceValueSchema, schema, targetType);
+      } catch (IOException e) {
+        // It's ok to have exception here, as we'll keep trying until exhausted the target union.
+      }
+    }
+    // Only fails when data of this branch is actually read
+    return new FailureReader(String.format("Fail to resolve %s to %s", sourceSchema, targetSchema));
+  }
+
+  private ValueReader compileSimpleType(Schema.Type sourceType, Schema.Type targetType,
+                                        final Class<?> targetClass) throws IOException {
+    switch (sourceType) {
+      case BOOLEAN:
+        switch (targetType) {
+          case BOOLEAN:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return decoder.readBool();
+              }
+            };
+          case STRING:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return String.valueOf(decoder.readBool());
+              }
+            };
+        }
+        break;
+      case INT:
+        switch (targetType) {
+          case INT:
+            if (targetClass.equals(byte.class) || targetClass.equals(Byte.class)) {
+              return new ValueReader() {
+                @Override
+                public Object read(Decoder decoder) throws IOException {
+                  return (byte) decoder.readInt();
+                }
+              };
+            }
+            if (targetClass.equals(char.class) || targetClass.equals(Character.class)) {
+              return new ValueReader() {
+                @Override
+                public Object read(Decoder decoder) throws IOException {
+                  return (char) decoder.readInt();
+                }
+              };
+            }
+            if (targetClass.equals(short.class) || targetClass.equals(Short.class)) {
+              return new ValueReader() {
+                @Override
+                public Object read(Decoder decoder) throws IOException {
+                  return (short) decoder.readInt();
+                }
+              };
+            }
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return decoder.readInt();
+              }
+            };
+          case LONG:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return (long) decoder.readInt();
+              }
+            };
+          case FLOAT:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return (float) decoder.readInt();
+              }
+            };
+          case DOUBLE:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return (double) decoder.readInt();
+              }
+            };
+          case STRING:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return String.valueOf(decoder.readInt());
+              }
+            };
+        }
+        break;
+      case LONG:
+        switch (targetType) {
+          case LONG:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return decoder.readLong();
+              }
+            };
+          case FLOAT:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return (float) decoder.readLong();
+              }
+            };
+          case DOUBLE:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return (double) decoder.readLong();
+              }
+            };
+          case STRING:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return String.valueOf(decoder.readLong());
+              }
+            };
+        }
+        break;
+      case FLOAT:
+        switch (targetType) {
+          case FLOAT:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return decoder.readFloat();
+              }
+            };
+          case DOUBLE:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return (double) decoder.readFloat();
+              }
+            };
+          case STRING:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return String.valueOf(decoder.readFloat());
+              }
+            };
+        }
+        break;
+      case DOUBLE:
+        switch (targetType) {
+          case DOUBLE:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return decoder.readDouble();
+              }
+            };
+          case STRING:
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return String.valueOf(decoder.readDouble());
+              }
+            };
+        }
+        break;
+      case STRING:
+        if (targetType == Schema.Type.STRING) {
+          if (targetClass.equals(URI.class)) {
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return URI.create(decoder.readString());
+              }
+            };
+          }
+          if (targetClass.equals(URL.class)) {
+            return new ValueReader() {
+              @Override
+              public Object read(Decoder decoder) throws IOException {
+                return new URL(decoder.readString());
+              }
+            };
+          }
+          return new ValueReader() {
+            @Override
+            public Object read(Decoder decoder) throws IOException {
+              return decoder.readString();
+            }
+          };
+        }
+        break;
+    }
+
+    throw new IOException("Fail to resolve type " + sourceType + " to type " + targetType);
+  }
+
+  private void check(boolean condition, String message, Object... objs) throws IOException {
+    if (!condition) {
+      throw new IOException(String.format(message, objs));
+    }
+  }
+
+  /**
+   * Skips a value of the given schema.
+   */
+  static void skip(Decoder decoder, Schema schema) throws IOException {
+    switch (schema.getType()) {
+      case NULL:
+        break;
+      case BOOLEAN:
+        decoder.readBool();
+        break;
+      case INT:
+      case ENUM:
+        decoder.readInt();
+        break;
+      case LONG:
+        decoder.readLong();
+        break;
+      case FLOAT:
+        decoder.skipFloat();
+        break;
+      case DOUBLE:
+        decoder.skipDouble();
+        break;
+      case BYTES:
+        decoder.skipBytes();
+        break;
+      case STRING:
+        decoder.skipString();
+        break;
+      case ARRAY: {
+        int len = decoder.readInt();
+        while (len != 0) {
+          for (int i = 0; i < len; i++) {
+            skip(decoder, schema.getComponentSchema());
+          }
+          len = decoder.readInt();
+        }
+        break;
+      }
+      case MAP: {
+        Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+        int len = decoder.readInt();
+        while (len != 0) {
+          for (int i = 0; i < len; i++) {
+            skip(decoder, mapSchema.getKey());
+            skip(decoder, mapSchema.getValue());
+          }
+          len = decoder.readInt();
+        }
+        break;
+      }
+      case RECORD:
+        for (Schema.Field field : schema.getFields()) {
+          skip(decoder, field.getSchema());
+        }
+        break;
+      case UNION:
+        skip(decoder, schema.getUnionSchema(decoder.readInt()));
+        break;
+    }
+  }
+
+  /**
+   * Reads a value from a {@link Decoder}.
+   */
+  interface ValueReader {
+    Object read(Decoder decoder) throws IOException;
+  }
+
+  private static final ValueReader NULL_READER = new ValueReader() {
+    @Override
+    public Object read(Decoder decoder) throws IOException {
+      return decoder.readNull();
+    }
+  };
+
+  /**
+   * A {@link ValueReader} for a source schema branch that cannot be resolved to the target.
+   */
+  private static final class FailureReader implements ValueReader {
+    private final String message;
+
+    FailureReader(String message) {
+      this.message = message;
+    }
+
+    @Override
+    public Object read(Decoder decoder) throws IOException {
+      throw new IOException(message);
+    }
+  }
+
+  /**
+   * A {@link ValueReader} for records. The field readers are set after construction to support recursive types.
+   */
+  private static final class RecordReader implements ValueReader {
+    private final Instantiator<?> instantiator;
+    private FieldReader[] fieldReaders;
+
+    RecordReader(Instantiator<?> instantiator) {
+      this.instantiator = instantiator;
+    }
+
+    void setFieldReaders(FieldReader[] fieldReaders) {
+      this.fieldReaders = fieldReaders;
+    }
+
+    @Override
+    public Object read(Decoder decoder) throws IOException {
+      Object record = instantiator.create();
+      try {
+        for (FieldReader fieldReader : fieldReaders) {
+          fieldReader.read(decoder, record);
+        }
+      } catch (IOException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException(e);
+      }
+      return record;
+    }
+  }
+
+  /**
+   * Reads a field value from a {@link Decoder} and sets it to a record.
+   */
+  private abstract static class FieldReader {
+    abstract void read(Decoder decoder, Object record) throws IOException;
+  }
+
+  private static final class SkipFieldReader extends FieldReader {
+    private final Schema schema;
+
+    SkipFieldReader(Schema schema) {
+      this.schema = schema;
+    }
+
+    @Override
+    void read(Decoder decoder, Object record) throws IOException {
+      skip(decoder, schema);
+    }
+  }
+
+  private static final class ValueFieldReader extends FieldReader {
+    private final FieldAccessor accessor;
+    private final ValueReader reader;
+
+    ValueFieldReader(FieldAccessor accessor, ValueReader reader) {
+      this.accessor = accessor;
+      this.reader = reader;
+    }
+
+    @Override
+    void read(Decoder decoder, Object record) throws IOException {
+      accessor.set(record, reader.read(decoder));
+    }
+  }
+
+  private static final class BooleanFieldReader extends FieldReader {
+    private final FieldAccessor accessor;
+
+    BooleanFieldReader(FieldAccessor accessor) {
+      this.accessor = accessor;
+    }
+
+    @Override
+    void read(Decoder decoder, Object record) throws IOException {
+      accessor.setBoolean(record, decoder.readBool());
+    }
+  }
+
+  private static final class IntFieldReader extends FieldReader {
+    private final FieldAccessor accessor;
+
+    IntFieldReader(FieldAccessor accessor) {
+      this.accessor = accessor;
+    }
+
+    @Override
+    void read(Decoder decoder, Object record) throws IOException {
+      accessor.setInt(record, decoder.readInt());
+    }
+  }
+
+  private static final class LongFieldReader extends FieldReader {
+    private final FieldAccessor accessor;
+
+    LongFieldReader(FieldAccessor accessor) {
+      this.accessor = accessor;
+    }
+
+    @Override
+    void read(Decoder decoder, Object record) throws IOException {
+      accessor.setLong(record, decoder.readLong());
+    }
+  }
+
+  private static final class FloatFieldReader extends FieldReader {
+    private final FieldAccessor accessor;
+
+    FloatFieldReader(FieldAccessor accessor) {
+      this.accessor = accessor;
+    }
+
+    @Override
+    void read(Decoder decoder, Object record) throws IOException {
+      accessor.setFloat(record, decoder.readFloat());
+    }
+  }
+
+  private static final class DoubleFieldReader extends FieldReader {
+    private final FieldAccessor accessor;
+
+    DoubleFieldReader(FieldAccessor accessor) {
+      this.accessor = accessor;
+    }
+
+    @Override
+    void read(Decoder decoder, Object record) throws IOException {
+      accessor.setDouble(record, decoder.readDouble());
+    }
+  }
+
+  /**
+   * Key for identifying a record that is being compiled.
+   */
+  private static final class ReaderKey {
+    private final Schema sourceSchema;
+    private final Schema targetSchema;
+    private final TypeToken<?> targetType;
+
+    ReaderKey(Schema sourceSchema, Schema targetSchema, TypeToken<?> targetType) {
+      this.sourceSchema = sourceSchema;
+      this.targetSchema = targetSchema;
+      this.targetType = targetType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ReaderKey other = (ReaderKey) o;
+      return sourceSchema.equals(other.sourceSchema) && targetSchema.equals(other.targetSchema)
+        && targetType.equals(other.targetType);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(sourceSchema, targetSchema, targetType);
+    }
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.UnsupportedTypeException;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
+import co.cask.cdap.internal.io.ASMDatumWriterFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.cdap.internal.io.DatumWriter;
+import co.cask.cdap.internal.io.ReflectionDatumReader;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for {@link ASMDatumReaderFactory}.
+ */
+public class ASMDatumReaderTest {
+
+  private static final ASMDatumWriterFactory DATUM_WRITER_FACTORY
+    = new ASMDatumWriterFactory(new ASMFieldAccessorFactory());
+  private static final ASMDatumReaderFactory DATUM_READER_FACTORY
+    = new ASMDatumReaderFactory(new ASMFieldAccessorFactory());
+
+  /**
+   *
+   */
+  public enum SourceEnum {
+    VALUE1, VALUE2, VALUE3
+  }
+
+  /**
+   *
+   */
+  public enum TargetEnum {
+    VALUE1, VALUE3
+  }
+
+  /**
+   *
+   */
+  public static final class Inner {
+    List<String> list;
+    String name;
+  }
+
+  /**
+   *
+   */
+  public static final class Source {
+    int i;
+    long l;
+    short s;
+    double d;
+    Inner skipped;
+    Map<Integer, String> properties;
+    int[] numbers;
+    URL url;
+    UUID uuid;
+    SourceEnum e;
+    String nullStr;
+  }
+
+  /**
+   *
+   */
+  public static final class Target {
+    Long i;
+    long l;
+    short s;
+    String d;
+    Map<String, String> properties;
+    long[] numbers;
+    URI url;
+    UUID uuid;
+    TargetEnum e;
+    String nullStr;
+    String notInSource;
+  }
+
+  /**
+   *
+   */
+  public static final class Node {
+    int data;
+    Node left;
+    Node right;
+  }
+
+  @Test
+  public void testProjection() throws IOException, UnsupportedTypeException {
+    Source source = new Source();
+    source.i = 10;
+    source.l = Long.MAX_VALUE;
+    source.s = 5;
+    source.d = 1.5d;
+    source.skipped = new Inner();
+    source.skipped.list = ImmutableList.of("a", "b", "c");
+    source.skipped.name = "inner";
+    source.properties = ImmutableMap.of(1, "one", 2, "two");
+    source.numbers = new int[] {1, 2, 3};
+    source.url = new URL("http://www.example.com");
+    source.uuid = UUID.randomUUID();
+    source.e = SourceEnum.VALUE3;
+
+    Schema sourceSchema = getSchema(TypeToken.of(Source.class));
+    Schema targetSchema = getSchema(TypeToken.of(Target.class));
+    byte[] encoded = encode(TypeToken.of(Source.class), source, source);
+
+    BinaryDecoder decoder = new BinaryDecoder(new ByteArrayInputStream(encoded));
+    DatumReader<Target> reader = DATUM_READER_FACTORY.create(TypeToken.of(Target.class), targetSchema);
+    ReflectionDatumReader<Target> reflectionReader = new ReflectionDatumReader<>(targetSchema,
+                                                                                 TypeToken.of(Target.class));
+    for (Target target : ImmutableList.of(reader.read(decoder, sourceSchema),
+                                          reflectionReader.read(decoder, sourceSchema))) {
+      Assert.assertEquals(10L, target.i.longValue());
+      Assert.assertEquals(Long.MAX_VALUE, target.l);
+      Assert.assertEquals(5, target.s);
+      Assert.assertEquals("1.5", target.d);
+      Assert.assertEquals(ImmutableMap.of("1", "one", "2", "two"), target.properties);
+      Assert.assertArrayEquals(new long[] {1L, 2L, 3L}, target.numbers);
+      Assert.assertEquals(URI.create("http://www.example.com"), target.url);
+      Assert.assertEquals(source.uuid, target.uuid);
+      Assert.assertEquals(TargetEnum.VALUE3, target.e);
+      Assert.assertNull(target.nullStr);
+      Assert.assertNull(target.notInSource);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testMissingEnum() throws IOException, UnsupportedTypeException {
+    Source source = new Source();
+    source.properties = ImmutableMap.of();
+    source.numbers = new int[0];
+    source.e = SourceEnum.VALUE2;
+
+    Schema sourceSchema = getSchema(TypeToken.of(Source.class));
+    byte[] encoded = encode(TypeToken.of(Source.class), source);
+    DatumReader<Target> reader = DATUM_READER_FACTORY.create(TypeToken.of(Target.class),
+                                                             getSchema(TypeToken.of(Target.class)));
+    reader.read(new BinaryDecoder(new ByteArrayInputStream(encoded)), sourceSchema);
+  }
+
+  @Test
+  public void testCollections() throws IOException, UnsupportedTypeException {
+    TypeToken<List<String>> listType = new TypeToken<List<String>>() { };
+    TypeToken<Set<String>> setType = new TypeToken<Set<String>>() { };
+    List<String> list = ImmutableList.of("1", "2", "3");
+    Schema sourceSchema = getSchema(listType);
+    byte[] encoded = encode(listType, list, list);
+
+    BinaryDecoder decoder = new BinaryDecoder(new ByteArrayInputStream(encoded));
+    Assert.assertEquals(ImmutableSet.copyOf(list),
+                        DATUM_READER_FACTORY.create(setType, getSchema(setType)).read(decoder, sourceSchema));
+    Assert.assertArrayEquals(list.toArray(),
+                             DATUM_READER_FACTORY.create(TypeToken.of(String[].class),
+                                                         getSchema(TypeToken.of(String[].class)))
+                               .read(decoder, sourceSchema));
+  }
+
+  @Test
+  public void testTree() throws IOException, UnsupportedTypeException {
+    TypeToken<Node> type = TypeToken.of(Node.class);
+    Node root = createTree(0, 4);
+    byte[] encoded = encode(type, root);
+
+    Schema schema = getSchema(type);
+    Node value = DATUM_READER_FACTORY.create(type, schema).read(new BinaryDecoder(new ByteArrayInputStream(encoded)),
+                                                                schema);
+    assertTreeEquals(root, value);
+  }
+
+  @Ignore
+  @Test
+  public void testSpeed() throws IOException, UnsupportedTypeException {
+    TypeToken<Node> type = TypeToken.of(Node.class);
+    Schema schema = getSchema(type);
+    byte[] encoded = encode(type, createTree(0, 6));
+
+    DatumReader<Node> reader = DATUM_READER_FACTORY.create(type, schema);
+    DatumReader<Node> reflectionReader = new ReflectionDatumReader<>(schema, type);
+    for (int round = 0; round < 3; round++) {
+      for (DatumReader<Node> datumReader : ImmutableList.of(reader, reflectionReader)) {
+        long startTime = System.nanoTime();
+        for (int i = 0; i < 100000; i++) {
+          datumReader.read(new BinaryDecoder(new ByteArrayInputStream(encoded)), schema);
+        }
+        long endTime = System.nanoTime();
+        System.out.println(datumReader.getClass().getSimpleName() + " time spent: "
+                             + TimeUnit.MILLISECONDS.convert(endTime - startTime, TimeUnit.NANOSECONDS));
+      }
+    }
+  }
+
+  private Node createTree(int data, int depth) {
+    Node node = new Node();
+    node.data = data;
+    if (depth > 0) {
+      node.left = createTree(data * 2 + 1, depth - 1);
+      node.right = createTree(data * 2 + 2, depth - 1);
+    }
+    return node;
+  }
+
+  private void assertTreeEquals(Node expected, Node actual) {
+    if (expected == null) {
+      Assert.assertNull(actual);
+      return;
+    }
+    Assert.assertNotNull(actual);
+    Assert.assertEquals(expected.data, actual.data);
+    assertTreeEquals(expected.left, actual.left);
+    assertTreeEquals(expected.right, actual.right);
+  }
+
+  private <T> Schema getSchema(TypeToken<T> type) throws UnsupportedTypeException {
+    return new ReflectionSchemaGenerator().generate(type.getType());
+  }
+
+  @SafeVarargs
+  private final <T> byte[] encode(TypeToken<T> type, T... values) throws IOException, UnsupportedTypeException {
+    DatumWriter<T> writer = DATUM_WRITER_FACTORY.create(type, getSchema(type));
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = new BinaryEncoder(os);
+    for (T value : values) {
+      writer.encode(value, encoder);
+    }
+    return os.toByteArray();
+  }
+}
@@ -20,9 +20,12 @@ import co.cask.cdap.common.io.BinaryDecoder;
 import co.cask.cdap.common.io.BinaryEncoder;
 import co.cask.cdap.common.io.Decoder;
 import co.cask.cdap.common.io.Encoder;
+import com.google.common.base.Charsets;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
@@ -124,4 +127,40 @@ public class CodecTest {
     Assert.assertEquals(1024, inBuf.get());
     Assert.assertEquals(9999999, inBuf.get());
   }
+
+  @Test
+  public void testStringEncoding() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Encoder encoder = new BinaryEncoder(output);
+
+    // Strings with multi-bytes characters, surrogate pairs, malformed surrogates and strings longer than the buffer
+    StringBuilder longString = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      longString.append((char) (i * 67));
+    }
+    String[] strings = new String[] {
+      "", "ascii", "\u00e9\u4e2d\uffff", "\ud83d\ude00 emoji", "bad \ud83d surrogate", "\ude00", longString.toString()
+    };
+    for (String str : strings) {
+      encoder.writeString(str);
+      // Must be the same as the JDK encoding
+      encoder.writeBytes(Charsets.UTF_8.encode(str));
+    }
+    // Writes a direct buffer larger than the encoder buffer
+    ByteBuffer direct = ByteBuffer.allocateDirect(1000);
+    for (int i = 0; i < direct.capacity(); i++) {
+      direct.put((byte) i);
+    }
+    direct.flip();
+    encoder.writeBytes(direct);
+    Assert.assertEquals(1000, direct.remaining());
+
+    Decoder decoder = new BinaryDecoder(new ByteArrayInputStream(output.toByteArray()));
+    for (String str : strings) {
+      String decoded = decoder.readString();
+      Assert.assertEquals(Charsets.UTF_8.decode(Charsets.UTF_8.encode(str)).toString(), decoded);
+      Assert.assertEquals(decoded, decoder.readString());
+    }
+    Assert.assertEquals(direct, decoder.readBytes());
+  }
 }
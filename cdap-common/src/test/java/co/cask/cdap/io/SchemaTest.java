@@ -362,9 +362,25 @@ public class SchemaTest {
       Schema restoredSchema = (Schema) ois.readObject();
       Assert.assertEquals(schema, restoredSchema);
       Assert.assertEquals(schemaString, restoredSchema.toString());
+      Assert.assertEquals(schema.getFieldIndex("map"), restoredSchema.getFieldIndex("map"));
     }
   }
 
+  @Test
+  public void testFieldIndex() {
+    Schema schema = Schema.recordOf(
+      "record",
+      Schema.Field.of("a", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("b", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("c", Schema.of(Schema.Type.LONG)));
+
+    for (int i = 0; i < schema.getFields().size(); i++) {
+      Assert.assertEquals(i, schema.getFieldIndex(schema.getFields().get(i).getName()));
+    }
+    Assert.assertEquals(-1, schema.getFieldIndex("d"));
+    Assert.assertEquals(-1, Schema.of(Schema.Type.STRING).getFieldIndex("a"));
+  }
+
   private void verifyThrowsException(String toParse) {
     try {
       Schema.parseSQL(toParse);
@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.format.UnexpectedFormatException;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.internal.io.SchemaTypeAdapter;
+import co.cask.cdap.internal.io.StructuredRecordTypeAdapter;
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Unit test for {@link StructuredRecord}.
+ */
+public class StructuredRecordTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("score", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))));
+
+  @Test
+  public void testAccessByIndex() {
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("id", 1L).set(1, "one").build();
+
+    Assert.assertEquals(1L, (long) record.get(0));
+    Assert.assertEquals(1L, (long) record.get("id"));
+    Assert.assertEquals("one", record.get(1));
+    Assert.assertEquals("one", record.get("name"));
+    Assert.assertNull(record.get(2));
+    Assert.assertNull(record.get("score"));
+    Assert.assertNull(record.get("unknown"));
+
+    int scoreIdx = SCHEMA.getFieldIndex("score");
+    Assert.assertEquals(2, scoreIdx);
+    try {
+      record.get(3);
+      Assert.fail("Expected IndexOutOfBoundsException");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testBuilderReuse() {
+    StructuredRecord.Builder builder = StructuredRecord.builder(SCHEMA);
+    StructuredRecord first = builder.set(0, 1L).set(1, "one").build();
+    StructuredRecord second = builder.set(0, 2L).set(2, 0.5d).build();
+
+    // Records built earlier are not affected by later changes to the builder
+    Assert.assertEquals(1L, (long) first.get("id"));
+    Assert.assertNull(first.get("score"));
+    Assert.assertEquals(2L, (long) second.get("id"));
+    Assert.assertEquals("one", second.get("name"));
+    Assert.assertEquals(0.5d, (double) second.get("score"), 0d);
+
+    Assert.assertEquals(first, StructuredRecord.builder(SCHEMA).set("id", 1L).set("name", "one").build());
+    Assert.assertEquals(first.hashCode(),
+                        StructuredRecord.builder(SCHEMA).set("id", 1L).set("name", "one").build().hashCode());
+    Assert.assertNotEquals(first, second);
+  }
+
+  @Test
+  public void testValidation() {
+    try {
+      StructuredRecord.builder(SCHEMA).set(1, "one").build();
+      Assert.fail("Expected failure for missing non-nullable field");
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+    try {
+      StructuredRecord.builder(SCHEMA).set(0, null);
+      Assert.fail("Expected failure for setting null to non-nullable field");
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+    try {
+      StructuredRecord.builder(SCHEMA).set(5, 1L);
+      Assert.fail("Expected failure for invalid field index");
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    // The serialized form must stay as schema and a map of fields for compatibility
+    Set<String> fieldNames = new HashSet<>();
+    for (ObjectStreamField field : ObjectStreamClass.lookup(StructuredRecord.class).getFields()) {
+      fieldNames.add(field.getName());
+    }
+    Assert.assertEquals(ImmutableSet.of("schema", "fields"), fieldNames);
+
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("id", 1L).set("name", "one").build();
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(os)) {
+      oos.writeObject(record);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(os.toByteArray()))) {
+      StructuredRecord restored = (StructuredRecord) ois.readObject();
+      Assert.assertEquals(record, restored);
+      Assert.assertEquals("one", restored.get(1));
+    }
+  }
+
+  @Test
+  public void testGsonSerialization() {
+    // The type adapter serializes the record as the schema and the map of non-null fields
+    Gson gson = new GsonBuilder()
+      .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
+      .registerTypeAdapter(StructuredRecord.class, new StructuredRecordTypeAdapter())
+      .create();
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("id", 1L).set("name", "one").build();
+
+    JsonObject json = gson.toJsonTree(record).getAsJsonObject();
+    Assert.assertEquals(SCHEMA, gson.fromJson(json.get("schema"), Schema.class));
+    JsonObject fields = json.getAsJsonObject("fields");
+    Assert.assertEquals(1L, fields.get("id").getAsLong());
+    Assert.assertEquals("one", fields.get("name").getAsString());
+    Assert.assertFalse(fields.has("score"));
+
+    // Gson reads untyped numbers as doubles
+    StructuredRecord restored = gson.fromJson(json, StructuredRecord.class);
+    Assert.assertEquals(SCHEMA, restored.getSchema());
+    Assert.assertEquals(1d, (double) restored.get("id"), 0d);
+    Assert.assertEquals(1d, (double) restored.get(0), 0d);
+    Assert.assertEquals("one", restored.get(1));
+    Assert.assertNull(restored.get(2));
+
+    // Without the type adapter, Gson serializes the record reflectively
+    gson = new GsonBuilder().registerTypeAdapter(Schema.class, new SchemaTypeAdapter()).create();
+    restored = gson.fromJson(gson.toJson(record), StructuredRecord.class);
+    Assert.assertEquals(1d, (double) restored.get("id"), 0d);
+    Assert.assertEquals("one", restored.get("name"));
+    Assert.assertNull(restored.get("score"));
+  }
+}
@@ -17,6 +17,7 @@
 package co.cask.cdap.data2.dataset2.lib.table.hbase;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.batch.Split;
 import co.cask.cdap.api.dataset.DatasetAdmin;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetProperties;
@@ -225,6 +226,28 @@ public class HBaseTableTest extends BufferingTableTest<BufferingTable> {
     }
   }
 
+  @Test
+  public void testSplitLocations() throws Exception {
+    byte[][] splits = new byte[][] {Bytes.toBytes("a"), Bytes.toBytes("b")};
+    DatasetProperties props = DatasetProperties.builder().add("hbase.splits", new Gson().toJson(splits)).build();
+    String tableName = "splitlocations";
+    HBaseTableAdmin admin = getTableAdmin(CONTEXT1, tableName, props);
+    admin.create();
+    try {
+      BufferingTable table = getTable(CONTEXT1, tableName, props);
+      table.startTx(new DetachedTxSystemClient().startShort());
+      // every split should have the host of the region server serving its start as location
+      List<Split> tableSplits = table.getSplits(4, null, null);
+      Assert.assertFalse(tableSplits.isEmpty());
+      for (Split split : tableSplits) {
+        Assert.assertEquals(1, split.getLocations().length);
+      }
+      table.close();
+    } finally {
+      admin.drop();
+    }
+  }
+
   @Test
   public void testEnableIncrements() throws Exception {
     // setup a table with increments disabled and with it enabled
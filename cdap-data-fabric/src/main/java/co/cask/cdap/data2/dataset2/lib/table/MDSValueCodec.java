@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+
+import java.io.IOException;
+
+/**
+ * Encodes and decodes values of a particular type stored in a {@link MetadataStoreDataset} in a compact binary
+ * format, instead of the default JSON format. The version returned by {@link #getVersion()} is stored with each
+ * encoded value, so that a codec can keep decoding values written by earlier versions of it.
+ *
+ * @param <T> type of the values
+ */
+public interface MDSValueCodec<T> {
+
+  /**
+   * Returns the version of the encoding used by {@link #encode(Object, Encoder)}.
+   */
+  int getVersion();
+
+  /**
+   * Encodes the given value.
+   *
+   * @param value the value to encode
+   * @param encoder the {@link Encoder} to write to
+   * @throws IOException if failed to encode
+   */
+  void encode(T value, Encoder encoder) throws IOException;
+
+  /**
+   * Decodes a value.
+   *
+   * @param version the version of the encoding the value was written with
+   * @param decoder the {@link Decoder} to read from
+   * @return the decoded value
+   * @throws IOException if failed to decode, or if the version is not supported
+   */
+  T decode(int version, Decoder decoder) throws IOException;
+}
@@ -24,6 +24,8 @@ import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.id.ProgramId;
@@ -36,9 +38,13 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.gson.Gson;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -53,8 +59,15 @@ public class MetadataStoreDataset extends AbstractDataset {
    */
   private static final byte[] COLUMN = Bytes.toBytes("c");
 
+  /**
+   * First byte of values encoded with a {@link MDSValueCodec}. JSON values never start with it.
+   */
+  private static final byte CODEC_MARKER = 0;
+
   private final Table table;
   private final Gson gson;
+  private final Map<Type, MDSValueCodec<?>> codecs = new HashMap<>();
+  private boolean valueCodecWrites;
 
   public MetadataStoreDataset(Table table) {
     this(table, new Gson());
@@ -74,6 +87,63 @@ public class MetadataStoreDataset extends AbstractDataset {
     return gson.fromJson(Bytes.toString(serialized), typeOfT);
   }
 
+  /**
+   * Adds a {@link MDSValueCodec} for values of the given type. Values of that type written with the codec are
+   * always readable, but values are only written with the codec if {@link #setValueCodecWrites(boolean)} is enabled.
+   * Values written as JSON are still read through {@link #deserialize(byte[], Type)}.
+   *
+   * @param type the type of the values, which must be the exact class of the values being written
+   * @param codec the codec to use
+   */
+  protected <T> void addValueCodec(Class<T> type, MDSValueCodec<T> codec) {
+    codecs.put(type, codec);
+  }
+
+  /**
+   * Sets whether values with a {@link MDSValueCodec} are written with the codec instead of as JSON. Values written
+   * with the codec cannot be read by versions that do not know about the codec. Disabling it again rewrites such
+   * values as JSON the next time they are written.
+   */
+  protected void setValueCodecWrites(boolean enabled) {
+    this.valueCodecWrites = enabled;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> byte[] encode(T value) {
+    MDSValueCodec<T> codec = value == null || !valueCodecWrites
+      ? null : (MDSValueCodec<T>) codecs.get(value.getClass());
+    if (codec == null) {
+      return serialize(value);
+    }
+    try {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      os.write(CODEC_MARKER);
+      BinaryEncoder encoder = new BinaryEncoder(os);
+      encoder.writeInt(codec.getVersion());
+      codec.encode(value, encoder);
+      return os.toByteArray();
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T decode(byte[] serialized, Type typeOfT) {
+    if (serialized.length == 0 || serialized[0] != CODEC_MARKER) {
+      return deserialize(serialized, typeOfT);
+    }
+    MDSValueCodec<T> codec = (MDSValueCodec<T>) codecs.get(typeOfT);
+    if (codec == null) {
+      throw new IllegalStateException("No codec available to decode binary value of type " + typeOfT);
+    }
+    try {
+      BinaryDecoder decoder = new BinaryDecoder(new ByteArrayInputStream(serialized, 1, serialized.length - 1));
+      return codec.decode(decoder.readInt(), decoder);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
   public boolean exists(MDSKey id) {
     Row row = table.get(id.getKey());
     if (row.isEmpty()) {
@@ -100,12 +170,26 @@ public class MetadataStoreDataset extends AbstractDataset {
       return null;
     }
 
-    return deserialize(value, typeOfT);
+    return decode(value, typeOfT);
   }
 
   // returns first that matches
   @Nullable
   public <T> T getFirst(MDSKey id, Type typeOfT) {
+    byte[] value = getFirstValue(id);
+    return value == null ? null : this.<T>decode(value, typeOfT);
+  }
+
+  /**
+   * Returns the stored value of the first entry that has the given key as prefix, without decoding it.
+   * This allows subclasses to skip decoding of values that they already have in decoded form.
+   *
+   * @param id the key prefix
+   * @return the stored value or {@code null} if there is no entry with the given prefix
+   * @see #decodeValue(byte[], Type)
+   */
+  @Nullable
+  protected byte[] getFirstValue(MDSKey id) {
     try {
       Scanner scan = table.scan(id.getKey(), Bytes.stopKeyForPrefix(id.getKey()));
       try {
@@ -113,13 +197,7 @@ public class MetadataStoreDataset extends AbstractDataset {
         if (row == null || row.isEmpty()) {
           return null;
         }
-
-        byte[] value = row.get(COLUMN);
-        if (value == null) {
-          return null;
-        }
-
-        return deserialize(value, typeOfT);
+        return row.get(COLUMN);
       } finally {
         scan.close();
       }
@@ -128,6 +206,14 @@ public class MetadataStoreDataset extends AbstractDataset {
     }
   }
 
+  /**
+   * Decodes a value returned by {@link #getFirstValue(MDSKey)}, the same way as the value would be decoded by
+   * {@link #getFirst(MDSKey, Type)}.
+   */
+  protected <T> T decodeValue(byte[] value, Type typeOfT) {
+    return decode(value, typeOfT);
+  }
+
   // lists all that has same first id parts
   public <T> List<T> list(MDSKey id, Type typeOfT) {
     return list(id, typeOfT, Integer.MAX_VALUE);
@@ -176,7 +262,7 @@ public class MetadataStoreDataset extends AbstractDataset {
           if (columnValue == null) {
             continue;
           }
-          T value = deserialize(columnValue, typeOfT);
+          T value = decode(columnValue, typeOfT);
 
           if (filter.apply(value)) {
             MDSKey key = new MDSKey(next.getRow());
@@ -249,7 +335,7 @@ public class MetadataStoreDataset extends AbstractDataset {
         if (columnValue == null) {
           continue;
         }
-        T value = deserialize(columnValue, typeOfT);
+        T value = decode(columnValue, typeOfT);
 
         MDSKey key = new MDSKey(next.getRow());
         //noinspection ConstantConditions
@@ -310,7 +396,7 @@ public class MetadataStoreDataset extends AbstractDataset {
 
   public <T> void write(MDSKey id, T value) {
     try {
-      table.put(new Put(id.getKey()).add(COLUMN, serialize(value)));
+      table.put(new Put(id.getKey()).add(COLUMN, encode(value)));
     } catch (Exception e) {
       throw Throwables.propagate(e);
     }
@@ -19,12 +19,14 @@ package co.cask.cdap.data2.dataset2.lib.table.hbase;
 import co.cask.cdap.api.annotation.ReadOnly;
 import co.cask.cdap.api.annotation.WriteOnly;
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.batch.Split;
 import co.cask.cdap.api.dataset.DataSetException;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetSpecification;
 import co.cask.cdap.api.dataset.table.Filter;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.TableProperties;
+import co.cask.cdap.api.dataset.table.TableSplit;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
@@ -49,6 +51,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HTable;
@@ -68,6 +72,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -112,7 +117,8 @@ public class HBaseTable extends BufferingTable {
     this.hTable = hTable;
     this.hTableName = Bytes.toStringBinary(hTable.getTableName());
     this.columnFamily = TableProperties.getColumnFamilyBytes(spec.getProperties());
-    this.txCodec = new TransactionCodec();
+    this.txCodec = new TransactionCodec(cConf.getBoolean(TxConstants.TX_COMPACT_ENCODING,
+                                                         TxConstants.DEFAULT_TX_COMPACT_ENCODING));
     // Overriding the hbase tx change prefix so it resembles the hbase table name more closely, since the HBase
     // table name is not the same as the dataset name anymore
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) this.hTableName.length()}, Bytes.toBytes(this.hTableName));
@@ -130,6 +136,39 @@ public class HBaseTable extends BufferingTable {
                   .toString();
   }
 
+  /**
+   * Returns the splits computed by {@link BufferingTable#getSplits(int, byte[], byte[])}, with the host of the
+   * region server that serves the start of each split as its location.
+   */
+  @Override
+  public List<Split> getSplits(int numSplits, byte[] start, byte[] stop) {
+    List<Split> splits = super.getSplits(numSplits, start, stop);
+
+    // Map from region start key to the host of the region server
+    NavigableMap<byte[], String> regionHosts = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    try {
+      for (Map.Entry<HRegionInfo, ServerName> entry : hTable.getRegionLocations().entrySet()) {
+        if (entry.getValue() != null) {
+          regionHosts.put(entry.getKey().getStartKey(), entry.getValue().getHostname());
+        }
+      }
+    } catch (IOException e) {
+      // Locations are only used for scheduling, hence just return the splits without them
+      LOG.warn("Failed to get region locations of table {}", hTableName, e);
+      return splits;
+    }
+
+    List<Split> result = new ArrayList<>(splits.size());
+    for (Split split : splits) {
+      TableSplit tableSplit = (TableSplit) split;
+      byte[] splitStart = tableSplit.getStart() == null ? Bytes.EMPTY_BYTE_ARRAY : tableSplit.getStart();
+      Map.Entry<byte[], String> region = regionHosts.floorEntry(splitStart);
+      String[] locations = region == null ? new String[0] : new String[] { region.getValue() };
+      result.add(new TableSplit(tableSplit.getStart(), tableSplit.getStop(), locations));
+    }
+    return result;
+  }
+
   @Override
   protected List<Map<byte[], byte[]>> getPersisted(List<co.cask.cdap.api.dataset.table.Get> gets) {
     if (gets.isEmpty()) {
@@ -202,6 +202,25 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     return true;
   }
 
+  /**
+   * Returns the number of rows to scan for filling up the entry cache for a dequeue of the given batch size.
+   */
+  protected int getFetchRows(int maxBatchSize) {
+    return Math.max(MIN_FETCH_ROWS, maxBatchSize * PREFETCH_BATCHES);
+  }
+
+  /**
+   * Returns a copy of the row that the next scan for queue entries will start from, or {@code null} if the entry
+   * cache already has enough entries for a dequeue of the given batch size, hence no scan is needed.
+   */
+  @Nullable
+  protected byte[] getNextScanStartRow(int maxBatchSize) {
+    if (entryCache.size() >= maxBatchSize) {
+      return null;
+    }
+    return Arrays.copyOf(scanStartRow, scanStartRow.length);
+  }
+
   /**
    * Called when the start row is updated.
    */
@@ -316,7 +335,7 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     long readPointer = transaction.getReadPointer();
 
     // Scan the table for queue entries.
-    int numRows = Math.max(MIN_FETCH_ROWS, maxBatchSize * PREFETCH_BATCHES);
+    int numRows = getFetchRows(maxBatchSize);
     QueueScanner scanner = getScanner(scanStartRow,
                                       QueueEntryRow.getStopRowForTransaction(queueRowPrefix, transaction),
                                       numRows);
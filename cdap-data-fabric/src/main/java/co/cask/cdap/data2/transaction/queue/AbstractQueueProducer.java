@@ -30,23 +30,32 @@ import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import javax.annotation.Nullable;
 
 /**
- * Abstract base class for {@link QueueProducer} that emits enqueue metrics post commit.
+ * Abstract base class for {@link QueueProducer} that emits enqueue metrics post commit and, if a
+ * {@link QueueEnqueueNotifier} is given, notifies consumers in the same process about the committed entries.
  */
 public abstract class AbstractQueueProducer implements QueueProducer, TransactionAware {
 
   private final QueueMetrics queueMetrics;
   private final BlockingQueue<QueueEntry> queue;
   private final QueueName queueName;
+  private final QueueEnqueueNotifier enqueueNotifier;
   private Transaction transaction;
   private int lastEnqueueCount;
   private int lastEnqueueBytes;
 
   protected AbstractQueueProducer(QueueMetrics queueMetrics, QueueName queueName) {
+    this(queueMetrics, queueName, null);
+  }
+
+  protected AbstractQueueProducer(QueueMetrics queueMetrics, QueueName queueName,
+                                  @Nullable QueueEnqueueNotifier enqueueNotifier) {
     this.queueMetrics = queueMetrics;
     this.queue = new LinkedBlockingQueue<>();
     this.queueName = queueName;
+    this.enqueueNotifier = enqueueNotifier;
   }
 
   @Override
@@ -102,6 +111,9 @@ public abstract class AbstractQueueProducer implements QueueProducer, Transactio
     if (lastEnqueueCount > 0) {
       queueMetrics.emitEnqueue(lastEnqueueCount);
       queueMetrics.emitEnqueueBytes(lastEnqueueBytes);
+      if (enqueueNotifier != null) {
+        enqueueNotifier.notifyEnqueue(queueName);
+      }
     }
   }
 
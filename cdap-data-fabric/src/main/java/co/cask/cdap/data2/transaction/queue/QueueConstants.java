@@ -28,6 +28,7 @@ public final class QueueConstants {
   public static final class ConfigKeys {
     public static final String QUEUE_TABLE_PRESPLITS = "data.queue.table.presplits";
     public static final String DEQUEUE_TX_PERCENT = "data.queue.dequeue.tx.percent";
+    public static final String DEQUEUE_PREFETCH_DEPTH = "data.queue.dequeue.prefetch.depth";
   }
 
   // This is a hardcoded value for the row key distributor bucket size before CDAP-1946
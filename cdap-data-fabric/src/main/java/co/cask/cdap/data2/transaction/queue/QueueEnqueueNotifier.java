@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.transaction.queue;
+
+import co.cask.cdap.common.queue.QueueName;
+import com.google.common.collect.Maps;
+import com.google.inject.Singleton;
+import org.apache.twill.common.Cancellable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Notifies listeners in the current process when entries are committed to a queue. Only queue producers that write
+ * to queues that are consumed in the same process (in-memory and LevelDB queues) notify, and they mark the
+ * notifier as enabled when their client factory is created. Consumers of queues that are not notified need to poll.
+ */
+@Singleton
+public final class QueueEnqueueNotifier {
+
+  private static final Logger LOG = LoggerFactory.getLogger(QueueEnqueueNotifier.class);
+
+  private final ConcurrentMap<QueueName, Set<Runnable>> listeners = Maps.newConcurrentMap();
+  private volatile boolean enabled;
+
+  /**
+   * Marks that enqueues to queues in this process are notified.
+   */
+  public void enable() {
+    enabled = true;
+  }
+
+  /**
+   * Returns {@code true} if enqueues to queues in this process are notified.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Adds a listener that is called after entries are committed to the given queue. The listener is called from the
+   * thread that committed the enqueue transaction, hence it should return quickly.
+   *
+   * @return a {@link Cancellable} to remove the listener
+   */
+  public Cancellable addListener(final QueueName queueName, final Runnable listener) {
+    Set<Runnable> queueListeners = listeners.get(queueName);
+    if (queueListeners == null) {
+      Set<Runnable> newListeners = new CopyOnWriteArraySet<>();
+      queueListeners = listeners.putIfAbsent(queueName, newListeners);
+      if (queueListeners == null) {
+        queueListeners = newListeners;
+      }
+    }
+    final Set<Runnable> listenerSet = queueListeners;
+    listenerSet.add(listener);
+    return new Cancellable() {
+      @Override
+      public void cancel() {
+        listenerSet.remove(listener);
+      }
+    };
+  }
+
+  /**
+   * Calls the listeners of the given queue. This method never throws.
+   */
+  public void notifyEnqueue(QueueName queueName) {
+    Set<Runnable> queueListeners = listeners.get(queueName);
+    if (queueListeners == null) {
+      return;
+    }
+    for (Runnable listener : queueListeners) {
+      try {
+        listener.run();
+      } catch (Throwable t) {
+        LOG.warn("Exception raised when notifying enqueue to queue {}", queueName, t);
+      }
+    }
+  }
+}
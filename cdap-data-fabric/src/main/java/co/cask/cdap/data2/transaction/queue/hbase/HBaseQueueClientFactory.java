@@ -15,6 +15,9 @@
  */
 package co.cask.cdap.data2.transaction.queue.hbase;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.queue.QueueName;
@@ -39,6 +42,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
@@ -77,6 +81,8 @@ public class HBaseQueueClientFactory implements QueueClientFactory, ProgramConte
   private final HBaseTableUtil hBaseTableUtil;
   private final TransactionExecutorFactory txExecutorFactory;
   private final long txMaxLifeTimeInMillis;
+  private final int prefetchDepth;
+  private MetricsCollectionService metricsCollectionService;
 
   @Inject
   public HBaseQueueClientFactory(CConfiguration cConf, Configuration hConf, HBaseTableUtil hBaseTableUtil,
@@ -89,6 +95,15 @@ public class HBaseQueueClientFactory implements QueueClientFactory, ProgramConte
     this.txExecutorFactory = txExecutorFactory;
     this.txMaxLifeTimeInMillis = TimeUnit.SECONDS.toMillis(cConf.getLong(Constants.Tephra.CFG_TX_MAX_LIFETIME,
                                                                          Constants.Tephra.DEFAULT_TX_MAX_LIFETIME));
+    this.prefetchDepth = cConf.getInt(QueueConstants.ConfigKeys.DEQUEUE_PREFETCH_DEPTH, 0);
+  }
+
+  /**
+   * Optionally sets the service for emitting queue consumer prefetch metrics.
+   */
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsCollectionService = metricsCollectionService;
   }
 
   @Override
@@ -195,9 +210,13 @@ public class HBaseQueueClientFactory implements QueueClientFactory, ProgramConte
             HBaseQueueStrategy strategy = (state.getPreviousBarrier() == null)
                                           ? new SaltedHBaseQueueStrategy(hBaseTableUtil, distributorBuckets)
                                           : new ShardedHBaseQueueStrategy(hBaseTableUtil, distributorBuckets);
-            consumers.add(queueUtil.getQueueConsumer(cConf, hTable, queueName, state,
-                                                     admin.getConsumerStateStore(queueName),
-                                                     strategy));
+            HBaseQueueConsumer consumer = queueUtil.getQueueConsumer(cConf, hTable, queueName, state,
+                                                                     admin.getConsumerStateStore(queueName),
+                                                                     strategy);
+            if (prefetchDepth > 0) {
+              consumer.setPrefetch(prefetchDepth, getConsumerMetrics(queueName));
+            }
+            consumers.add(consumer);
           }
           return consumers;
         }
@@ -228,6 +247,21 @@ public class HBaseQueueClientFactory implements QueueClientFactory, ProgramConte
     return new HBaseQueueProducer(hTable, queueName, queueMetrics, queueStrategy, groupConfigs, txMaxLifeTimeInMillis);
   }
 
+  /**
+   * Returns the {@link MetricsContext} for the consumer of the given queue, tagged with the flowlet queue.
+   */
+  private MetricsContext getConsumerMetrics(QueueName queueName) {
+    if (metricsCollectionService == null || !queueName.isQueue() || queueName.getFourthComponent() == null) {
+      return new NoopMetricsContext();
+    }
+    return metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, queueName.getFirstComponent(),
+      Constants.Metrics.Tag.APP, queueName.getSecondComponent(),
+      Constants.Metrics.Tag.FLOW, queueName.getThirdComponent(),
+      Constants.Metrics.Tag.PRODUCER, queueName.getFourthComponent(),
+      Constants.Metrics.Tag.FLOWLET_QUEUE, queueName.getSimpleName()));
+  }
+
   /**
    * Helper method to select the queue or stream admin, and to ensure it's table exists.
    * @param queueName name of the queue to be opened.
@@ -16,8 +16,10 @@
 package co.cask.cdap.data2.transaction.queue.hbase;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.DequeueResult;
 import co.cask.cdap.data2.transaction.queue.AbstractQueueConsumer;
@@ -25,28 +27,58 @@ import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
 import co.cask.cdap.data2.transaction.queue.QueueScanner;
 import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.Futures;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Row;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.tephra.Transaction;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Queue consumer for HBase.
+ *
+ * If prefetching is enabled through {@link #setPrefetch(int, MetricsContext)}, after every
+ * committed dequeue the rows for the next dequeue are scanned in the background with the committed transaction.
+ * The next dequeue uses those rows if the scan starts from the same row, re-evaluating every row against the
+ * current transaction and claiming entries inside it as usual. Only rows written before the first in-progress
+ * transaction of the committed transaction are used, since rows after it may have been invisible to the
+ * prefetch scan but visible now. Because {@link HTable} is not thread safe, every table operation of this
+ * consumer waits for the pending prefetch scan to complete first.
  */
 abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
 
+  private static final Logger LOG = LoggerFactory.getLogger(HBaseQueueConsumer.class);
+  private static final long PREFETCH_THREAD_KEEP_ALIVE_SECONDS = 60L;
+
   private final HTable hTable;
   private final HBaseConsumerState state;
   private final HBaseConsumerStateStore stateStore;
   private final HBaseQueueStrategy queueStrategy;
+  private final byte[] queueRowPrefix;
+  private ExecutorService prefetchExecutor;
+  private int prefetchDepth;
+  private MetricsContext metricsContext;
+  private Prefetch prefetch;
+  private int lastBatchSize;
   private boolean closed;
   private boolean canConsume;
   private boolean completed;
@@ -68,12 +100,32 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
     this.state = consumerState;
     this.stateStore = stateStore;
     this.queueStrategy = queueStrategy;
+    this.queueRowPrefix = QueueEntryRow.getQueueRowPrefix(queueName);
     this.canConsume = false;
   }
 
+  /**
+   * Enables prefetching of queue rows. The prefetch scans run on a thread owned by this consumer, which is
+   * stopped when this consumer is closed.
+   *
+   * @param depth number of dequeue batches to prefetch
+   * @param metricsContext the context for emitting prefetch hits, misses and claim conflicts
+   */
+  void setPrefetch(int depth, MetricsContext metricsContext) {
+    // At most one prefetch is pending at a time. The thread is released while the consumer is idle.
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      1, 1, PREFETCH_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+      Threads.createDaemonThreadFactory("queue-prefetch-%d"));
+    executor.allowCoreThreadTimeOut(true);
+    this.prefetchExecutor = executor;
+    this.prefetchDepth = depth;
+    this.metricsContext = metricsContext;
+  }
+
   @Override
   public DequeueResult<byte[]> dequeue(int maxBatchSize) throws IOException {
     DequeueResult<byte[]> result = super.dequeue(maxBatchSize);
+    lastBatchSize = result.isEmpty() ? 0 : maxBatchSize;
 
     if (canConsume && result.isEmpty() && state.getNextBarrier() != null) {
       long groupId = state.getConsumerConfig().getGroupId();
@@ -87,10 +139,15 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
 
   @Override
   protected boolean claimEntry(byte[] rowKey, byte[] claimedStateValue) throws IOException {
+    awaitPrefetch();
     Put put = new Put(queueStrategy.getActualRowKey(getConfig(), rowKey));
     put.add(QueueEntryRow.COLUMN_FAMILY, stateColumnName, claimedStateValue);
-    return hTable.checkAndPut(put.getRow(), QueueEntryRow.COLUMN_FAMILY,
-                              stateColumnName, null, put);
+    boolean claimed = hTable.checkAndPut(put.getRow(), QueueEntryRow.COLUMN_FAMILY,
+                                         stateColumnName, null, put);
+    if (!claimed && metricsContext != null) {
+      metricsContext.increment("queue.claim.conflicts", 1);
+    }
+    return claimed;
   }
 
   @Override
@@ -98,6 +155,7 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
     if (rowKeys.isEmpty()) {
       return;
     }
+    awaitPrefetch();
     List<Put> puts = Lists.newArrayListWithCapacity(rowKeys.size());
     for (byte[] rowKey : rowKeys) {
       Put put = new Put(queueStrategy.getActualRowKey(getConfig(), rowKey));
@@ -113,6 +171,7 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
     if (rowKeys.isEmpty()) {
       return;
     }
+    awaitPrefetch();
     List<Row> ops = Lists.newArrayListWithCapacity(rowKeys.size());
     for (byte[] rowKey : rowKeys) {
       Delete delete = new Delete(queueStrategy.getActualRowKey(getConfig(), rowKey));
@@ -134,11 +193,11 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
       }
     }
 
-    Map<String, byte[]> attributes = DequeueScanAttributes.addAttribute(transaction,
-                                     DequeueScanAttributes.addAttribute(getConfig(), new HashMap<String, byte[]>()));
-    Scan scan = createScan(startRow, getScanStopRow(stopRow), numRows, attributes);
-
-    return queueStrategy.createScanner(getConfig(), hTable, scan, numRows);
+    QueueScanner scanner = takePrefetch(startRow);
+    if (scanner != null) {
+      return scanner;
+    }
+    return createScanner(transaction, startRow, stopRow, numRows);
   }
 
   @Override
@@ -147,6 +206,11 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
       return;
     }
     closed = true;
+    awaitPrefetch();
+    prefetch = null;
+    if (prefetchExecutor != null) {
+      prefetchExecutor.shutdownNow();
+    }
     Closeables.closeQuietly(queueStrategy);
     Closeables.closeQuietly(stateStore);
     Closeables.closeQuietly(hTable);
@@ -175,6 +239,8 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
     stateStore.postTxCommit();
     if (completed) {
       Closeables.closeQuietly(this);
+    } else {
+      startPrefetch();
     }
   }
 
@@ -192,8 +258,146 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
 
   protected abstract Scan createScan(byte[] startRow, byte[] stopRow, int numRows, Map<String, byte[]> attributes);
 
+  private QueueScanner createScanner(Transaction tx, byte[] startRow, byte[] stopRow, int numRows) throws IOException {
+    Map<String, byte[]> attributes = DequeueScanAttributes.addAttribute(tx,
+                                     DequeueScanAttributes.addAttribute(getConfig(), new HashMap<String, byte[]>()));
+    Scan scan = createScan(startRow, getScanStopRow(stopRow), numRows, attributes);
+
+    return queueStrategy.createScanner(getConfig(), hTable, scan, numRows);
+  }
+
+  /**
+   * Starts scanning the rows for the next dequeue in the background, using the transaction just committed.
+   */
+  private void startPrefetch() {
+    if (prefetchExecutor == null || closed || !canConsume || lastBatchSize <= 0 || transaction == null) {
+      return;
+    }
+    final byte[] startRow = getNextScanStartRow(lastBatchSize);
+    if (startRow == null) {
+      return;
+    }
+    final Transaction tx = transaction;
+    final byte[] stopRow = QueueEntryRow.getStopRowForTransaction(queueRowPrefix, tx);
+    final int numRows = lastBatchSize * prefetchDepth;
+    try {
+      Future<List<ImmutablePair<byte[], Map<byte[], byte[]>>>> rows = prefetchExecutor.submit(
+        new Callable<List<ImmutablePair<byte[], Map<byte[], byte[]>>>>() {
+          @Override
+          public List<ImmutablePair<byte[], Map<byte[], byte[]>>> call() throws Exception {
+            List<ImmutablePair<byte[], Map<byte[], byte[]>>> result = Lists.newArrayList();
+            QueueScanner scanner = createScanner(tx, startRow, stopRow, numRows);
+            try {
+              ImmutablePair<byte[], Map<byte[], byte[]>> row = scanner.next();
+              while (row != null && result.size() < numRows) {
+                result.add(row);
+                row = scanner.next();
+              }
+            } finally {
+              scanner.close();
+            }
+            return result;
+          }
+        });
+      prefetch = new Prefetch(startRow, tx.getFirstInProgress(), rows);
+    } catch (RejectedExecutionException e) {
+      LOG.debug("Prefetch rejected for queue {}", getQueueName(), e);
+    }
+  }
+
+  /**
+   * Returns a {@link QueueScanner} over the prefetched rows if they are scanned from the given start row,
+   * or {@code null} if there are no such rows. The pending prefetch is consumed either way. A prefetch hit is
+   * counted only if the prefetched rows are ready when needed.
+   */
+  @Nullable
+  private QueueScanner takePrefetch(byte[] startRow) {
+    if (prefetchExecutor == null) {
+      return null;
+    }
+    Prefetch current = prefetch;
+    prefetch = null;
+    boolean ready = current != null && current.rows.isDone();
+    List<ImmutablePair<byte[], Map<byte[], byte[]>>> rows = awaitPrefetch(current);
+    if (rows == null || !Bytes.equals(current.startRow, startRow)) {
+      metricsContext.increment("queue.prefetch.misses", 1);
+      return null;
+    }
+    metricsContext.increment(ready ? "queue.prefetch.hits" : "queue.prefetch.misses", 1);
+    return new PrefetchedQueueScanner(rows.iterator(), current.maxWritePointer);
+  }
+
+  /**
+   * Waits for the pending prefetch scan to complete, so that the {@link HTable} can be used.
+   */
+  private void awaitPrefetch() {
+    awaitPrefetch(prefetch);
+  }
+
+  @Nullable
+  private List<ImmutablePair<byte[], Map<byte[], byte[]>>> awaitPrefetch(@Nullable Prefetch prefetch) {
+    if (prefetch == null) {
+      return null;
+    }
+    try {
+      return Futures.getUnchecked(prefetch.rows);
+    } catch (Exception e) {
+      // A failed prefetch just means the rows will be scanned again in the dequeue
+      LOG.debug("Prefetch failed for queue {}", getQueueName(), e);
+      return null;
+    }
+  }
+
   private byte[] getScanStopRow(byte[] stopRow) {
     byte[] barrierEndRow = state.getNextBarrier();
     return barrierEndRow == null || Bytes.compareTo(stopRow, barrierEndRow) < 0 ? stopRow : barrierEndRow;
   }
+
+  /**
+   * Rows prefetched from a given start row.
+   */
+  private static final class Prefetch {
+    private final byte[] startRow;
+    private final long maxWritePointer;
+    private final Future<List<ImmutablePair<byte[], Map<byte[], byte[]>>>> rows;
+
+    private Prefetch(byte[] startRow, long maxWritePointer,
+                     Future<List<ImmutablePair<byte[], Map<byte[], byte[]>>>> rows) {
+      this.startRow = startRow;
+      this.maxWritePointer = maxWritePointer;
+      this.rows = rows;
+    }
+  }
+
+  /**
+   * A {@link QueueScanner} over prefetched rows. It stops at the first row written by a transaction that was in
+   * progress when the rows were scanned, as rows before it may be missing from the prefetched rows.
+   */
+  private final class PrefetchedQueueScanner implements QueueScanner {
+
+    private final Iterator<ImmutablePair<byte[], Map<byte[], byte[]>>> rows;
+    private final long maxWritePointer;
+
+    private PrefetchedQueueScanner(Iterator<ImmutablePair<byte[], Map<byte[], byte[]>>> rows, long maxWritePointer) {
+      this.rows = rows;
+      this.maxWritePointer = maxWritePointer;
+    }
+
+    @Override
+    public ImmutablePair<byte[], Map<byte[], byte[]>> next() throws IOException {
+      if (!rows.hasNext()) {
+        return null;
+      }
+      ImmutablePair<byte[], Map<byte[], byte[]>> row = rows.next();
+      if (QueueEntryRow.getWritePointer(row.getFirst(), queueRowPrefix.length) >= maxWritePointer) {
+        return null;
+      }
+      return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+      // no-op
+    }
+  }
 }
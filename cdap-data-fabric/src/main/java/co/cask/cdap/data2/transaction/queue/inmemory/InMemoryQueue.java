@@ -20,7 +20,6 @@ import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.DequeueStrategy;
 import co.cask.cdap.data2.queue.QueueEntry;
-import co.cask.cdap.data2.transaction.queue.ConsumerEntryState;
 import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -29,35 +28,64 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
-import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Implementation of an in-memory queue.
+ *
+ * Entries are appended in enqueue order to a log made of fixed size segments. Appending only reserves a position
+ * with an atomic increment, hence it never blocks. Each segment keeps, for every consumer group, a bitmap of the
+ * entries processed by the group and the instance that claimed each entry. Every consumer has a cursor to the first
+ * position it may still need to dequeue, so that entries that are processed or that belong to other instances of
+ * its group are not scanned again. A segment is dropped from the log once all its entries are evicted.
+ *
+ * Since entries of a transaction are appended when it commits, the log is not ordered by transaction. A dequeue
+ * scans the log up to the end and only returns the entries that are visible to the transaction.
  */
 public class InMemoryQueue {
 
   private static final Logger LOG = LoggerFactory.getLogger(InMemoryQueue.class);
 
-  private final ConcurrentNavigableMap<Key, Item> entries = new ConcurrentSkipListMap<>();
+  // Number of entries in a segment. Must be a multiple of 64 for the processed bitmaps.
+  private static final int SEGMENT_SIZE = 1024;
+
+  // Placeholder for an entry that is evicted or undone
+  private static final Item REMOVED = new Item(null, null);
+
+  private volatile Log log = new Log();
 
   public void clear() {
-    entries.clear();
+    log = new Log();
   }
 
   public int getSize() {
-    return entries.size();
+    return log.size.get();
   }
 
-  public void enqueue(long txId, int seqId, QueueEntry entry) {
-    entries.put(new Key(txId, seqId), new Item(entry));
+  /**
+   * Appends an entry to the queue.
+   *
+   * @return the {@link Key} of the entry, for undoing the enqueue
+   */
+  public Key enqueue(long txId, int seqId, QueueEntry entry) {
+    Log log = this.log;
+    long index = log.tail.getAndIncrement();
+    Segment segment = log.getSegment(index);
+    int slot = (int) (index - segment.baseIndex);
+    Key key = new Key(txId, seqId, segment, slot);
+    segment.items.set(slot, new Item(key, entry));
+    log.size.incrementAndGet();
+    return key;
   }
 
-  public void undoEnqueue(long txId, int seqId) {
-    entries.remove(new Key(txId, seqId));
+  public void undoEnqueue(Key key) {
+    remove(key);
   }
 
   public ImmutablePair<List<Key>, List<byte[]>> dequeue(Transaction tx, ConsumerConfig config,
@@ -65,53 +93,74 @@ public class InMemoryQueue {
 
     List<Key> keys = Lists.newArrayListWithCapacity(maxBatchSize);
     List<byte[]> datas = Lists.newArrayListWithCapacity(maxBatchSize);
-    NavigableSet<Key> keysToScan = consumerState.startKey == null ? entries.navigableKeySet() :
-      entries.tailMap(consumerState.startKey).navigableKeySet();
-    boolean updateStartKey = true;
 
-    // navigableKeySet is immune to concurrent modification
-    for (Key key : keysToScan) {
-      if (keys.size() >= maxBatchSize) {
-        break;
-      }
-      if (updateStartKey && key.txId < tx.getFirstShortInProgress()) {
-        // See QueueEntryRow#canCommit for reason.
-        consumerState.startKey = key;
+    Log log = this.log;
+    Segment head = log.head.get();
+    if (consumerState.log != log || consumerState.segment.baseIndex < head.baseIndex) {
+      // The queue was cleared, or the segments before the head are dropped because all their entries are evicted
+      consumerState.log = log;
+      consumerState.segment = head;
+      consumerState.index = head.baseIndex;
+    }
+
+    Segment segment = consumerState.segment;
+    long tail = log.tail.get();
+    // The cursor only moves forward past entries that will never be returned to this consumer
+    boolean moveCursor = true;
+
+    for (long index = consumerState.index; index < tail && keys.size() < maxBatchSize; index++) {
+      while (segment != null && index >= segment.baseIndex + SEGMENT_SIZE) {
+        segment = segment.next.get();
       }
-      if (tx.getReadPointer() < key.txId) {
-        // the entry is newer than the current transaction. so are all subsequent entries. bail out.
+      if (segment == null) {
+        // the segment is reserved by an ongoing enqueue, but not yet added
         break;
-      } else if (tx.isInProgress(key.txId)) {
-        // the entry is in the exclude list of current transaction. There is a chance that visible entries follow.
-        updateStartKey = false; // next time we have to revisit this entry
-        continue;
       }
-      Item item = entries.get(key);
+      int slot = (int) (index - segment.baseIndex);
+      Item item = segment.items.get(slot);
       if (item == null) {
-        // entry was deleted (evicted or undone) after we started iterating
+        // the position is reserved by an ongoing enqueue, but the entry is not yet written
+        moveCursor = false;
+        continue;
+      }
+      if (item == REMOVED) {
+        // entry was evicted or undone
+        if (moveCursor) {
+          consumerState.moveTo(segment, index + 1);
+        }
         continue;
       }
-      // check whether this is processed already
-      ConsumerEntryState state = item.getConsumerState(config.getGroupId());
-      if (ConsumerEntryState.PROCESSED.equals(state)) {
+
+      GroupState groupState = segment.getGroupState(config.getGroupId());
+      if (groupState.isProcessed(slot)) {
         // already processed but not yet evicted. move on
+        if (moveCursor) {
+          consumerState.moveTo(segment, index + 1);
+        }
+        continue;
+      }
+
+      Key key = item.key;
+      if (tx.getReadPointer() < key.txId || tx.isInProgress(key.txId)) {
+        // the entry is not visible to the current transaction, but will be later. We have to revisit it.
+        moveCursor = false;
         continue;
       }
       if (config.getDequeueStrategy().equals(DequeueStrategy.FIFO)) {
         // for FIFO, attempt to claim the entry and return it
-        if (item.claim(config)) {
+        if (groupState.claim(slot, config)) {
           keys.add(key);
           datas.add(item.entry.getData());
         }
-        // else: someone else claimed it, or it was already processed, move on, but we may have to revisit this.
-        updateStartKey = false;
+        // else: someone else claimed it, move on, but we may have to revisit this if the claimer goes away.
+        moveCursor = false;
         continue;
       }
       // for hash/round robin, if group size is 1, just take it
       if (config.getGroupSize() == 1) {
         keys.add(key);
         datas.add(item.entry.getData());
-        updateStartKey = false;
+        moveCursor = false;
         continue;
       }
       // hash by entry hash key or entry id
@@ -126,7 +175,10 @@ public class InMemoryQueue {
       if (Math.abs(hash) % config.getGroupSize() == config.getInstanceId()) {
         keys.add(key);
         datas.add(item.entry.getData());
-        updateStartKey = false;
+        moveCursor = false;
+      } else if (moveCursor) {
+        // the entry belongs to another consumer instance of the group
+        consumerState.moveTo(segment, index + 1);
       }
     }
     return keys.isEmpty() ? null : ImmutablePair.of(keys, datas);
@@ -137,12 +189,11 @@ public class InMemoryQueue {
       return;
     }
     for (Key key : dequeuedKeys) {
-      Item item = entries.get(key);
-      if (item == null) {
+      if (key.segment.items.get(key.slot) == REMOVED) {
         LOG.warn("Attempting to ack non-existing entry " + key);
         continue;
       }
-      item.setConsumerState(config, ConsumerEntryState.PROCESSED);
+      key.segment.getGroupState(config.getGroupId()).setProcessed(key.slot, config);
     }
   }
 
@@ -151,12 +202,12 @@ public class InMemoryQueue {
       return;
     }
     for (Key key : dequeuedKeys) {
-      Item item = entries.get(key);
-      if (item == null) {
+      if (key.segment.items.get(key.slot) == REMOVED) {
         LOG.warn("Attempting to undo dequeue for non-existing entry " + key);
         continue;
       }
-      item.revokeConsumerState(config, config.getDequeueStrategy() == DequeueStrategy.FIFO);
+      key.segment.getGroupState(config.getGroupId())
+        .revoke(key.slot, config, config.getDequeueStrategy() == DequeueStrategy.FIFO);
     }
   }
 
@@ -168,28 +219,44 @@ public class InMemoryQueue {
       return;
     }
     for (Key key : dequeuedKeys) {
-      Item item = entries.get(key);
-      if (item == null) {
+      if (key.segment.items.get(key.slot) == REMOVED) {
         LOG.warn("Attempting to evict non-existing entry " + key);
         continue;
       }
-      if (item.incrementProcessed() >= numGroups) {
+      if (key.segment.processedCounts.incrementAndGet(key.slot) >= numGroups) {
         // all consumer groups have processed _and_ reached the post-commit hook: safe to evict
-        entries.remove(key);
+        remove(key);
       }
     }
   }
 
+  private void remove(Key key) {
+    Segment segment = key.segment;
+    Item item = segment.items.get(key.slot);
+    if (item == REMOVED || item == null || !segment.items.compareAndSet(key.slot, item, REMOVED)) {
+      return;
+    }
+    segment.log.size.decrementAndGet();
+    if (segment.removedCount.incrementAndGet() == SEGMENT_SIZE) {
+      segment.log.dropRemovedSegments();
+    }
+  }
+
   /**
    * Used as the key of each queue item, composed of a transaction id and a sequence number within the transaction.
+   * It also refers to the position of the item in the queue.
    */
   public static final class Key implements Comparable<Key> {
     final long txId;
     final int seqNo;
+    private final Segment segment;
+    private final int slot;
 
-    Key(long tx, int seq) {
+    private Key(long tx, int seq, Segment segment, int slot) {
       txId = tx;
       seqNo = seq;
+      this.segment = segment;
+      this.slot = slot;
     }
 
     public boolean equals(Object obj) {
@@ -224,76 +291,155 @@ public class InMemoryQueue {
     }
   }
 
-  // represents an entry of the queue plus meta data
+  // represents an entry of the queue
   private static final class Item {
+    final Key key;
     final QueueEntry entry;
-//    ConcurrentMap<Long, ConsumerEntryState> consumerStates = Maps.newConcurrentMap();
-    ConcurrentMap<Long, ItemEntryState> consumerStates = Maps.newConcurrentMap();
-    AtomicInteger processedCount = new AtomicInteger();
 
-    Item(QueueEntry entry) {
+    Item(Key key, QueueEntry entry) {
+      this.key = key;
       this.entry = entry;
     }
+  }
 
-    ConsumerEntryState getConsumerState(long consumerGroupId) {
-      ItemEntryState entryState = consumerStates.get(consumerGroupId);
-      return entryState == null ? null : entryState.getState();
-    }
-
-    void setConsumerState(ConsumerConfig config, ConsumerEntryState newState) {
-      consumerStates.put(config.getGroupId(), new ItemEntryState(config.getInstanceId(), newState));
+  /**
+   * The segments of a queue, from the first segment that still has entries to the last one.
+   */
+  private static final class Log {
+    final AtomicLong tail = new AtomicLong();
+    final AtomicInteger size = new AtomicInteger();
+    final AtomicReference<Segment> head;
+    // Hint for the last segment, for finding the segment of newly appended entries without walking the log
+    volatile Segment lastSegment;
+
+    Log() {
+      Segment segment = new Segment(this, 0L);
+      head = new AtomicReference<>(segment);
+      lastSegment = segment;
     }
 
-    void revokeConsumerState(ConsumerConfig config, boolean revokeToClaim) {
-      if (revokeToClaim) {
-        consumerStates.put(config.getGroupId(), new ItemEntryState(config.getInstanceId(), ConsumerEntryState.CLAIMED));
-      } else {
-        consumerStates.remove(config.getGroupId());
+    /**
+     * Returns the segment of the given position, adding segments to the log if needed.
+     * The position must be reserved but not yet written.
+     */
+    Segment getSegment(long index) {
+      Segment segment = lastSegment;
+      if (index < segment.baseIndex) {
+        // Another enqueue moved the hint past the position. The segment of a position that is not yet
+        // written is never dropped, hence it can be found from the head.
+        segment = head.get();
+      }
+      while (index >= segment.baseIndex + SEGMENT_SIZE) {
+        Segment next = segment.next.get();
+        if (next == null) {
+          segment.next.compareAndSet(null, new Segment(this, segment.baseIndex + SEGMENT_SIZE));
+          next = segment.next.get();
+        }
+        segment = next;
       }
+      if (segment.baseIndex > lastSegment.baseIndex) {
+        lastSegment = segment;
+      }
+      return segment;
     }
 
-    boolean claim(ConsumerConfig config) {
-      ItemEntryState state = consumerStates.get(config.getGroupId());
-      if (state == null) {
-        state = consumerStates.putIfAbsent(config.getGroupId(),
-                                           new ItemEntryState(config.getInstanceId(), ConsumerEntryState.CLAIMED));
-        if (state == null) {
-          return true;
+    /**
+     * Drops the segments at the head of the log that have all their entries removed.
+     */
+    void dropRemovedSegments() {
+      Segment segment = head.get();
+      while (segment.removedCount.get() == SEGMENT_SIZE) {
+        Segment next = segment.next.get();
+        if (next == null || !head.compareAndSet(segment, next)) {
+          return;
         }
+        segment = next;
       }
-      // If the old claimed consumer is gone or if it has been claimed by the same consumer before,
-      // then it can be claimed.
-      return state.getInstanceId() >= config.getGroupSize()
-        || (state.getInstanceId() == config.getInstanceId() && state.getState() == ConsumerEntryState.CLAIMED);
+    }
+  }
+
+  /**
+   * A fixed size part of the queue.
+   */
+  private static final class Segment {
+    final Log log;
+    final long baseIndex;
+    final AtomicReferenceArray<Item> items = new AtomicReferenceArray<>(SEGMENT_SIZE);
+    // Number of consumer groups that processed each entry, for eviction
+    final AtomicIntegerArray processedCounts = new AtomicIntegerArray(SEGMENT_SIZE);
+    final AtomicInteger removedCount = new AtomicInteger();
+    final AtomicReference<Segment> next = new AtomicReference<>();
+    final ConcurrentMap<Long, GroupState> groupStates = Maps.newConcurrentMap();
+
+    Segment(Log log, long baseIndex) {
+      this.log = log;
+      this.baseIndex = baseIndex;
     }
 
-    int incrementProcessed() {
-      return processedCount.incrementAndGet();
+    GroupState getGroupState(long groupId) {
+      GroupState groupState = groupStates.get(groupId);
+      if (groupState == null) {
+        groupState = new GroupState();
+        GroupState existing = groupStates.putIfAbsent(groupId, groupState);
+        if (existing != null) {
+          groupState = existing;
+        }
+      }
+      return groupState;
     }
   }
 
   /**
-   * Represents the state of an item entry.
+   * The state of the entries of a segment for a consumer group.
    */
-  private static final class ItemEntryState {
-    final int instanceId;
-    ConsumerEntryState state;
+  private static final class GroupState {
+    // Bitmap of the entries processed by the group
+    final AtomicLongArray processed = new AtomicLongArray(SEGMENT_SIZE / Long.SIZE);
+    // The instance id plus one of the consumer that claimed or processed each entry, zero if there is none
+    final AtomicIntegerArray owners = new AtomicIntegerArray(SEGMENT_SIZE);
+
+    boolean isProcessed(int slot) {
+      return (processed.get(slot / Long.SIZE) & (1L << (slot % Long.SIZE))) != 0;
+    }
 
-    ItemEntryState(int instanceId, ConsumerEntryState state) {
-      this.instanceId = instanceId;
-      this.state = state;
+    void setProcessed(int slot, ConsumerConfig config) {
+      owners.set(slot, config.getInstanceId() + 1);
+      updateProcessed(slot, true);
     }
 
-    int getInstanceId() {
-      return instanceId;
+    void revoke(int slot, ConsumerConfig config, boolean revokeToClaim) {
+      owners.set(slot, revokeToClaim ? config.getInstanceId() + 1 : 0);
+      updateProcessed(slot, false);
     }
 
-    ConsumerEntryState getState() {
-      return state;
+    boolean claim(int slot, ConsumerConfig config) {
+      int instance = config.getInstanceId() + 1;
+      while (true) {
+        int owner = owners.get(slot);
+        if (owner == instance) {
+          // it has been claimed by the same consumer before
+          return true;
+        }
+        // If there is no claim, or the claimed consumer is gone, it can be claimed
+        if (owner != 0 && owner <= config.getGroupSize()) {
+          return false;
+        }
+        if (owners.compareAndSet(slot, owner, instance)) {
+          return true;
+        }
+      }
     }
 
-    void setState(ConsumerEntryState state) {
-      this.state = state;
+    private void updateProcessed(int slot, boolean isProcessed) {
+      int index = slot / Long.SIZE;
+      long mask = 1L << (slot % Long.SIZE);
+      while (true) {
+        long bits = processed.get(index);
+        long newBits = isProcessed ? bits | mask : bits & ~mask;
+        if (bits == newBits || processed.compareAndSet(index, bits, newBits)) {
+          return;
+        }
+      }
     }
   }
 
@@ -301,7 +447,13 @@ public class InMemoryQueue {
    * The state of a single consumer, gets modified.
    */
   public static class ConsumerState {
-    Key startKey = null;
-  }
+    private Log log;
+    private Segment segment;
+    private long index;
 
+    private void moveTo(Segment segment, long index) {
+      this.segment = segment;
+      this.index = index;
+    }
+  }
 }
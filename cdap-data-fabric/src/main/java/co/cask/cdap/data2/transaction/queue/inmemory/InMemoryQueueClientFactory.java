@@ -21,6 +21,7 @@ import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.QueueClientFactory;
 import co.cask.cdap.data2.queue.QueueConsumer;
 import co.cask.cdap.data2.queue.QueueProducer;
+import co.cask.cdap.data2.transaction.queue.QueueEnqueueNotifier;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
 import com.google.inject.Inject;
 
@@ -32,10 +33,14 @@ import java.io.IOException;
 public class InMemoryQueueClientFactory implements QueueClientFactory {
 
   private final InMemoryQueueService queueService;
+  private final QueueEnqueueNotifier enqueueNotifier;
 
   @Inject
-  public InMemoryQueueClientFactory(InMemoryQueueService queueService) {
+  public InMemoryQueueClientFactory(InMemoryQueueService queueService, QueueEnqueueNotifier enqueueNotifier) {
     this.queueService = queueService;
+    this.enqueueNotifier = enqueueNotifier;
+    // In-memory queues are always consumed in the same process
+    enqueueNotifier.enable();
   }
 
   @Override
@@ -51,6 +56,6 @@ public class InMemoryQueueClientFactory implements QueueClientFactory {
 
   @Override
   public QueueProducer createProducer(QueueName queueName, QueueMetrics queueMetrics) throws IOException {
-    return new InMemoryQueueProducer(queueName, queueService, queueMetrics);
+    return new InMemoryQueueProducer(queueName, queueService, queueMetrics, enqueueNotifier);
   }
 }
@@ -19,9 +19,13 @@ package co.cask.cdap.data2.transaction.queue.inmemory;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.queue.QueueEntry;
 import co.cask.cdap.data2.transaction.queue.AbstractQueueProducer;
+import co.cask.cdap.data2.transaction.queue.QueueEnqueueNotifier;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
+import com.google.common.collect.Lists;
 import org.apache.tephra.Transaction;
 
+import java.util.List;
+
 /**
  * Producer for an in-memory queue.
  */
@@ -29,11 +33,11 @@ public class InMemoryQueueProducer extends AbstractQueueProducer {
 
   private final QueueName queueName;
   private final InMemoryQueueService queueService;
-  private int lastEnqueueCount;
-  private Transaction commitTransaction;
+  private final List<InMemoryQueue.Key> lastEnqueueKeys = Lists.newArrayList();
 
-  public InMemoryQueueProducer(QueueName queueName, InMemoryQueueService queueService, QueueMetrics queueMetrics) {
-    super(queueMetrics, queueName);
+  public InMemoryQueueProducer(QueueName queueName, InMemoryQueueService queueService, QueueMetrics queueMetrics,
+                               QueueEnqueueNotifier enqueueNotifier) {
+    super(queueMetrics, queueName, enqueueNotifier);
     this.queueName = queueName;
     this.queueService = queueService;
   }
@@ -45,31 +49,28 @@ public class InMemoryQueueProducer extends AbstractQueueProducer {
   @Override
   public void startTx(Transaction tx) {
     super.startTx(tx);
-    commitTransaction = null;
+    lastEnqueueKeys.clear();
   }
 
   @Override
   protected int persist(Iterable<QueueEntry> entries, Transaction transaction) throws Exception {
-    commitTransaction = transaction;
     int seqId = 0;
     int bytes = 0;
 
     InMemoryQueue queue = getQueue();
     for (QueueEntry entry : entries) {
-      queue.enqueue(transaction.getWritePointer(), seqId++, entry);
+      lastEnqueueKeys.add(queue.enqueue(transaction.getWritePointer(), seqId++, entry));
       bytes += entry.getData().length;
     }
-    lastEnqueueCount = seqId;
     return bytes;
   }
 
   @Override
   protected void doRollback() {
-    if (commitTransaction != null) {
-      InMemoryQueue queue = getQueue();
-      for (int seqId = 0; seqId < lastEnqueueCount; seqId++) {
-        queue.undoEnqueue(commitTransaction.getWritePointer(), seqId);
-      }
+    InMemoryQueue queue = getQueue();
+    for (InMemoryQueue.Key key : lastEnqueueKeys) {
+      queue.undoEnqueue(key);
     }
+    lastEnqueueKeys.clear();
   }
 }
@@ -23,6 +23,7 @@ import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.QueueClientFactory;
 import co.cask.cdap.data2.queue.QueueConsumer;
 import co.cask.cdap.data2.queue.QueueProducer;
+import co.cask.cdap.data2.transaction.queue.QueueEnqueueNotifier;
 import co.cask.cdap.data2.transaction.queue.QueueEvictor;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
 import com.google.common.annotations.VisibleForTesting;
@@ -48,16 +49,21 @@ public final class LevelDBQueueClientFactory implements QueueClientFactory {
   private final LevelDBTableService service;
   private final ExecutorService evictionExecutor;
   private final LevelDBQueueAdmin queueAdmin;
+  private final QueueEnqueueNotifier enqueueNotifier;
 
   private final ConcurrentMap<String, Object> queueLocks = Maps.newConcurrentMap();
 
   @Inject
   public LevelDBQueueClientFactory(CConfiguration cConf, LevelDBTableService service,
-                                   LevelDBQueueAdmin queueAdmin) throws Exception {
+                                   LevelDBQueueAdmin queueAdmin,
+                                   QueueEnqueueNotifier enqueueNotifier) throws Exception {
     this.cConf = cConf;
     this.service = service;
     this.evictionExecutor = createEvictionExecutor();
     this.queueAdmin = queueAdmin;
+    this.enqueueNotifier = enqueueNotifier;
+    // LevelDB queues are always consumed in the same process
+    enqueueNotifier.enable();
   }
 
   @Override
@@ -68,8 +74,8 @@ public final class LevelDBQueueClientFactory implements QueueClientFactory {
   @Override
   public QueueProducer createProducer(QueueName queueName, QueueMetrics queueMetrics) throws IOException {
     LevelDBQueueAdmin admin = ensureTableExists(queueName);
-    return new LevelDBQueueProducer(
-      new LevelDBTableCore(admin.getActualTableName(queueName), service), queueName, queueMetrics);
+    return new LevelDBQueueProducer(new LevelDBTableCore(admin.getActualTableName(queueName), service),
+                                    queueName, queueMetrics, enqueueNotifier);
   }
 
   @Override
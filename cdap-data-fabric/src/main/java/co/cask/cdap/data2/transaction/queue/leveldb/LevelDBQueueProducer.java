@@ -21,6 +21,7 @@ import co.cask.cdap.data2.dataset2.lib.table.leveldb.KeyValue;
 import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableCore;
 import co.cask.cdap.data2.queue.QueueEntry;
 import co.cask.cdap.data2.transaction.queue.AbstractQueueProducer;
+import co.cask.cdap.data2.transaction.queue.QueueEnqueueNotifier;
 import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
 import com.google.common.collect.Maps;
@@ -37,8 +38,9 @@ public final class LevelDBQueueProducer extends AbstractQueueProducer {
   private final byte[] queueRowPrefix;
   private final NavigableMap<byte[], NavigableMap<byte[], byte[]>> changes;
 
-  public LevelDBQueueProducer(LevelDBTableCore tableCore, QueueName queueName, QueueMetrics queueMetrics) {
-    super(queueMetrics, queueName);
+  public LevelDBQueueProducer(LevelDBTableCore tableCore, QueueName queueName, QueueMetrics queueMetrics,
+                              QueueEnqueueNotifier enqueueNotifier) {
+    super(queueMetrics, queueName, enqueueNotifier);
     core = tableCore;
     changes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     queueRowPrefix = QueueEntryRow.getQueueRowPrefix(queueName);
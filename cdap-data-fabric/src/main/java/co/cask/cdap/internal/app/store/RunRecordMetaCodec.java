@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.store;
+
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.data2.dataset2.lib.table.MDSValueCodec;
+import co.cask.cdap.proto.ProgramRunStatus;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link MDSValueCodec} for {@link RunRecordMeta}, which is the most frequently listed value in the app meta table.
+ */
+public final class RunRecordMetaCodec implements MDSValueCodec<RunRecordMeta> {
+
+  private static final int VERSION = 1;
+
+  @Override
+  public int getVersion() {
+    return VERSION;
+  }
+
+  @Override
+  public void encode(RunRecordMeta value, Encoder encoder) throws IOException {
+    encoder.writeString(value.getPid());
+    encoder.writeLong(value.getStartTs());
+    Long stopTs = value.getStopTs();
+    encoder.writeBool(stopTs != null);
+    if (stopTs != null) {
+      encoder.writeLong(stopTs);
+    }
+    encoder.writeString(value.getStatus().name());
+    encodeMap(value.getProperties(), encoder);
+    encodeMap(value.getSystemArgs(), encoder);
+    String twillRunId = value.getTwillRunId();
+    encoder.writeBool(twillRunId != null);
+    if (twillRunId != null) {
+      encoder.writeString(twillRunId);
+    }
+  }
+
+  @Override
+  public RunRecordMeta decode(int version, Decoder decoder) throws IOException {
+    if (version != VERSION) {
+      throw new IOException("Unsupported version " + version + " for decoding RunRecordMeta");
+    }
+    String pid = decoder.readString();
+    long startTs = decoder.readLong();
+    Long stopTs = decoder.readBool() ? decoder.readLong() : null;
+    ProgramRunStatus status = ProgramRunStatus.valueOf(decoder.readString());
+    Map<String, String> properties = decodeMap(decoder);
+    Map<String, String> systemArgs = decodeMap(decoder);
+    String twillRunId = decoder.readBool() ? decoder.readString() : null;
+    return new RunRecordMeta(pid, startTs, stopTs, status, properties, systemArgs, twillRunId);
+  }
+
+  /**
+   * Encodes a map as its size followed by the entries, with a size of {@code -1} for a {@code null} map.
+   */
+  private void encodeMap(@Nullable Map<String, String> map, Encoder encoder) throws IOException {
+    if (map == null) {
+      encoder.writeInt(-1);
+      return;
+    }
+    encoder.writeInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      encoder.writeString(entry.getKey());
+      encoder.writeString(entry.getValue());
+    }
+  }
+
+  @Nullable
+  private Map<String, String> decodeMap(Decoder decoder) throws IOException {
+    int size = decoder.readInt();
+    if (size < 0) {
+      return null;
+    }
+    Map<String, String> map = new LinkedHashMap<>();
+    for (int i = 0; i < size; i++) {
+      map.put(decoder.readString(), decoder.readString());
+    }
+    return map;
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tephra;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Compact binary format of a {@link Transaction}.
+ *
+ * <p>
+ * The encoded form starts with a {@link #MAGIC} byte followed by a {@link #VERSION} byte. Since a Thrift serialized
+ * struct always starts with a field type (or the stop marker), which is a small non-negative number, the magic byte
+ * can be used to tell the compact format apart from the legacy Thrift format.
+ * </p>
+ *
+ * <p>
+ * Scalar fields are written as variable length longs. The long arrays (invalids, in-progress and checkpoint write
+ * pointers) are written either as zig-zag encoded deltas, or, if the array is dense, as runs of consecutive values
+ * where each run is written as the delta to the previous run plus the run length.
+ * </p>
+ */
+final class CompactTransactionFormat {
+
+  static final byte MAGIC = (byte) 0xFE;
+  static final byte VERSION = 1;
+
+  private static final long[] EMPTY_LONG_ARRAY = {};
+
+  private static final int ARRAY_DELTA = 0;
+  private static final int ARRAY_RUNS = 1;
+
+  private CompactTransactionFormat() {
+  }
+
+  /**
+   * Returns {@code true} if the given bytes are encoded with the compact format.
+   */
+  static boolean isCompact(byte[] encoded) {
+    return encoded.length >= 2 && encoded[0] == MAGIC;
+  }
+
+  static byte[] encode(Transaction tx) {
+    ByteArrayOutputStream os = new ByteArrayOutputStream(estimateSize(tx));
+    os.write(MAGIC);
+    os.write(VERSION);
+
+    long txId = tx.getTransactionId();
+    writeLong(os, txId);
+    writeLong(os, zigZag(txId - tx.getReadPointer()));
+    writeLong(os, zigZag(tx.getWritePointer() - txId));
+    writeLong(os, zigZag(tx.getFirstShortInProgress()));
+    os.write(tx.getType() == TransactionType.SHORT ? 0 : 1);
+    os.write(tx.getVisibilityLevel().ordinal());
+
+    writeLongs(os, tx.getInvalids());
+    writeLongs(os, tx.getInProgress());
+    writeLongs(os, tx.getCheckpointWritePointers());
+    return os.toByteArray();
+  }
+
+  static Transaction decode(byte[] encoded) throws IOException {
+    Decoder decoder = new Decoder(encoded);
+    if (decoder.readByte() != MAGIC) {
+      throw new IOException("Encoded transaction is not in compact format");
+    }
+    int version = decoder.readByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported compact transaction format version " + version);
+    }
+
+    long txId = decoder.readLong();
+    long readPointer = txId - unZigZag(decoder.readLong());
+    long writePointer = txId + unZigZag(decoder.readLong());
+    long firstShort = unZigZag(decoder.readLong());
+    TransactionType type = decoder.readByte() == 0 ? TransactionType.SHORT : TransactionType.LONG;
+
+    int level = decoder.readByte();
+    Transaction.VisibilityLevel[] levels = Transaction.VisibilityLevel.values();
+    if (level < 0 || level >= levels.length) {
+      throw new IOException("Unknown visibility level " + level);
+    }
+
+    long[] invalids = decoder.readLongs();
+    long[] inProgress = decoder.readLongs();
+    long[] checkpoints = decoder.readLongs();
+    return new Transaction(readPointer, txId, writePointer, invalids, inProgress, firstShort, type,
+                           checkpoints, levels[level]);
+  }
+
+  private static int estimateSize(Transaction tx) {
+    // Just a hint for the initial buffer size; a few bytes per array entry is typical for delta encoding.
+    return 64 + 3 * (tx.getInvalids().length + tx.getInProgress().length + tx.getCheckpointWritePointers().length);
+  }
+
+  private static void writeLongs(ByteArrayOutputStream os, long[] values) {
+    writeLong(os, values.length);
+    if (values.length == 0) {
+      return;
+    }
+
+    // Count the number of runs of consecutive values to decide which encoding to use.
+    // Run encoding costs an extra length per run, hence only worth it if the runs are long enough on average.
+    int runs = 1;
+    for (int i = 1; i < values.length; i++) {
+      if (values[i] != values[i - 1] + 1) {
+        runs++;
+      }
+    }
+
+    if (runs * 2 <= values.length) {
+      os.write(ARRAY_RUNS);
+      writeLong(os, runs);
+      long previous = 0L;
+      int i = 0;
+      while (i < values.length) {
+        int start = i;
+        while (i + 1 < values.length && values[i + 1] == values[i] + 1) {
+          i++;
+        }
+        writeLong(os, zigZag(values[start] - previous));
+        writeLong(os, i - start);
+        previous = values[i];
+        i++;
+      }
+    } else {
+      os.write(ARRAY_DELTA);
+      long previous = 0L;
+      for (long value : values) {
+        writeLong(os, zigZag(value - previous));
+        previous = value;
+      }
+    }
+  }
+
+  private static void writeLong(ByteArrayOutputStream os, long value) {
+    while ((value & ~0x7FL) != 0) {
+      os.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    os.write((int) value);
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Reads values from the compact encoded bytes.
+   */
+  private static final class Decoder {
+    private final byte[] bytes;
+    private int pos;
+
+    Decoder(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    int readByte() throws IOException {
+      if (pos >= bytes.length) {
+        throw new IOException("Unexpected end of encoded transaction");
+      }
+      return bytes[pos++];
+    }
+
+    long readLong() throws IOException {
+      long result = 0L;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = readByte();
+        result |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return result;
+        }
+      }
+      throw new IOException("Malformed variable length long in encoded transaction");
+    }
+
+    long[] readLongs() throws IOException {
+      long encodedSize = readLong();
+      if (encodedSize < 0 || encodedSize > Integer.MAX_VALUE) {
+        throw new IOException("Invalid array size " + encodedSize + " in encoded transaction");
+      }
+      int size = (int) encodedSize;
+      if (size == 0) {
+        return EMPTY_LONG_ARRAY;
+      }
+      long[] values = new long[size];
+      int mode = readByte();
+      long previous = 0L;
+      if (mode == ARRAY_DELTA) {
+        for (int i = 0; i < size; i++) {
+          previous += unZigZag(readLong());
+          values[i] = previous;
+        }
+      } else if (mode == ARRAY_RUNS) {
+        int runs = readRunCount();
+        int idx = 0;
+        for (int run = 0; run < runs; run++) {
+          long value = previous + unZigZag(readLong());
+          long length = readLong() + 1;
+          if (length > size - idx) {
+            throw new IOException("Run length exceeds array size in encoded transaction");
+          }
+          for (long i = 0; i < length; i++) {
+            values[idx++] = value++;
+          }
+          previous = value - 1;
+        }
+        if (idx != size) {
+          throw new IOException("Expected " + size + " values in encoded transaction, but got " + idx);
+        }
+      } else {
+        throw new IOException("Unknown array encoding " + mode + " in encoded transaction");
+      }
+      return values;
+    }
+
+    private int readRunCount() throws IOException {
+      long runs = readLong();
+      // Each run takes at least two bytes, which bounds the number of runs by the remaining bytes
+      if (runs < 0 || runs > bytes.length - pos) {
+        throw new IOException("Invalid number of runs " + runs + " in encoded transaction");
+      }
+      return (int) runs;
+    }
+  }
+}
@@ -25,16 +25,70 @@ import org.apache.thrift.TException;
 import org.apache.thrift.TSerializer;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Handles serialization and deserialization of {@link Transaction} instances to and from {@code byte[]}.
+ *
+ * <p>
+ * Transactions are encoded with the Thrift format by default. If compact encoding is enabled, transactions
+ * are encoded with the {@link CompactTransactionFormat} instead, which delta encodes the invalid and in-progress
+ * lists. Since readers that predate the compact format cannot decode it, compact encoding should only be enabled
+ * once all readers have been upgraded (see {@link TxConstants#TX_COMPACT_ENCODING}).
+ * Decoding understands both formats.
+ * </p>
+ *
+ * <p>
+ * Since the same transaction is usually encoded for many operations (e.g. every Get, Put and Scan performed
+ * by a table within a transaction), and the same encoded bytes are decoded by the coprocessors for every operation,
+ * the last encoded and the last decoded transaction are cached by each codec instance.
+ * </p>
  */
 public class TransactionCodec {
 
+  private final boolean compactEncoding;
+  private volatile EncodedTransaction lastEncoded;
+  private volatile EncodedTransaction lastDecoded;
+
   public TransactionCodec() {
+    this(TxConstants.DEFAULT_TX_COMPACT_ENCODING);
+  }
+
+  /**
+   * Creates a codec that encodes with the compact format if {@code compactEncoding} is {@code true},
+   * and with the Thrift format otherwise.
+   */
+  public TransactionCodec(boolean compactEncoding) {
+    this.compactEncoding = compactEncoding;
   }
 
   public byte[] encode(Transaction tx) throws IOException {
+    EncodedTransaction cached = lastEncoded;
+    if (cached != null && cached.matches(tx)) {
+      return cached.encoded;
+    }
+    byte[] encoded = compactEncoding ? CompactTransactionFormat.encode(tx) : encodeThrift(tx);
+    lastEncoded = new EncodedTransaction(tx, encoded);
+    return encoded;
+  }
+
+  public Transaction decode(byte[] encoded) throws IOException {
+    EncodedTransaction cached = lastDecoded;
+    if (cached != null && Arrays.equals(cached.encoded, encoded)) {
+      // Return a new instance since the visibility level of a Transaction is mutable
+      return cached.copyTransaction();
+    }
+
+    Transaction tx = CompactTransactionFormat.isCompact(encoded) ? CompactTransactionFormat.decode(encoded)
+                                                                 : decodeThrift(encoded);
+    lastDecoded = new EncodedTransaction(tx, encoded);
+    return tx;
+  }
+
+  /**
+   * Encodes the given {@link Transaction} with the legacy Thrift format.
+   */
+  public byte[] encodeThrift(Transaction tx) throws IOException {
     TTransaction thriftTx = TransactionConverterUtils.wrap(tx);
     TSerializer serializer = new TSerializer();
     try {
@@ -44,7 +98,7 @@ public class TransactionCodec {
     }
   }
 
-  public Transaction decode(byte[] encoded) throws IOException {
+  private Transaction decodeThrift(byte[] encoded) throws IOException {
     TTransaction thriftTx = new TTransaction();
     TDeserializer deserializer = new TDeserializer();
     try {
@@ -54,4 +108,30 @@ public class TransactionCodec {
       throw new IOException(te);
     }
   }
+
+  /**
+   * Pairs a {@link Transaction} with its encoded form.
+   */
+  private static final class EncodedTransaction {
+    private final Transaction tx;
+    private final Transaction.VisibilityLevel visibilityLevel;
+    private final byte[] encoded;
+
+    EncodedTransaction(Transaction tx, byte[] encoded) {
+      this.tx = tx;
+      this.visibilityLevel = tx.getVisibilityLevel();
+      this.encoded = encoded;
+    }
+
+    boolean matches(Transaction tx) {
+      // Transaction is immutable except for the visibility level
+      return this.tx == tx && visibilityLevel == tx.getVisibilityLevel();
+    }
+
+    Transaction copyTransaction() {
+      return new Transaction(tx.getReadPointer(), tx.getTransactionId(), tx.getWritePointer(), tx.getInvalids(),
+                             tx.getInProgress(), tx.getFirstShortInProgress(), tx.getType(),
+                             tx.getCheckpointWritePointers(), visibilityLevel);
+    }
+  }
 }
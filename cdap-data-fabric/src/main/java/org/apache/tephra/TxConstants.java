@@ -120,6 +120,14 @@ public class TxConstants {
   public static final String READ_NON_TX_DATA = "data.tx.read.pre.existing";
   public static final boolean DEFAULT_READ_NON_TX_DATA = false;
 
+  /**
+   * Indicates whether transactions attached to table operations should be encoded with the compact format
+   * of {@link TransactionCodec}. Coprocessors that predate the compact format can only decode the Thrift format,
+   * hence it should only be enabled once all region servers have been upgraded.
+   */
+  public static final String TX_COMPACT_ENCODING = "data.tx.compact.encoding";
+  public static final boolean DEFAULT_TX_COMPACT_ENCODING = false;
+
   /**
    * TransactionManager configuration.
    */
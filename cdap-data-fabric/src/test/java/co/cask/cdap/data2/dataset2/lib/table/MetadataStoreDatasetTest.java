@@ -20,9 +20,13 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.data2.dataset2.DatasetFrameworkTestUtil;
+import co.cask.cdap.internal.app.store.RunRecordMeta;
+import co.cask.cdap.internal.app.store.RunRecordMetaCodec;
+import co.cask.cdap.proto.ProgramRunStatus;
 import co.cask.cdap.proto.id.DatasetId;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import org.apache.tephra.TransactionAware;
 import org.apache.tephra.TransactionExecutor;
@@ -35,6 +39,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 public class MetadataStoreDatasetTest {
   @ClassRule
@@ -182,6 +187,83 @@ public class MetadataStoreDatasetTest {
     Assert.assertEquals(expected, actual);
   }
 
+  @Test
+  public void testValueCodec() throws Exception {
+    DatasetId storeTable = DatasetFrameworkTestUtil.NAMESPACE_ID.dataset("testValueCodec");
+    dsFrameworkUtil.createInstance(Table.class.getName(), storeTable, DatasetProperties.EMPTY);
+
+    Table table = dsFrameworkUtil.getInstance(storeTable);
+    Assert.assertNotNull(table);
+    final MetadataStoreDataset jsonDataset = new MetadataStoreDataset(table);
+    final MetadataStoreDataset codecDataset = new MetadataStoreDataset(table) {
+      {
+        addValueCodec(RunRecordMeta.class, new RunRecordMetaCodec());
+        setValueCodecWrites(true);
+      }
+    };
+    final MetadataStoreDataset readCodecDataset = new MetadataStoreDataset(table) {
+      {
+        addValueCodec(RunRecordMeta.class, new RunRecordMetaCodec());
+      }
+    };
+    TransactionExecutor txnl = dsFrameworkUtil.newInMemoryTransactionExecutor((TransactionAware) table);
+
+    final MDSKey jsonKey = new MDSKey.Builder().add("json").build();
+    final MDSKey codecKey = new MDSKey.Builder().add("codec").build();
+    final RunRecordMeta started = new RunRecordMeta("run1", 10L, null, ProgramRunStatus.RUNNING,
+                                                    ImmutableMap.of("k", "v"), null, "twill1");
+    final RunRecordMeta completed = new RunRecordMeta(started, 20L, ProgramRunStatus.COMPLETED);
+
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        // Existing JSON values are still readable with a codec
+        jsonDataset.write(jsonKey, started);
+        Assert.assertEquals(started, codecDataset.get(jsonKey, RunRecordMeta.class));
+
+        codecDataset.write(codecKey, completed);
+        Assert.assertEquals(completed, codecDataset.get(codecKey, RunRecordMeta.class));
+        Assert.assertEquals(ImmutableMap.of(jsonKey, started, codecKey, completed),
+                            codecDataset.<RunRecordMeta>listKV(new MDSKey(new byte[0]), RunRecordMeta.class));
+        Assert.assertNull(codecDataset.<RunRecordMeta>get(codecKey, RunRecordMeta.class).getSystemArgs());
+
+        // Values of types without a codec are still written as JSON
+        codecDataset.write(new MDSKey.Builder().add("string").build(), "value");
+        Assert.assertEquals("value", jsonDataset.get(new MDSKey.Builder().add("string").build(), String.class));
+      }
+    });
+    Assert.assertTrue(getValue(txnl, table, codecKey).length < getValue(txnl, table, jsonKey).length);
+
+    // Existing JSON values are rewritten with the codec on the next write
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        codecDataset.write(jsonKey, codecDataset.get(jsonKey, RunRecordMeta.class));
+        Assert.assertEquals(started, codecDataset.get(jsonKey, RunRecordMeta.class));
+      }
+    });
+    Assert.assertEquals(0, getValue(txnl, table, jsonKey)[0]);
+
+    // Without codec writes, binary values are still readable and are rewritten as JSON on the next write
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        readCodecDataset.write(codecKey, readCodecDataset.get(codecKey, RunRecordMeta.class));
+        Assert.assertEquals(completed, jsonDataset.get(codecKey, RunRecordMeta.class));
+      }
+    });
+    Assert.assertEquals('{', getValue(txnl, table, codecKey)[0]);
+  }
+
+  private byte[] getValue(TransactionExecutor txnl, final Table table, final MDSKey key) throws Exception {
+    return txnl.execute(new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws Exception {
+        return table.get(key.getKey(), Bytes.toBytes("c"));
+      }
+    });
+  }
+
   private static class ScanFunction implements Function<MetadataStoreDataset.KeyValue<Integer>, Boolean> {
     private final List<Integer> values = new ArrayList<>();
     private final int limit;
@@ -29,6 +29,7 @@ import co.cask.cdap.common.kerberos.OwnerAdmin;
 import co.cask.cdap.common.namespace.NamespaceQueryAdmin;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.common.utils.Networks;
+import co.cask.cdap.common.utils.Tasks;
 import co.cask.cdap.data.hbase.HBaseTestBase;
 import co.cask.cdap.data.hbase.HBaseTestFactory;
 import co.cask.cdap.data.runtime.DataFabricDistributedModule;
@@ -72,10 +73,12 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multiset;
 import com.google.common.io.InputSupplier;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -114,6 +117,8 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * HBase queue tests.
@@ -518,6 +523,70 @@ public abstract class HBaseQueueTest extends QueueTest {
     verifyQueueIsEmpty(queueName, ImmutableList.of(consumerConfig));
   }
 
+  @Test (timeout = 30000L)
+  public void testPrefetch() throws Exception {
+    QueueName queueName = QueueName.fromFlowlet(NamespaceId.DEFAULT.getEntityName(),
+                                                "app", "flow", "flowlet", "prefetch");
+    ConsumerGroupConfig groupConfig = new ConsumerGroupConfig(0L, 2, DequeueStrategy.FIFO, null);
+    configureGroups(queueName, ImmutableList.of(groupConfig));
+
+    CConfiguration prefetchConf = CConfiguration.copy(cConf);
+    prefetchConf.setInt(QueueConstants.ConfigKeys.DEQUEUE_PREFETCH_DEPTH, 2);
+    HBaseQueueClientFactory prefetchFactory = new HBaseQueueClientFactory(prefetchConf, hConf, tableUtil,
+                                                                          queueAdmin, executorFactory);
+
+    // Enqueue 10 items, then 10 more after the first dequeue, so that prefetched rows are used
+    createEnqueueRunnable(queueName, 10, 1, null).run();
+
+    final List<Integer> dequeued = new ArrayList<>();
+    List<QueueConsumer> consumers = new ArrayList<>();
+    for (int instanceId = 0; instanceId < groupConfig.getGroupSize(); instanceId++) {
+      consumers.add(prefetchFactory.createConsumer(queueName, new ConsumerConfig(groupConfig, instanceId), 1));
+    }
+    try {
+      int rounds = 0;
+      while (dequeued.size() != 20) {
+        if (rounds++ == 1) {
+          createEnqueueRunnable(queueName, 10, 1, null).run();
+        }
+        for (final QueueConsumer consumer : consumers) {
+          Transactions.createTransactionExecutor(executorFactory, (TransactionAware) consumer)
+            .execute(new TransactionExecutor.Subroutine() {
+              @Override
+              public void apply() throws Exception {
+                for (byte[] data : consumer.dequeue(3)) {
+                  dequeued.add(Bytes.toInt(data));
+                }
+              }
+            });
+        }
+      }
+    } finally {
+      for (QueueConsumer consumer : consumers) {
+        consumer.close();
+      }
+    }
+
+    // Each item should be dequeued exactly once across the two instances
+    Multiset<Integer> counts = HashMultiset.create(dequeued);
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(2, counts.count(i));
+    }
+
+    // Closing the consumers should stop their prefetch threads
+    Tasks.waitFor(false, new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+          if (thread.getName().startsWith("queue-prefetch-")) {
+            return true;
+          }
+        }
+        return false;
+      }
+    }, 10, TimeUnit.SECONDS);
+  }
+
   @Test (timeout = 30000L)
   public void testReconfigure() throws Exception {
     final QueueName queueName = QueueName.fromFlowlet(NamespaceId.DEFAULT.getEntityName(),
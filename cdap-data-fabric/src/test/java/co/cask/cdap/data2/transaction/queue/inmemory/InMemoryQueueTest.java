@@ -15,9 +15,11 @@
  */
 package co.cask.cdap.data2.transaction.queue.inmemory;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
 import co.cask.cdap.common.guice.NonCustomLocationUnitTestModule;
+import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data.runtime.DataFabricModules;
 import co.cask.cdap.data.runtime.DataSetsModules;
 import co.cask.cdap.data.runtime.SystemDatasetRuntimeModule;
@@ -26,7 +28,10 @@ import co.cask.cdap.data.stream.StreamAdminModules;
 import co.cask.cdap.data.stream.service.InMemoryStreamMetaStore;
 import co.cask.cdap.data.stream.service.StreamMetaStore;
 import co.cask.cdap.data.view.ViewAdminModules;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueStrategy;
 import co.cask.cdap.data2.queue.QueueClientFactory;
+import co.cask.cdap.data2.queue.QueueEntry;
 import co.cask.cdap.data2.transaction.queue.QueueAdmin;
 import co.cask.cdap.data2.transaction.queue.QueueTest;
 import co.cask.cdap.data2.transaction.stream.StreamAdmin;
@@ -34,14 +39,21 @@ import co.cask.cdap.explore.guice.ExploreClientModule;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import com.google.common.collect.Lists;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.util.Modules;
+import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionExecutorFactory;
 import org.apache.tephra.TransactionManager;
 import org.apache.tephra.TransactionSystemClient;
+import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.List;
 
 /**
  * In-memory queue tests.
@@ -83,4 +95,73 @@ public class InMemoryQueueTest extends QueueTest {
     queueAdmin = injector.getInstance(QueueAdmin.class);
     executorFactory = injector.getInstance(TransactionExecutorFactory.class);
   }
+
+  @Test
+  public void testSegments() {
+    InMemoryQueue queue = new InMemoryQueue();
+    int numEntries = 5000;
+
+    // Enqueue in two transactions, with the second one committing first
+    for (int i = 0; i < numEntries / 2; i++) {
+      queue.enqueue(20L, i, new QueueEntry("key", i, Bytes.toBytes(numEntries / 2 + i)));
+    }
+    List<InMemoryQueue.Key> undoKeys = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      undoKeys.add(queue.enqueue(30L, i, new QueueEntry("key", i, Bytes.toBytes(-1))));
+    }
+    for (int i = 0; i < numEntries / 2; i++) {
+      queue.enqueue(10L, i, new QueueEntry("key", i, Bytes.toBytes(i)));
+    }
+    for (InMemoryQueue.Key key : undoKeys) {
+      queue.undoEnqueue(key);
+    }
+    Assert.assertEquals(numEntries, queue.getSize());
+
+    // A transaction that started before the second transaction committed only sees entries of the first one
+    ConsumerConfig fifoConfig = new ConsumerConfig(0L, 0, 1, DequeueStrategy.FIFO, null);
+    InMemoryQueue.ConsumerState fifoState = new InMemoryQueue.ConsumerState();
+    Transaction tx = new Transaction(25L, 26L, new long[0], new long[] { 20L }, 20L);
+    ImmutablePair<List<InMemoryQueue.Key>, List<byte[]>> result = queue.dequeue(tx, fifoConfig, fifoState, numEntries);
+    Assert.assertEquals(numEntries / 2, result.getFirst().size());
+    for (byte[] data : result.getSecond()) {
+      Assert.assertTrue(Bytes.toInt(data) < numEntries / 2);
+    }
+    queue.ack(result.getFirst(), fifoConfig);
+    queue.evict(result.getFirst(), 2);
+
+    // One FIFO consumer and two hash partitioned consumers consume all entries, in batches
+    tx = new Transaction(40L, 41L, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS);
+    BitSet fifoSeen = new BitSet();
+    for (byte[] data : result.getSecond()) {
+      fifoSeen.set(Bytes.toInt(data));
+    }
+    consumeAll(queue, tx, fifoConfig, fifoState, fifoSeen);
+    Assert.assertEquals(numEntries, fifoSeen.cardinality());
+
+    BitSet hashSeen = new BitSet();
+    for (int instance = 0; instance < 2; instance++) {
+      ConsumerConfig hashConfig = new ConsumerConfig(1L, instance, 2, DequeueStrategy.HASH, "key");
+      consumeAll(queue, tx, hashConfig, new InMemoryQueue.ConsumerState(), hashSeen);
+    }
+    Assert.assertEquals(numEntries, hashSeen.cardinality());
+
+    // Entries processed by both groups are evicted
+    Assert.assertEquals(0, queue.getSize());
+    Assert.assertNull(queue.dequeue(tx, fifoConfig, fifoState, numEntries));
+  }
+
+  private void consumeAll(InMemoryQueue queue, Transaction tx, ConsumerConfig config,
+                          InMemoryQueue.ConsumerState state, BitSet seen) {
+    ImmutablePair<List<InMemoryQueue.Key>, List<byte[]>> result = queue.dequeue(tx, config, state, 100);
+    while (result != null) {
+      for (byte[] data : result.getSecond()) {
+        int value = Bytes.toInt(data);
+        Assert.assertFalse(seen.get(value));
+        seen.set(value);
+      }
+      queue.ack(result.getFirst(), config);
+      queue.evict(result.getFirst(), 2);
+      result = queue.dequeue(tx, config, state, 100);
+    }
+  }
 }
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tephra;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Unit test for {@link TransactionCodec}.
+ */
+public class TransactionCodecTest {
+
+  @Test
+  public void testCompactEncoding() throws IOException {
+    TransactionCodec codec = new TransactionCodec(true);
+
+    // Sparse invalid list, dense in-progress list
+    long txId = System.currentTimeMillis() * TxConstants.MAX_TX_PER_MS;
+    long[] invalids = new long[1000];
+    for (int i = 0; i < invalids.length; i++) {
+      invalids[i] = txId - 1000000L + i * 997L;
+    }
+    long[] inProgress = new long[500];
+    for (int i = 0; i < inProgress.length; i++) {
+      inProgress[i] = txId - 1000L + i;
+    }
+    Transaction tx = new Transaction(txId - 1001L, txId, txId + 2, invalids, inProgress, inProgress[0],
+                                     TransactionType.LONG, new long[] { txId, txId + 1, txId + 2 },
+                                     Transaction.VisibilityLevel.SNAPSHOT_EXCLUDE_CURRENT);
+
+    byte[] compact = codec.encode(tx);
+    byte[] thrift = codec.encodeThrift(tx);
+    Assert.assertTrue(compact.length * 4 < thrift.length);
+
+    assertTransactionEquals(tx, new TransactionCodec().decode(compact));
+    assertTransactionEquals(tx, new TransactionCodec().decode(thrift));
+  }
+
+  @Test
+  public void testDefaultEncoding() throws IOException {
+    // The Thrift format is written by default, so that readers that predate the compact format can decode it
+    TransactionCodec codec = new TransactionCodec();
+    Transaction tx = new Transaction(9L, 10L, new long[] { 3L, 5L }, new long[] { 8L }, 8L);
+    byte[] encoded = codec.encode(tx);
+    Assert.assertFalse(CompactTransactionFormat.isCompact(encoded));
+    Assert.assertArrayEquals(codec.encodeThrift(tx), encoded);
+    assertTransactionEquals(tx, new TransactionCodec(true).decode(encoded));
+  }
+
+  @Test
+  public void testEdgeValues() throws IOException {
+    TransactionCodec codec = new TransactionCodec(true);
+
+    assertTransactionEquals(Transaction.ALL_VISIBLE_LATEST,
+                            new TransactionCodec().decode(codec.encode(Transaction.ALL_VISIBLE_LATEST)));
+
+    // Unsorted arrays and negative values must round trip as well
+    Transaction tx = new Transaction(-5L, 10L, 10L, new long[] { 7L, 3L, Long.MAX_VALUE, Long.MIN_VALUE },
+                                     new long[] { 8L, 9L, 10L, 11L, -1L, 0L, 1L }, Transaction.NO_TX_IN_PROGRESS,
+                                     TransactionType.SHORT, new long[0], Transaction.VisibilityLevel.SNAPSHOT_ALL);
+    assertTransactionEquals(tx, new TransactionCodec().decode(codec.encode(tx)));
+  }
+
+  @Test
+  public void testCaching() throws IOException {
+    TransactionCodec codec = new TransactionCodec();
+    Transaction tx = new Transaction(9L, 10L, new long[] { 3L, 5L }, new long[] { 8L }, 8L);
+
+    byte[] encoded = codec.encode(tx);
+    Assert.assertSame(encoded, codec.encode(tx));
+
+    // Changing the visibility level must be reflected in the encoded bytes
+    tx.setVisibility(Transaction.VisibilityLevel.SNAPSHOT_EXCLUDE_CURRENT);
+    byte[] encodedExcludeCurrent = codec.encode(tx);
+    Assert.assertNotSame(encoded, encodedExcludeCurrent);
+    Assert.assertEquals(Transaction.VisibilityLevel.SNAPSHOT_EXCLUDE_CURRENT,
+                        codec.decode(encodedExcludeCurrent).getVisibilityLevel());
+
+    // Decoding the same bytes repeatedly returns independent instances
+    Transaction decoded = codec.decode(encoded);
+    decoded.setVisibility(Transaction.VisibilityLevel.SNAPSHOT_ALL);
+    Transaction decodedAgain = codec.decode(encoded);
+    Assert.assertNotSame(decoded, decodedAgain);
+    Assert.assertEquals(Transaction.VisibilityLevel.SNAPSHOT, decodedAgain.getVisibilityLevel());
+  }
+
+  @Test (expected = IOException.class)
+  public void testTruncated() throws IOException {
+    Transaction tx = new Transaction(9L, 10L, new long[] { 3L, 5L }, new long[] { 8L }, 8L);
+    byte[] encoded = new TransactionCodec(true).encode(tx);
+    byte[] truncated = new byte[encoded.length - 1];
+    System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+    new TransactionCodec().decode(truncated);
+  }
+
+  private void assertTransactionEquals(Transaction expected, Transaction actual) {
+    Assert.assertEquals(expected.getTransactionId(), actual.getTransactionId());
+    Assert.assertEquals(expected.getReadPointer(), actual.getReadPointer());
+    Assert.assertEquals(expected.getWritePointer(), actual.getWritePointer());
+    Assert.assertEquals(expected.getFirstShortInProgress(), actual.getFirstShortInProgress());
+    Assert.assertEquals(expected.getType(), actual.getType());
+    Assert.assertEquals(expected.getVisibilityLevel(), actual.getVisibilityLevel());
+    Assert.assertArrayEquals(expected.getInvalids(), actual.getInvalids());
+    Assert.assertArrayEquals(expected.getInProgress(), actual.getInProgress());
+    Assert.assertArrayEquals(expected.getCheckpointWritePointers(), actual.getCheckpointWritePointers());
+  }
+}
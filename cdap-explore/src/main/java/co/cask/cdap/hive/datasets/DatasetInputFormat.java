@@ -113,8 +113,7 @@ public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
 
     @Override
     public String[] getLocations() throws IOException {
-      // TODO: Implement this functionality when DataSets has locality information.
-      return new String[0];
+      return dataSetSplit.getLocations();
     }
 
     @Override
@@ -0,0 +1,493 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.format;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes and decodes {@link StructuredRecord} in a compact binary format.
+ *
+ * A record starts with a header that identifies its schema. If the schema is one of the known schemas given to
+ * this codec, only the {@link SchemaHash} is written, otherwise the schema json is written inline. The header is
+ * followed by a bitmap of the fields that are {@code null} and the binary encoding of the non-null field values,
+ * in the order of the fields in the schema. Integers are written in zig-zag variable length encoding, enums as
+ * the index of the symbol and unions as the index of the branch followed by the value.
+ *
+ * Decoding uses the same conversion as {@link StructuredRecordStringConverter}: bytes are decoded as {@code byte[]},
+ * enums as {@link String}, arrays as {@link List} and maps as {@link Map}.
+ *
+ * Instances of this class are thread safe.
+ */
+public final class StructuredRecordBinaryCodec {
+
+  private static final int SCHEMA_HASH = 0;
+  private static final int SCHEMA_INLINE = 1;
+  private static final int SCHEMA_HASH_SIZE = 16;
+  private static final int MAX_INLINE_SCHEMAS = 1000;
+
+  // Known Java type to schema type mapping, for resolving union branch
+  // Doesn't have map and array as those need to use instanceof to check
+  private static final Map<Class<?>, Schema.Type> TYPE_TO_SCHEMA = new IdentityHashMap<>(
+    ImmutableMap.<Class<?>, Schema.Type>builder()
+      .put(Boolean.class, Schema.Type.BOOLEAN)
+      .put(Byte.class, Schema.Type.INT)
+      .put(Short.class, Schema.Type.INT)
+      .put(Integer.class, Schema.Type.INT)
+      .put(Long.class, Schema.Type.LONG)
+      .put(Float.class, Schema.Type.FLOAT)
+      .put(Double.class, Schema.Type.DOUBLE)
+      .put(String.class, Schema.Type.STRING)
+      .put(ByteBuffer.class, Schema.Type.BYTES)
+      .put(byte[].class, Schema.Type.BYTES)
+      .put(StructuredRecord.class, Schema.Type.RECORD)
+      .build()
+  );
+
+  private final Map<SchemaHash, Schema> knownSchemas;
+  private final LoadingCache<String, Schema> inlineSchemas;
+
+  /**
+   * Creates a codec that writes all schemas inline.
+   */
+  public StructuredRecordBinaryCodec() {
+    this(ImmutableList.<Schema>of());
+  }
+
+  /**
+   * Creates a codec with the given known schemas. Records of those schemas are encoded with the schema hash only,
+   * hence the same set of schemas must be used for decoding.
+   *
+   * @param knownSchemas the known record schemas
+   */
+  public StructuredRecordBinaryCodec(Iterable<Schema> knownSchemas) {
+    Map<SchemaHash, Schema> schemas = new HashMap<>();
+    for (Schema schema : knownSchemas) {
+      schemas.put(schema.getSchemaHash(), schema);
+    }
+    this.knownSchemas = ImmutableMap.copyOf(schemas);
+    this.inlineSchemas = CacheBuilder.newBuilder()
+      .maximumSize(MAX_INLINE_SCHEMAS)
+      .build(new CacheLoader<String, Schema>() {
+        @Override
+        public Schema load(String json) throws Exception {
+          return Schema.parseJson(json);
+        }
+      });
+  }
+
+  /**
+   * Encodes the given {@link StructuredRecord}.
+   *
+   * @param record the record to encode
+   * @param output the {@link DataOutput} to write to
+   * @throws IOException if failed to encode the record
+   */
+  public void encode(StructuredRecord record, DataOutput output) throws IOException {
+    Schema schema = record.getSchema();
+    SchemaHash hash = schema.getSchemaHash();
+    if (knownSchemas.containsKey(hash)) {
+      output.writeByte(SCHEMA_HASH);
+      output.write(hash.toByteArray());
+    } else {
+      output.writeByte(SCHEMA_INLINE);
+      writeString(output, schema.toString());
+    }
+    writeRecord(output, schema, record);
+  }
+
+  /**
+   * Decodes a {@link StructuredRecord} that was encoded by {@link #encode(StructuredRecord, DataOutput)}.
+   *
+   * @param input the {@link DataInput} to read from
+   * @return a new {@link StructuredRecord}
+   * @throws IOException if failed to decode the record
+   */
+  public StructuredRecord decode(DataInput input) throws IOException {
+    Schema schema;
+    int header = input.readByte();
+    switch (header) {
+      case SCHEMA_HASH:
+        byte[] hash = new byte[SCHEMA_HASH_SIZE];
+        input.readFully(hash);
+        SchemaHash schemaHash = new SchemaHash(ByteBuffer.wrap(hash));
+        schema = knownSchemas.get(schemaHash);
+        if (schema == null) {
+          throw new IOException("Unknown schema with hash " + schemaHash);
+        }
+        break;
+      case SCHEMA_INLINE:
+        schema = getInlineSchema(readString(input));
+        break;
+      default:
+        throw new IOException("Invalid record header " + header);
+    }
+    return readRecord(input, schema);
+  }
+
+  private Schema getInlineSchema(String json) throws IOException {
+    try {
+      return inlineSchemas.getUnchecked(json);
+    } catch (UncheckedExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private void writeValue(DataOutput output, Schema schema, @Nullable Object value) throws IOException {
+    Schema.Type type = schema.getType();
+    if (value == null && type != Schema.Type.NULL) {
+      throw new IOException("Null value is not allowed for schema " + schema);
+    }
+    switch (type) {
+      case NULL:
+        break;
+      case BOOLEAN:
+        output.writeBoolean((Boolean) value);
+        break;
+      case INT:
+        writeInt(output, ((Number) value).intValue());
+        break;
+      case LONG:
+        writeLong(output, ((Number) value).longValue());
+        break;
+      case FLOAT:
+        output.writeFloat(((Number) value).floatValue());
+        break;
+      case DOUBLE:
+        output.writeDouble(((Number) value).doubleValue());
+        break;
+      case BYTES:
+        writeBytes(output, value);
+        break;
+      case STRING:
+        writeString(output, value.toString());
+        break;
+      case ENUM:
+        writeEnum(output, schema, value);
+        break;
+      case ARRAY:
+        writeArray(output, schema.getComponentSchema(), value);
+        break;
+      case MAP:
+        writeMap(output, schema.getMapSchema(), value);
+        break;
+      case RECORD:
+        if (!(value instanceof StructuredRecord)) {
+          throw new IOException("Expects StructuredRecord. Got: " + value.getClass());
+        }
+        writeRecord(output, schema, (StructuredRecord) value);
+        break;
+      case UNION:
+        writeUnion(output, schema, value);
+        break;
+      default:
+        throw new IOException("Unsupported schema: " + schema);
+    }
+  }
+
+  private void writeBytes(DataOutput output, Object value) throws IOException {
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = (ByteBuffer) value;
+      writeInt(output, buffer.remaining());
+      if (buffer.hasArray()) {
+        output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      } else {
+        output.write(Bytes.toBytes(buffer));
+      }
+    } else if (value instanceof byte[]) {
+      byte[] bytes = (byte[]) value;
+      writeInt(output, bytes.length);
+      output.write(bytes);
+    } else {
+      throw new IOException("Expects either ByteBuffer or byte[]. Got " + value.getClass());
+    }
+  }
+
+  private void writeEnum(DataOutput output, Schema schema, Object value) throws IOException {
+    String symbol = value instanceof Enum ? ((Enum) value).name() : value.toString();
+    int idx = schema.getEnumIndex(symbol);
+    if (idx < 0) {
+      throw new IOException("Value " + symbol + " is not a valid enum symbol of " + schema);
+    }
+    writeInt(output, idx);
+  }
+
+  private void writeArray(DataOutput output, Schema elementSchema, Object value) throws IOException {
+    if (value instanceof Collection) {
+      Collection<?> collection = (Collection<?>) value;
+      writeInt(output, collection.size());
+      for (Object element : collection) {
+        writeValue(output, elementSchema, element);
+      }
+    } else if (value.getClass().isArray()) {
+      int len = Array.getLength(value);
+      writeInt(output, len);
+      for (int i = 0; i < len; i++) {
+        writeValue(output, elementSchema, Array.get(value, i));
+      }
+    } else {
+      throw new IOException("Expects either Collection or array. Got: " + value.getClass());
+    }
+  }
+
+  private void writeMap(DataOutput output, Map.Entry<Schema, Schema> mapSchema, Object value) throws IOException {
+    if (!(value instanceof Map)) {
+      throw new IOException("Expects Map. Got: " + value.getClass());
+    }
+    Map<?, ?> map = (Map<?, ?>) value;
+    writeInt(output, map.size());
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      writeValue(output, mapSchema.getKey(), entry.getKey());
+      writeValue(output, mapSchema.getValue(), entry.getValue());
+    }
+  }
+
+  private void writeRecord(DataOutput output, Schema schema, StructuredRecord record) throws IOException {
+    List<Schema.Field> fields = schema.getFields();
+    Object[] values = new Object[fields.size()];
+
+    // Writes the null bitmap, followed by the non-null values
+    byte[] nulls = new byte[(fields.size() + 7) / 8];
+    // Fields can be accessed by position if the record has the same schema
+    boolean sameSchema = schema.equals(record.getSchema());
+    for (int i = 0; i < values.length; i++) {
+      values[i] = sameSchema ? record.get(i) : record.get(fields.get(i).getName());
+      if (values[i] == null) {
+        nulls[i >> 3] |= 1 << (i & 7);
+      }
+    }
+    output.write(nulls);
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null) {
+        writeValue(output, fields.get(i).getSchema(), values[i]);
+      }
+    }
+  }
+
+  private void writeUnion(DataOutput output, Schema unionSchema, @Nullable Object value) throws IOException {
+    Schema.Type type = getSchemaType(value);
+    List<Schema> schemas = unionSchema.getUnionSchemas();
+    for (int i = 0; i < schemas.size(); i++) {
+      // Just match the type, not matching the detail schema as it'd be too expensive.
+      if (schemas.get(i).getType() == type) {
+        writeInt(output, i);
+        writeValue(output, schemas.get(i), value);
+        return;
+      }
+    }
+    throw new IOException("Value type " + type + " not valid in union: " + unionSchema);
+  }
+
+  private Object readValue(DataInput input, Schema schema) throws IOException {
+    switch (schema.getType()) {
+      case NULL:
+        return null;
+      case BOOLEAN:
+        return input.readBoolean();
+      case INT:
+        return readInt(input);
+      case LONG:
+        return readLong(input);
+      case FLOAT:
+        return input.readFloat();
+      case DOUBLE:
+        return input.readDouble();
+      case BYTES:
+        byte[] bytes = new byte[readLength(input)];
+        input.readFully(bytes);
+        return bytes;
+      case STRING:
+        return readString(input);
+      case ENUM:
+        int idx = readInt(input);
+        String symbol = schema.getEnumValue(idx);
+        if (symbol == null) {
+          throw new IOException("Invalid enum index " + idx + " for schema " + schema);
+        }
+        return symbol;
+      case ARRAY:
+        return readArray(input, schema.getComponentSchema());
+      case MAP:
+        return readMap(input, schema.getMapSchema());
+      case RECORD:
+        return readRecord(input, schema);
+      case UNION:
+        int branch = readInt(input);
+        Schema branchSchema = schema.getUnionSchema(branch);
+        if (branchSchema == null) {
+          throw new IOException("Invalid union index " + branch + " for schema " + schema);
+        }
+        return readValue(input, branchSchema);
+    }
+    throw new IOException("Unsupported schema: " + schema);
+  }
+
+  private List<Object> readArray(DataInput input, Schema elementSchema) throws IOException {
+    int size = readLength(input);
+    List<Object> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(readValue(input, elementSchema));
+    }
+    return result;
+  }
+
+  private Map<Object, Object> readMap(DataInput input, Map.Entry<Schema, Schema> mapSchema) throws IOException {
+    int size = readLength(input);
+    Map<Object, Object> result = new HashMap<>(size * 4 / 3 + 1);
+    for (int i = 0; i < size; i++) {
+      Object key = readValue(input, mapSchema.getKey());
+      result.put(key, readValue(input, mapSchema.getValue()));
+    }
+    return result;
+  }
+
+  private StructuredRecord readRecord(DataInput input, Schema schema) throws IOException {
+    List<Schema.Field> fields = schema.getFields();
+    byte[] nulls = new byte[(fields.size() + 7) / 8];
+    input.readFully(nulls);
+
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (int i = 0; i < fields.size(); i++) {
+      if ((nulls[i >> 3] & (1 << (i & 7))) == 0) {
+        builder.set(i, readValue(input, fields.get(i).getSchema()));
+      }
+    }
+    return builder.build();
+  }
+
+  private Schema.Type getSchemaType(@Nullable Object value) throws IOException {
+    if (value == null) {
+      return Schema.Type.NULL;
+    }
+
+    Class<?> cls = value.getClass();
+    Schema.Type type = TYPE_TO_SCHEMA.get(cls);
+    if (type != null) {
+      return type;
+    }
+    if (Collection.class.isAssignableFrom(cls) || cls.isArray()) {
+      return Schema.Type.ARRAY;
+    }
+    if (Map.class.isAssignableFrom(cls)) {
+      return Schema.Type.MAP;
+    }
+    if (Enum.class.isAssignableFrom(cls)) {
+      return Schema.Type.ENUM;
+    }
+    throw new IOException("Unsupported type found in StructuredRecord: " + cls);
+  }
+
+  private void writeString(DataOutput output, String str) throws IOException {
+    byte[] bytes = str.getBytes(Charsets.UTF_8);
+    writeInt(output, bytes.length);
+    output.write(bytes);
+  }
+
+  private String readString(DataInput input) throws IOException {
+    byte[] bytes = new byte[readLength(input)];
+    input.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  private int readLength(DataInput input) throws IOException {
+    int len = readInt(input);
+    if (len < 0) {
+      throw new IOException("Invalid negative length " + len);
+    }
+    return len;
+  }
+
+  /**
+   * Writes an int in zig-zag variable length encoding.
+   */
+  private void writeInt(DataOutput output, int i) throws IOException {
+    int val = (i << 1) ^ (i >> 31);
+    while ((val & ~0x7f) != 0) {
+      output.writeByte(0x80 | (val & 0x7f));
+      val >>>= 7;
+    }
+    output.writeByte(val);
+  }
+
+  /**
+   * Writes a long in zig-zag variable length encoding.
+   */
+  private void writeLong(DataOutput output, long l) throws IOException {
+    long val = (l << 1) ^ (l >> 63);
+    while ((val & ~0x7fL) != 0) {
+      output.writeByte((int) (0x80 | (val & 0x7f)));
+      val >>>= 7;
+    }
+    output.writeByte((int) val);
+  }
+
+  private int readInt(DataInput input) throws IOException {
+    int val = 0;
+    int shift = 0;
+    int b = input.readUnsignedByte();
+    while ((b & 0x80) != 0) {
+      if (shift > 28) {
+        throw new IOException("Malformed variable length int");
+      }
+      val |= (b & 0x7f) << shift;
+      shift += 7;
+      b = input.readUnsignedByte();
+    }
+    val |= b << shift;
+    return (val >>> 1) ^ -(val & 1);
+  }
+
+  private long readLong(DataInput input) throws IOException {
+    long val = 0;
+    int shift = 0;
+    int b = input.readUnsignedByte();
+    while ((b & 0x80) != 0) {
+      if (shift > 63) {
+        throw new IOException("Malformed variable length long");
+      }
+      val |= (long) (b & 0x7f) << shift;
+      shift += 7;
+      b = input.readUnsignedByte();
+    }
+    val |= (long) b << shift;
+    return (val >>> 1) ^ -(val & 1);
+  }
+}
@@ -377,9 +377,13 @@ public final class StructuredRecordStringConverter {
     }
 
     StructuredRecord record = (StructuredRecord) value;
+    // Fields can be accessed by position if the record has the same schema
+    boolean sameSchema = schema.equals(record.getSchema());
+    List<Schema.Field> fields = schema.getFields();
     writer.beginObject();
-    for (Schema.Field field : schema.getFields()) {
-      Object fieldValue = record.get(field.getName());
+    for (int i = 0; i < fields.size(); i++) {
+      Schema.Field field = fields.get(i);
+      Object fieldValue = sameSchema ? record.get(i) : record.get(field.getName());
       if (fieldValue != null) {
         writer.name(field.getName());
         writeJson(writer, field.getSchema(), fieldValue);
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.format;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Test for {@link StructuredRecordBinaryCodec}.
+ */
+public class StructuredRecordBinaryCodecTest {
+
+  /**
+   * Enum for testing enum field.
+   */
+  public enum Color {
+    RED, GREEN, BLUE
+  }
+
+  private static final Schema INNER_SCHEMA = Schema.recordOf(
+    "inner",
+    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("value", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))));
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "outer",
+    Schema.Field.of("bool", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("long", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("float", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("double", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("buffer", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("string", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("enum", Schema.enumWith("RED", "GREEN", "BLUE")),
+    Schema.Field.of("array", Schema.arrayOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("intArray", Schema.arrayOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.INT), INNER_SCHEMA)),
+    Schema.Field.of("union", Schema.unionOf(Schema.of(Schema.Type.NULL), Schema.of(Schema.Type.STRING),
+                                            Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("record", INNER_SCHEMA),
+    Schema.Field.of("nullable", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    StructuredRecord record = StructuredRecord.builder(SCHEMA)
+      .set("bool", true)
+      .set("int", Integer.MIN_VALUE)
+      .set("long", Long.MAX_VALUE)
+      .set("float", 1.5f)
+      .set("double", -2.25d)
+      .set("bytes", new byte[] { 1, 2, 3 })
+      .set("buffer", ByteBuffer.wrap("buffer".getBytes(Charsets.UTF_8)))
+      .set("string", "été 😀")
+      .set("enum", Color.GREEN)
+      .set("array", ImmutableList.of(-1L, 0L, 1L))
+      .set("intArray", new int[] { 7, 8 })
+      .set("map", ImmutableMap.of(1, StructuredRecord.builder(INNER_SCHEMA).set("name", "one").build()))
+      .set("union", 10L)
+      .set("record", StructuredRecord.builder(INNER_SCHEMA).set("name", "inner").set("value", 3d).build())
+      .build();
+
+    for (StructuredRecordBinaryCodec codec : ImmutableList.of(new StructuredRecordBinaryCodec(),
+                                                              new StructuredRecordBinaryCodec(
+                                                                ImmutableList.of(SCHEMA)))) {
+      StructuredRecord decoded = codec.decode(encode(codec, record));
+      Assert.assertEquals(SCHEMA, decoded.getSchema());
+      Assert.assertEquals(true, decoded.get("bool"));
+      Assert.assertEquals(Integer.MIN_VALUE, (int) decoded.get("int"));
+      Assert.assertEquals(Long.MAX_VALUE, (long) decoded.get("long"));
+      Assert.assertEquals(1.5f, (float) decoded.get("float"), 0f);
+      Assert.assertEquals(-2.25d, (double) decoded.get("double"), 0d);
+      Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) decoded.get("bytes"));
+      Assert.assertArrayEquals("buffer".getBytes(Charsets.UTF_8), (byte[]) decoded.get("buffer"));
+      Assert.assertEquals("été 😀", decoded.get("string"));
+      Assert.assertEquals("GREEN", decoded.get("enum"));
+      Assert.assertEquals(ImmutableList.of(-1L, 0L, 1L), decoded.get("array"));
+      Assert.assertEquals(ImmutableList.of(7, 8), decoded.get("intArray"));
+      Assert.assertEquals(ImmutableMap.of(1, StructuredRecord.builder(INNER_SCHEMA).set("name", "one").build()),
+                          decoded.get("map"));
+      Assert.assertEquals(10L, (long) decoded.get("union"));
+      Assert.assertEquals(record.get("record"), decoded.get("record"));
+      Assert.assertNull(decoded.get("nullable"));
+    }
+  }
+
+  @Test
+  public void testKnownSchema() throws IOException {
+    StructuredRecord record = StructuredRecord.builder(INNER_SCHEMA).set("name", "name").build();
+    StructuredRecordBinaryCodec inlineCodec = new StructuredRecordBinaryCodec();
+    StructuredRecordBinaryCodec knownCodec = new StructuredRecordBinaryCodec(ImmutableList.of(INNER_SCHEMA));
+
+    ByteArrayDataOutput inline = ByteStreams.newDataOutput();
+    inlineCodec.encode(record, inline);
+    ByteArrayDataOutput known = ByteStreams.newDataOutput();
+    knownCodec.encode(record, known);
+
+    // Schema hash is shorter than the schema json
+    Assert.assertTrue(known.toByteArray().length < inline.toByteArray().length);
+
+    // Records with inline schema can be decoded by any codec
+    Assert.assertEquals(record, knownCodec.decode(ByteStreams.newDataInput(inline.toByteArray())));
+    Assert.assertEquals(record, knownCodec.decode(ByteStreams.newDataInput(known.toByteArray())));
+    try {
+      inlineCodec.decode(ByteStreams.newDataInput(known.toByteArray()));
+      Assert.fail("Expected failure to decode record with unknown schema hash");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testMultipleRecords() throws IOException {
+    StructuredRecordBinaryCodec codec = new StructuredRecordBinaryCodec(ImmutableList.of(INNER_SCHEMA));
+    ByteArrayDataOutput output = ByteStreams.newDataOutput();
+    for (int i = 0; i < 10; i++) {
+      codec.encode(StructuredRecord.builder(INNER_SCHEMA).set("name", "name" + i).set("value", (double) i).build(),
+                   output);
+    }
+    DataInput input = ByteStreams.newDataInput(output.toByteArray());
+    for (int i = 0; i < 10; i++) {
+      StructuredRecord record = codec.decode(input);
+      Assert.assertEquals("name" + i, record.get("name"));
+      Assert.assertEquals((double) i, (double) record.get("value"), 0d);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidEnum() throws IOException {
+    Schema schema = Schema.recordOf("enum", Schema.Field.of("enum", Schema.enumWith("A", "B")));
+    encode(new StructuredRecordBinaryCodec(), StructuredRecord.builder(schema).set("enum", "C").build());
+  }
+
+  private DataInput encode(StructuredRecordBinaryCodec codec, StructuredRecord record) throws IOException {
+    ByteArrayDataOutput output = ByteStreams.newDataOutput();
+    codec.encode(record, output);
+    return ByteStreams.newDataInput(output.toByteArray());
+  }
+}
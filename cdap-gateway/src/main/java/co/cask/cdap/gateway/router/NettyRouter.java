@@ -16,13 +16,16 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.ServiceBindException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
 import co.cask.cdap.gateway.router.handlers.HttpRequestHandler;
 import co.cask.cdap.gateway.router.handlers.HttpStatusRequestHandler;
+import co.cask.cdap.gateway.router.handlers.OutboundConnectionPool;
 import co.cask.cdap.gateway.router.handlers.SecurityAuthenticationHttpHandler;
+import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
 import co.cask.cdap.security.auth.TokenValidator;
 import co.cask.cdap.security.tools.SSLHandlerFactory;
@@ -54,6 +57,7 @@ import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 import org.jboss.netty.channel.socket.nio.NioWorkerPool;
 import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
 import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
+import org.jboss.netty.handler.timeout.IdleStateHandler;
 import org.jboss.netty.util.HashedWheelTimer;
 import org.jboss.netty.util.Timer;
 import org.slf4j.Logger;
@@ -95,11 +99,14 @@ public class NettyRouter extends AbstractIdleService {
   private final boolean sslEnabled;
   private final SSLHandlerFactory sslHandlerFactory;
   private final int connectionTimeout;
+  private final int maxIdleConnections;
 
   private Timer timer;
   private ServerBootstrap serverBootstrap;
   private ClientBootstrap clientBootstrap;
+  private OutboundConnectionPool connectionPool;
   private DiscoveryServiceClient discoveryServiceClient;
+  private MetricsCollectionService metricsCollectionService;
 
   @Inject
   public NettyRouter(CConfiguration cConf, SConfiguration sConf, @Named(Constants.Router.ADDRESS) InetAddress hostname,
@@ -143,10 +150,19 @@ public class NettyRouter extends AbstractIdleService {
       this.sslHandlerFactory = null;
     }
     this.connectionTimeout = cConf.getInt(Constants.Router.CONNECTION_TIMEOUT_SECS);
+    this.maxIdleConnections = cConf.getInt(Constants.Router.CLIENT_POOL_MAX_IDLE_CONNECTIONS, 16);
     LOG.info("Using connection timeout: {}", connectionTimeout);
     LOG.info("Service to Port Mapping - {}", this.serviceToPortMap);
   }
 
+  /**
+   * Optionally sets the service for emitting router connection pool metrics.
+   */
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsCollectionService = metricsCollectionService;
+  }
+
   @Override
   protected void startUp() throws ServiceBindException {
     ChannelUpstreamHandler connectionTracker = new SimpleChannelUpstreamHandler() {
@@ -245,9 +261,11 @@ public class NettyRouter extends AbstractIdleService {
             pipeline.addLast("access-token-authenticator", new SecurityAuthenticationHttpHandler(
               realm, tokenValidator, configuration, accessTokenTransformer, discoveryServiceClient));
           }
+          // close idle client connections; the request handler only closes them if no request is in progress
+          pipeline.addLast("idle-event-generator", new IdleStateHandler(timer, 0, 0, connectionTimeout));
           // for now there's only one hardcoded rule, but if there will be more, we may want it generic and configurable
           pipeline.addLast("http-request-handler",
-                           new HttpRequestHandler(clientBootstrap, serviceLookup, ImmutableList.<ProxyRule>of()));
+                           new HttpRequestHandler(connectionPool, serviceLookup, ImmutableList.<ProxyRule>of()));
           return pipeline;
         }
       }
@@ -304,6 +322,14 @@ public class NettyRouter extends AbstractIdleService {
                                                                               timer);
     clientBootstrap.setPipelineFactory(pipelineFactory);
     clientBootstrap.setOption("bufferFactory", new DirectChannelBufferFactory());
+
+    // Connections to backend services are shared by all inbound connections and kept alive between requests
+    connectionPool = new OutboundConnectionPool(clientBootstrap, maxIdleConnections);
+    if (metricsCollectionService != null) {
+      connectionPool.setMetricsContext(metricsCollectionService.getContext(
+        ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+                        Constants.Metrics.Tag.COMPONENT, Constants.Gateway.METRICS_CONTEXT)));
+    }
   }
 
   private boolean isSSLEnabled() {
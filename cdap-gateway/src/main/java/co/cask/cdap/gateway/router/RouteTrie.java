@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.gateway.router;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A route table compiled into a trie of path segments. Each route is a path pattern, split by {@code '/'} into
+ * segments, where a segment of {@code *} or {@code {name}} matches any single segment, and a trailing {@code **}
+ * matches any number of remaining segments, including none. When more than one route matches a path, the route
+ * that was added first wins, so routes should be added in order of precedence.
+ *
+ * A lookup walks down the trie once per path segment, following both the literal and the wildcard child of a node,
+ * and skips any subtree that cannot contain a route with higher precedence than the best match found so far.
+ * This class is not thread safe for adding routes, but concurrent lookups are safe once all routes are added.
+ *
+ * @param <T> type of the value associated with each route
+ */
+final class RouteTrie<T> {
+
+  private static final String WILDCARD = "*";
+  private static final String WILDCARD_REMAINING = "**";
+
+  private final Node<T> root = new Node<>();
+  private int size;
+
+  /**
+   * Adds a route with a precedence lower than all the routes added before.
+   *
+   * @param pattern the path pattern of the route
+   * @param value the value to return from {@link #lookup(String[])} for paths matching the pattern
+   * @throws IllegalArgumentException if {@code **} is not the last segment of the pattern
+   */
+  void add(String pattern, T value) {
+    String[] segments = StringUtils.split(pattern, '/');
+    Node<T> node = root;
+    node.updateMinOrder(size);
+    boolean remaining = false;
+    for (int i = 0; i < segments.length; i++) {
+      String segment = segments[i];
+      if (WILDCARD_REMAINING.equals(segment)) {
+        if (i != segments.length - 1) {
+          throw new IllegalArgumentException("Only the last segment can be '**' in route pattern " + pattern);
+        }
+        remaining = true;
+        break;
+      }
+      node = node.getOrCreateChild(isWildcard(segment) ? null : segment);
+      node.updateMinOrder(size);
+    }
+
+    Entry<T> entry = new Entry<>(size++, value);
+    // An earlier route with the same pattern has higher precedence, hence only the first one is kept
+    if (remaining && node.remainingEntry == null) {
+      node.remainingEntry = entry;
+    } else if (!remaining && node.entry == null) {
+      node.entry = entry;
+    }
+  }
+
+  /**
+   * Returns the number of routes added.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the value of the route with the highest precedence that matches the given path.
+   *
+   * @param path the request path, which may contain empty segments or a trailing {@code '/'}
+   * @return the value of the matching route or {@code null} if no route matches
+   */
+  @Nullable
+  T lookup(String path) {
+    return lookup(StringUtils.split(path, '/'));
+  }
+
+  /**
+   * Returns the value of the route with the highest precedence that matches the given path segments.
+   *
+   * @param segments the request path, split into segments
+   * @return the value of the matching route or {@code null} if no route matches
+   */
+  @Nullable
+  T lookup(String[] segments) {
+    Entry<T> entry = find(root, segments, 0, null);
+    return entry == null ? null : entry.value;
+  }
+
+  @Nullable
+  private Entry<T> find(Node<T> node, String[] segments, int index, @Nullable Entry<T> best) {
+    best = precedence(best, node.remainingEntry);
+    if (index == segments.length) {
+      return precedence(best, node.entry);
+    }
+    Node<T> child = node.children.get(segments[index]);
+    if (child != null && (best == null || child.minOrder < best.order)) {
+      best = find(child, segments, index + 1, best);
+    }
+    child = node.wildcardChild;
+    if (child != null && (best == null || child.minOrder < best.order)) {
+      best = find(child, segments, index + 1, best);
+    }
+    return best;
+  }
+
+  @Nullable
+  private Entry<T> precedence(@Nullable Entry<T> best, @Nullable Entry<T> entry) {
+    if (best == null) {
+      return entry;
+    }
+    return entry == null || best.order < entry.order ? best : entry;
+  }
+
+  private boolean isWildcard(String segment) {
+    return WILDCARD.equals(segment) || (segment.startsWith("{") && segment.endsWith("}"));
+  }
+
+  /**
+   * A node in the trie, representing a path prefix.
+   */
+  private static final class Node<T> {
+    private final Map<String, Node<T>> children = new HashMap<>();
+    private Node<T> wildcardChild;
+    // Route that ends at this node
+    private Entry<T> entry;
+    // Route that ends with '**' after this node
+    private Entry<T> remainingEntry;
+    // The smallest order of all the routes in the subtree rooted at this node
+    private int minOrder = Integer.MAX_VALUE;
+
+    Node<T> getOrCreateChild(@Nullable String segment) {
+      if (segment == null) {
+        if (wildcardChild == null) {
+          wildcardChild = new Node<>();
+        }
+        return wildcardChild;
+      }
+      Node<T> child = children.get(segment);
+      if (child == null) {
+        child = new Node<>();
+        children.put(segment, child);
+      }
+      return child;
+    }
+
+    void updateMinOrder(int order) {
+      minOrder = Math.min(minOrder, order);
+    }
+  }
+
+  /**
+   * A route value together with its order of insertion.
+   */
+  private static final class Entry<T> {
+    private final int order;
+    private final T value;
+
+    Entry(int order, T value) {
+      this.order = order;
+      this.value = value;
+    }
+  }
+}
@@ -23,7 +23,6 @@ import co.cask.cdap.common.security.AuditDetail;
 import co.cask.cdap.common.security.AuditPolicy;
 import co.cask.cdap.internal.asm.Classes;
 import co.cask.http.HttpHandler;
-import co.cask.http.PatternPathRouterWithGroups;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import org.jboss.netty.handler.codec.http.HttpMethod;
@@ -53,11 +52,10 @@ public final class RouterAuditLookUp {
 
   private static final Logger LOG = LoggerFactory.getLogger(RouterAuditLookUp.class);
   private static final RouterAuditLookUp AUDIT_LOOK_UP = new RouterAuditLookUp();
-  private static final int maxParts = 25;
   private final int numberOfPaths;
 
-  private final PatternPathRouterWithGroups<AuditLogContent> patternMatcher =
-    PatternPathRouterWithGroups.create(maxParts);
+  // Paths to audit, compiled into a trie per http method
+  private final Map<HttpMethod, RouteTrie<AuditLogContent>> routes = new HashMap<>();
 
   private RouterAuditLookUp() {
     numberOfPaths = createMatcher();
@@ -69,15 +67,8 @@ public final class RouterAuditLookUp {
 
   @Nullable
   public AuditLogContent getAuditLogContent(String path, HttpMethod httpMethod) throws Exception {
-    List<PatternPathRouterWithGroups.RoutableDestination<AuditLogContent>> destinations =
-      patternMatcher.getDestinations(path);
-    for (PatternPathRouterWithGroups.RoutableDestination<AuditLogContent> entry : destinations) {
-      AuditLogContent destination = entry.getDestination();
-      if (destination.getHttpMethod().equals(httpMethod)) {
-        return destination;
-      }
-    }
-    return null;
+    RouteTrie<AuditLogContent> trie = routes.get(httpMethod);
+    return trie == null ? null : trie.lookup(path);
   }
 
   private int createMatcher() {
@@ -124,7 +115,12 @@ public final class RouterAuditLookUp {
                                                               auditContents.contains(AuditDetail.RESPONSE_BODY),
                                                               headerNames);
         LOG.trace("Audit log lookup: bootstrapped with path: {}", completePath);
-        patternMatcher.add(completePath, auditLogContent);
+        RouteTrie<AuditLogContent> trie = routes.get(httpMethod);
+        if (trie == null) {
+          trie = new RouteTrie<>();
+          routes.put(httpMethod, trie);
+        }
+        trie.add(completePath, auditLogContent);
         count++;
       }
     }
@@ -19,9 +19,14 @@ package co.cask.cdap.gateway.router;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.service.ServiceDiscoverable;
 import co.cask.http.AbstractHttpHandler;
+import com.google.common.base.Function;
 import org.apache.commons.lang.StringUtils;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 
+import java.util.EnumMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
 /**
  * Class to match the request path to corresponding service like app-fabric, or metrics service.
  */
@@ -41,6 +46,9 @@ public final class RouterPathLookup extends AbstractHttpHandler {
   public static final RouteDestination STREAMS_SERVICE = new RouteDestination(Constants.Service.STREAMS);
   public static final RouteDestination PREVIEW_HTTP = new RouteDestination(Constants.Service.PREVIEW_HTTP);
 
+  // Routes for the v3 API, compiled once into a trie per request method
+  private static final Map<AllowedMethod, RouteTrie<Function<String[], RouteDestination>>> ROUTES = compileRoutes();
+
   /**
    * Returns the CDAP service which will handle the HttpRequest
    *
@@ -64,7 +72,8 @@ public final class RouterPathLookup extends AbstractHttpHandler {
         return new RouteDestination(fallbackService);
       }
       if (uriParts[0].equals(Constants.Gateway.API_VERSION_3_TOKEN)) {
-        return getV3RoutingService(uriParts, requestMethod);
+        Function<String[], RouteDestination> route = ROUTES.get(requestMethod).lookup(uriParts);
+        return route == null ? APP_FABRIC_HTTP : route.apply(uriParts);
       }
     } catch (Exception e) {
       // Ignore exception. Default routing to app-fabric.
@@ -72,129 +81,123 @@ public final class RouterPathLookup extends AbstractHttpHandler {
     return APP_FABRIC_HTTP;
   }
 
-  private RouteDestination getV3RoutingService(String [] uriParts, AllowedMethod requestMethod) {
-    if ((uriParts.length >= 2) && uriParts[1].equals("feeds")) {
-      // TODO find a better way to handle that - this looks hackish
-      return null;
-    } else if ((uriParts.length >= 11) && "versions".equals(uriParts[5]) && "services".equals(uriParts[7])
-      && "methods".equals(uriParts[9])) {
-      // User defined services (version specific) handle methods on them:
-      //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/versions/{version-id}/services/{service-id}/methods/
-      //       <user-defined-method-path>"
-      String serviceName = ServiceDiscoverable.getName(uriParts[2], uriParts[4], uriParts[8]);
-      String version = uriParts[6];
-      return new RouteDestination(serviceName, version);
-    } else if ((uriParts.length >= 9) && "services".equals(uriParts[5]) && "methods".equals(uriParts[7])) {
-      //User defined services handle methods on them:
-      //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/services/{service-id}/methods/<user-defined-method-path>"
-      return new RouteDestination(ServiceDiscoverable.getName(uriParts[2], uriParts[4], uriParts[6]));
-    } else if (matches(uriParts, "v3", "system", "services", null, "logs")) {
-      //Log Handler Path /v3/system/services/<service-id>/logs
-      return METRICS;
-    } else if (matches(uriParts, "v3", "namespaces", null, "apps", null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "apps", null, null, null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "artifacts", null, "versions", null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "datasets", null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "metadata") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "views", null, "metadata") ||
-
-      matches(uriParts, "v3", "namespaces", null, "apps", null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "artifacts", null, "versions", null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "apps", null, null, null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "datasets", null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "metadata", "properties") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "views", null, "metadata", "properties") ||
-
-      matches(uriParts, "v3", "namespaces", null, "apps", null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "artifacts", null, "versions", null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "apps", null, null, null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "datasets", null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "metadata", "tags") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "views", null, "metadata", "tags") ||
-
-      matches(uriParts, "v3", "namespaces", null, "metadata", "search") ||
-      matches(uriParts, "v3", "namespaces", null, "datasets", null, "lineage") ||
-      matches(uriParts, "v3", "namespaces", null, "streams", null, "lineage") ||
-      matches(uriParts, "v3", "namespaces", null, "apps", null, null, null, "runs", null, "metadata")) {
-      return METADATA_SERVICE;
-    } else if (matches(uriParts, "v3", "security", "authorization") ||
-      matches(uriParts, "v3", "namespaces", null, "securekeys")) {
-      // Authorization and Secure Store Handlers currently run in App Fabric
-      return APP_FABRIC_HTTP;
-    } else if (matches(uriParts, "v3", "security", "store", "namespaces", null)) {
-      return APP_FABRIC_HTTP;
-    } else if ((matches(uriParts, "v3", "namespaces", null, "streams", null, "programs")
-      || matches(uriParts, "v3", "namespaces", null, "data", "datasets", null, "programs")) &&
-      requestMethod.equals(AllowedMethod.GET)) {
-      return APP_FABRIC_HTTP;
-    } else if (matches(uriParts, "v3", "namespaces", null, "previews")) {
-      return PREVIEW_HTTP;
-    } else if (matches(uriParts, "v3", "system", "serviceproviders")) {
-      return APP_FABRIC_HTTP;
-    } else if ((uriParts.length >= 4) && uriParts[1].equals("namespaces") && uriParts[3].equals("streams")) {
-      return STREAMS_SERVICE;
-    } else if ((uriParts.length >= 8 && uriParts[7].equals("logs")) ||
-      (uriParts.length >= 10 && uriParts[9].equals("logs")) ||
-      (uriParts.length >= 6 && uriParts[5].equals("logs"))) {
-      //Log Handler Paths:
-      // /v3/namespaces/<namespaceid>/apps/<appid>/<programid-type>/<programid>/logs
-      // /v3/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/runs/{run-id}/logs
-      return METRICS;
-    } else if (uriParts.length >= 2 && uriParts[1].equals("metrics")) {
-      //Metrics Search Handler Path /v3/metrics
-      return METRICS;
-    } else if (uriParts.length >= 5 && uriParts[1].equals("data") && uriParts[2].equals("explore") &&
-      (uriParts[3].equals("queries") || uriParts[3].equals("jdbc") || uriParts[3].equals("namespaces"))) {
-      // non-namespaced explore operations. For example, /v3/data/explore/queries/{id}
-      return EXPLORE_HTTP_USER_SERVICE;
-    } else if (uriParts.length >= 6 && uriParts[3].equals("data") && uriParts[4].equals("explore") &&
-      (uriParts[5].equals("queries") || uriParts[5].equals("streams") || uriParts[5].equals("datasets")
-        || uriParts[5].equals("tables") || uriParts[5].equals("jdbc"))) {
-      // namespaced explore operations. For example, /v3/namespaces/{namespace-id}/data/explore/streams/{stream}/enable
-      return EXPLORE_HTTP_USER_SERVICE;
-    } else if ((uriParts.length == 3) && uriParts[1].equals("explore") && uriParts[2].equals("status")) {
-      return EXPLORE_HTTP_USER_SERVICE;
-    } else if (uriParts.length == 7 && uriParts[3].equals("data") && uriParts[4].equals("datasets") &&
-      (uriParts[6].equals("flows") || uriParts[6].equals("workers") || uriParts[6].equals("mapreduce"))) {
-      // namespaced app fabric data operations:
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/flows
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/workers
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/mapreduce
-      return APP_FABRIC_HTTP;
-    } else if ((uriParts.length >= 4) && uriParts[3].equals("data")) {
-      // other data operations. For example:
-      // /v3/namespaces/{namespace-id}/data/datasets
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/properties
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/admin/{method}
-      return DATASET_MANAGER;
+  private static Map<AllowedMethod, RouteTrie<Function<String[], RouteDestination>>> compileRoutes() {
+    RouteTable table = new RouteTable();
+
+    // TODO find a better way to handle that - this looks hackish
+    table.add((RouteDestination) null, "/v3/feeds/**");
+    // User defined services (version specific) handle methods on them:
+    table.add(new Function<String[], RouteDestination>() {
+      @Override
+      public RouteDestination apply(String[] uriParts) {
+        return new RouteDestination(ServiceDiscoverable.getName(uriParts[2], uriParts[4], uriParts[8]), uriParts[6]);
+      }
+    }, "/v3/*/{namespace-id}/*/{app-id}/versions/{version-id}/services/{service-id}/methods/*/**");
+    // User defined services handle methods on them:
+    table.add(new Function<String[], RouteDestination>() {
+      @Override
+      public RouteDestination apply(String[] uriParts) {
+        return new RouteDestination(ServiceDiscoverable.getName(uriParts[2], uriParts[4], uriParts[6]));
+      }
+    }, "/v3/*/{namespace-id}/*/{app-id}/services/{service-id}/methods/*/**");
+    // Log Handler Path /v3/system/services/<service-id>/logs
+    table.add(METRICS, "/v3/system/services/{service-id}/logs/**");
+    // Metadata, including the properties and tags of each entity
+    table.add(METADATA_SERVICE,
+              "/v3/namespaces/{namespace-id}/apps/{app-id}/metadata/**",
+              "/v3/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/metadata/**",
+              "/v3/namespaces/{namespace-id}/artifacts/{artifact-name}/versions/{artifact-version}/metadata/**",
+              "/v3/namespaces/{namespace-id}/datasets/{dataset-id}/metadata/**",
+              "/v3/namespaces/{namespace-id}/streams/{stream-id}/metadata/**",
+              "/v3/namespaces/{namespace-id}/streams/{stream-id}/views/{view-id}/metadata/**",
+              "/v3/namespaces/{namespace-id}/metadata/search/**",
+              "/v3/namespaces/{namespace-id}/datasets/{dataset-id}/lineage/**",
+              "/v3/namespaces/{namespace-id}/streams/{stream-id}/lineage/**",
+              "/v3/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/runs/{run-id}/metadata/**");
+    // Authorization and Secure Store Handlers currently run in App Fabric
+    table.add(APP_FABRIC_HTTP,
+              "/v3/security/authorization/**",
+              "/v3/namespaces/{namespace-id}/securekeys/**",
+              "/v3/security/store/namespaces/{namespace-id}/**");
+    table.add(AllowedMethod.GET, APP_FABRIC_HTTP,
+              "/v3/namespaces/{namespace-id}/streams/{stream-id}/programs/**",
+              "/v3/namespaces/{namespace-id}/data/datasets/{dataset-id}/programs/**");
+    table.add(PREVIEW_HTTP, "/v3/namespaces/{namespace-id}/previews/**");
+    table.add(APP_FABRIC_HTTP, "/v3/system/serviceproviders/**");
+    table.add(STREAMS_SERVICE, "/v3/namespaces/{namespace-id}/streams/**");
+    // Log Handler Paths:
+    // /v3/namespaces/<namespaceid>/apps/<appid>/<programid-type>/<programid>/logs
+    // /v3/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/runs/{run-id}/logs
+    table.add(METRICS, "/v3/*/*/*/*/*/*/logs/**", "/v3/*/*/*/*/*/*/*/*/logs/**", "/v3/*/*/*/*/logs/**");
+    // Metrics Search Handler Path /v3/metrics
+    table.add(METRICS, "/v3/metrics/**");
+    // non-namespaced explore operations. For example, /v3/data/explore/queries/{id}
+    table.add(EXPLORE_HTTP_USER_SERVICE,
+              "/v3/data/explore/queries/*/**", "/v3/data/explore/jdbc/*/**", "/v3/data/explore/namespaces/*/**");
+    // namespaced explore operations. For example, /v3/namespaces/{namespace-id}/data/explore/streams/{stream}/enable
+    for (String type : new String[] { "queries", "streams", "datasets", "tables", "jdbc" }) {
+      table.add(EXPLORE_HTTP_USER_SERVICE, "/v3/*/{namespace-id}/data/explore/" + type + "/**");
     }
-    return APP_FABRIC_HTTP;
+    table.add(EXPLORE_HTTP_USER_SERVICE, "/v3/explore/status");
+    // namespaced app fabric data operations:
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/flows
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/workers
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/mapreduce
+    table.add(APP_FABRIC_HTTP,
+              "/v3/*/{namespace-id}/data/datasets/{name}/flows",
+              "/v3/*/{namespace-id}/data/datasets/{name}/workers",
+              "/v3/*/{namespace-id}/data/datasets/{name}/mapreduce");
+    // other data operations. For example:
+    // /v3/namespaces/{namespace-id}/data/datasets
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/properties
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/admin/{method}
+    table.add(DATASET_MANAGER, "/v3/*/{namespace-id}/data/**");
+    return table.routes;
   }
 
   /**
-   * Determines if actual matches expected.
-   *
-   * - actual may be longer than expected, but we'll return true as long as expected was found
-   * - null in expected means "accept any string"
-   *
-   * @param actual actual string array to check
-   * @param expected expected string array format
-   * @return true if actual matches expected
+   * Builds one {@link RouteTrie} per {@link AllowedMethod}, so that routes restricted to a method only need to be
+   * considered for requests of that method. Routes have precedence in the order they are added.
    */
-  private boolean matches(String[] actual, String... expected) {
-    if (actual.length < expected.length) {
-      return false;
+  private static final class RouteTable {
+
+    private final Map<AllowedMethod, RouteTrie<Function<String[], RouteDestination>>> routes =
+      new EnumMap<>(AllowedMethod.class);
+
+    RouteTable() {
+      for (AllowedMethod method : AllowedMethod.values()) {
+        routes.put(method, new RouteTrie<Function<String[], RouteDestination>>());
+      }
+    }
+
+    void add(@Nullable RouteDestination destination, String... patterns) {
+      add(constant(destination), patterns);
     }
 
-    for (int i = 0; i < expected.length; i++) {
-      if (expected[i] == null) {
-        continue;
+    void add(Function<String[], RouteDestination> destination, String... patterns) {
+      for (AllowedMethod method : AllowedMethod.values()) {
+        add(method, destination, patterns);
       }
-      if (!expected[i].equals(actual[i])) {
-        return false;
+    }
+
+    void add(AllowedMethod method, @Nullable RouteDestination destination, String... patterns) {
+      add(method, constant(destination), patterns);
+    }
+
+    void add(AllowedMethod method, Function<String[], RouteDestination> destination, String... patterns) {
+      for (String pattern : patterns) {
+        routes.get(method).add(pattern, destination);
       }
     }
-    return true;
+
+    private Function<String[], RouteDestination> constant(@Nullable final RouteDestination destination) {
+      return new Function<String[], RouteDestination>() {
+        @Override
+        public RouteDestination apply(String[] uriParts) {
+          return destination;
+        }
+      };
+    }
   }
 }
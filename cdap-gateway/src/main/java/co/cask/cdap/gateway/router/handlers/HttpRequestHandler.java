@@ -17,17 +17,14 @@
 package co.cask.cdap.gateway.router.handlers;
 
 import co.cask.cdap.common.HandlerException;
-import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.discovery.EndpointStrategy;
 import co.cask.cdap.gateway.router.ProxyRule;
 import co.cask.cdap.gateway.router.RouterServiceLookup;
-import co.cask.cdap.security.tools.PermissiveTrustManagerFactory;
 import com.google.common.collect.Queues;
-import com.google.common.io.Closeables;
 import org.apache.twill.discovery.Discoverable;
-import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -42,24 +39,16 @@ import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponse;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.jboss.netty.handler.codec.http.HttpVersion;
-import org.jboss.netty.handler.ssl.SslHandler;
+import org.jboss.netty.handler.timeout.IdleState;
+import org.jboss.netty.handler.timeout.IdleStateEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.Closeable;
-import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLEngine;
 
 /**
  * Handler that handles HTTP requests and forwards to appropriate services. The service discovery is
@@ -69,22 +58,22 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(HttpRequestHandler.class);
 
-  private final ClientBootstrap clientBootstrap;
+  private final OutboundConnectionPool connectionPool;
   private final RouterServiceLookup serviceLookup;
-  // Data structure is used to clean up the channel futures on connection close.
-  private final Map<WrappedDiscoverable, MessageSender> discoveryLookup;
   private final List<ProxyRule> proxyRules;
 
   private final AtomicInteger exceptionsHandled = new AtomicInteger(0);
+  // The outbound connection used by the last request and the sender for it.
+  private PooledConnection connection;
+  private MessageSender sender;
   private MessageSender chunkSender;
   private volatile boolean channelClosed;
 
-  public HttpRequestHandler(ClientBootstrap clientBootstrap,
+  public HttpRequestHandler(OutboundConnectionPool connectionPool,
                             RouterServiceLookup serviceLookup,
                             List<ProxyRule> proxyRules) {
-    this.clientBootstrap = clientBootstrap;
+    this.connectionPool = connectionPool;
     this.serviceLookup = serviceLookup;
-    this.discoveryLookup = new HashMap<>();
     this.proxyRules = proxyRules;
   }
 
@@ -105,6 +94,10 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
                                    "Chunk received and event sender is null");
       }
       chunkSender.send(msg);
+      // The outbound connection may be returned to the pool once the last chunk is written
+      if (((HttpChunk) msg).isLast()) {
+        chunkSender = null;
+      }
 
     } else if (msg instanceof HttpRequest) {
       // Discover and forward event.
@@ -116,56 +109,15 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
       WrappedDiscoverable discoverable = getDiscoverable(request,
                                                          (InetSocketAddress) inboundChannel.getLocalAddress());
 
-      // If no event sender, make new connection, otherwise reuse existing one.
-      MessageSender sender =  discoveryLookup.get(discoverable);
-      if (sender == null || !sender.isConnected()) {
-        InetSocketAddress address = discoverable.getSocketAddress();
-
-        ChannelFuture future = clientBootstrap.connect(address);
-        final Channel outboundChannel = future.getChannel();
-        outboundChannel.getPipeline().addAfter("request-encoder",
-                                               "outbound-handler", new OutboundHandler(inboundChannel));
-        if (Arrays.equals(Constants.Security.SSL_URI_SCHEME.getBytes(), discoverable.getPayload())) {
-          SSLContext clientContext;
-          try {
-            clientContext = SSLContext.getInstance("TLS");
-            clientContext.init(null, PermissiveTrustManagerFactory.getTrustManagers(), null);
-          } catch (NoSuchAlgorithmException | KeyManagementException e) {
-            throw new RuntimeException("SSL is enabled for app-fabric but failed to create SSLContext in the router " +
-                                         "client.", e);
-          }
-          SSLEngine engine = clientContext.createSSLEngine();
-          engine.setUseClientMode(true);
-          engine.setEnabledProtocols(new String[] {"TLSv1.2", "TLSv1.1", "TLSv1"});
-          outboundChannel.getPipeline().addFirst("ssl", new SslHandler(engine));
-          LOG.trace("Adding ssl handler to the pipeline.");
-        }
-        sender = new MessageSender(inboundChannel, future);
-        discoveryLookup.put(discoverable, sender);
-
-        // Remember the in-flight outbound channel
-        inboundChannel.setAttachment(outboundChannel);
-        outboundChannel.getCloseFuture().addListener(new ChannelFutureListener() {
-          @Override
-          public void operationComplete(ChannelFuture future) throws Exception {
-            inboundChannel.getPipeline().execute(new Runnable() {
-              @Override
-              public void run() {
-                // When the outbound channel closed,
-                // close the inbound channel as well if it carries the in-flight request
-                if (outboundChannel.equals(inboundChannel.getAttachment())) {
-                  closeOnFlush(inboundChannel);
-                }
-              }
-            });
-          }
-        });
+      // Keep using the connection of the previous request to the same service if its response is not completed,
+      // so that the responses are sent back in order. Otherwise get a connection from the pool.
+      if (connection == null || !connection.getDiscoverable().equals(discoverable)
+          || !connection.reuse(inboundChannel)) {
+        connection = connectionPool.acquire(discoverable, inboundChannel);
+        sender = new MessageSender(inboundChannel, connection.getChannelFuture());
       } else {
-        Channel outboundChannel = (Channel) inboundChannel.getAttachment();
-        if (outboundChannel != null) {
-          // Set outbound channel to be readable in case previous request has set it as non-readable
-          outboundChannel.setReadable(true);
-        }
+        // Set outbound channel to be readable in case previous request has set it as non-readable
+        connection.getChannel().setReadable(true);
       }
 
       // Send the message.
@@ -173,9 +125,7 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
       inboundChannel.setReadable(true);
 
       //Save the channelFuture for subsequent chunks
-      if (request.isChunked()) {
-        chunkSender = sender;
-      }
+      chunkSender = request.isChunked() ? sender : null;
 
     } else {
       super.messageReceived(ctx, event);
@@ -249,12 +199,41 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
     }
   }
 
+  @Override
+  public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+    if (e instanceof IdleStateEvent) {
+      channelIdle(ctx, (IdleStateEvent) e);
+      return;
+    }
+    super.handleUpstream(ctx, e);
+  }
+
+  /**
+   * Closes the inbound channel if it has been idle for the configured time and has no request in progress.
+   * Since outbound connections are returned to the pool after each response, the idle timeout of the outbound
+   * connection no longer closes the inbound channel.
+   */
+  private void channelIdle(ChannelHandlerContext ctx, IdleStateEvent e) {
+    if (IdleState.ALL_IDLE != e.getState()) {
+      return;
+    }
+    Channel channel = ctx.getChannel();
+    if (connection != null && connection.isServing(channel)) {
+      LOG.trace("Request is in progress, so not closing channel.");
+      return;
+    }
+    LOG.trace("No data has been sent or received for channel '{}' for more than the configured idle timeout. " +
+                "Closing the channel. Local Address: {}, Remote Address: {}",
+              channel, channel.getLocalAddress(), channel.getRemoteAddress());
+    channel.close();
+  }
+
   @Override
   public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
-    // Close all event sender
+    // Close the outbound connection if it is still serving requests from this channel
     LOG.trace("Channel closed {}", ctx.getChannel());
-    for (Closeable c : discoveryLookup.values()) {
-      Closeables.closeQuietly(c);
+    if (connection != null) {
+      connection.abort(ctx.getChannel());
     }
     channelClosed = true;
     super.channelClosed(ctx, e);
@@ -296,7 +275,7 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
    * in {@link co.cask.cdap.data.stream.service.ConcurrentStreamWriter} to do the write through the
    * channel callback.
    */
-  private static final class MessageSender implements Closeable {
+  private static final class MessageSender {
     private final Channel inBoundChannel;
     private final ChannelFuture channelFuture;
     private final Queue<OutboundMessage> messages;
@@ -309,10 +288,6 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
       this.writer = new AtomicBoolean(false);
     }
 
-    private boolean isConnected() {
-      return channelFuture.getChannel().isConnected();
-    }
-
     private void send(Object msg) {
       // Attach the outbound channel to the inbound to indicate the in-flight request outbound.
       inBoundChannel.setAttachment(channelFuture.getChannel());
@@ -362,11 +337,6 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
         }
       }
     }
-
-    @Override
-    public void close() throws IOException {
-      closeOnFlush(channelFuture.getChannel());
-    }
   }
 
 
@@ -0,0 +1,287 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.gateway.router.handlers;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.security.tools.PermissiveTrustManagerFactory;
+import com.google.common.base.Preconditions;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelDownstreamHandler;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMessage;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseDecoder;
+import org.jboss.netty.handler.ssl.SslHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+/**
+ * A pool of connections from the router to backend services, shared by all inbound connections. A connection
+ * is returned to the pool once the response of its last request is completely received and the last request is
+ * completely written, unless the backend service does not keep the connection alive. At most a configured number
+ * of idle connections are kept for each backend service; the rest are closed. Idle connections are closed by the
+ * {@link IdleEventProcessor} after the router connection idle timeout, which also removes them from the pool.
+ */
+public class OutboundConnectionPool {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OutboundConnectionPool.class);
+
+  private final ClientBootstrap clientBootstrap;
+  private final int maxIdlePerBackend;
+  private final ConcurrentMap<WrappedDiscoverable, Deque<PooledConnection>> idleConnections;
+  private final AtomicInteger activeCount;
+  private final AtomicInteger idleCount;
+  private volatile MetricsContext metricsContext;
+
+  public OutboundConnectionPool(ClientBootstrap clientBootstrap, int maxIdlePerBackend) {
+    Preconditions.checkArgument(maxIdlePerBackend >= 0, "Maximum idle connections must be >= 0");
+    this.clientBootstrap = clientBootstrap;
+    this.maxIdlePerBackend = maxIdlePerBackend;
+    this.idleConnections = new ConcurrentHashMap<>();
+    this.activeCount = new AtomicInteger();
+    this.idleCount = new AtomicInteger();
+    this.metricsContext = new NoopMetricsContext();
+  }
+
+  /**
+   * Sets the {@link MetricsContext} for emitting connection pool metrics.
+   */
+  public void setMetricsContext(MetricsContext metricsContext) {
+    this.metricsContext = metricsContext;
+  }
+
+  /**
+   * Returns the number of connections that are currently serving requests.
+   */
+  public int getActiveCount() {
+    return activeCount.get();
+  }
+
+  /**
+   * Returns the number of idle connections in the pool.
+   */
+  public int getIdleCount() {
+    return idleCount.get();
+  }
+
+  /**
+   * Gets a connection to the given backend service for sending a request from the given inbound channel.
+   * An idle connection from the pool is used if there is one, otherwise a new connection is opened.
+   */
+  PooledConnection acquire(WrappedDiscoverable discoverable, Channel inboundChannel) {
+    Deque<PooledConnection> idle = idleConnections.get(discoverable);
+    PooledConnection connection = idle == null ? null : idle.pollFirst();
+    while (connection != null) {
+      idleCount.decrementAndGet();
+      if (connection.getChannel().isConnected() && connection.activate(inboundChannel)) {
+        activeCount.incrementAndGet();
+        metricsContext.increment("router.connection.reused", 1);
+        emitGauges();
+        return connection;
+      }
+      connection = idle.pollFirst();
+    }
+
+    ChannelFuture future = clientBootstrap.connect(discoverable.getSocketAddress());
+    final Channel outboundChannel = future.getChannel();
+    OutboundHandler outboundHandler = new OutboundHandler(inboundChannel);
+    outboundChannel.getPipeline().addAfter("request-encoder", "outbound-handler", outboundHandler);
+    outboundChannel.getPipeline().replace("response-decoder", "response-decoder", new ResponseDecoder());
+    if (Arrays.equals(Constants.Security.SSL_URI_SCHEME.getBytes(), discoverable.getPayload())) {
+      outboundChannel.getPipeline().addFirst("ssl", new SslHandler(createSSLEngine()));
+      LOG.trace("Adding ssl handler to the pipeline.");
+    }
+
+    connection = new PooledConnection(this, discoverable, future, outboundHandler, inboundChannel);
+    outboundChannel.getPipeline().addLast("connection-release", new ConnectionReleaseHandler(connection));
+    final PooledConnection newConnection = connection;
+    outboundChannel.getCloseFuture().addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) throws Exception {
+        closed(newConnection);
+      }
+    });
+
+    activeCount.incrementAndGet();
+    metricsContext.increment("router.connection.created", 1);
+    emitGauges();
+    return connection;
+  }
+
+  /**
+   * Returns a connection that completed all of its requests to the pool.
+   */
+  void release(PooledConnection connection) {
+    activeCount.decrementAndGet();
+    Channel channel = connection.getChannel();
+    Deque<PooledConnection> idle = getIdleConnections(connection.getDiscoverable());
+    if (!channel.isConnected() || idle.size() >= maxIdlePerBackend) {
+      HttpRequestHandler.closeOnFlush(channel);
+    } else {
+      idle.addFirst(connection);
+      idleCount.incrementAndGet();
+    }
+    emitGauges();
+  }
+
+  /**
+   * Removes a closed connection from the pool.
+   */
+  private void closed(PooledConnection connection) {
+    if (connection.close()) {
+      // The connection was serving requests
+      activeCount.decrementAndGet();
+    } else {
+      Deque<PooledConnection> idle = idleConnections.get(connection.getDiscoverable());
+      if (idle != null && idle.remove(connection)) {
+        idleCount.decrementAndGet();
+      }
+    }
+    emitGauges();
+  }
+
+  private Deque<PooledConnection> getIdleConnections(WrappedDiscoverable discoverable) {
+    Deque<PooledConnection> idle = idleConnections.get(discoverable);
+    if (idle == null) {
+      Deque<PooledConnection> newIdle = new ConcurrentLinkedDeque<>();
+      idle = idleConnections.putIfAbsent(discoverable, newIdle);
+      if (idle == null) {
+        idle = newIdle;
+      }
+    }
+    return idle;
+  }
+
+  private void emitGauges() {
+    MetricsContext metrics = metricsContext;
+    metrics.gauge("router.connection.active", activeCount.get());
+    metrics.gauge("router.connection.idle", idleCount.get());
+  }
+
+  private SSLEngine createSSLEngine() {
+    SSLContext clientContext;
+    try {
+      clientContext = SSLContext.getInstance("TLS");
+      clientContext.init(null, PermissiveTrustManagerFactory.getTrustManagers(), null);
+    } catch (NoSuchAlgorithmException | KeyManagementException e) {
+      throw new RuntimeException("SSL is enabled for app-fabric but failed to create SSLContext in the router " +
+                                   "client.", e);
+    }
+    SSLEngine engine = clientContext.createSSLEngine();
+    engine.setUseClientMode(true);
+    engine.setEnabledProtocols(new String[] {"TLSv1.2", "TLSv1.1", "TLSv1"});
+    return engine;
+  }
+
+  /**
+   * Handler at the end of the outbound pipeline that tells the {@link PooledConnection} when a request is
+   * completely written and when a response is completely received.
+   */
+  private static final class ConnectionReleaseHandler extends SimpleChannelHandler {
+
+    private final PooledConnection connection;
+    private boolean keepAlive;
+
+    private ConnectionReleaseHandler(PooledConnection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+      Object message = e.getMessage();
+      if (message instanceof HttpResponse) {
+        HttpResponse response = (HttpResponse) message;
+        // Informational responses are followed by the actual response
+        if (response.getStatus().getCode() >= 200) {
+          keepAlive = HttpHeaders.isKeepAlive(response);
+          if (!response.isChunked()) {
+            connection.responseCompleted(keepAlive);
+          }
+        }
+      } else if (message instanceof HttpChunk && ((HttpChunk) message).isLast()) {
+        connection.responseCompleted(keepAlive);
+      }
+      ctx.sendUpstream(e);
+    }
+
+    @Override
+    public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+      Object message = e.getMessage();
+      if (message instanceof HttpRequest) {
+        connection.requestStarted(((HttpRequest) message).isChunked());
+      } else if (message instanceof HttpChunk && ((HttpChunk) message).isLast()) {
+        connection.requestCompleted();
+      }
+      ctx.sendDownstream(e);
+    }
+  }
+
+  /**
+   * A {@link HttpResponseDecoder} that knows the responses of {@code HEAD} requests have no content, even if they
+   * carry a {@code Content-Length} header. Since responses are forwarded as they are received, responses are only
+   * decoded to find out when they are completed.
+   */
+  private static final class ResponseDecoder extends HttpResponseDecoder implements ChannelDownstreamHandler {
+
+    // Methods of the requests written whose responses are not yet received, in the order of the requests
+    private final Queue<HttpMethod> requestMethods = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void handleDownstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+      if (e instanceof MessageEvent && ((MessageEvent) e).getMessage() instanceof HttpRequest) {
+        requestMethods.add(((HttpRequest) ((MessageEvent) e).getMessage()).getMethod());
+      }
+      ctx.sendDownstream(e);
+    }
+
+    @Override
+    protected boolean isContentAlwaysEmpty(HttpMessage msg) {
+      // Informational responses are followed by the actual response of the same request
+      if (((HttpResponse) msg).getStatus().getCode() < 200) {
+        return super.isContentAlwaysEmpty(msg);
+      }
+      HttpMethod method = requestMethods.poll();
+      return HttpMethod.HEAD.equals(method) || super.isContentAlwaysEmpty(msg);
+    }
+  }
+}
@@ -31,17 +31,35 @@ import org.slf4j.LoggerFactory;
 import java.nio.channels.ClosedChannelException;
 
 /**
- * Handles requests to and from a discoverable endpoint.
+ * Handles requests to and from a discoverable endpoint. Since outbound connections are pooled, the inbound
+ * channel that responses are written to changes whenever the connection is taken from the pool.
  */
 public class OutboundHandler extends SimpleChannelUpstreamHandler {
   private static final Logger LOG = LoggerFactory.getLogger(OutboundHandler.class);
 
-  private final Channel inboundChannel;
+  private volatile Channel inboundChannel;
 
   public OutboundHandler(Channel inboundChannel) {
     this.inboundChannel = inboundChannel;
   }
 
+  /**
+   * Sets the inbound channel that responses are written to.
+   */
+  void setInboundChannel(Channel inboundChannel) {
+    this.inboundChannel = inboundChannel;
+  }
+
+  /**
+   * Called when the outbound connection is returned to the pool, to detach it from the inbound channel.
+   */
+  void released(Channel outboundChannel) {
+    Channel inboundChannel = this.inboundChannel;
+    if (outboundChannel.equals(inboundChannel.getAttachment())) {
+      inboundChannel.setAttachment(null);
+    }
+  }
+
   @Override
   public void messageReceived(ChannelHandlerContext ctx, MessageEvent event) throws Exception {
     // write the channel buffer to inbound channel
@@ -50,8 +68,31 @@ public class OutboundHandler extends SimpleChannelUpstreamHandler {
     super.messageReceived(ctx, event);
   }
 
+  @Override
+  public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    final Channel outboundChannel = e.getChannel();
+    final Channel inboundChannel = this.inboundChannel;
+    // Connections returned to the pool are detached from the inbound channel, hence don't need to close it
+    if (!outboundChannel.equals(inboundChannel.getAttachment())) {
+      super.channelClosed(ctx, e);
+      return;
+    }
+    inboundChannel.getPipeline().execute(new Runnable() {
+      @Override
+      public void run() {
+        // When the outbound channel closed,
+        // close the inbound channel as well if it carries the in-flight request
+        if (outboundChannel.equals(inboundChannel.getAttachment())) {
+          HttpRequestHandler.closeOnFlush(inboundChannel);
+        }
+      }
+    });
+    super.channelClosed(ctx, e);
+  }
+
   @Override
   public void channelInterestChanged(ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
+    final Channel inboundChannel = this.inboundChannel;
     inboundChannel.getPipeline().execute(new Runnable() {
       @Override
       public void run() {
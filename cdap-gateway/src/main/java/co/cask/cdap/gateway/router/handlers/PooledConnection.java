@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.gateway.router.handlers;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+
+/**
+ * A connection from the router to a backend service that is managed by an {@link OutboundConnectionPool}.
+ * It keeps track of the inbound channel using it, the number of requests sent through it whose responses are
+ * not yet completely received and whether the body of a chunked request is still being written. It is only returned
+ * to the pool when all responses are received and all requests are completely written, as a backend may respond
+ * before it received the whole request.
+ */
+final class PooledConnection {
+
+  // Values of the pending count other than the number of outstanding requests
+  private static final int IDLE = -1;
+  private static final int ABORTED = -2;
+  private static final int CLOSED = -3;
+
+  private final OutboundConnectionPool pool;
+  private final WrappedDiscoverable discoverable;
+  private final ChannelFuture channelFuture;
+  private final OutboundHandler outboundHandler;
+  private Channel inboundChannel;
+  private int pending;
+  private boolean writingRequest;
+
+  PooledConnection(OutboundConnectionPool pool, WrappedDiscoverable discoverable,
+                   ChannelFuture channelFuture, OutboundHandler outboundHandler, Channel inboundChannel) {
+    this.pool = pool;
+    this.discoverable = discoverable;
+    this.channelFuture = channelFuture;
+    this.outboundHandler = outboundHandler;
+    this.inboundChannel = inboundChannel;
+    this.pending = 1;
+  }
+
+  WrappedDiscoverable getDiscoverable() {
+    return discoverable;
+  }
+
+  ChannelFuture getChannelFuture() {
+    return channelFuture;
+  }
+
+  Channel getChannel() {
+    return channelFuture.getChannel();
+  }
+
+  /**
+   * Takes an idle connection for sending a request from the given inbound channel.
+   *
+   * @return {@code true} if the connection was idle
+   */
+  boolean activate(Channel inboundChannel) {
+    synchronized (this) {
+      if (pending != IDLE) {
+        return false;
+      }
+      pending = 1;
+      writingRequest = false;
+      this.inboundChannel = inboundChannel;
+    }
+    outboundHandler.setInboundChannel(inboundChannel);
+    // Previous inbound channel may have suspended reading when it was saturated
+    getChannel().setReadable(true);
+    return true;
+  }
+
+  /**
+   * Sends one more request from the given inbound channel through this connection while it still has outstanding
+   * requests from the same channel, so that the responses are sent back in the order of the requests.
+   *
+   * @return {@code true} if the connection can be used for the request
+   */
+  synchronized boolean reuse(Channel inboundChannel) {
+    if (pending <= 0 || !inboundChannel.equals(this.inboundChannel)) {
+      return false;
+    }
+    pending++;
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if the connection has outstanding requests from the given inbound channel.
+   */
+  synchronized boolean isServing(Channel inboundChannel) {
+    return pending >= 0 && inboundChannel.equals(this.inboundChannel);
+  }
+
+  /**
+   * Called when a request is written to the connection.
+   *
+   * @param chunked {@code true} if the body of the request follows in chunks
+   */
+  synchronized void requestStarted(boolean chunked) {
+    writingRequest = chunked;
+  }
+
+  /**
+   * Called when the last chunk of a chunked request is written to the connection. The connection is returned to
+   * the pool if all responses were already received.
+   */
+  void requestCompleted() {
+    synchronized (this) {
+      writingRequest = false;
+      if (pending != 0) {
+        return;
+      }
+      pending = IDLE;
+    }
+    outboundHandler.released(getChannel());
+    pool.release(this);
+  }
+
+  /**
+   * Called when a response is completely received. The connection is returned to the pool if there is no more
+   * outstanding request and the backend keeps the connection alive.
+   */
+  void responseCompleted(boolean keepAlive) {
+    if (!keepAlive) {
+      abort(inboundChannel());
+      return;
+    }
+    synchronized (this) {
+      // If a request is still being written, the connection is released once it is completely written
+      if (pending <= 0 || --pending > 0 || writingRequest) {
+        return;
+      }
+      pending = IDLE;
+    }
+    outboundHandler.released(getChannel());
+    pool.release(this);
+  }
+
+  /**
+   * Closes the connection if it has outstanding requests from the given inbound channel, for example because the
+   * inbound channel is closed.
+   */
+  void abort(Channel inboundChannel) {
+    synchronized (this) {
+      if (pending < 0 || !inboundChannel.equals(this.inboundChannel)) {
+        return;
+      }
+      pending = ABORTED;
+    }
+    HttpRequestHandler.closeOnFlush(getChannel());
+  }
+
+  /**
+   * Marks the connection as closed.
+   *
+   * @return {@code true} if the connection was in use, hence counted as active by the pool
+   */
+  synchronized boolean close() {
+    int previous = pending;
+    pending = CLOSED;
+    return previous != IDLE && previous != CLOSED;
+  }
+
+  private synchronized Channel inboundChannel() {
+    return inboundChannel;
+  }
+}
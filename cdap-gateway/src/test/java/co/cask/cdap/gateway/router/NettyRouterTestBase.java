@@ -418,6 +418,25 @@ public abstract class NettyRouterTestBase {
     urlConnection.disconnect();
   }
 
+  @Test
+  public void testConnectionReuse() throws Exception {
+    defaultServer2.cancelRegistration();
+
+    // Each request is sent on a new client connection
+    for (int i = 0; i < 5; i++) {
+      URL url = new URL(resolveURI(Constants.Router.GATEWAY_DISCOVERY_NAME, "/v1/ping/" + i));
+      HttpURLConnection urlConnection = openURL(url);
+      Assert.assertEquals(200, urlConnection.getResponseCode());
+      urlConnection.getInputStream().close();
+      urlConnection.disconnect();
+    }
+
+    // The router should send all of them through the same pooled connection to the server
+    Assert.assertEquals(5, defaultServer1.getNumRequests());
+    Assert.assertEquals(1, defaultServer1.getNumConnectionsOpened());
+    Assert.assertEquals(0, defaultServer1.getNumConnectionsClosed());
+  }
+
   protected HttpURLConnection openURL(URL url) throws Exception {
     return (HttpURLConnection) url.openConnection();
   }
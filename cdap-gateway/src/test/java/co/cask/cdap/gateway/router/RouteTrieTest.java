@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.gateway.router;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link RouteTrie}.
+ */
+public class RouteTrieTest {
+
+  @Test
+  public void testMatching() {
+    RouteTrie<String> trie = new RouteTrie<>();
+    trie.add("/v3/namespaces/{namespace-id}", "namespace");
+    trie.add("/v3/namespaces/default/apps", "default-apps");
+    trie.add("/v3/namespaces/*/apps/**", "apps");
+    trie.add("/v3/system/**", "system");
+
+    Assert.assertEquals("namespace", trie.lookup("/v3/namespaces/ns1"));
+    Assert.assertEquals("namespace", trie.lookup("//v3/namespaces/ns1/"));
+    Assert.assertNull(trie.lookup("/v3/namespaces"));
+    Assert.assertNull(trie.lookup("/v3/namespaces/ns1/streams"));
+
+    // '**' matches no remaining segment as well
+    Assert.assertEquals("apps", trie.lookup("/v3/namespaces/ns1/apps"));
+    Assert.assertEquals("apps", trie.lookup("/v3/namespaces/ns1/apps/app1/flows"));
+    Assert.assertEquals("system", trie.lookup("/v3/system"));
+    Assert.assertEquals("system", trie.lookup("/v3/system/services/foo/logs"));
+    Assert.assertNull(trie.lookup("/v2/system"));
+    Assert.assertEquals(4, trie.size());
+  }
+
+  @Test
+  public void testPrecedence() {
+    RouteTrie<String> trie = new RouteTrie<>();
+    trie.add("/v3/*/*/logs/**", "logs");
+    trie.add("/v3/namespaces/**", "namespaces");
+    trie.add("/v3/namespaces/{namespace-id}/streams/**", "streams");
+    trie.add("/v3/namespaces/{namespace-id}/logs", "unreachable");
+
+    // Routes added first win, regardless of how specific the other matching routes are
+    Assert.assertEquals("logs", trie.lookup("/v3/namespaces/ns1/logs"));
+    Assert.assertEquals("namespaces", trie.lookup("/v3/namespaces/ns1/streams/s1"));
+    Assert.assertEquals("namespaces", trie.lookup("/v3/namespaces"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPattern() {
+    new RouteTrie<String>().add("/v3/**/logs", "logs");
+  }
+}
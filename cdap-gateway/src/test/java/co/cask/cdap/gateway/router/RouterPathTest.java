@@ -25,8 +25,13 @@ import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpVersion;
 import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 /**
  *  To test the RouterPathLookup regular expression tests.
  */
@@ -440,6 +445,38 @@ public class RouterPathTest {
     assertRouting("/v3/system/////serviceproviders///////", RouterPathLookup.APP_FABRIC_HTTP);
   }
 
+  @Ignore
+  @Test
+  public void testSpeed() {
+    List<HttpRequest> requests = new ArrayList<>();
+    for (String path : ImmutableList.of(
+      "/v3/namespaces/default/apps/app1/services/s1/methods/m1/items",
+      "/v3/namespaces/default/apps/app1/versions/v1/services/s1/methods/m1",
+      "/v3/namespaces/default/apps/app1/flows/flow1/runs/run1/metadata/tags",
+      "/v3/namespaces/default/apps/app1/flows/flow1/logs",
+      "/v3/namespaces/default/streams/stream1/events",
+      "/v3/namespaces/default/data/datasets/ds1/properties",
+      "/v3/namespaces/default/data/explore/queries",
+      "/v3/metrics/query",
+      "/v3/namespaces/default/apps/app1/workflows/wf1/start",
+      "/v3/namespaces/default/apps")) {
+      requests.add(new DefaultHttpRequest(VERSION, HttpMethod.GET, path));
+      requests.add(new DefaultHttpRequest(VERSION, HttpMethod.POST, path));
+    }
+
+    int count = 1000000;
+    for (int round = 0; round < 3; round++) {
+      long startTime = System.nanoTime();
+      for (int i = 0; i < count; i++) {
+        HttpRequest request = requests.get(i % requests.size());
+        pathLookup.getRoutingService(FALLBACKSERVICE, request.getUri(), request);
+      }
+      long endTime = System.nanoTime();
+      System.out.println("Requests per second: "
+                           + count * TimeUnit.SECONDS.toNanos(1) / (endTime - startTime));
+    }
+  }
+
   private void assertRouting(String path, RouteDestination destination) {
     for (HttpMethod method : ImmutableList.of(HttpMethod.GET, HttpMethod.POST, HttpMethod.DELETE)) {
       HttpRequest httpRequest = new DefaultHttpRequest(VERSION, method, path);
@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.gateway.router.handlers;
+
+import com.google.common.base.Charsets;
+import org.apache.twill.discovery.Discoverable;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpRequestEncoder;
+import org.jboss.netty.handler.codec.http.HttpResponseDecoder;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Tests for {@link OutboundConnectionPool}.
+ */
+public class OutboundConnectionPoolTest {
+
+  private static final BlockingQueue<Channel> INBOUND_CHANNELS = new LinkedBlockingQueue<>();
+
+  private static ServerBootstrap inboundBootstrap;
+  private static InetSocketAddress inboundAddress;
+  private static ClientBootstrap clientBootstrap;
+
+  @BeforeClass
+  public static void init() {
+    // Accepts the inbound connections that responses are forwarded to
+    inboundBootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(),
+                                                                             Executors.newCachedThreadPool()));
+    inboundBootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+      @Override
+      public ChannelPipeline getPipeline() throws Exception {
+        return Channels.pipeline(new SimpleChannelUpstreamHandler() {
+          @Override
+          public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) {
+            INBOUND_CHANNELS.add(e.getChannel());
+          }
+        });
+      }
+    });
+    Channel serverChannel = inboundBootstrap.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    inboundAddress = (InetSocketAddress) serverChannel.getLocalAddress();
+
+    clientBootstrap = new ClientBootstrap(new NioClientSocketChannelFactory(Executors.newCachedThreadPool(),
+                                                                            Executors.newCachedThreadPool()));
+    clientBootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+      @Override
+      public ChannelPipeline getPipeline() throws Exception {
+        ChannelPipeline pipeline = Channels.pipeline();
+        pipeline.addLast("request-encoder", new HttpRequestEncoder());
+        pipeline.addLast("response-decoder", new HttpResponseDecoder());
+        return pipeline;
+      }
+    });
+  }
+
+  @AfterClass
+  public static void finish() {
+    clientBootstrap.releaseExternalResources();
+    inboundBootstrap.releaseExternalResources();
+  }
+
+  @Test(timeout = 30000L)
+  public void testReleaseAfterChunkedRequest() throws Exception {
+    OutboundConnectionPool pool = new OutboundConnectionPool(clientBootstrap, 1);
+    try (
+      ServerSocket backend = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+      Socket client = new Socket(inboundAddress.getAddress(), inboundAddress.getPort())
+    ) {
+      Channel inboundChannel = INBOUND_CHANNELS.take();
+      PooledConnection connection = pool.acquire(createDiscoverable(backend), inboundChannel);
+      Channel outboundChannel = connection.getChannelFuture().await().getChannel();
+
+      HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+      request.setHeader(HttpHeaders.Names.TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
+      request.setChunked(true);
+      outboundChannel.write(request);
+
+      // The backend responds before it received the request body
+      try (Socket backendSocket = backend.accept()) {
+        InputStream backendIn = backendSocket.getInputStream();
+        readUntil(backendIn, "\r\n\r\n");
+        write(backendSocket.getOutputStream(), "HTTP/1.1 413 Request Entity Too Large\r\nContent-Length: 0\r\n\r\n");
+        Assert.assertTrue(readUntil(client.getInputStream(), "\r\n\r\n").startsWith("HTTP/1.1 413"));
+        awaitPipeline(outboundChannel);
+
+        // The connection must not be returned to the pool while the request body is still being written
+        Assert.assertEquals(1, pool.getActiveCount());
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertTrue(connection.isServing(inboundChannel));
+
+        outboundChannel.write(new DefaultHttpChunk(ChannelBuffers.copiedBuffer("hello", Charsets.UTF_8)));
+        Assert.assertEquals(0, pool.getIdleCount());
+        outboundChannel.write(HttpChunk.LAST_CHUNK).await();
+        readUntil(backendIn, "0\r\n\r\n");
+
+        // Once the last chunk is written, the connection can be reused
+        Assert.assertEquals(0, pool.getActiveCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+      }
+    }
+  }
+
+  @Test(timeout = 30000L)
+  public void testHeadResponse() throws Exception {
+    OutboundConnectionPool pool = new OutboundConnectionPool(clientBootstrap, 1);
+    try (
+      ServerSocket backend = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+      Socket client = new Socket(inboundAddress.getAddress(), inboundAddress.getPort())
+    ) {
+      Channel inboundChannel = INBOUND_CHANNELS.take();
+      WrappedDiscoverable discoverable = createDiscoverable(backend);
+      PooledConnection connection = pool.acquire(discoverable, inboundChannel);
+      Channel outboundChannel = connection.getChannelFuture().await().getChannel();
+
+      outboundChannel.write(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.HEAD, "/data"));
+      try (Socket backendSocket = backend.accept()) {
+        InputStream backendIn = backendSocket.getInputStream();
+        OutputStream backendOut = backendSocket.getOutputStream();
+
+        // The response of a HEAD request has no content, even though it has a Content-Length
+        Assert.assertTrue(readUntil(backendIn, "\r\n\r\n").startsWith("HEAD /data"));
+        write(backendOut, "HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\n");
+        readUntil(client.getInputStream(), "\r\n\r\n");
+        awaitPipeline(outboundChannel);
+
+        Assert.assertEquals(0, pool.getActiveCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+
+        // The next request reuses the connection and its response is tracked correctly
+        Assert.assertSame(connection, pool.acquire(discoverable, inboundChannel));
+        outboundChannel.write(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/data"));
+        Assert.assertTrue(readUntil(backendIn, "\r\n\r\n").startsWith("GET /data"));
+        write(backendOut, "HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\n0123456789");
+        Assert.assertTrue(readUntil(client.getInputStream(), "0123456789").startsWith("HTTP/1.1 200 OK"));
+        awaitPipeline(outboundChannel);
+
+        Assert.assertEquals(0, pool.getActiveCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+      }
+    }
+  }
+
+  private WrappedDiscoverable createDiscoverable(ServerSocket backend) {
+    return new WrappedDiscoverable(new Discoverable("backend", (InetSocketAddress) backend.getLocalSocketAddress()));
+  }
+
+  /**
+   * Waits for the events already received by the given channel to be processed by its pipeline.
+   */
+  private void awaitPipeline(Channel channel) throws InterruptedException {
+    channel.getPipeline().execute(new Runnable() {
+      @Override
+      public void run() {
+        // no-op
+      }
+    }).await();
+  }
+
+  /**
+   * Reads from the given stream until the given terminator is read, and returns everything read.
+   */
+  private String readUntil(InputStream input, String terminator) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    while (!new String(output.toByteArray(), Charsets.UTF_8).endsWith(terminator)) {
+      int b = input.read();
+      if (b < 0) {
+        throw new IOException("Stream ended before reading " + terminator);
+      }
+      output.write(b);
+    }
+    return new String(output.toByteArray(), Charsets.UTF_8);
+  }
+
+  private void write(OutputStream output, String content) throws IOException {
+    output.write(content.getBytes(Charsets.UTF_8));
+    output.flush();
+  }
+}
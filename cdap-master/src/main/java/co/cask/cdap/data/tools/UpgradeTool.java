@@ -122,6 +122,7 @@ public class UpgradeTool {
   private final DatasetBasedStreamSizeScheduleStore datasetBasedStreamSizeScheduleStore;
   private final DatasetBasedTimeScheduleStore datasetBasedTimeScheduleStore;
   private final DefaultStore store;
+  private final ArtifactStore artifactStore;
   private final HBaseTableFactory tmsTableFactory;
   private final CoprocessorManager coprocessorManager;
 
@@ -171,6 +172,7 @@ public class UpgradeTool {
     this.datasetBasedStreamSizeScheduleStore = injector.getInstance(DatasetBasedStreamSizeScheduleStore.class);
     this.datasetBasedTimeScheduleStore = injector.getInstance(DatasetBasedTimeScheduleStore.class);
     this.store = injector.getInstance(DefaultStore.class);
+    this.artifactStore = injector.getInstance(ArtifactStore.class);
     this.tmsTableFactory = injector.getInstance(HBaseTableFactory.class);
     LocationFactory locationFactory = injector.getInstance(LocationFactory.class);
     HBaseTableUtil tableUtil = injector.getInstance(HBaseTableUtil.class);
@@ -416,6 +418,9 @@ public class UpgradeTool {
     LOG.info("Upgrading AppMetadatastore...");
     store.upgradeAppVersion();
 
+    LOG.info("Upgrading artifact plugin index...");
+    artifactStore.upgrade();
+
     LOG.info("Upgrading stream state store table...");
     streamStateStoreUpgrader.upgrade();
 
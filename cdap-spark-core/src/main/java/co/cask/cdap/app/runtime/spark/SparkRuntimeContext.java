@@ -48,6 +48,7 @@ import org.apache.twill.api.RunId;
 import org.apache.twill.discovery.DiscoveryServiceClient;
 
 import java.io.Closeable;
+import java.net.URI;
 import java.util.Map;
 import javax.annotation.Nullable;
 
@@ -65,6 +66,7 @@ public final class SparkRuntimeContext extends AbstractContext implements Metric
   private final LoggingContext loggingContext;
   private final AuthorizationEnforcer authorizationEnforcer;
   private final AuthenticationContext authenticationContext;
+  private SparkTransactionClient sparkTxClient;
 
   SparkRuntimeContext(Configuration hConf, Program program, ProgramOptions programOptions,
                       CConfiguration cConf, String hostname, TransactionSystemClient txClient,
@@ -154,6 +156,18 @@ public final class SparkRuntimeContext extends AbstractContext implements Metric
     return txClient;
   }
 
+  /**
+   * Returns the {@link SparkTransactionClient} for getting stage transactions from the given
+   * {@link SparkTransactionService}. The same client is returned to all tasks in the process so that they share
+   * the transactions it caches.
+   */
+  synchronized SparkTransactionClient getSparkTransactionClient(URI txServiceBaseURI) {
+    if (sparkTxClient == null || !sparkTxClient.getTxServiceBaseURI().equals(txServiceBaseURI)) {
+      sparkTxClient = new SparkTransactionClient(txServiceBaseURI);
+    }
+    return sparkTxClient;
+  }
+
   /**
    * Returns the {@link Configuration} used for the execution.
    */
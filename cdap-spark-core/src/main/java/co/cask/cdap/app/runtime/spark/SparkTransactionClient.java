@@ -18,7 +18,11 @@ package co.cask.cdap.app.runtime.spark;
 
 import co.cask.cdap.api.common.Bytes;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionCodec;
 import org.apache.tephra.TransactionFailureException;
@@ -27,21 +31,31 @@ import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import javax.annotation.Nullable;
 
 /**
  * Client class to interact with {@link SparkTransactionService} through HTTP. It is used by tasks executed inside
- * executor processes.
+ * executor processes. Requests are held by the service until the job of the stage started. The {@link Transaction}
+ * of each stage attempt, as identified by a {@link StageAttemptToken}, is cached by the client and served without
+ * calling the service, hence a single instance should be shared by all tasks running in the same executor process.
  */
 final class SparkTransactionClient {
 
   private static final TransactionCodec TX_CODEC = new TransactionCodec();
   private static final long DEFAULT_TX_POLL_INTERVAL_MS = 50;
+  // Maximum time for the service to hold a single request
+  private static final long MAX_REQUEST_WAIT_MS = 10000;
+  private static final int MAX_CACHED_STAGE_ATTEMPTS = 100;
 
   private final URI txServiceBaseURI;
   private final long txPollIntervalMillis;
+  // Map from StageAttemptToken id to transaction. A stage attempt runs in a single job, hence entries
+  // don't need to be refreshed.
+  private final Cache<Long, Transaction> txCache;
 
   SparkTransactionClient(URI txServiceBaseURI) {
     this(txServiceBaseURI, DEFAULT_TX_POLL_INTERVAL_MS);
@@ -50,10 +64,51 @@ final class SparkTransactionClient {
   SparkTransactionClient(URI txServiceBaseURI, long txPollIntervalMillis) {
     this.txServiceBaseURI = txServiceBaseURI;
     this.txPollIntervalMillis = txPollIntervalMillis;
+    this.txCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_STAGE_ATTEMPTS).build();
   }
 
   /**
-   * Returns the {@link Transaction} for the given stage.
+   * Returns the base {@link URI} of the {@link SparkTransactionService} used by this client.
+   */
+  URI getTxServiceBaseURI() {
+    return txServiceBaseURI;
+  }
+
+  /**
+   * Returns the {@link Transaction} for the given attempt of a stage. Only the first call for a stage attempt
+   * gets the transaction from the service, later calls are served from the cache.
+   *
+   * @param stageId the stage id to query for {@link Transaction}.
+   * @param stageAttempt the {@link StageAttemptToken} serialized with the task
+   * @param timeout the maximum time to wait
+   * @param timeUnit the time unit of the timeout argument
+   * @return the {@link Transaction} to be used for the given stage.
+   *
+   * @throws TimeoutException if the wait timed out
+   * @throws InterruptedException if the current thread was interrupted while waiting
+   * @throws TransactionFailureException if failed to get transaction for the given stage
+   */
+  Transaction getTransaction(final int stageId, StageAttemptToken stageAttempt, final long timeout,
+                             final TimeUnit timeUnit) throws TimeoutException, InterruptedException,
+                                                             TransactionFailureException {
+    try {
+      // Concurrent tasks of the same stage attempt wait for the first one to get the transaction
+      return txCache.get(stageAttempt.getId(), new Callable<Transaction>() {
+        @Override
+        public Transaction call() throws Exception {
+          return getTransaction(stageId, timeout, timeUnit);
+        }
+      });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.propagateIfPossible(cause, TimeoutException.class, InterruptedException.class);
+      Throwables.propagateIfInstanceOf(cause, TransactionFailureException.class);
+      throw Throwables.propagate(cause);
+    }
+  }
+
+  /**
+   * Returns the {@link Transaction} for the given stage. The transaction is always fetched from the service.
    *
    * @param stageId the stage id to query for {@link Transaction}.
    * @param timeout the maximum time to wait
@@ -68,13 +123,21 @@ final class SparkTransactionClient {
   Transaction getTransaction(int stageId, long timeout,
                              TimeUnit timeUnit) throws TimeoutException, InterruptedException,
                                                        TransactionFailureException {
-    long timeoutMillis = Math.max(0L, timeUnit.toMillis(timeout) - txPollIntervalMillis);
+    long timeoutMillis = timeUnit.toMillis(timeout);
     Stopwatch stopwatch = new Stopwatch().start();
-    Transaction transaction = getTransaction(stageId);
+    Transaction transaction = getTransaction(stageId, Math.min(timeoutMillis, MAX_REQUEST_WAIT_MS));
 
-    while (transaction == null && stopwatch.elapsedMillis() < timeoutMillis) {
-      TimeUnit.MILLISECONDS.sleep(txPollIntervalMillis);
-      transaction = getTransaction(stageId);
+    long elapsedMillis = stopwatch.elapsedMillis();
+    while (transaction == null && elapsedMillis < timeoutMillis) {
+      // Wait before retrying, so that the service is not flooded with requests if requests are not held,
+      // for example when it is not reachable.
+      long remainingMillis = timeoutMillis - elapsedMillis;
+      if (remainingMillis > txPollIntervalMillis) {
+        TimeUnit.MILLISECONDS.sleep(txPollIntervalMillis);
+        remainingMillis -= txPollIntervalMillis;
+      }
+      transaction = getTransaction(stageId, Math.min(remainingMillis, MAX_REQUEST_WAIT_MS));
+      elapsedMillis = stopwatch.elapsedMillis();
     }
     if (transaction == null) {
       throw new TimeoutException("Cannot get transaction for stage " + stageId + " after " + timeout + " " + timeUnit);
@@ -82,10 +145,14 @@ final class SparkTransactionClient {
     return transaction;
   }
 
+  /**
+   * Gets the {@link Transaction} of the given stage from the service, waiting for up to the given time for the
+   * job of the stage to start.
+   */
   @Nullable
-  private Transaction getTransaction(int stageId) throws TransactionFailureException {
+  private Transaction getTransaction(int stageId, long waitMillis) throws TransactionFailureException {
     try {
-      URL url = txServiceBaseURI.resolve("/spark/stages/" + stageId + "/transaction").toURL();
+      URL url = txServiceBaseURI.resolve("/spark/stages/" + stageId + "/transaction?timeout=" + waitMillis).toURL();
       HttpURLConnection urlConn = (HttpURLConnection) url.openConnection();
       try {
         int responseCode = urlConn.getResponseCode();
@@ -27,6 +27,7 @@ import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionCodec;
 import org.apache.tephra.TransactionFailureException;
 import org.apache.tephra.TransactionSystemClient;
+import org.apache.twill.common.Threads;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
@@ -38,13 +39,22 @@ import java.net.URI;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * Provides transaction management for Spark job and stage executors. It also expose an endpoint for stage executors
@@ -77,19 +87,25 @@ final class SparkTransactionService extends AbstractIdleService {
     }
   };
 
+  private static final TransactionCodec TX_CODEC = new TransactionCodec();
+
   private final TransactionSystemClient txClient;
 
   // Map from StageId to JobId. It is needed because Spark JobId is only available on the driver.
   // In the executor node, there is only StageId. The Spark StageId is unique across job, so it's ok to use a map.
   private final ConcurrentMap<Integer, Integer> stageToJob;
   private final ConcurrentMap<Integer, JobTransaction> jobTransactions;
+  // Map from StageId to requests that are waiting for the job of the stage to start
+  private final ConcurrentMap<Integer, Queue<PendingRequest>> pendingRequests;
 
   private final NettyHttpService httpServer;
+  private ScheduledExecutorService requestExecutor;
 
   SparkTransactionService(TransactionSystemClient txClient, String hostname, String programName) {
     this.txClient = txClient;
     this.stageToJob = new ConcurrentHashMap<>();
     this.jobTransactions = new ConcurrentHashMap<>();
+    this.pendingRequests = new ConcurrentHashMap<>();
     this.httpServer = NettyHttpService.builder(programName + "-spark-tx")
       .addHttpHandlers(Collections.singleton(new SparkTransactionHandler()))
       .setHost(hostname)
@@ -98,12 +114,15 @@ final class SparkTransactionService extends AbstractIdleService {
 
   @Override
   protected void startUp() throws Exception {
+    requestExecutor = Executors.newSingleThreadScheduledExecutor(
+      Threads.createDaemonThreadFactory("spark-tx-pending-requests"));
     httpServer.startAndWait();
   }
 
   @Override
   protected void shutDown() throws Exception {
     httpServer.stopAndWait();
+    requestExecutor.shutdownNow();
   }
 
   /**
@@ -155,6 +174,16 @@ final class SparkTransactionService extends AbstractIdleService {
       stageToJob.put(stageId, jobId);
     }
     this.stageToJob.putAll(stageToJob);
+
+    // Respond to requests that are waiting for the job to start
+    for (Integer stageId : stageIds) {
+      Queue<PendingRequest> requests = pendingRequests.remove(stageId);
+      if (requests != null) {
+        for (PendingRequest request : requests) {
+          request.complete();
+        }
+      }
+    }
   }
 
   /**
@@ -180,57 +209,146 @@ final class SparkTransactionService extends AbstractIdleService {
     jobTransaction.completed(succeeded);
   }
 
+  /**
+   * Responds to a request for the serialized {@link Transaction} of the given stage.
+   */
+  private void sendTransaction(int stageId, HttpResponder responder) {
+    // Lookup the jobId from the stageId
+    Integer jobId = stageToJob.get(stageId);
+    if (jobId == null) {
+      // If the JobId is not there, it's either the job hasn't been registered yet (because it's async) or
+      // the job is already finished. For either case, return 404 and let the client to handle retry if necessary.
+      responder.sendString(HttpResponseStatus.NOT_FOUND, "JobId not found for stage " + stageId);
+      return;
+    }
+
+    // Get the transaction
+    JobTransaction jobTransaction = jobTransactions.get(jobId);
+    if (jobTransaction == null) {
+      // The only reason we can find the jobId from the stageToJob map but not the job transaction is because
+      // the job is completed, hence the transaction get removed. In normal case, it shouldn't happen
+      // as a job won't complete if there are still stages running and
+      // this method only gets called from stage running in executor node.
+      responder.sendString(HttpResponseStatus.GONE,
+                           "No transaction associated with the stage " + stageId + " of job " + jobId);
+      return;
+    }
+
+    Transaction transaction = jobTransaction.getTransaction();
+    if (transaction == null) {
+      // Job failed to start a transaction. Response with GONE as well so that the stage execution can fail itself
+      responder.sendString(HttpResponseStatus.GONE,
+                           "Failed to start transaction for stage " + stageId + " of job " + jobId);
+      return;
+    }
+
+    // Serialize the transaction and send it back
+    try {
+      responder.sendByteArray(HttpResponseStatus.OK, TX_CODEC.encode(transaction), null);
+    } catch (IOException e) {
+      // Shouldn't happen
+      LOG.error("Failed to encode Transaction {}", jobTransaction, e);
+      responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR,
+                           "Failed to encode transaction: " + e.getMessage());
+    }
+  }
+
   /**
    * HTTP Handler to provide the Spark stage execution transaction lookup service.
    */
   public final class SparkTransactionHandler extends AbstractHttpHandler {
 
-    private final TransactionCodec txCodec = new TransactionCodec();
-
     /**
-     * Handler method to get a serialized {@link Transaction} for the given stage.
+     * Handler method to get a serialized {@link Transaction} for the given stage. If the job of the stage hasn't
+     * been started and a positive timeout is given, the response is held until either the job started or the
+     * timeout in milliseconds passed.
      */
     @GET
     @Path("/spark/stages/{stage}/transaction")
-    public void getTransaction(HttpRequest request, HttpResponder responder, @PathParam("stage") int stageId) {
-      // Lookup the jobId from the stageId
-      Integer jobId = stageToJob.get(stageId);
-      if (jobId == null) {
-        // If the JobId is not there, it's either the job hasn't been registered yet (because it's async) or
-        // the job is already finished. For either case, return 404 and let the client to handle retry if necessary.
-        responder.sendString(HttpResponseStatus.NOT_FOUND, "JobId not found for stage " + stageId);
+    public void getTransaction(HttpRequest request, HttpResponder responder, @PathParam("stage") int stageId,
+                               @QueryParam("timeout") @DefaultValue("0") long timeoutMillis) {
+      if (timeoutMillis <= 0 || stageToJob.containsKey(stageId)) {
+        sendTransaction(stageId, responder);
         return;
       }
 
-      // Get the transaction
-      JobTransaction jobTransaction = jobTransactions.get(jobId);
-      if (jobTransaction == null) {
-        // The only reason we can find the jobId from the stageToJob map but not the job transaction is because
-        // the job is completed, hence the transaction get removed. In normal case, it shouldn't happen
-        // as a job won't complete if there are still stages running and
-        // this method only gets called from stage running in executor node.
-        responder.sendString(HttpResponseStatus.GONE,
-                             "No transaction associated with the stage " + stageId + " of job " + jobId);
-        return;
+      PendingRequest pendingRequest = new PendingRequest(stageId, responder);
+      Queue<PendingRequest> requests = pendingRequests.get(stageId);
+      if (requests == null) {
+        Queue<PendingRequest> newRequests = new ConcurrentLinkedQueue<>();
+        requests = pendingRequests.putIfAbsent(stageId, newRequests);
+        if (requests == null) {
+          requests = newRequests;
+        }
       }
+      requests.add(pendingRequest);
 
-      Transaction transaction = jobTransaction.getTransaction();
-      if (transaction == null) {
-        // Job failed to start a transaction. Response with GONE as well so that the stage execution can fail itself
-        responder.sendString(HttpResponseStatus.GONE,
-                             "Failed to start transaction for stage " + stageId + " of job " + jobId);
+      // Check again in case the job started before the request was added
+      if (stageToJob.containsKey(stageId)) {
+        requests.remove(pendingRequest);
+        pendingRequest.complete();
         return;
       }
+      pendingRequest.scheduleTimeout(timeoutMillis);
+    }
+  }
+
+  /**
+   * A request for the transaction of a stage that is held until the job of the stage started or it timed out.
+   */
+  private final class PendingRequest implements Runnable {
+    private final int stageId;
+    private final HttpResponder responder;
+    private final AtomicBoolean completed;
+
+    PendingRequest(int stageId, HttpResponder responder) {
+      this.stageId = stageId;
+      this.responder = responder;
+      this.completed = new AtomicBoolean();
+    }
 
-      // Serialize the transaction and send it back
+    /**
+     * Schedules this request to be completed after the given timeout.
+     */
+    void scheduleTimeout(long timeoutMillis) {
       try {
-        responder.sendByteArray(HttpResponseStatus.OK, txCodec.encode(transaction), null);
-      } catch (IOException e) {
-        // Shouldn't happen
-        LOG.error("Failed to encode Transaction {}", jobTransaction, e);
-        responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR,
-                             "Failed to encode transaction: " + e.getMessage());
+        requestExecutor.schedule(this, timeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // The service is stopping
+        complete();
+      }
+    }
+
+    /**
+     * Responds to this request if it hasn't been responded. Responding may start a transaction, hence it is done
+     * asynchronously.
+     */
+    void complete() {
+      if (!completed.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        requestExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            sendTransaction(stageId, responder);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        responder.sendString(HttpResponseStatus.SERVICE_UNAVAILABLE, "Transaction service is stopping");
+      }
+    }
+
+    /**
+     * Called when the request timed out.
+     */
+    @Override
+    public void run() {
+      Queue<PendingRequest> requests = pendingRequests.get(stageId);
+      if (requests != null) {
+        requests.remove(this);
       }
+      complete();
     }
   }
 
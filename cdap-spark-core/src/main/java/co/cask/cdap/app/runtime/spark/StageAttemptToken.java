@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.app.runtime.spark;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Identifies an attempt of a Spark stage from within its tasks. A token is held by an object that is part of the
+ * task binary of a stage, such as an RDD or a function passed to {@code SparkContext.runJob}. Spark serializes the
+ * task binary once for each attempt of a stage, and each serialization of a token gets a new id. Hence all tasks of
+ * the same stage attempt see the same id, while a stage that is retried or reused by a later job sees a new one.
+ */
+final class StageAttemptToken implements Serializable {
+
+  private static final long serialVersionUID = 2862137430569128213L;
+  private static final AtomicLong NEXT_ID = new AtomicLong();
+
+  private final long id;
+
+  StageAttemptToken() {
+    this.id = NEXT_ID.incrementAndGet();
+  }
+
+  /**
+   * Returns the id of this token, which is unique among the tokens created by the driver process.
+   */
+  long getId() {
+    return id;
+  }
+
+  private Object writeReplace() throws ObjectStreamException {
+    // The task binary is serialized in the driver, hence ids stay unique
+    return new StageAttemptToken();
+  }
+}
@@ -43,15 +43,22 @@ class BatchReadableRDD[K: ClassTag, V: ClassTag](@transient sc: SparkContext,
                                                  @transient splits: Option[Iterable[_ <: Split]],
                                                  txServiceBaseURI: Broadcast[URI]) extends RDD[(K, V)](sc, Nil) {
 
+  // Identifies the stage attempt in tasks, so that the transaction is only fetched once per stage attempt
+  private val stageAttempt = new StageAttemptToken
+
   override protected def getPartitions: Array[Partition] = {
     val inputSplits: Iterable[_ <: Split] = splits.getOrElse(batchReadable.getSplits.toIterable)
     inputSplits.zipWithIndex.map(t => new BatchReadablePartition(id, t._2, t._1)).toArray
   }
 
+  override protected def getPreferredLocations(partition: Partition): Seq[String] = {
+    partition.asInstanceOf[BatchReadablePartition].split.getLocations.toSeq
+  }
+
   override def compute(partition: Partition, context: TaskContext): Iterator[(K, V)] = {
     val inputMetrics = context.taskMetrics.inputMetrics
     val split = partition.asInstanceOf[BatchReadablePartition].split
-    val sparkTxClient = new SparkTransactionClient(txServiceBaseURI.value)
+    val sparkTxClient = SparkRuntimeContextProvider.get().getSparkTransactionClient(txServiceBaseURI.value)
 
     val datasetCache = SparkRuntimeContextProvider.get().getDatasetCache
 
@@ -62,7 +69,7 @@ class BatchReadableRDD[K: ClassTag, V: ClassTag](@transient sc: SparkContext,
       dataset match {
         case txAware: TransactionAware => {
           // Try to get the transaction for this stage. Hardcoded the timeout to 10 seconds for now
-          txAware.startTx(sparkTxClient.getTransaction(context.stageId(), 10, TimeUnit.SECONDS))
+          txAware.startTx(sparkTxClient.getTransaction(context.stageId(), stageAttempt, 10, TimeUnit.SECONDS))
         }
         case _ => // Nothing happen
       }
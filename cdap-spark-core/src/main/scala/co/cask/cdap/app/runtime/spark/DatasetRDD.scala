@@ -82,4 +82,7 @@ class DatasetRDD[K: ClassTag, V: ClassTag](@transient sc: SparkContext,
 
     delegateRDD.get.partitions
   }
+
+  override protected def getPreferredLocations(split: Partition): Seq[String] =
+    delegateRDD.get.preferredLocations(split)
 }
@@ -280,7 +280,8 @@ class DefaultSparkExecutionContext(runtimeContext: SparkRuntimeContext,
 
             case batchWritable: BatchWritable[K, V] =>
               val txServiceBaseURI = getTxServiceBaseURI(sc, sparkTxService.getBaseURI)
-              sc.runJob(rdd, createBatchWritableFunc(namespace, datasetName, arguments, txServiceBaseURI))
+              sc.runJob(rdd, createBatchWritableFunc(namespace, datasetName, arguments, txServiceBaseURI,
+                                                    new StageAttemptToken))
 
             case _ =>
               throw new IllegalArgumentException("Dataset is neither a OutputFormatProvider nor a BatchWritable")
@@ -404,12 +405,13 @@ object DefaultSparkExecutionContext {
       (namespace: String,
        datasetName: String,
        arguments: Map[String, String],
-       txServiceBaseURI: Broadcast[URI]) = (context: TaskContext, itor: Iterator[(K, V)]) => {
+       txServiceBaseURI: Broadcast[URI],
+       stageAttempt: StageAttemptToken) = (context: TaskContext, itor: Iterator[(K, V)]) => {
 
     val outputMetrics = new BatchWritableMetrics
     context.taskMetrics.outputMetrics = Option(outputMetrics)
 
-    val sparkTxClient = new SparkTransactionClient(txServiceBaseURI.value)
+    val sparkTxClient = SparkRuntimeContextProvider.get().getSparkTransactionClient(txServiceBaseURI.value)
     val datasetCache = SparkRuntimeContextProvider.get().getDatasetCache
     val dataset: Dataset = datasetCache.getDataset(namespace, datasetName, arguments, true, AccessType.WRITE)
 
@@ -421,7 +423,8 @@ object DefaultSparkExecutionContext {
       }
 
       // Try to get the transaction for this stage. Hardcoded the timeout to 10 seconds for now
-      txAware.foreach(_.startTx(sparkTxClient.getTransaction(context.stageId(), 10, TimeUnit.SECONDS)))
+      txAware.foreach(_.startTx(sparkTxClient.getTransaction(context.stageId(), stageAttempt,
+                                                             10, TimeUnit.SECONDS)))
 
       // Write through BatchWritable.
       val writable = dataset.asInstanceOf[BatchWritable[K, V]]
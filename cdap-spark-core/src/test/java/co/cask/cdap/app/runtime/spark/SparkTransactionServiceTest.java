@@ -31,6 +31,11 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Arrays;
@@ -222,6 +227,67 @@ public class SparkTransactionServiceTest {
     sparkTxService.jobEnded(1, true);
   }
 
+  /**
+   * Tests that a request made before the job started is responded as soon as the job started.
+   */
+  @Test(timeout = 30000L)
+  public void testWaitForJobStart() throws Exception {
+    final Set<Integer> stages = ImmutableSet.of(100);
+
+    Executors.newSingleThreadScheduledExecutor().schedule(new Runnable() {
+      @Override
+      public void run() {
+        sparkTxService.jobStarted(100, stages);
+      }
+    }, 1, TimeUnit.SECONDS);
+
+    // Use a poll interval longer than the test timeout, so that it can only pass if the request was held
+    SparkTransactionClient client = new SparkTransactionClient(sparkTxService.getBaseURI(), 60000L);
+    Assert.assertNotNull(client.getTransaction(100, 20, TimeUnit.SECONDS));
+
+    sparkTxService.jobEnded(100, true);
+  }
+
+  /**
+   * Tests that the {@link SparkTransactionClient} caches the transaction of each stage attempt.
+   */
+  @Test
+  public void testClientCache() throws Exception {
+    SparkTransactionClient client = new SparkTransactionClient(sparkTxService.getBaseURI());
+    StageAttemptToken token = new StageAttemptToken();
+
+    // Tasks of the same stage attempt deserialize the same token id from the task binary
+    byte[] taskBinary = serialize(token);
+    StageAttemptToken attempt = deserialize(taskBinary);
+    Assert.assertEquals(attempt.getId(), deserialize(taskBinary).getId());
+
+    sparkTxService.jobStarted(200, ImmutableSet.of(200, 201));
+    Transaction transaction = client.getTransaction(200, attempt, 1, TimeUnit.SECONDS);
+    sparkTxService.jobEnded(200, true);
+
+    // The transaction of the stage attempt is served from the cache without calling the service
+    Assert.assertEquals(new TransactionWrapper(transaction),
+                        new TransactionWrapper(client.getTransaction(200, deserialize(taskBinary), 0,
+                                                                     TimeUnit.SECONDS)));
+
+    // A stage that is reused by a new job has a new attempt, which gets the transaction of the new job
+    sparkTxService.jobStarted(202, ImmutableSet.of(201));
+    StageAttemptToken newAttempt = deserialize(serialize(token));
+    Assert.assertNotEquals(attempt.getId(), newAttempt.getId());
+    Transaction newTransaction = client.getTransaction(201, newAttempt, 1, TimeUnit.SECONDS);
+    Assert.assertNotEquals(transaction.getWritePointer(), newTransaction.getWritePointer());
+    Assert.assertTrue(txManager.getCurrentState().getInProgress().containsKey(newTransaction.getWritePointer()));
+    sparkTxService.jobEnded(202, true);
+
+    // A new attempt of a stage without a running job doesn't get a cached transaction
+    try {
+      client.getTransaction(200, deserialize(serialize(token)), 0, TimeUnit.SECONDS);
+      Assert.fail("Should failed to get transaction");
+    } catch (TimeoutException e) {
+      // expected
+    }
+  }
+
   /**
    * Simulates a single job run which contains multiple stages.
    *
@@ -342,6 +408,23 @@ public class SparkTransactionServiceTest {
     return result;
   }
 
+  /**
+   * Serializes the given token the same way as Spark serializes the task binary of a stage attempt.
+   */
+  private byte[] serialize(StageAttemptToken token) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(os)) {
+      oos.writeObject(token);
+    }
+    return os.toByteArray();
+  }
+
+  private StageAttemptToken deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return (StageAttemptToken) ois.readObject();
+    }
+  }
+
   /**
    * Verifies the result of get stage transaction for the given set of stages.
    * The get transaction will be called concurrently for all stages.
@@ -31,6 +31,8 @@ import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.file.CodecFactory;
 import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,6 +62,7 @@ public class CDAPLogAppender extends AppenderBase<ILoggingEvent> implements Flus
   private String dirPermissions;
   private String filePermissions;
   private int syncIntervalBytes;
+  private String compressionCodec;
   private long maxFileLifetimeMs;
   private long maxFileSizeInBytes;
   private ScheduledExecutorService scheduledExecutorService;
@@ -92,6 +95,14 @@ public class CDAPLogAppender extends AppenderBase<ILoggingEvent> implements Flus
     this.syncIntervalBytes = syncIntervalBytes;
   }
 
+  /**
+   * Sets the block compression codec of the avro file, e.g. {@code null}, {@code deflate} or {@code snappy}.
+   * This is called by the logback framework.
+   */
+  public void setCompressionCodec(String compressionCodec) {
+    this.compressionCodec = compressionCodec;
+  }
+
   /**
    * Sets the maximum lifetime of a file. This is called by the logback framework.
    */
@@ -143,10 +154,17 @@ public class CDAPLogAppender extends AppenderBase<ILoggingEvent> implements Flus
                              String.format("Property fileCleanupTransactionTimeout must be greater than %s seconds",
                                            Constants.Logging.TX_TIMEOUT_DISCOUNT_SECS));
 
+    CodecFactory codec;
+    try {
+      codec = compressionCodec == null ? CodecFactory.nullCodec() : CodecFactory.fromString(compressionCodec);
+    } catch (AvroRuntimeException e) {
+      throw new IllegalStateException("Unsupported compressionCodec " + compressionCodec, e);
+    }
+
     if (context instanceof AppenderContext) {
       AppenderContext context = (AppenderContext) this.context;
       logFileManager = new LogFileManager(dirPermissions, filePermissions, maxFileLifetimeMs, maxFileSizeInBytes,
-                                          syncIntervalBytes,
+                                          syncIntervalBytes, codec,
                                           new FileMetaDataWriter(context.getDatasetManager(), context),
                                           context.getLocationFactory());
       if (context.getInstanceId() == 0) {
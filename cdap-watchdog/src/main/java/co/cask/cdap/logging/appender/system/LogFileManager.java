@@ -19,15 +19,16 @@ package co.cask.cdap.logging.appender.system;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.io.Syncable;
 import co.cask.cdap.logging.meta.FileMetaDataWriter;
+import co.cask.cdap.logging.write.LogFileTimeIndex;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.io.Closeables;
 import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.avro.file.CodecFactory;
 import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
@@ -49,6 +50,7 @@ final class LogFileManager implements Flushable, Syncable {
   private final String dirPermissions;
   private final String filePermissions;
   private final int syncIntervalBytes;
+  private final CodecFactory codec;
   private final long maxLifetimeMillis;
   private final long maxFileSizeInBytes;
   private final Map<LogPathIdentifier, LogFileOutputStream> outputStreamMap;
@@ -56,13 +58,14 @@ final class LogFileManager implements Flushable, Syncable {
   private final FileMetaDataWriter fileMetaDataWriter;
 
   LogFileManager(String dirPermissions, String filePermissions,
-                 long maxFileLifetimeMs, long maxFileSizeInBytes, int syncIntervalBytes,
+                 long maxFileLifetimeMs, long maxFileSizeInBytes, int syncIntervalBytes, CodecFactory codec,
                  FileMetaDataWriter fileMetaDataWriter, LocationFactory locationFactory) {
     this.dirPermissions = dirPermissions;
     this.filePermissions = filePermissions;
     this.maxLifetimeMillis = maxFileLifetimeMs;
     this.maxFileSizeInBytes = maxFileSizeInBytes;
     this.syncIntervalBytes = syncIntervalBytes;
+    this.codec = codec;
     this.fileMetaDataWriter = fileMetaDataWriter;
     this.logsDirectoryLocation = locationFactory.create("logs");
     this.outputStreamMap = new HashMap<>();
@@ -89,13 +92,17 @@ final class LogFileManager implements Flushable, Syncable {
   }
 
   private LogFileOutputStream createOutputStream(final LogPathIdentifier identifier,
-                                                 long timestamp) throws IOException {
-    TimeStampLocation location = createLocation(identifier);
+                                                 final long timestamp) throws IOException {
+    final TimeStampLocation location = createLocation(identifier);
     LogFileOutputStream logFileOutputStream = new LogFileOutputStream(
-      location.getLocation(), filePermissions, syncIntervalBytes, location.getTimeStamp(), new Closeable() {
+      location.getLocation(), filePermissions, syncIntervalBytes, codec, location.getTimeStamp(),
+      new LogFileOutputStream.CloseListener() {
       @Override
-      public void close() throws IOException {
+      public void closed(@Nullable LogFileTimeIndex timeIndex) {
         outputStreamMap.remove(identifier);
+        if (timeIndex != null) {
+          writeTimeIndex(identifier, timestamp, location, timeIndex);
+        }
       }
     });
     logFileOutputStream.flush();
@@ -118,6 +125,19 @@ final class LogFileManager implements Flushable, Syncable {
   }
 
 
+  /**
+   * Records the time index of a closed file, so that readers can skip blocks using the per block statistics.
+   */
+  private void writeTimeIndex(LogPathIdentifier identifier, long timestamp,
+                              TimeStampLocation location, LogFileTimeIndex timeIndex) {
+    try {
+      fileMetaDataWriter.writeTimeIndex(identifier, timestamp, location.getTimeStamp(), timeIndex);
+    } catch (Throwable e) {
+      // The index is just an optimization for reading, hence failure to write it is not fatal
+      LOG.warn("Failed to write time index for log file {}", location.getLocation(), e);
+    }
+  }
+
   private TimeStampLocation createLocation(LogPathIdentifier logPathIdentifier) throws IOException {
     // if createNew fails, we retry after sleeping for a milli second as we use current timestamp for fileName.
     // this retry should succeed on any potential conflicts, though the likelihood of conflict is very small.
@@ -21,55 +21,78 @@ import co.cask.cdap.common.io.ByteBuffers;
 import co.cask.cdap.common.io.Syncable;
 import co.cask.cdap.logging.serialize.LoggingEvent;
 import co.cask.cdap.logging.serialize.LoggingEventSerializer;
+import co.cask.cdap.logging.write.LogFileTimeIndex;
 import com.google.common.io.Closeables;
 import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
 
 /**
  * Represents output stream for a log file.
  *
  * Since there is no way to check the state of the underlying file on an exception,
  * all methods of this class assume that the file state is bad on any exception and close the file.
+ *
+ * Avro blocks are cut by this class instead of the {@link DataFileWriter}, such that the min/max timestamp and
+ * level of the events in each block can be collected into a {@link LogFileTimeIndex}.
  */
 
 class LogFileOutputStream implements Closeable, Flushable, Syncable {
   private static final Logger LOG = LoggerFactory.getLogger(LogFileOutputStream.class);
 
+  // Maximum sync interval allowed by DataFileWriter. Blocks are cut by this class based on the syncIntervalBytes.
+  private static final int MAX_WRITER_SYNC_INTERVAL = 1 << 30;
+
   private final Location location;
   private final long createTime;
-  private final Closeable closeable;
+  private final int syncIntervalBytes;
+  private final CloseListener closeListener;
   private final LoggingEventSerializer serializer;
+  private final GenericDatumWriter<GenericRecord> datumWriter;
+  private final ExposedByteArrayOutputStream encodeBuffer;
 
   private OutputStream outputStream;
   private DataFileWriter<GenericRecord> dataFileWriter;
+  private BinaryEncoder encoder;
+  private LogFileTimeIndex.Builder timeIndexBuilder;
+  private long blockBytes;
   private long fileSize;
 
-  LogFileOutputStream(Location location, String filePermissions,
-                      int syncIntervalBytes, long createTime, Closeable closeable) throws IOException {
+  LogFileOutputStream(Location location, String filePermissions, int syncIntervalBytes, CodecFactory codec,
+                      long createTime, CloseListener closeListener) throws IOException {
     this.location = location;
-    this.closeable = closeable;
+    this.syncIntervalBytes = syncIntervalBytes;
+    this.closeListener = closeListener;
     this.serializer = new LoggingEventSerializer();
 
     Schema schema = serializer.getAvroSchema();
+    this.datumWriter = new GenericDatumWriter<>(schema);
+    this.encodeBuffer = new ExposedByteArrayOutputStream();
     try {
       this.outputStream =
         filePermissions.isEmpty() ? location.getOutputStream() : location.getOutputStream(filePermissions);
       this.dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
+      this.dataFileWriter.setCodec(codec);
       this.dataFileWriter.create(schema, outputStream);
-      this.dataFileWriter.setSyncInterval(syncIntervalBytes);
+      this.dataFileWriter.setSyncInterval(MAX_WRITER_SYNC_INTERVAL);
       this.createTime = createTime;
-      this.fileSize = 0;
+      this.fileSize = dataFileWriter.sync();
+      this.timeIndexBuilder = new LogFileTimeIndex.Builder(fileSize);
     } catch (IOException e) {
       Closeables.closeQuietly(outputStream);
       Closeables.closeQuietly(dataFileWriter);
@@ -82,18 +105,27 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   }
 
   void append(ILoggingEvent event) throws IOException {
+    ByteBuffer encoded;
     // If the event is already a LoggingEvent, we don't need to re-encode.
-    if (event instanceof LoggingEvent) {
-      ByteBuffer encoded = ((LoggingEvent) event).getEncoded();
-      if (encoded != null) {
-        // TODO: CDAP-8735 Remove the copying after upgraded to Avro 1.7.4+
-        dataFileWriter.appendEncoded(ByteBuffers.copy(encoded));
-      } else {
-        dataFileWriter.append(((LoggingEvent) event).getRecord());
-      }
-      return;
+    if (event instanceof LoggingEvent && ((LoggingEvent) event).getEncoded() != null) {
+      // TODO: CDAP-8735 Remove the copying after upgraded to Avro 1.7.4+
+      encoded = ByteBuffers.copy(((LoggingEvent) event).getEncoded());
+    } else {
+      GenericRecord record = event instanceof LoggingEvent
+        ? ((LoggingEvent) event).getRecord() : serializer.toGenericRecord(event);
+      encodeBuffer.reset();
+      encoder = EncoderFactory.get().directBinaryEncoder(encodeBuffer, encoder);
+      datumWriter.write(record, encoder);
+      encoded = encodeBuffer.toByteBuffer();
+    }
+
+    blockBytes += encoded.remaining();
+    dataFileWriter.appendEncoded(encoded);
+    timeIndexBuilder.addEvent(event.getTimeStamp(), event.getLevel().toInt());
+
+    if (blockBytes >= syncIntervalBytes) {
+      endBlock();
     }
-    dataFileWriter.append(serializer.toGenericRecord(event));
   }
 
   /**
@@ -114,7 +146,16 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
 
   @Override
   public void flush() throws IOException {
+    endBlock();
+  }
+
+  /**
+   * Writes out the current block and records its statistics.
+   */
+  private void endBlock() throws IOException {
     fileSize = dataFileWriter.sync();
+    timeIndexBuilder.endBlock(fileSize);
+    blockBytes = 0;
   }
 
   @Override
@@ -130,10 +171,40 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   @Override
   public void close() throws IOException {
     LOG.trace("Closing file {}", location);
+    LogFileTimeIndex timeIndex = null;
     try {
+      // Write out the last block before closing, such that it is included in the time index
+      if (timeIndexBuilder.getBlockEvents() > 0) {
+        endBlock();
+      }
       dataFileWriter.close();
+      timeIndex = timeIndexBuilder.build();
     } finally {
-      closeable.close();
+      closeListener.closed(timeIndex);
+    }
+  }
+
+  /**
+   * Listener to get notified when a {@link LogFileOutputStream} is closed.
+   */
+  interface CloseListener {
+
+    /**
+     * Called when the file is closed.
+     *
+     * @param timeIndex the {@link LogFileTimeIndex} with the statistics of all blocks in the file,
+     *                  or {@code null} if the file was not closed successfully
+     */
+    void closed(@Nullable LogFileTimeIndex timeIndex);
+  }
+
+  /**
+   * A {@link ByteArrayOutputStream} that exposes its buffer without copying.
+   */
+  private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+    ByteBuffer toByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
     }
   }
 }
@@ -42,6 +42,13 @@ public class AndFilter implements Filter {
     return true;
   }
 
+  /**
+   * Returns the list of sub expressions of this filter.
+   */
+  public List<? extends Filter> getExpressions() {
+    return expressions;
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
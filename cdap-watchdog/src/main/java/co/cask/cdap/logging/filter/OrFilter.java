@@ -42,6 +42,13 @@ public class OrFilter implements Filter {
     return false;
   }
 
+  /**
+   * Returns the list of sub expressions of this filter.
+   */
+  public List<? extends Filter> getExpressions() {
+    return expressions;
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
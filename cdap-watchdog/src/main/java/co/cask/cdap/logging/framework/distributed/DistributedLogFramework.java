@@ -44,6 +44,7 @@ import org.apache.twill.discovery.DiscoveryServiceClient;
 import org.apache.twill.kafka.client.BrokerService;
 import org.apache.twill.zookeeper.ZKClient;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -91,11 +92,15 @@ public class DistributedLogFramework extends ResourceBalancerService {
 
       long bufferSize = getBufferSize(pipelineCount, cConf, partitions.size());
       final String topic = cConf.get(Constants.Logging.KAFKA_TOPIC);
+      String spillDir = cConf.get(Constants.Logging.PIPELINE_SPILL_DIR, "").trim();
       final KafkaPipelineConfig config = new KafkaPipelineConfig(
         topic, partitions, bufferSize,
         cConf.getLong(Constants.Logging.PIPELINE_EVENT_DELAY_MS),
         cConf.getInt(Constants.Logging.PIPELINE_KAFKA_FETCH_SIZE),
-        cConf.getLong(Constants.Logging.PIPELINE_CHECKPOINT_INTERVAL_MS)
+        cConf.getLong(Constants.Logging.PIPELINE_CHECKPOINT_INTERVAL_MS),
+        // Each pipeline spills to its own sub-directory
+        spillDir.isEmpty() ? null : new File(spillDir, context.getName()),
+        cConf.getLong(Constants.Logging.PIPELINE_SPILL_SIZE)
       );
 
       RetryStrategy retryStrategy = RetryStrategies.fromConfiguration(cConf, "system.log.process.");
@@ -21,6 +21,7 @@ import co.cask.cdap.common.app.RunIds;
 import co.cask.cdap.data2.dataset2.lib.table.MDSKey;
 import co.cask.cdap.data2.dataset2.lib.table.MetadataStoreDataset;
 import co.cask.cdap.internal.app.store.RunRecordMeta;
+import co.cask.cdap.internal.app.store.RunRecordMetaCodec;
 import co.cask.cdap.proto.id.ProgramId;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
@@ -39,6 +40,7 @@ public class AppMetadataStore extends MetadataStoreDataset {
 
   public AppMetadataStore(Table table) {
     super(table);
+    addValueCodec(RunRecordMeta.class, new RunRecordMetaCodec());
   }
 
   // TODO: getRun is duplicated from cdap-app-fabric AppMetadataStore class.
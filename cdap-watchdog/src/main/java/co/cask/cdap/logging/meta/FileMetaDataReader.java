@@ -29,6 +29,7 @@ import co.cask.cdap.data2.dataset2.MultiThreadDatasetCache;
 import co.cask.cdap.data2.transaction.Transactions;
 import co.cask.cdap.data2.transaction.TxCallable;
 import co.cask.cdap.logging.appender.system.LogPathIdentifier;
+import co.cask.cdap.logging.write.LogFileTimeIndex;
 import co.cask.cdap.logging.write.LogLocation;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.impersonation.Impersonator;
@@ -45,6 +46,7 @@ import org.apache.twill.filesystem.LocationFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -53,6 +55,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * class to read log meta data table
@@ -183,18 +186,41 @@ public class FileMetaDataReader {
       while ((row = scanner.next()) != null) {
         // column value is the file location
         byte[] value = row.get(LoggingStoreTableUtil.META_TABLE_COLUMN_KEY);
+        if (value == null) {
+          LOG.warn("Ignoring meta data row {} without file location", Bytes.toStringBinary(row.getRow()));
+          continue;
+        }
         files.add(new LogLocation(LogLocation.VERSION_1,
                                   Bytes.toLong(row.getRow(), prefixLength, Bytes.SIZEOF_LONG),
                                   Bytes.toLong(row.getRow(), prefixLength + Bytes.SIZEOF_LONG, Bytes.SIZEOF_LONG),
                                   // we store path in new format
                                   Locations.getLocationFromAbsolutePath(locationFactory, (Bytes.toString(value))),
-                                  logPathIdentifier.getNamespaceId(), impersonator));
+                                  logPathIdentifier.getNamespaceId(), impersonator,
+                                  decodeTimeIndex(row.get(LoggingStoreTableUtil.META_TABLE_TIME_INDEX_COLUMN_KEY))));
 
       }
     }
     return files;
   }
 
+  /**
+   * Decodes the {@link LogFileTimeIndex} stored for a closed log file. Returns {@code null} if the file is still
+   * being written, was written before the time index was recorded, or if the index cannot be decoded.
+   */
+  @Nullable
+  private LogFileTimeIndex decodeTimeIndex(@Nullable byte[] value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return LogFileTimeIndex.fromBytes(value);
+    } catch (IOException e) {
+      // The index is just an optimization for reading.
+      LOG.debug("Failed to decode log file time index", e);
+      return null;
+    }
+  }
+
   private byte[] getOldRowKey(LogPathIdentifier logPathIdentifier) {
     return Bytes.add(LoggingStoreTableUtil.OLD_FILE_META_ROW_KEY_PREFIX, logPathIdentifier.getOldRowkey().getBytes());
   }
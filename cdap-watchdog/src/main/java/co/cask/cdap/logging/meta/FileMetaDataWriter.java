@@ -23,6 +23,7 @@ import co.cask.cdap.api.data.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetManager;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.logging.appender.system.LogPathIdentifier;
+import co.cask.cdap.logging.write.LogFileTimeIndex;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,6 +70,35 @@ public class FileMetaDataWriter {
     });
   }
 
+  /**
+   * Persists the {@link LogFileTimeIndex} of a log file, which carries the per block statistics of the file.
+   * This is called after the file is closed.
+   *
+   * @param identifier logging context identifier.
+   * @param eventTimeMs start log time associated with the file.
+   * @param currentTimeMs current time during file creation.
+   * @param timeIndex the time index of the file.
+   */
+  public void writeTimeIndex(final LogPathIdentifier identifier,
+                             final long eventTimeMs,
+                             final long currentTimeMs,
+                             final LogFileTimeIndex timeIndex) throws Exception {
+    LOG.trace("Writing time index for logging context {} with startTimeMs {} sequence Id {}: {}",
+              identifier.getRowkey(), eventTimeMs, currentTimeMs, timeIndex);
+
+    transactional.execute(new TxRunnable() {
+      @Override
+      public void run(DatasetContext context) throws Exception {
+        Table table = LoggingStoreTableUtil.getMetadataTable(context, datasetManager);
+        byte[] rowKey = getRowKey(identifier, eventTimeMs, currentTimeMs);
+        // Don't resurrect the row if the meta data was already removed by log cleanup
+        if (table.get(rowKey, LoggingStoreTableUtil.META_TABLE_COLUMN_KEY) != null) {
+          table.put(rowKey, LoggingStoreTableUtil.META_TABLE_TIME_INDEX_COLUMN_KEY, timeIndex.toBytes());
+        }
+      }
+    });
+  }
+
   private byte[] getRowKey(LogPathIdentifier identifier, long eventTime, long currentTime) {
     return Bytes.concat(LoggingStoreTableUtil.NEW_FILE_META_ROW_KEY_PREFIX,
                         identifier.getRowkey().getBytes(StandardCharsets.UTF_8),
@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A {@link TimeEventQueue.EventSpill} that stores serialized events in a local file. Each event is written
+ * as a length prefixed byte array. Writes are buffered in memory and flushed to the file when the buffer is full
+ * or when an event that is not yet flushed is read. The file is created on the first write and is deleted on close.
+ */
+@NotThreadSafe
+public final class FileEventSpill implements TimeEventQueue.EventSpill<byte[]> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FileEventSpill.class);
+  private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+  private final File dir;
+  private final String prefix;
+  private final ByteBuffer writeBuffer;
+  private final ByteBuffer lengthBuffer;
+
+  private File file;
+  private FileChannel channel;
+  // Number of bytes written to the file
+  private long flushedSize;
+
+  /**
+   * Creates a spill that stores events in a file under the given directory.
+   *
+   * @param dir the directory for the spill file
+   * @param prefix prefix of the spill file name
+   */
+  public FileEventSpill(File dir, String prefix) {
+    this.dir = dir;
+    this.prefix = prefix;
+    this.writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    this.lengthBuffer = ByteBuffer.allocate(Integer.SIZE / Byte.SIZE);
+  }
+
+  @Override
+  public long write(byte[] event) throws IOException {
+    long position = size();
+    int length = Integer.SIZE / Byte.SIZE + event.length;
+    if (length > writeBuffer.remaining()) {
+      flush();
+    }
+    if (length > writeBuffer.remaining()) {
+      // Too large to be buffered, write it to the file directly
+      getChannel();
+      lengthBuffer.clear();
+      lengthBuffer.putInt(event.length).flip();
+      writeFully(lengthBuffer);
+      writeFully(ByteBuffer.wrap(event));
+      return position;
+    }
+    writeBuffer.putInt(event.length).put(event);
+    return position;
+  }
+
+  @Override
+  public byte[] read(long position) throws IOException {
+    if (position >= flushedSize) {
+      flush();
+    }
+    lengthBuffer.clear();
+    readFully(lengthBuffer, position);
+    lengthBuffer.flip();
+    int length = lengthBuffer.getInt();
+    if (length < 0 || position + lengthBuffer.capacity() + length > flushedSize) {
+      throw new IOException("Invalid event length " + length + " at position " + position + " in spill " + file);
+    }
+    byte[] event = new byte[length];
+    readFully(ByteBuffer.wrap(event), position + lengthBuffer.capacity());
+    return event;
+  }
+
+  @Override
+  public long size() {
+    return flushedSize + writeBuffer.position();
+  }
+
+  @Override
+  public void reset() throws IOException {
+    writeBuffer.clear();
+    if (channel != null && flushedSize > 0) {
+      channel.truncate(0L);
+    }
+    flushedSize = 0L;
+  }
+
+  @Override
+  public void close() throws IOException {
+    writeBuffer.clear();
+    flushedSize = 0L;
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+    } finally {
+      channel = null;
+      if (!file.delete() && file.exists()) {
+        LOG.warn("Failed to delete spill file {}", file);
+      }
+    }
+  }
+
+  private void flush() throws IOException {
+    if (writeBuffer.position() == 0) {
+      return;
+    }
+    getChannel();
+    writeBuffer.flip();
+    writeFully(writeBuffer);
+    writeBuffer.clear();
+  }
+
+  private void writeFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      flushedSize += channel.write(buffer, flushedSize);
+    }
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    long pos = position;
+    while (buffer.hasRemaining()) {
+      int len = channel.read(buffer, pos);
+      if (len < 0) {
+        throw new EOFException("Unexpected end of spill " + file + " at position " + pos);
+      }
+      pos += len;
+    }
+  }
+
+  private FileChannel getChannel() throws IOException {
+    if (channel != null) {
+      return channel;
+    }
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+      throw new IOException("Failed to create spill directory " + dir);
+    }
+    file = File.createTempFile(prefix, ".spill", dir);
+    file.deleteOnExit();
+    channel = new RandomAccessFile(file, "rw").getChannel();
+    LOG.debug("Created spill file {}", file);
+    return channel;
+  }
+}
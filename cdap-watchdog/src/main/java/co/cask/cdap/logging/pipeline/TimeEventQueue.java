@@ -16,30 +16,63 @@
 
 package co.cask.cdap.logging.pipeline;
 
+import com.google.common.base.Throwables;
 import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * A queue for storing time based events with offsets association.
  *
+ * The queue can optionally be given an {@link EventSpill}, in which case events that are added after the size of
+ * events kept in memory reaches the memory limit are written to the spill instead, and only read back when
+ * they are iterated.
+ *
  * @param <Event> Type of event stored in the queue.
  * @param <Offset> Type of event offset associated with the event.
  */
 @NotThreadSafe
 public final class TimeEventQueue<Event, Offset extends Comparable<Offset>> implements Iterable<Event> {
 
+  private static final Logger LOG = LoggerFactory.getLogger(TimeEventQueue.class);
+
   private final SortedSet<TimeEvent<Event, Offset>> events;
   private final Int2ObjectMap<SortedSet<Offset>> partitionOffsets;
+  private final long maxMemorySize;
+  private final EventSpill<Event> spill;
+  private final long maxSpillSize;
   private long totalSize;
+  private long spilledSize;
+  private long totalSpilledBytes;
 
   public TimeEventQueue(Iterable<Integer> partitions) {
+    this(partitions, Long.MAX_VALUE, null, 0L);
+  }
+
+  /**
+   * Creates a queue that spills events when the memory limit is reached.
+   *
+   * @param partitions the set of allowed partitions
+   * @param maxMemorySize the maximum size of events kept in memory before spilling
+   * @param spill the {@link EventSpill} for storing events that don't fit in memory, or {@code null} to not spill
+   * @param maxSpillSize the maximum size of the spill
+   */
+  public TimeEventQueue(Iterable<Integer> partitions, long maxMemorySize,
+                        @Nullable EventSpill<Event> spill, long maxSpillSize) {
     this.events = new TreeSet<>();
     this.partitionOffsets = new Int2ObjectArrayMap<>();
+    this.maxMemorySize = maxMemorySize;
+    this.spill = spill;
+    this.maxSpillSize = maxSpillSize;
 
     for (int partition : partitions) {
       partitionOffsets.put(partition, new TreeSet<Offset>());
@@ -57,6 +90,9 @@ public final class TimeEventQueue<Event, Offset extends Comparable<Offset>> impl
       }
 
       totalSize += eventSize;
+      if (getMemorySize() > maxMemorySize) {
+        spill(timeEvent);
+      }
     }
   }
 
@@ -64,7 +100,15 @@ public final class TimeEventQueue<Event, Offset extends Comparable<Offset>> impl
    * Returns the event in the queue with the smallest timestamp.
    */
   public Event first() {
-    return events.first().getEvent();
+    return getEvent(events.first());
+  }
+
+  /**
+   * Returns the timestamp of the event in the queue with the smallest timestamp. Different from {@link #first()},
+   * this method doesn't need to read the event back if it was spilled.
+   */
+  public long firstEventTime() {
+    return events.first().getEventTime();
   }
 
   /**
@@ -89,12 +133,33 @@ public final class TimeEventQueue<Event, Offset extends Comparable<Offset>> impl
   }
 
   /**
-   * Returns the size of all events in the queue.
+   * Returns the size of all events in the queue, including the spilled ones.
    */
   public long getEventSize() {
     return totalSize;
   }
 
+  /**
+   * Returns the size of events in the queue that are kept in memory.
+   */
+  public long getMemorySize() {
+    return totalSize - spilledSize;
+  }
+
+  /**
+   * Returns the size of events in the queue that are spilled.
+   */
+  public long getSpilledSize() {
+    return spilledSize;
+  }
+
+  /**
+   * Returns the total size of events ever spilled by this queue.
+   */
+  public long getTotalSpilledBytes() {
+    return totalSpilledBytes;
+  }
+
   /**
    * Returns the smallest offset stored for the given partition.
    */
@@ -112,16 +177,26 @@ public final class TimeEventQueue<Event, Offset extends Comparable<Offset>> impl
     return new EventIterator<Event, Offset>() {
 
       private TimeEvent<Event, Offset> currentEvent;
+      private TimeEvent<Event, Offset> peekedEvent;
 
       @Override
       public boolean hasNext() {
-        return iterator.hasNext();
+        return peekedEvent != null || iterator.hasNext();
       }
 
       @Override
       public Event next() {
-        currentEvent = iterator.next();
-        return currentEvent.getEvent();
+        currentEvent = peekedEvent == null ? iterator.next() : peekedEvent;
+        peekedEvent = null;
+        return getEvent(currentEvent);
+      }
+
+      @Override
+      public long peekEventTime() {
+        if (peekedEvent == null) {
+          peekedEvent = iterator.next();
+        }
+        return peekedEvent.getEventTime();
       }
 
       @Override
@@ -129,9 +204,16 @@ public final class TimeEventQueue<Event, Offset extends Comparable<Offset>> impl
         if (currentEvent == null) {
           throw new IllegalStateException("The next() method must be called first.");
         }
+        if (peekedEvent != null) {
+          throw new IllegalStateException("The remove() method cannot be called after peekEventTime().");
+        }
         iterator.remove();
         partitionOffsets.get(currentEvent.getPartition()).remove(currentEvent.getOffset());
         totalSize -= currentEvent.getEventSize();
+        if (currentEvent.isSpilled()) {
+          spilledSize -= currentEvent.getEventSize();
+          resetSpillIfEmpty();
+        }
         currentEvent = null;
       }
 
@@ -153,6 +235,49 @@ public final class TimeEventQueue<Event, Offset extends Comparable<Offset>> impl
     };
   }
 
+  /**
+   * Writes the event to the spill if there is room in the spill. If failed to write, the event stays in memory.
+   */
+  private void spill(TimeEvent<Event, Offset> timeEvent) {
+    if (spill == null || spill.size() + timeEvent.getEventSize() > maxSpillSize) {
+      return;
+    }
+    try {
+      timeEvent.spilled(spill.write(timeEvent.getEvent()));
+      spilledSize += timeEvent.getEventSize();
+      totalSpilledBytes += timeEvent.getEventSize();
+    } catch (IOException e) {
+      LOG.warn("Failed to spill event. Keeping it in memory.", e);
+    }
+  }
+
+  private Event getEvent(TimeEvent<Event, Offset> timeEvent) {
+    if (!timeEvent.isSpilled()) {
+      return timeEvent.getEvent();
+    }
+    try {
+      return spill.read(timeEvent.getSpillPosition());
+    } catch (IOException e) {
+      // Failing to read back a spilled event cannot be recovered in the queue. Since the event is never removed,
+      // the caller can recover by replaying from the offset of the event.
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Space in the spill can only be reclaimed when there is no more spilled event.
+   */
+  private void resetSpillIfEmpty() {
+    if (spilledSize > 0) {
+      return;
+    }
+    try {
+      spill.reset();
+    } catch (IOException e) {
+      LOG.warn("Failed to reset spill", e);
+    }
+  }
+
   private SortedSet<Offset> getOffsets(int partition) {
     SortedSet<Offset> offsets = partitionOffsets.get(partition);
     if (offsets == null) {
@@ -170,6 +295,15 @@ public final class TimeEventQueue<Event, Offset extends Comparable<Offset>> impl
    */
   public interface EventIterator<Event, Offset> extends Iterator<Event> {
 
+    /**
+     * Returns the timestamp provided at the insertion time of the element that will be returned by the next call
+     * to {@link #next()}, without reading the element back if it was spilled. The {@link #remove()} method cannot
+     * be called after this method until {@link #next()} is called.
+     *
+     * @throws java.util.NoSuchElementException if there are no more elements
+     */
+    long peekEventTime();
+
     /**
      * Returns the offset provided at the insertion time of the last element returned by this iterator.
      */
@@ -181,6 +315,38 @@ public final class TimeEventQueue<Event, Offset extends Comparable<Offset>> impl
     int getPartition();
   }
 
+  /**
+   * Storage for events that don't fit in memory.
+   *
+   * @param <Event> Type of event stored in the spill.
+   */
+  public interface EventSpill<Event> extends Closeable {
+
+    /**
+     * Writes an event to the spill.
+     *
+     * @return the position of the event in the spill, for reading it back with {@link #read(long)}
+     */
+    long write(Event event) throws IOException;
+
+    /**
+     * Reads an event from the spill.
+     *
+     * @param position the position returned by {@link #write(Object)}
+     */
+    Event read(long position) throws IOException;
+
+    /**
+     * Returns the number of bytes used by the spill.
+     */
+    long size();
+
+    /**
+     * Discards all events in the spill.
+     */
+    void reset() throws IOException;
+  }
+
   /**
    * This class represent an event stored in the event set.
    */
@@ -189,8 +355,9 @@ public final class TimeEventQueue<Event, Offset extends Comparable<Offset>> impl
     private final long eventTime;
     private final int partition;
     private final Offset offset;
-    private final Event event;
     private final int eventSize;
+    private Event event;
+    private long spillPosition = -1L;
 
     TimeEvent(long eventTime, int partition, Offset offset, Event event, int eventSize) {
       this.eventTime = eventTime;
@@ -200,6 +367,22 @@ public final class TimeEventQueue<Event, Offset extends Comparable<Offset>> impl
       this.eventSize = eventSize;
     }
 
+    /**
+     * Marks this event as spilled at the given position, which releases the event from memory.
+     */
+    void spilled(long position) {
+      this.spillPosition = position;
+      this.event = null;
+    }
+
+    boolean isSpilled() {
+      return spillPosition >= 0;
+    }
+
+    long getSpillPosition() {
+      return spillPosition;
+    }
+
     long getEventTime() {
       return eventTime;
     }
@@ -17,6 +17,7 @@
 package co.cask.cdap.logging.pipeline.kafka;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.logging.LogSampler;
@@ -24,6 +25,7 @@ import co.cask.cdap.common.logging.LogSamplers;
 import co.cask.cdap.common.logging.Loggers;
 import co.cask.cdap.logging.meta.Checkpoint;
 import co.cask.cdap.logging.meta.CheckpointManager;
+import co.cask.cdap.logging.pipeline.FileEventSpill;
 import co.cask.cdap.logging.pipeline.LogProcessorPipelineContext;
 import co.cask.cdap.logging.pipeline.TimeEventQueue;
 import co.cask.cdap.logging.serialize.LoggingEventSerializer;
@@ -50,6 +52,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -88,7 +91,8 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
   private final Int2ObjectMap<MutableCheckpoint> checkpoints;
   private final LoggingEventSerializer serializer;
   private final KafkaPipelineConfig config;
-  private final TimeEventQueue<ILoggingEvent, OffsetTime> eventQueue;
+  private final TimeEventQueue<byte[], OffsetTime> eventQueue;
+  private final FileEventSpill eventSpill;
   private final Map<BrokerInfo, KafkaSimpleConsumer> kafkaConsumers;
   private final MetricsContext metricsContext;
   private final KafkaOffsetResolver offsetResolver;
@@ -98,6 +102,7 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
   private volatile boolean stopped;
   private long lastCheckpointTime;
   private int unSyncedEvents;
+  private long reportedSpilledBytes;
 
   public KafkaLogProcessorPipeline(LogProcessorPipelineContext context,
                                    CheckpointManager checkpointManager, BrokerService brokerService,
@@ -109,7 +114,10 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
     this.config = config;
     this.offsets = new Int2LongOpenHashMap();
     this.checkpoints = new Int2ObjectOpenHashMap<>();
-    this.eventQueue = new TimeEventQueue<>(config.getPartitions());
+    // Events are buffered in serialized form and only decoded when they are appended
+    this.eventSpill = config.getSpillDir() == null ? null : new FileEventSpill(config.getSpillDir(), name + "-");
+    this.eventQueue = new TimeEventQueue<>(config.getPartitions(), config.getMaxBufferSize(),
+                                           eventSpill, config.getMaxSpillSize());
     this.serializer = new LoggingEventSerializer();
     this.kafkaConsumers = new HashMap<>();
     this.metricsContext = context;
@@ -178,7 +186,7 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
         if (!hasMessageProcessed) {
           long sleepMillis = config.getEventDelayMillis();
           if (!eventQueue.isEmpty()) {
-            sleepMillis += eventQueue.first().getTimeStamp() - now;
+            sleepMillis += eventQueue.firstEventTime() - now;
           }
           sleepMillis = Math.min(sleepMillis, nextCheckpointDelay);
           if (sleepMillis > 0) {
@@ -222,6 +230,15 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
         LOG.warn("Exception raised when closing Kafka consumer.", e);
       }
     }
+
+    if (eventSpill != null) {
+      try {
+        eventSpill.close();
+      } catch (Exception e) {
+        // Just log, not to fail the shutdown
+        LOG.warn("Exception raised when closing event spill.", e);
+      }
+    }
     LOG.info("Log processor pipeline for {} stopped with latest checkpoints {}", name, checkpoints);
   }
 
@@ -298,9 +315,10 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
 
     boolean processed = false;
     for (MessageAndOffset message : messages) {
-      if (eventQueue.getEventSize() >= config.getMaxBufferSize()) {
+      if (isQueueFull()) {
         // Log a message. If this happen too often, it indicates that more memory is needed for the log processing
-        OUTAGE_LOG.info("Maximum queue size {} reached for pipeline {}.", config.getMaxBufferSize(), name);
+        OUTAGE_LOG.info("Maximum queue size {} reached for pipeline {}.",
+                        config.getMaxBufferSize() + config.getMaxSpillSize(), name);
         // If nothing has been appended (due to error), we break the loop so that no need event will be appended
         // Since the offset is not updated, the same set of messages will be fetched again in next iteration.
         int eventsAppended = appendEvents(System.currentTimeMillis(), true);
@@ -312,12 +330,12 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
 
       try {
         metricsContext.increment("kafka.bytes.read", message.message().payloadSize());
-        ILoggingEvent loggingEvent = serializer.fromBytes(message.message().payload());
-        // Use the message payload size as the size estimate of the logging event
-        // Although it's not the same as the in memory object size, it should be just a constant factor, hence
-        // it is proportional to the actual object size.
-        eventQueue.add(loggingEvent, loggingEvent.getTimeStamp(), message.message().payloadSize(), partition,
-                       new OffsetTime(message.nextOffset(), loggingEvent.getTimeStamp()));
+        // Only decode the timestamp for ordering. The event is kept in serialized form, which is copied out of
+        // the fetch buffer so that the buffer can be released, and is fully decoded when it is appended.
+        ByteBuffer payload = message.message().payload();
+        long eventTime = serializer.decodeEventTimestamp(payload);
+        eventQueue.add(Bytes.toBytes(payload), eventTime, payload.remaining(), partition,
+                       new OffsetTime(message.nextOffset(), eventTime));
       } catch (IOException e) {
         // This shouldn't happen. In case it happens (e.g. someone published some garbage), just skip the message.
         LOG.trace("Fail to decode logging event from {}:{} at offset {}. Skipping it.",
@@ -330,6 +348,15 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
     return processed;
   }
 
+  /**
+   * Returns {@code true} if the event queue is full, either by the total size of events, or by the size of events
+   * kept in memory, which happens if spilling is disabled or the spill is full.
+   */
+  private boolean isQueueFull() {
+    return eventQueue.getEventSize() >= config.getMaxBufferSize() + config.getMaxSpillSize()
+      || eventQueue.getMemorySize() >= config.getMaxBufferSize();
+  }
+
   /**
    * Fetches messages from Kafka across all partitions simultaneously.
    */
@@ -359,25 +386,39 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
    */
   private int appendEvents(long currentTimeMillis, boolean forced) {
     long minEventTime = currentTimeMillis - config.getEventDelayMillis();
-    long maxRetainSize = forced ? (long) (config.getMaxBufferSize() * MIN_FREE_FACTOR) : Long.MAX_VALUE;
+    long maxRetainSize = forced
+      ? (long) ((config.getMaxBufferSize() + config.getMaxSpillSize()) * MIN_FREE_FACTOR) : Long.MAX_VALUE;
+    long maxRetainMemorySize = forced ? (long) (config.getMaxBufferSize() * MIN_FREE_FACTOR) : Long.MAX_VALUE;
 
-    TimeEventQueue.EventIterator<ILoggingEvent, OffsetTime> iterator = eventQueue.iterator();
+    TimeEventQueue.EventIterator<byte[], OffsetTime> iterator = eventQueue.iterator();
 
     int eventsAppended = 0;
     long minDelay = Long.MAX_VALUE;
     long maxDelay = -1;
 
     while (iterator.hasNext()) {
-      ILoggingEvent event = iterator.next();
-
       // If not forced to reduce the event queue size and the current event timestamp is still within the
-      // buffering time, no need to iterate anymore
-      if (eventQueue.getEventSize() <= maxRetainSize && event.getTimeStamp() >= minEventTime) {
+      // buffering time, no need to iterate anymore. The event is only read and decoded when it is appended.
+      long eventTime = iterator.peekEventTime();
+      if (eventQueue.getEventSize() <= maxRetainSize && eventQueue.getMemorySize() <= maxRetainMemorySize
+        && eventTime >= minEventTime) {
         break;
       }
 
+      byte[] encoded = iterator.next();
+      ILoggingEvent event;
+      try {
+        event = serializer.fromBytes(ByteBuffer.wrap(encoded));
+      } catch (IOException e) {
+        // This shouldn't happen. In case it happens (e.g. someone published some garbage), just skip the event.
+        LOG.trace("Fail to decode logging event from partition {} at offset {}. Skipping it.",
+                  iterator.getPartition(), iterator.getOffset(), e);
+        iterator.remove();
+        continue;
+      }
+
       // update delay
-      long delay = System.currentTimeMillis() - event.getTimeStamp();
+      long delay = System.currentTimeMillis() - eventTime;
       minDelay = delay < minDelay ? delay : minDelay;
       maxDelay = delay > maxDelay ? delay : maxDelay;
 
@@ -436,6 +477,14 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
     // Failure to flush is ok and it will be retried by the wrapped appender
     try {
       metricsContext.gauge("event.queue.size.bytes", eventQueue.getEventSize());
+      if (eventSpill != null) {
+        metricsContext.gauge("event.queue.spill.size.bytes", eventQueue.getSpilledSize());
+        long spilledBytes = eventQueue.getTotalSpilledBytes();
+        if (spilledBytes > reportedSpilledBytes) {
+          metricsContext.increment("event.queue.spill.bytes", spilledBytes - reportedSpilledBytes);
+          reportedSpilledBytes = spilledBytes;
+        }
+      }
       context.flush();
     } catch (IOException e) {
       OUTAGE_LOG.warn("Failed to flush in pipeline {}. Will be retried.", name, e);
@@ -18,38 +18,76 @@ package co.cask.cdap.logging.read;
 
 import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.logging.LoggingContext;
 import co.cask.cdap.logging.context.LoggingContextHelper;
 import co.cask.cdap.logging.filter.AndFilter;
 import co.cask.cdap.logging.filter.Filter;
 import co.cask.cdap.logging.meta.FileMetaDataReader;
+import co.cask.cdap.logging.write.LogFileTimeIndex;
 import co.cask.cdap.logging.write.LogLocation;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Reads log events from a file.
+ *
+ * Log files are read ahead in parallel for {@link #getLogNext} and {@link #getLogPrev}, and a
+ * {@link LogFileTimeIndex} is cached for each file such that seeking to a given time doesn't need to
+ * skip through the Avro blocks in the file sequentially. For closed files, the index recorded by the log saver
+ * also allows skipping blocks that cannot match the time range or log level filter.
+ * The threads for reading ahead are started on demand and are stopped by {@link #close()}.
  */
-public class FileLogReader implements LogReader {
+@Singleton
+public class FileLogReader implements LogReader, Closeable {
   private static final Logger LOG = LoggerFactory.getLogger(FileLogReader.class);
 
   private final FileMetaDataReader fileMetadataReader;
+  private final int prefetchFiles;
+  private final int maxThreads;
+  private final Cache<URI, LogFileTimeIndex> timeIndexCache;
+  private ExecutorService executor;
 
   @Inject
-  public FileLogReader(FileMetaDataReader fileMetadataReader) {
+  public FileLogReader(CConfiguration cConf, FileMetaDataReader fileMetadataReader) {
     this.fileMetadataReader = fileMetadataReader;
+    this.prefetchFiles = Math.max(1, cConf.getInt(Constants.Logging.LOG_READER_PREFETCH_FILES));
+    this.maxThreads = Math.max(1, cConf.getInt(Constants.Logging.LOG_READER_MAX_THREADS));
+    this.timeIndexCache = CacheBuilder.newBuilder()
+      .maximumSize(cConf.getInt(Constants.Logging.LOG_READER_INDEX_CACHE_SIZE))
+      .build();
   }
 
   @Override
@@ -63,9 +101,9 @@ public class FileLogReader implements LogReader {
     callback.init();
 
     try {
-      Filter logFilter = new AndFilter(ImmutableList.of(LoggingContextHelper.createFilter(loggingContext),
-                                                        filter));
-      long fromTimeMs = readRange.getFromMillis() + 1;
+      final Filter logFilter = new AndFilter(ImmutableList.of(LoggingContextHelper.createFilter(loggingContext),
+                                                              filter));
+      final long fromTimeMs = readRange.getFromMillis() + 1;
 
       LOG.trace("Using fromTimeMs={}, readRange={}", fromTimeMs, readRange);
       List<LogLocation> sortedFilesInRange =
@@ -75,13 +113,34 @@ public class FileLogReader implements LogReader {
         return;
       }
 
-      for (LogLocation file : sortedFilesInRange) {
-        LOG.trace("Reading file {}", file);
-        file.readLog(logFilter, fromTimeMs, Long.MAX_VALUE, maxEvents - callback.getCount(), callback);
-        if (callback.getCount() >= maxEvents) {
-          break;
+      readAhead(sortedFilesInRange, new LogFileReadFunction() {
+        @Override
+        public List<LogEvent> read(LogLocation file, @Nullable LogFileTimeIndex timeIndex) {
+          List<LogEvent> events = new ArrayList<>();
+          try (CloseableIterator<LogEvent> iterator = file.readLog(logFilter, fromTimeMs, Long.MAX_VALUE,
+                                                                   maxEvents, timeIndex)) {
+            Iterators.addAll(events, iterator);
+          }
+          return events;
         }
-      }
+
+        @Override
+        public boolean consume(List<LogEvent> events) {
+          // Events with the same timestamp as the last event are always included, same as in LogLocation
+          int remaining = maxEvents - callback.getCount();
+          long lastTimestamp = -1L;
+          for (LogEvent event : events) {
+            long timestamp = event.getLoggingEvent().getTimeStamp();
+            if (remaining <= 0 && timestamp != lastTimestamp) {
+              break;
+            }
+            callback.handle(event);
+            lastTimestamp = timestamp;
+            remaining--;
+          }
+          return callback.getCount() < maxEvents;
+        }
+      });
     } catch (Throwable e) {
       LOG.error("Got exception: ", e);
       throw  Throwables.propagate(e);
@@ -93,8 +152,8 @@ public class FileLogReader implements LogReader {
                          final Filter filter, final Callback callback) {
     callback.init();
     try {
-      Filter logFilter = new AndFilter(ImmutableList.of(LoggingContextHelper.createFilter(loggingContext),
-                                                        filter));
+      final Filter logFilter = new AndFilter(ImmutableList.of(LoggingContextHelper.createFilter(loggingContext),
+                                                              filter));
 
 
       List<LogLocation> sortedFilesInRange =
@@ -104,25 +163,34 @@ public class FileLogReader implements LogReader {
         return;
       }
 
-      long fromTimeMs = readRange.getToMillis() - 1;
+      final long fromTimeMs = readRange.getToMillis() - 1;
 
       LOG.trace("Using fromTimeMs={}, readRange={}", fromTimeMs, readRange);
-      List<Collection<LogEvent>> logSegments = Lists.newLinkedList();
-      int count = 0;
-      for (LogLocation file : Lists.reverse(sortedFilesInRange)) {
-        try {
-          LOG.trace("Reading file {}", file);
-
-          Collection<LogEvent> events = file.readLogPrev(logFilter, fromTimeMs, maxEvents - count);
-          logSegments.add(events);
-          count += events.size();
-          if (count >= maxEvents) {
-            break;
+      final List<Collection<LogEvent>> logSegments = Lists.newLinkedList();
+      readAhead(Lists.reverse(sortedFilesInRange), new LogFileReadFunction() {
+        private int count;
+
+        @Override
+        public List<LogEvent> read(LogLocation file, @Nullable LogFileTimeIndex timeIndex) {
+          try {
+            return new ArrayList<>(file.readLogPrev(logFilter, fromTimeMs, maxEvents, timeIndex));
+          } catch (IOException e) {
+            LOG.warn("Got exception reading log file {}", file, e);
+            return Collections.emptyList();
           }
-        } catch (IOException e) {
-          LOG.warn("Got exception reading log file {}", file, e);
         }
-      }
+
+        @Override
+        public boolean consume(List<LogEvent> events) {
+          // Only keep the latest events if there are more than needed
+          int remaining = maxEvents - count;
+          List<LogEvent> segment = events.size() > remaining ? events.subList(events.size() - remaining, events.size())
+                                                               : events;
+          logSegments.add(segment);
+          count += segment.size();
+          return count < maxEvents;
+        }
+      });
 
       for (LogEvent event : Iterables.concat(Lists.reverse(logSegments))) {
         callback.handle(event);
@@ -184,7 +252,7 @@ public class FileLogReader implements LogReader {
             }
             LogLocation file = filesIter.next();
             LOG.trace("Reading file {}", file);
-            curr = file.readLog(logFilter, fromTimeMs, toTimeMs, Integer.MAX_VALUE);
+            curr = file.readLog(logFilter, fromTimeMs, toTimeMs, Integer.MAX_VALUE, getTimeIndex(file));
             return curr;
           }
 
@@ -201,6 +269,105 @@ public class FileLogReader implements LogReader {
     }
   }
 
+  /**
+   * Reads the given files in order, with up to {@code prefetchFiles} files being read in parallel.
+   * Reading stops when the {@link LogFileReadFunction#consume(List)} method returns {@code false}.
+   */
+  private void readAhead(List<LogLocation> files,
+                         final LogFileReadFunction readFunction) throws InterruptedException, ExecutionException {
+    Iterator<LogLocation> fileIterator = files.iterator();
+    Deque<Future<List<LogEvent>>> pending = new LinkedList<>();
+    ExecutorService executor = getExecutor();
+    try {
+      while (fileIterator.hasNext() || !pending.isEmpty()) {
+        while (fileIterator.hasNext() && pending.size() < prefetchFiles) {
+          final LogLocation file = fileIterator.next();
+          pending.add(executor.submit(new Callable<List<LogEvent>>() {
+            @Override
+            public List<LogEvent> call() throws Exception {
+              LOG.trace("Reading file {}", file);
+              return readFunction.read(file, getTimeIndex(file));
+            }
+          }));
+        }
+        if (!readFunction.consume(pending.poll().get())) {
+          break;
+        }
+      }
+    } finally {
+      for (Future<List<LogEvent>> future : pending) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Stops the threads used for reading files ahead. Threads are started again if there are reads after closing.
+   */
+  @Override
+  public synchronized void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                                                           new LinkedBlockingQueue<Runnable>(),
+                                                           Threads.createDaemonThreadFactory("log-reader-%d"));
+      executor.allowCoreThreadTimeOut(true);
+      this.executor = executor;
+    }
+    return executor;
+  }
+
+  /**
+   * Returns the {@link LogFileTimeIndex} for the given log file. The index recorded by the log saver when the file
+   * was closed is used if available, since it carries per block statistics for skipping blocks. Otherwise the index
+   * is built if it's not in the cache, or extended from the cached index if the file has grown since it was built.
+   * Returns {@code null} if failed to build the index.
+   */
+  @Nullable
+  private LogFileTimeIndex getTimeIndex(LogLocation file) {
+    if (file.getTimeIndex() != null) {
+      return file.getTimeIndex();
+    }
+    try {
+      URI uri = file.getLocation().toURI();
+      LogFileTimeIndex timeIndex = timeIndexCache.getIfPresent(uri);
+      if (timeIndex != null && timeIndex.getFileLength() == file.getLocation().length()) {
+        return timeIndex;
+      }
+      timeIndex = file.buildTimeIndex(timeIndex);
+      timeIndexCache.put(uri, timeIndex);
+      return timeIndex;
+    } catch (Exception e) {
+      // The index is just an optimization. Without it the file is read from the beginning.
+      LOG.debug("Failed to build time index for log file {}", file.getLocation(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Reads events from a log file and consumes them in the order of the files.
+   */
+  private interface LogFileReadFunction {
+
+    /**
+     * Reads events from the given file. This method can be called from multiple threads concurrently.
+     */
+    List<LogEvent> read(LogLocation file, @Nullable LogFileTimeIndex timeIndex);
+
+    /**
+     * Consumes events read from a file. This method is called from the caller thread in the order of the files.
+     *
+     * @return {@code true} to continue reading the next file, {@code false} to stop
+     */
+    boolean consume(List<LogEvent> events);
+  }
+
   /**
    * See {@link com.google.common.collect.Iterators#concat(Iterator)}. The difference is that the input types and return
    * type are CloseableIterator, which closes the inputs that it has opened.
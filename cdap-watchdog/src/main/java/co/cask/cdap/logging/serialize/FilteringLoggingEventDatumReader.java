@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.serialize;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import co.cask.cdap.logging.filter.AndFilter;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.LogLevelExpression;
+import co.cask.cdap.logging.filter.MdcExpression;
+import co.cask.cdap.logging.filter.OrFilter;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.Decoder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link DatumReader} for logging events that applies a {@link Filter} while decoding.
+ *
+ * <p>
+ * If the filter only depends on the timestamp, level and MDC of an event (i.e. it is composed of
+ * {@link LogLevelExpression}, {@link MdcExpression}, {@link AndFilter} and {@link OrFilter}, as produced by
+ * {@link co.cask.cdap.logging.filter.FilterParser} and {@link co.cask.cdap.logging.context.LoggingContextHelper}),
+ * only those fields are decoded before the filter is evaluated. The remaining fields of events that don't match
+ * are skipped without being materialized, and the record returned only contains the timestamp, level and MDC.
+ * Callers use {@link #isLastMatched()} to tell whether the last record read matched the filter and is complete.
+ * </p>
+ *
+ * <p>
+ * For any other filter, or if the data was written with a schema different than {@link LogSchema.LoggingEvent},
+ * the full record is decoded before the filter is evaluated.
+ * </p>
+ */
+public final class FilteringLoggingEventDatumReader implements DatumReader<GenericRecord> {
+
+  private static final Schema SCHEMA = LogSchema.LoggingEvent.SCHEMA;
+
+  // The timestamp, level and mdc fields are the first fields in the schema
+  private static final int NUM_HEADER_FIELDS = 3;
+
+  private static final Filter NO_MATCH_FILTER = new Filter() {
+    @Override
+    public boolean match(ILoggingEvent event) {
+      return false;
+    }
+  };
+
+  private final Filter filter;
+  private final boolean pushdown;
+  private final GenericDatumReader<GenericRecord> recordReader;
+  private final List<DatumReader<Object>> fieldReaders;
+  private boolean schemaMatched;
+  private boolean lastMatched;
+
+  /**
+   * Creates a reader that only decodes the timestamp, level and MDC fields of every event. All events read are
+   * treated as not matched.
+   */
+  public static FilteringLoggingEventDatumReader headerOnly() {
+    return new FilteringLoggingEventDatumReader(NO_MATCH_FILTER, true);
+  }
+
+  public FilteringLoggingEventDatumReader(Filter filter) {
+    this(filter, isPushdownSupported(filter));
+  }
+
+  private FilteringLoggingEventDatumReader(Filter filter, boolean pushdown) {
+    this.filter = filter;
+    this.pushdown = pushdown;
+    this.recordReader = new GenericDatumReader<>(SCHEMA);
+    this.fieldReaders = new ArrayList<>();
+    for (Schema.Field field : SCHEMA.getFields()) {
+      fieldReaders.add(new GenericDatumReader<>(field.schema()));
+    }
+    this.schemaMatched = true;
+  }
+
+  /**
+   * Returns {@code true} if the last record read matched the filter. Only records that matched are fully decoded.
+   */
+  public boolean isLastMatched() {
+    return lastMatched;
+  }
+
+  @Override
+  public void setSchema(Schema schema) {
+    schemaMatched = SCHEMA.equals(schema);
+    recordReader.setSchema(schema);
+  }
+
+  @Override
+  public GenericRecord read(GenericRecord reuse, Decoder in) throws IOException {
+    if (!pushdown || !schemaMatched) {
+      GenericRecord record = recordReader.read(reuse, in);
+      lastMatched = filter.match(new LoggingEvent(record));
+      return record;
+    }
+
+    // Always create a new record, since partially decoded records shouldn't be reused for a complete record
+    GenericRecord record = new GenericData.Record(SCHEMA);
+    for (int i = 0; i < NUM_HEADER_FIELDS; i++) {
+      record.put(i, fieldReaders.get(i).read(null, in));
+    }
+
+    lastMatched = filter.match(new LoggingEvent(record));
+
+    List<Schema.Field> fields = SCHEMA.getFields();
+    for (int i = NUM_HEADER_FIELDS; i < fields.size(); i++) {
+      if (lastMatched) {
+        record.put(i, fieldReaders.get(i).read(null, in));
+      } else {
+        GenericDatumReader.skip(fields.get(i).schema(), in);
+      }
+    }
+    return record;
+  }
+
+  /**
+   * Returns {@code true} if the given {@link Filter} only depends on the timestamp, level and MDC of an event.
+   */
+  private static boolean isPushdownSupported(Filter filter) {
+    if (filter instanceof Filter.EmptyFilter || filter instanceof LogLevelExpression
+      || filter instanceof MdcExpression) {
+      return true;
+    }
+    List<? extends Filter> expressions;
+    if (filter instanceof AndFilter) {
+      expressions = ((AndFilter) filter).getExpressions();
+    } else if (filter instanceof OrFilter) {
+      expressions = ((OrFilter) filter).getExpressions();
+    } else {
+      return false;
+    }
+    for (Filter expression : expressions) {
+      if (!isPushdownSupported(expression)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A sparse time index of a log file. It maps the timestamp of the first event in each Avro block
+ * to the sync position of the block, so that readers can seek directly to the block that contains a given time.
+ *
+ * If the index is created by the log writer, it also carries the min/max event timestamp and log level of
+ * each block, which allow readers to skip blocks that cannot contain events matching a time range or level filter.
+ */
+public final class LogFileTimeIndex {
+
+  private static final int ENCODING_VERSION = 1;
+
+  private final long fileLength;
+  private final long[] timestamps;
+  private final long[] blockStarts;
+  // Per block statistics, only available if the index was created while writing the file
+  private final BlockStats stats;
+
+  /**
+   * Creates an index.
+   *
+   * @param fileLength length of the file when the index was built
+   * @param timestamps timestamp of the first event in each block, in block order
+   * @param blockStarts the {@link org.apache.avro.file.DataFileReader#previousSync()} of each block, in block order
+   */
+  LogFileTimeIndex(long fileLength, long[] timestamps, long[] blockStarts) {
+    this(fileLength, timestamps, blockStarts, null);
+  }
+
+  private LogFileTimeIndex(long fileLength, long[] timestamps, long[] blockStarts, @Nullable BlockStats stats) {
+    if (timestamps.length != blockStarts.length) {
+      throw new IllegalArgumentException("Number of timestamps and block positions must be the same");
+    }
+    if (stats != null && stats.minTimestamps.length != timestamps.length) {
+      throw new IllegalArgumentException("Number of block statistics and block positions must be the same");
+    }
+    this.fileLength = fileLength;
+    this.timestamps = timestamps;
+    this.blockStarts = blockStarts;
+    this.stats = stats;
+  }
+
+  /**
+   * Decodes an index that was encoded with {@link #toBytes()}.
+   *
+   * @throws IOException if the bytes are not a valid encoded index
+   */
+  public static LogFileTimeIndex fromBytes(byte[] bytes) throws IOException {
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(bytes, null);
+    int version = decoder.readInt();
+    if (version != ENCODING_VERSION) {
+      throw new IOException("Unsupported log file time index version " + version);
+    }
+    long fileLength = decoder.readLong();
+    int size = decoder.readInt();
+    if (size < 0 || size > bytes.length) {
+      throw new IOException("Invalid number of blocks " + size + " in encoded log file time index");
+    }
+    long[] timestamps = new long[size];
+    long[] blockStarts = new long[size];
+    BlockStats stats = decoder.readBoolean() ? new BlockStats(size) : null;
+
+    // Block positions are increasing and timestamps are close to each other, hence they are delta encoded
+    long prevBlockStart = 0L;
+    long prevTimestamp = 0L;
+    for (int i = 0; i < size; i++) {
+      prevBlockStart += decoder.readLong();
+      prevTimestamp += decoder.readLong();
+      blockStarts[i] = prevBlockStart;
+      timestamps[i] = prevTimestamp;
+      if (stats != null) {
+        stats.minTimestamps[i] = timestamps[i] + decoder.readLong();
+        stats.maxTimestamps[i] = timestamps[i] + decoder.readLong();
+        stats.minLevels[i] = decoder.readInt();
+        stats.maxLevels[i] = decoder.readInt();
+      }
+    }
+    return new LogFileTimeIndex(fileLength, timestamps, blockStarts, stats);
+  }
+
+  /**
+   * Encodes this index to bytes, which can be decoded with {@link #fromBytes(byte[])}.
+   */
+  public byte[] toBytes() {
+    ByteArrayOutputStream os = new ByteArrayOutputStream(32 + timestamps.length * (stats == null ? 4 : 12));
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    try {
+      encoder.writeInt(ENCODING_VERSION);
+      encoder.writeLong(fileLength);
+      encoder.writeInt(timestamps.length);
+      encoder.writeBoolean(stats != null);
+
+      long prevBlockStart = 0L;
+      long prevTimestamp = 0L;
+      for (int i = 0; i < timestamps.length; i++) {
+        encoder.writeLong(blockStarts[i] - prevBlockStart);
+        encoder.writeLong(timestamps[i] - prevTimestamp);
+        prevBlockStart = blockStarts[i];
+        prevTimestamp = timestamps[i];
+        if (stats != null) {
+          encoder.writeLong(stats.minTimestamps[i] - timestamps[i]);
+          encoder.writeLong(stats.maxTimestamps[i] - timestamps[i]);
+          encoder.writeInt(stats.minLevels[i]);
+          encoder.writeInt(stats.maxLevels[i]);
+        }
+      }
+      encoder.flush();
+    } catch (IOException e) {
+      // Shouldn't happen when writing to a ByteArrayOutputStream
+      throw new IllegalStateException(e);
+    }
+    return os.toByteArray();
+  }
+
+  /**
+   * Returns the length of the file when the index was built. Since log files are append only, the index is
+   * still valid for the first {@code fileLength} bytes if the file has grown since then.
+   */
+  public long getFileLength() {
+    return fileLength;
+  }
+
+  /**
+   * Returns the number of blocks in the index.
+   */
+  public int size() {
+    return timestamps.length;
+  }
+
+  /**
+   * Returns the index of the block that precedes the first block starting with an event with timestamp
+   * not smaller than the given time. This is the block that may contain events of the given time.
+   */
+  public int findBlock(long timeMs) {
+    // Events are mostly, but not strictly, ordered by time, hence do a linear scan that stops at the first block
+    // that starts at or after the given time instead of a binary search. This is consistent with how a reader
+    // without index skips through blocks.
+    int idx = 0;
+    while (idx < timestamps.length && timestamps[idx] < timeMs) {
+      idx++;
+    }
+    return Math.max(idx - 1, 0);
+  }
+
+  /**
+   * Returns the index of the last block before the first block starting with an event with timestamp
+   * larger than the given time. This is the last block that may contain events not later than the given time.
+   */
+  public int findLastBlock(long timeMs) {
+    int idx = 0;
+    while (idx < timestamps.length && timestamps[idx] <= timeMs) {
+      idx++;
+    }
+    return Math.max(idx - 1, 0);
+  }
+
+  /**
+   * Returns the index of the block that starts at the given position, or {@code -1} if there is no such block.
+   *
+   * @param blockStart the block start position as reported by
+   *                   {@link org.apache.avro.file.DataFileReader#previousSync()}
+   */
+  public int findBlockAt(long blockStart) {
+    // Blocks are in file order, hence the block starts are sorted
+    int idx = Arrays.binarySearch(blockStarts, blockStart);
+    return idx < 0 ? -1 : idx;
+  }
+
+  /**
+   * Returns {@code true} if this index carries per block statistics.
+   */
+  public boolean hasBlockStats() {
+    return stats != null;
+  }
+
+  /**
+   * Returns {@code false} if the given block is known to not contain any event with a timestamp in the range
+   * {@code [fromTimeMs, toTimeMs]} and with level not lower than the given level. Always returns {@code true}
+   * if there are no per block statistics.
+   *
+   * @param block index of the block
+   * @param fromTimeMs start of the time range, inclusive
+   * @param toTimeMs end of the time range, inclusive
+   * @param minLevel the {@link ch.qos.logback.classic.Level#toInt() level} that events need to be at or above
+   */
+  public boolean mayContain(int block, long fromTimeMs, long toTimeMs, int minLevel) {
+    if (stats == null) {
+      return true;
+    }
+    return stats.maxTimestamps[block] >= fromTimeMs && stats.minTimestamps[block] <= toTimeMs
+      && stats.maxLevels[block] >= minLevel;
+  }
+
+  /**
+   * Returns the position to call {@link org.apache.avro.file.DataFileReader#sync(long)} with,
+   * such that the next record read is the first record of the given block. Passing {@link #size()} as the block
+   * returns the position after the last indexed block.
+   */
+  public long getSeekPosition(int block) {
+    // Sync always seeks to the end of the first sync marker found at or after the given position.
+    // Block 0 directly follows the file header, which sync(0) handles by re-initializing the reader.
+    // Every block is followed by a sync marker, hence the indexed part of the file ends with one.
+    if (block == blockStarts.length) {
+      return fileLength - DataFileConstants.SYNC_SIZE;
+    }
+    return block == 0 ? 0L : blockStarts[block] - DataFileConstants.SYNC_SIZE;
+  }
+
+  /**
+   * Returns the timestamp of the first event in the given block.
+   */
+  public long getTimestamp(int block) {
+    return timestamps[block];
+  }
+
+  /**
+   * Returns the block start position as reported by {@link org.apache.avro.file.DataFileReader#previousSync()}
+   * while reading records from the given block.
+   */
+  public long getBlockStart(int block) {
+    return blockStarts[block];
+  }
+
+  @Override
+  public String toString() {
+    return "LogFileTimeIndex{" +
+      "fileLength=" + fileLength +
+      ", blocks=" + timestamps.length +
+      ", blockStats=" + (stats != null) +
+      '}';
+  }
+
+  /**
+   * Min and max event timestamp and log level of each block.
+   */
+  private static final class BlockStats {
+    private final long[] minTimestamps;
+    private final long[] maxTimestamps;
+    private final int[] minLevels;
+    private final int[] maxLevels;
+
+    private BlockStats(int size) {
+      this(new long[size], new long[size], new int[size], new int[size]);
+    }
+
+    private BlockStats(long[] minTimestamps, long[] maxTimestamps, int[] minLevels, int[] maxLevels) {
+      this.minTimestamps = minTimestamps;
+      this.maxTimestamps = maxTimestamps;
+      this.minLevels = minLevels;
+      this.maxLevels = maxLevels;
+    }
+  }
+
+  /**
+   * Builder for creating a {@link LogFileTimeIndex} with per block statistics while writing a log file.
+   * Events are added with {@link #addEvent(long, int)}, and each block is completed by calling
+   * {@link #endBlock(long)} with the position of the next block.
+   */
+  public static final class Builder {
+    private final List<Long> timestamps = new ArrayList<>();
+    private final List<Long> blockStarts = new ArrayList<>();
+    private final List<Long> minTimestamps = new ArrayList<>();
+    private final List<Long> maxTimestamps = new ArrayList<>();
+    private final List<Integer> minLevels = new ArrayList<>();
+    private final List<Integer> maxLevels = new ArrayList<>();
+
+    private long blockStart;
+    private int blockEvents;
+    private long firstTimestamp;
+    private long minTimestamp;
+    private long maxTimestamp;
+    private int minLevel;
+    private int maxLevel;
+
+    /**
+     * Creates a builder.
+     *
+     * @param firstBlockStart the position of the first block, which is right after the file header
+     */
+    public Builder(long firstBlockStart) {
+      this.blockStart = firstBlockStart;
+    }
+
+    /**
+     * Adds an event to the current block.
+     *
+     * @param timestamp timestamp of the event
+     * @param level the {@link ch.qos.logback.classic.Level#toInt() level} of the event
+     */
+    public void addEvent(long timestamp, int level) {
+      if (blockEvents++ == 0) {
+        firstTimestamp = timestamp;
+        minTimestamp = timestamp;
+        maxTimestamp = timestamp;
+        minLevel = level;
+        maxLevel = level;
+        return;
+      }
+      minTimestamp = Math.min(minTimestamp, timestamp);
+      maxTimestamp = Math.max(maxTimestamp, timestamp);
+      minLevel = Math.min(minLevel, level);
+      maxLevel = Math.max(maxLevel, level);
+    }
+
+    /**
+     * Returns the number of events added to the current block.
+     */
+    public int getBlockEvents() {
+      return blockEvents;
+    }
+
+    /**
+     * Completes the current block. It is a no-op if there is no event in the current block.
+     *
+     * @param nextBlockStart the position of the next block, which is the position after the sync marker
+     *                       written at the end of the current block
+     */
+    public void endBlock(long nextBlockStart) {
+      if (blockEvents == 0) {
+        return;
+      }
+      timestamps.add(firstTimestamp);
+      blockStarts.add(blockStart);
+      minTimestamps.add(minTimestamp);
+      maxTimestamps.add(maxTimestamp);
+      minLevels.add(minLevel);
+      maxLevels.add(maxLevel);
+      blockStart = nextBlockStart;
+      blockEvents = 0;
+    }
+
+    /**
+     * Builds the index for the blocks completed so far.
+     */
+    public LogFileTimeIndex build() {
+      return new LogFileTimeIndex(blockStart, Longs.toArray(timestamps), Longs.toArray(blockStarts),
+                                  new BlockStats(Longs.toArray(minTimestamps), Longs.toArray(maxTimestamps),
+                                                 Ints.toArray(minLevels), Ints.toArray(maxLevels)));
+    }
+  }
+}
@@ -16,17 +16,21 @@
 
 package co.cask.cdap.logging.write;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.io.SeekableInputStream;
 import co.cask.cdap.common.logging.LogSamplers;
 import co.cask.cdap.common.logging.Loggers;
+import co.cask.cdap.logging.filter.AndFilter;
 import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.LogLevelExpression;
+import co.cask.cdap.logging.filter.OrFilter;
 import co.cask.cdap.logging.read.Callback;
 import co.cask.cdap.logging.read.LogEvent;
 import co.cask.cdap.logging.read.LogOffset;
-import co.cask.cdap.logging.serialize.LogSchema;
+import co.cask.cdap.logging.serialize.FilteringLoggingEventDatumReader;
 import co.cask.cdap.logging.serialize.LoggingEvent;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.impersonation.Impersonator;
@@ -34,10 +38,11 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
 import org.apache.avro.file.DataFileReader;
 import org.apache.avro.file.SeekableInput;
-import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,6 +55,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * LogLocation representing a log file and methods to read the file's contents.
@@ -69,15 +75,22 @@ public class LogLocation {
   private final Location location;
   private final NamespaceId namespaceId;
   private final Impersonator impersonator;
+  private final LogFileTimeIndex timeIndex;
 
   public LogLocation(String frameworkVersion, long eventTimeMs, long fileCreationTimeMs, Location location,
                      String namespaceId, Impersonator impersonator) {
+    this(frameworkVersion, eventTimeMs, fileCreationTimeMs, location, namespaceId, impersonator, null);
+  }
+
+  public LogLocation(String frameworkVersion, long eventTimeMs, long fileCreationTimeMs, Location location,
+                     String namespaceId, Impersonator impersonator, @Nullable LogFileTimeIndex timeIndex) {
     this.frameworkVersion = frameworkVersion;
     this.eventTimeMs = eventTimeMs;
     this.fileCreationTimeMs = fileCreationTimeMs;
     this.location = location;
     this.namespaceId = new NamespaceId(namespaceId);
     this.impersonator = impersonator;
+    this.timeIndex = timeIndex;
   }
 
   /**
@@ -112,6 +125,15 @@ public class LogLocation {
     return fileCreationTimeMs;
   }
 
+  /**
+   * Returns the {@link LogFileTimeIndex} with per block statistics recorded when the file was written,
+   * or {@code null} if it is not available.
+   */
+  @Nullable
+  public LogFileTimeIndex getTimeIndex() {
+    return timeIndex;
+  }
+
   /**
    * Return closeable iterator of {@link LogEvent}
    * @param logFilter filter for filtering log events
@@ -121,7 +143,70 @@ public class LogLocation {
    * @return closeable iterator of log events
    */
   public CloseableIterator<LogEvent> readLog(Filter logFilter, long fromTimeMs, long toTimeMs, int maxEvents) {
-    return new LogEventIterator(logFilter, fromTimeMs, toTimeMs, maxEvents);
+    return readLog(logFilter, fromTimeMs, toTimeMs, maxEvents, (LogFileTimeIndex) null);
+  }
+
+  /**
+   * Return closeable iterator of {@link LogEvent}
+   * @param logFilter filter for filtering log events
+   * @param fromTimeMs start timestamp in millis
+   * @param toTimeMs end timestamp in millis
+   * @param maxEvents max events to return
+   * @param timeIndex an optional time index of this file, used to seek to fromTimeMs
+   * @return closeable iterator of log events
+   */
+  public CloseableIterator<LogEvent> readLog(Filter logFilter, long fromTimeMs, long toTimeMs, int maxEvents,
+                                             @Nullable LogFileTimeIndex timeIndex) {
+    return new LogEventIterator(logFilter, fromTimeMs, toTimeMs, maxEvents, timeIndex);
+  }
+
+  /**
+   * Builds a {@link LogFileTimeIndex} for this file by reading the first event of every Avro block.
+   *
+   * @return a new {@link LogFileTimeIndex}
+   * @throws IOException if failed to read the file
+   */
+  public LogFileTimeIndex buildTimeIndex() throws IOException {
+    return buildTimeIndex(null);
+  }
+
+  /**
+   * Builds a {@link LogFileTimeIndex} for this file by reading the first event of every Avro block.
+   * Since log files are append only, an index built by this method for a shorter length of this file
+   * is extended by only reading the blocks from the last block of that index onward.
+   *
+   * @param previous an index previously built for this file, or {@code null} to read the whole file
+   * @return a new {@link LogFileTimeIndex}
+   * @throws IOException if failed to read the file
+   */
+  public LogFileTimeIndex buildTimeIndex(@Nullable LogFileTimeIndex previous) throws IOException {
+    List<Long> timestamps = new ArrayList<>();
+    List<Long> blockStarts = new ArrayList<>();
+    long length = location.length();
+    try (DataFileReader<GenericRecord> dataFileReader = createReader(FilteringLoggingEventDatumReader.headerOnly())) {
+      if (previous != null && !previous.hasBlockStats() && previous.size() > 0
+        && previous.getFileLength() <= length) {
+        // The last block may have been partially written when the previous index was built, hence read it again
+        int lastBlock = previous.size() - 1;
+        for (int block = 0; block < lastBlock; block++) {
+          timestamps.add(previous.getTimestamp(block));
+          blockStarts.add(previous.getBlockStart(block));
+        }
+        dataFileReader.sync(previous.getSeekPosition(lastBlock));
+        LOG.trace("Extending time index {} from block {} for {}", previous, lastBlock, location);
+      }
+      GenericRecord datum = null;
+      while (dataFileReader.hasNext()) {
+        long blockStart = dataFileReader.previousSync();
+        datum = dataFileReader.next(datum);
+        timestamps.add(new LoggingEvent(datum).getTimeStamp());
+        blockStarts.add(blockStart);
+        // Seek to the next sync point
+        dataFileReader.sync(dataFileReader.tell());
+      }
+      LOG.trace("Built time index with {} blocks for {}", timestamps.size(), location);
+      return new LogFileTimeIndex(length, Longs.toArray(timestamps), Longs.toArray(blockStarts));
+    }
   }
 
   /**
@@ -150,15 +235,52 @@ public class LogLocation {
    */
   @SuppressWarnings("WeakerAccess")
   public Collection<LogEvent> readLogPrev(Filter logFilter, long fromTimeMs, final int maxEvents) throws IOException {
+    return readLogPrev(logFilter, fromTimeMs, maxEvents, null);
+  }
+
+  /**
+   * Return closeable iterator of {@link LogEvent}
+   * @param logFilter filter for filtering log events
+   * @param fromTimeMs start timestamp in millis
+   * @param maxEvents max events to return
+   * @param timeIndex an optional time index of this file, used to seek to fromTimeMs. Since log files are
+   *                  append only, an index built for a shorter length of the file can be used as well
+   * @return closeable iterator of previous log events
+   */
+  public Collection<LogEvent> readLogPrev(Filter logFilter, long fromTimeMs, final int maxEvents,
+                                          @Nullable LogFileTimeIndex timeIndex) throws IOException {
     Deque<Collection<LogEvent>> logSegments = new LinkedList<>();
     int count = 0;
+    FilteringLoggingEventDatumReader datumReader = new FilteringLoggingEventDatumReader(logFilter);
     try {
-      try (DataFileReader<GenericRecord> dataFileReader = createReader()) {
+      try (DataFileReader<GenericRecord> dataFileReader = createReader(datumReader)) {
 
         if (!dataFileReader.hasNext()) {
           return ImmutableList.of();
         }
 
+        if (timeIndex != null && timeIndex.size() > 0 && timeIndex.getFileLength() <= location.length()) {
+          // Start from the block that contains fromTimeMs and move backward block by block.
+          // The last indexed block is read to the end of the file, which covers blocks appended after indexing.
+          int minLevel = getMinLevel(logFilter);
+          for (int block = timeIndex.findLastBlock(fromTimeMs); block >= 0 && count < maxEvents; block--) {
+            if (!timeIndex.mayContain(block, Long.MIN_VALUE, fromTimeMs, minLevel)) {
+              LOG.trace("Skipping block {} based on block statistics", block);
+              continue;
+            }
+            long endPosition = block + 1 < timeIndex.size() ? timeIndex.getBlockStart(block + 1) : -1;
+            dataFileReader.sync(timeIndex.getSeekPosition(block));
+            List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, datumReader, fromTimeMs, endPosition);
+            if (!logSegment.isEmpty()) {
+              logSegments.addFirst(logSegment);
+              count = count + logSegment.size();
+            }
+            LOG.trace("Read log events {} from block {} to endPosition {}", count, block, endPosition);
+          }
+          int skip = count >= maxEvents ? count - maxEvents : 0;
+          return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
+        }
+
         // Calculate skipLen based on fileLength
         long length = location.length();
         LOG.trace("File length {} {}", location, length);
@@ -170,7 +292,7 @@ public class LogLocation {
         // For open file, endPosition sync marker is unknown so start from file length and read up to the actual EOF
         dataFileReader.sync(length);
         long finalSync = dataFileReader.previousSync();
-        List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, -1);
+        List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, datumReader, fromTimeMs, -1);
 
         if (!logSegment.isEmpty()) {
           logSegments.addFirst(logSegment);
@@ -187,7 +309,7 @@ public class LogLocation {
           // Skip to sync position less than current sync position
           startPosition = skipToPosition(dataFileReader, startPosition, endPosition, skipLen);
           currentSync = dataFileReader.previousSync();
-          logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition);
+          logSegment = readToEndSyncPosition(dataFileReader, datumReader, fromTimeMs, endPosition);
 
           if (!logSegment.isEmpty()) {
             logSegments.addFirst(logSegment);
@@ -209,7 +331,8 @@ public class LogLocation {
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
-  private List<LogEvent> readToEndSyncPosition(DataFileReader<GenericRecord> dataFileReader, Filter logFilter,
+  private List<LogEvent> readToEndSyncPosition(DataFileReader<GenericRecord> dataFileReader,
+                                               FilteringLoggingEventDatumReader datumReader,
                                                long fromTimeMs, long endSyncPosition) throws IOException {
 
     List<LogEvent> logSegment = new ArrayList<>();
@@ -218,14 +341,15 @@ public class LogLocation {
     // or read until endSyncPosition has been reached
     while (dataFileReader.hasNext() && (endSyncPosition == -1 || (currentSyncPosition < endSyncPosition))) {
       ILoggingEvent loggingEvent = new LoggingEvent(dataFileReader.next());
-      loggingEvent.prepareForDeferredProcessing();
 
       // Stop when reached fromTimeMs
       if (loggingEvent.getTimeStamp() > fromTimeMs) {
         break;
       }
 
-      if (logFilter.match(loggingEvent)) {
+      // The filter is applied by the datum reader while decoding
+      if (datumReader.isLastMatched()) {
+        loggingEvent.prepareForDeferredProcessing();
         logSegment.add(new LogEvent(loggingEvent,
                                     new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, loggingEvent.getTimeStamp())));
       }
@@ -251,12 +375,41 @@ public class LogLocation {
     return startPosition;
   }
 
+  /**
+   * Returns the lowest {@link Level#toInt() level} that events must have to match the given filter,
+   * based on the {@link LogLevelExpression} in the filter.
+   */
+  private static int getMinLevel(Filter filter) {
+    if (filter instanceof LogLevelExpression) {
+      return ((LogLevelExpression) filter).getLevel().toInt();
+    }
+    if (filter instanceof AndFilter) {
+      // Must match all, hence the highest level among the expressions
+      int level = Level.ALL_INT;
+      for (Filter expression : ((AndFilter) filter).getExpressions()) {
+        level = Math.max(level, getMinLevel(expression));
+      }
+      return level;
+    }
+    if (filter instanceof OrFilter) {
+      // Can match any, hence the lowest level among the expressions
+      int level = Level.OFF_INT;
+      for (Filter expression : ((OrFilter) filter).getExpressions()) {
+        level = Math.min(level, getMinLevel(expression));
+      }
+      return level;
+    }
+    return Level.ALL_INT;
+  }
+
   private final class LogEventIterator implements CloseableIterator<LogEvent> {
 
-    private final Filter logFilter;
+    private final FilteringLoggingEventDatumReader datumReader;
     private final long fromTimeMs;
     private final long toTimeMs;
     private final long maxEvents;
+    private final LogFileTimeIndex timeIndex;
+    private final int minLevel;
 
     private DataFileReader<GenericRecord> dataFileReader;
 
@@ -267,22 +420,38 @@ public class LogLocation {
     private long prevTimestamp = -1;
 
     private LogEvent next;
+    private long checkedBlockStart = -1L;
 
-    LogEventIterator(Filter logFilter, long fromTimeMs, long toTimeMs, long maxEvents) {
-      this.logFilter = logFilter;
+    LogEventIterator(Filter logFilter, long fromTimeMs, long toTimeMs, long maxEvents,
+                     @Nullable LogFileTimeIndex timeIndex) {
+      this.datumReader = new FilteringLoggingEventDatumReader(logFilter);
       this.fromTimeMs = fromTimeMs;
       this.toTimeMs = toTimeMs;
       this.maxEvents = maxEvents;
+      this.timeIndex = timeIndex != null && timeIndex.hasBlockStats() ? timeIndex : null;
+      this.minLevel = getMinLevel(logFilter);
 
       try {
-        dataFileReader = createReader();
+        dataFileReader = createReader(datumReader);
+
+        // Use the time index to jump close to fromTimeMs. Since log files are append only, the index is valid
+        // even if the file has grown after the index was built; the linear seek below covers the rest.
+        long startPos = 0;
+        if (timeIndex != null && timeIndex.size() > 0) {
+          startPos = timeIndex.getSeekPosition(timeIndex.findBlock(fromTimeMs));
+          if (startPos > 0) {
+            LOG.trace("Syncing to pos {} using time index", startPos);
+            dataFileReader.sync(startPos);
+          }
+        }
+
         if (dataFileReader.hasNext()) {
+          // Only the timestamp is needed for seeking
           datum = dataFileReader.next();
           loggingEvent = new LoggingEvent(datum);
-          loggingEvent.prepareForDeferredProcessing();
 
-          long prevPrevSyncPos = 0;
-          long prevSyncPos = 0;
+          long prevPrevSyncPos = startPos;
+          long prevSyncPos = startPos;
           // Seek to time fromTimeMs
           while (loggingEvent.getTimeStamp() < fromTimeMs && dataFileReader.hasNext()) {
             // Seek to the next sync point
@@ -293,7 +462,6 @@ public class LogLocation {
             dataFileReader.sync(curPos);
             if (dataFileReader.hasNext()) {
               loggingEvent = new LoggingEvent(dataFileReader.next(datum));
-              loggingEvent.prepareForDeferredProcessing();
             }
           }
 
@@ -315,11 +483,12 @@ public class LogLocation {
     private void computeNext() {
       try {
         // read events from file
-        while (next == null && dataFileReader.hasNext()) {
+        while (next == null && hasNextInMatchingBlock()) {
           loggingEvent = new LoggingEvent(dataFileReader.next(datum));
-          loggingEvent.prepareForDeferredProcessing();
 
-          if (loggingEvent.getTimeStamp() >= fromTimeMs && logFilter.match(loggingEvent)) {
+          // The filter is applied by the datum reader while decoding
+          if (loggingEvent.getTimeStamp() >= fromTimeMs && datumReader.isLastMatched()) {
+            loggingEvent.prepareForDeferredProcessing();
             ++count;
             if ((count > maxEvents || loggingEvent.getTimeStamp() >= toTimeMs)
               && loggingEvent.getTimeStamp() != prevTimestamp) {
@@ -338,6 +507,30 @@ public class LogLocation {
       }
     }
 
+    /**
+     * Returns whether there are more events to read. Whenever the reader is about to enter a new block,
+     * blocks that cannot contain matching events based on the block statistics in the time index are skipped.
+     */
+    private boolean hasNextInMatchingBlock() throws IOException {
+      // After the last event of a block is read, previousSync() is already the start of the next block
+      if (timeIndex == null || dataFileReader.previousSync() == checkedBlockStart) {
+        return dataFileReader.hasNext();
+      }
+      checkedBlockStart = dataFileReader.previousSync();
+      int block = timeIndex.findBlockAt(checkedBlockStart);
+      if (block < 0 || timeIndex.mayContain(block, fromTimeMs, Long.MAX_VALUE, minLevel)) {
+        return dataFileReader.hasNext();
+      }
+      int nextBlock = block + 1;
+      while (nextBlock < timeIndex.size() && !timeIndex.mayContain(nextBlock, fromTimeMs, Long.MAX_VALUE, minLevel)) {
+        nextBlock++;
+      }
+      LOG.trace("Skipping blocks {} to {} based on block statistics", block, nextBlock - 1);
+      dataFileReader.sync(timeIndex.getSeekPosition(nextBlock));
+      checkedBlockStart = dataFileReader.previousSync();
+      return dataFileReader.hasNext();
+    }
+
     @Override
     public void close() {
       try {
@@ -371,10 +564,10 @@ public class LogLocation {
     }
   }
 
-  private DataFileReader<GenericRecord> createReader() throws IOException {
+  private DataFileReader<GenericRecord> createReader(DatumReader<GenericRecord> datumReader) throws IOException {
     boolean shouldImpersonate = this.getFrameworkVersion().equals(VERSION_0);
     return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator, shouldImpersonate),
-                                new GenericDatumReader<GenericRecord>(LogSchema.LoggingEvent.SCHEMA));
+                                datumReader);
   }
 
   /**
@@ -70,14 +70,17 @@ public final class MetricsMessageCallback implements KafkaConsumer.MessageCallba
   public long onReceived(Iterator<FetchedMessage> messages) {
     // Decode the metrics records.
     ByteBufferInputStream is = new ByteBufferInputStream(null);
+    // The same decoder is used for all messages so that its buffer for decoding strings is reused
+    BinaryDecoder decoder = new BinaryDecoder(is);
     List<MetricValues> records = Lists.newArrayList();
 
     long nextOffset = 0L;
     while (messages.hasNext()) {
       FetchedMessage input = messages.next();
       nextOffset = input.getNextOffset();
+      is.reset(input.getPayload());
       try {
-        MetricValues metricValues = recordReader.read(new BinaryDecoder(is.reset(input.getPayload())), recordSchema);
+        MetricValues metricValues = recordReader.read(decoder, recordSchema);
         records.add(metricValues);
       } catch (IOException e) {
         LOG.warn("Failed to decode message to MetricValue. Skipped. {}", e.getMessage());
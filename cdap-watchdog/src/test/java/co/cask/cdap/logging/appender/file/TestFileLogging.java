@@ -139,6 +139,21 @@ public class TestFileLogging {
     tester.testGetPrev(logReader, loggingContext);
   }
 
+  @Test
+  public void testReadAfterClose() throws Exception {
+    LoggingContext loggingContext = new FlowletLoggingContext("TFL_NS_1", "APP_1", "FLOW_1", "", "RUN1", "INSTANCE1");
+    FileLogReader logReader = injector.getInstance(FileLogReader.class);
+    LoggingTester.LogCallback logCallback = new LoggingTester.LogCallback();
+    logReader.getLogPrev(loggingContext, ReadRange.LATEST, 10, Filter.EMPTY_FILTER, logCallback);
+    Assert.assertEquals(10, logCallback.getEvents().size());
+
+    // Closing stops the read ahead threads, which are started again by the next read
+    logReader.close();
+    logCallback = new LoggingTester.LogCallback();
+    logReader.getLogPrev(loggingContext, ReadRange.LATEST, 10, Filter.EMPTY_FILTER, logCallback);
+    Assert.assertEquals(10, logCallback.getEvents().size());
+  }
+
   @Test
   public void testGetLog() throws Exception {
     // LogReader.getLog is tested in LogSaverTest for distributed mode
@@ -51,6 +51,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.apache.avro.file.CodecFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.tephra.RetryStrategies;
@@ -67,6 +68,7 @@ import org.junit.rules.TemporaryFolder;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 public class LogFileManagerTest {
   @ClassRule
@@ -130,6 +132,7 @@ public class LogFileManagerTest {
 
     FileMetaDataWriter fileMetaDataWriter = new FileMetaDataWriter(datasetManager, transactional);
     LogFileManager logFileManager = new LogFileManager("700", "600", maxLifeTimeMs, maxFileSizeInBytes, syncInterval,
+                                                       CodecFactory.deflateCodec(Deflater.DEFAULT_COMPRESSION),
                                                        fileMetaDataWriter,
                                                        injector.getInstance(LocationFactory.class));
     LogPathIdentifier logPathIdentifier = new LogPathIdentifier("test", "testApp", "testFlow");
@@ -16,10 +16,15 @@
 
 package co.cask.cdap.logging.pipeline;
 
+import co.cask.cdap.api.common.Bytes;
 import com.google.common.collect.ImmutableSet;
 import org.junit.Assert;
+import org.junit.ClassRule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -32,6 +37,9 @@ import java.util.Objects;
  */
 public class TimeEventQueueTest {
 
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
   @Test
   public void testOrdering() {
     TimeEventQueue<TimestampedEvent, Integer> eventQueue = new TimeEventQueue<>(ImmutableSet.of(1, 3));
@@ -143,6 +151,130 @@ public class TimeEventQueueTest {
     Assert.assertTrue(eventQueue.isEmpty());
   }
 
+  @Test
+  public void testSpill() throws IOException {
+    File spillDir = TEMP_FOLDER.newFolder();
+    FileEventSpill spill = new FileEventSpill(spillDir, "test");
+    // Keep at most 100 bytes in memory and spill at most 100000 bytes
+    TimeEventQueue<byte[], Integer> eventQueue = new TimeEventQueue<>(ImmutableSet.of(1, 2), 100, spill, 100000);
+
+    // Insert events with timestamps going back and forth, with sizes that exceed the write buffer of the spill
+    List<Long> timestamps = new ArrayList<>();
+    long totalSize = 0;
+    for (int i = 0; i < 200; i++) {
+      long timestamp = (i * 37) % 101;
+      byte[] event = new byte[10 + i * 4];
+      Bytes.putLong(event, 0, timestamp);
+      eventQueue.add(event, timestamp, event.length, i % 2 + 1, i);
+      timestamps.add(timestamp);
+      totalSize += event.length;
+    }
+    Collections.sort(timestamps);
+
+    Assert.assertEquals(totalSize, eventQueue.getEventSize());
+    Assert.assertTrue(eventQueue.getMemorySize() <= 100);
+    Assert.assertEquals(totalSize - eventQueue.getMemorySize(), eventQueue.getSpilledSize());
+    Assert.assertEquals(eventQueue.getSpilledSize(), eventQueue.getTotalSpilledBytes());
+    Assert.assertEquals(0L, eventQueue.firstEventTime());
+
+    // Events should be read back in time order, and the spill is reset after all spilled events are removed
+    TimeEventQueue.EventIterator<byte[], Integer> iterator = eventQueue.iterator();
+    for (long timestamp : timestamps) {
+      Assert.assertTrue(iterator.hasNext());
+      byte[] event = iterator.next();
+      Assert.assertEquals(timestamp, Bytes.toLong(event, 0));
+      Assert.assertEquals(10 + iterator.getOffset() * 4, event.length);
+      iterator.remove();
+    }
+    Assert.assertTrue(eventQueue.isEmpty());
+    Assert.assertEquals(0L, eventQueue.getSpilledSize());
+    Assert.assertEquals(0L, spill.size());
+
+    // Spill is limited by the max spill size. Events that can't be spilled are kept in memory
+    eventQueue = new TimeEventQueue<>(ImmutableSet.of(1), 100, spill, 100);
+    for (int i = 0; i < 10; i++) {
+      eventQueue.add(new byte[40], i, 40, 1, i);
+    }
+    Assert.assertEquals(400L, eventQueue.getEventSize());
+    Assert.assertTrue(spill.size() <= 100);
+    Assert.assertTrue(eventQueue.getSpilledSize() > 0);
+
+    spill.close();
+    File[] files = spillDir.listFiles();
+    Assert.assertNotNull(files);
+    Assert.assertEquals(0, files.length);
+  }
+
+  @Test
+  public void testPeekEventTime() throws IOException {
+    final FileEventSpill fileSpill = new FileEventSpill(TEMP_FOLDER.newFolder(), "test");
+    final List<Long> reads = new ArrayList<>();
+    TimeEventQueue.EventSpill<byte[]> spill = new TimeEventQueue.EventSpill<byte[]>() {
+      @Override
+      public long write(byte[] event) throws IOException {
+        return fileSpill.write(event);
+      }
+
+      @Override
+      public byte[] read(long position) throws IOException {
+        reads.add(position);
+        return fileSpill.read(position);
+      }
+
+      @Override
+      public long size() {
+        return fileSpill.size();
+      }
+
+      @Override
+      public void reset() throws IOException {
+        fileSpill.reset();
+      }
+
+      @Override
+      public void close() throws IOException {
+        fileSpill.close();
+      }
+    };
+
+    // Nothing is kept in memory, hence all events are spilled
+    TimeEventQueue<byte[], Integer> eventQueue = new TimeEventQueue<>(ImmutableSet.of(1), 0, spill, 100000);
+    for (int i = 0; i < 5; i++) {
+      eventQueue.add(Bytes.toBytes((long) (10 - i)), 10 - i, 8, 1, i);
+    }
+    Assert.assertEquals(40L, eventQueue.getSpilledSize());
+
+    // Peeking the event time doesn't read the event from the spill, and doesn't advance the iterator
+    TimeEventQueue.EventIterator<byte[], Integer> iterator = eventQueue.iterator();
+    Assert.assertEquals(6L, iterator.peekEventTime());
+    Assert.assertEquals(6L, iterator.peekEventTime());
+    Assert.assertTrue(reads.isEmpty());
+    Assert.assertEquals(6L, Bytes.toLong(iterator.next()));
+    Assert.assertEquals(4, iterator.getOffset().intValue());
+    Assert.assertEquals(1, reads.size());
+    iterator.remove();
+
+    for (long timestamp = 7L; timestamp <= 10L; timestamp++) {
+      Assert.assertTrue(iterator.hasNext());
+      Assert.assertEquals(timestamp, iterator.peekEventTime());
+      Assert.assertEquals(timestamp, Bytes.toLong(iterator.next()));
+    }
+    Assert.assertFalse(iterator.hasNext());
+    Assert.assertEquals(5, reads.size());
+    spill.close();
+  }
+
+  @Test (expected = IllegalStateException.class)
+  public void testRemoveAfterPeek() {
+    TimeEventQueue<String, Integer> eventQueue = new TimeEventQueue<>(Collections.singleton(1));
+    eventQueue.add("test1", 1L, 10, 1, 0);
+    eventQueue.add("test2", 2L, 10, 1, 1);
+    TimeEventQueue.EventIterator<String, Integer> iterator = eventQueue.iterator();
+    iterator.next();
+    iterator.peekEventTime();
+    iterator.remove();
+  }
+
   @Test (expected = IllegalArgumentException.class)
   public void testInvalidPartition() {
     TimeEventQueue<String, Integer> eventQueue = new TimeEventQueue<>(Collections.singleton(1));
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.serialize;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.FilterParser;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit test for {@link FilteringLoggingEventDatumReader}.
+ */
+public class FilteringLoggingEventDatumReaderTest {
+
+  @Test
+  public void testPushdown() throws IOException {
+    byte[] encoded = encodeEvents();
+
+    // Only ERROR events of run1 should be fully decoded
+    FilteringLoggingEventDatumReader reader =
+      new FilteringLoggingEventDatumReader(FilterParser.parse("loglevel=ERROR AND .runId=run1"));
+    List<GenericRecord> matched = new ArrayList<>();
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(encoded, null);
+    int total = 0;
+    while (!decoder.isEnd()) {
+      GenericRecord record = reader.read(null, decoder);
+      LoggingEvent event = new LoggingEvent(record);
+      if (reader.isLastMatched()) {
+        matched.add(record);
+        event.prepareForDeferredProcessing();
+      } else {
+        // Events not matched only have the header fields decoded
+        Assert.assertNotNull(record.get("timestamp"));
+        Assert.assertNotNull(record.get("level"));
+        Assert.assertNull(record.get("message"));
+        Assert.assertNull(record.get("loggerName"));
+      }
+      total++;
+    }
+
+    Assert.assertEquals(20, total);
+    Assert.assertEquals(5, matched.size());
+    for (GenericRecord record : matched) {
+      ILoggingEvent event = new LoggingEvent(record);
+      Assert.assertEquals(Level.ERROR, event.getLevel());
+      Assert.assertEquals("run1", event.getMDCPropertyMap().get(".runId"));
+      Assert.assertEquals("Message " + event.getTimeStamp(), event.getFormattedMessage());
+      Assert.assertEquals("test.logger", event.getLoggerName());
+      Assert.assertNotNull(event.getThrowableProxy());
+    }
+  }
+
+  @Test
+  public void testNoPushdown() throws IOException {
+    byte[] encoded = encodeEvents();
+
+    // A filter that needs fields other than level and MDC
+    Filter filter = new Filter() {
+      @Override
+      public boolean match(ILoggingEvent event) {
+        return event.getFormattedMessage().endsWith("0");
+      }
+    };
+    FilteringLoggingEventDatumReader reader = new FilteringLoggingEventDatumReader(filter);
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(encoded, null);
+    int matched = 0;
+    while (!decoder.isEnd()) {
+      GenericRecord record = reader.read(null, decoder);
+      Assert.assertNotNull(record.get("message"));
+      if (reader.isLastMatched()) {
+        matched++;
+      }
+    }
+    Assert.assertEquals(2, matched);
+  }
+
+  @Test
+  public void testHeaderOnly() throws IOException {
+    byte[] encoded = encodeEvents();
+
+    FilteringLoggingEventDatumReader reader = FilteringLoggingEventDatumReader.headerOnly();
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(encoded, null);
+    long expectedTimestamp = 0;
+    while (!decoder.isEnd()) {
+      GenericRecord record = reader.read(null, decoder);
+      Assert.assertFalse(reader.isLastMatched());
+      Assert.assertEquals(expectedTimestamp++, new LoggingEvent(record).getTimeStamp());
+    }
+    Assert.assertEquals(20, expectedTimestamp);
+  }
+
+  /**
+   * Encodes 20 events, alternating between INFO and ERROR level and between two runs.
+   */
+  private byte[] encodeEvents() {
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    for (int i = 0; i < 20; i++) {
+      ch.qos.logback.classic.spi.LoggingEvent event = new ch.qos.logback.classic.spi.LoggingEvent();
+      event.setLevel(i % 2 == 0 ? Level.INFO : Level.ERROR);
+      event.setLoggerName("test.logger");
+      event.setMessage("Message " + i);
+      event.setTimeStamp(i);
+      event.setMDCPropertyMap(Collections.singletonMap(".runId", (i / 2) % 2 == 0 ? "run0" : "run1"));
+      event.setThrowableProxy(new ThrowableProxy(new Exception("Exception " + i)));
+      event.setCallerData(new StackTraceElement[] {
+        new StackTraceElement("com.Class1", "methodName1", "fileName1", 10)
+      });
+      byte[] bytes = serializer.toBytes(event);
+      os.write(bytes, 0, bytes.length);
+    }
+    return os.toByteArray();
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.FilterParser;
+import co.cask.cdap.logging.read.LogEvent;
+import co.cask.cdap.logging.serialize.LoggingEventSerializer;
+import co.cask.cdap.proto.id.NamespaceId;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Unit test for reading log files through {@link LogLocation} with a {@link LogFileTimeIndex}.
+ */
+public class LogLocationTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final long BASE_TIME = 1000000L;
+  private static final int NUM_EVENTS = 2000;
+
+  private static LogLocation logLocation;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    Location location = new LocalLocationFactory(TEMP_FOLDER.newFolder()).create("test.avro");
+
+    // Write events with a small sync interval so that there are many blocks in the file
+    try (DataFileWriter<GenericRecord> writer = createWriter(location)) {
+      appendEvents(writer, 0, NUM_EVENTS);
+    }
+
+    logLocation = new LogLocation(LogLocation.VERSION_1, BASE_TIME, BASE_TIME, location,
+                                  NamespaceId.DEFAULT.getNamespace(), null);
+  }
+
+  @Test
+  public void testBuildIndex() throws IOException {
+    LogFileTimeIndex timeIndex = logLocation.buildTimeIndex();
+    Assert.assertTrue(timeIndex.size() > 10);
+    Assert.assertEquals(logLocation.getLocation().length(), timeIndex.getFileLength());
+
+    Assert.assertEquals(0, timeIndex.findBlock(0L));
+    Assert.assertEquals(0, timeIndex.findBlock(BASE_TIME));
+    Assert.assertEquals(timeIndex.size() - 1, timeIndex.findBlock(Long.MAX_VALUE));
+
+    Assert.assertEquals(0, timeIndex.findLastBlock(BASE_TIME));
+    Assert.assertEquals(timeIndex.size() - 1, timeIndex.findLastBlock(BASE_TIME + NUM_EVENTS / 2 - 1));
+  }
+
+  @Test
+  public void testReadNext() throws IOException {
+    LogFileTimeIndex timeIndex = logLocation.buildTimeIndex();
+
+    for (long fromTime : new long[] { 0L, BASE_TIME, BASE_TIME + 1, BASE_TIME + 333, BASE_TIME + NUM_EVENTS / 2 - 1,
+                                      BASE_TIME + NUM_EVENTS }) {
+      for (int maxEvents : new int[] { 1, 10, NUM_EVENTS }) {
+        List<Long> expected = readNext(fromTime, maxEvents, null);
+        List<Long> actual = readNext(fromTime, maxEvents, timeIndex);
+        Assert.assertEquals(expected, actual);
+
+        if (fromTime < BASE_TIME + NUM_EVENTS / 2) {
+          Assert.assertFalse(actual.isEmpty());
+          Assert.assertEquals(Math.max(fromTime, BASE_TIME), (long) actual.get(0));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testReadPrev() throws IOException {
+    LogFileTimeIndex timeIndex = logLocation.buildTimeIndex();
+
+    for (long fromTime : new long[] { BASE_TIME, BASE_TIME + 1, BASE_TIME + 333, BASE_TIME + NUM_EVENTS / 2 - 1,
+                                      Long.MAX_VALUE - 1 }) {
+      for (int maxEvents : new int[] { 1, 10, NUM_EVENTS }) {
+        List<Long> expected = readPrev(fromTime, maxEvents, null);
+        List<Long> actual = readPrev(fromTime, maxEvents, timeIndex);
+        Assert.assertEquals(expected, actual);
+
+        long lastTime = Math.min(fromTime, BASE_TIME + NUM_EVENTS / 2 - 1);
+        Assert.assertEquals(Math.min(maxEvents, 2 * (lastTime - BASE_TIME + 1)), actual.size());
+      }
+    }
+
+    // An empty index is ignored
+    LogFileTimeIndex emptyIndex = new LogFileTimeIndex(1L, new long[0], new long[0]);
+    Assert.assertEquals(readPrev(BASE_TIME + 100, 10, null), readPrev(BASE_TIME + 100, 10, emptyIndex));
+  }
+
+  @Test
+  public void testGrowingFile() throws IOException {
+    Location location = new LocalLocationFactory(TEMP_FOLDER.newFolder()).create("growing.avro");
+    LogLocation growingLocation = new LogLocation(LogLocation.VERSION_1, BASE_TIME, BASE_TIME, location,
+                                                  NamespaceId.DEFAULT.getNamespace(), null);
+
+    try (DataFileWriter<GenericRecord> writer = createWriter(location)) {
+      appendEvents(writer, 0, NUM_EVENTS / 2);
+      writer.flush();
+      LogFileTimeIndex index = growingLocation.buildTimeIndex();
+
+      appendEvents(writer, NUM_EVENTS / 2, NUM_EVENTS);
+      writer.flush();
+      Assert.assertTrue(index.getFileLength() < location.length());
+
+      // The index built for the shorter file is still valid for reading the grown file
+      for (long fromTime : new long[] { BASE_TIME + 100, BASE_TIME + NUM_EVENTS / 4, BASE_TIME + NUM_EVENTS }) {
+        for (int maxEvents : new int[] { 10, NUM_EVENTS }) {
+          List<Long> expected = readPrev(growingLocation, Filter.EMPTY_FILTER, fromTime, maxEvents, null);
+          Assert.assertEquals(expected, readPrev(growingLocation, Filter.EMPTY_FILTER, fromTime, maxEvents, index));
+          Assert.assertEquals(readNext(growingLocation, Filter.EMPTY_FILTER, fromTime, maxEvents, null),
+                              readNext(growingLocation, Filter.EMPTY_FILTER, fromTime, maxEvents, index));
+        }
+      }
+
+      // Extending the index should give the same index as building it from the whole file
+      LogFileTimeIndex extended = growingLocation.buildTimeIndex(index);
+      LogFileTimeIndex full = growingLocation.buildTimeIndex();
+      Assert.assertTrue(extended.size() > index.size());
+      Assert.assertEquals(full.getFileLength(), extended.getFileLength());
+      Assert.assertEquals(full.size(), extended.size());
+      for (int block = 0; block < full.size(); block++) {
+        Assert.assertEquals(full.getTimestamp(block), extended.getTimestamp(block));
+        Assert.assertEquals(full.getBlockStart(block), extended.getBlockStart(block));
+      }
+    }
+  }
+
+  @Test
+  public void testBlockStats() throws IOException {
+    Location location = new LocalLocationFactory(TEMP_FOLDER.newFolder()).create("stats.avro");
+
+    // Write blocks of 20 events each, with ERROR events only in every fifth block
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    Schema schema = serializer.getAvroSchema();
+    ch.qos.logback.classic.Logger logger =
+      (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(LogLocationTest.class);
+    LogFileTimeIndex.Builder builder;
+    try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))) {
+      writer.setCodec(CodecFactory.deflateCodec(Deflater.DEFAULT_COMPRESSION));
+      writer.create(schema, location.getOutputStream());
+      builder = new LogFileTimeIndex.Builder(writer.sync());
+      for (int block = 0; block < 50; block++) {
+        for (int i = 0; i < 20; i++) {
+          Level level = block % 5 == 0 && i % 2 == 0 ? Level.ERROR : Level.INFO;
+          LoggingEvent event = new LoggingEvent(LogLocationTest.class.getName(), logger, level,
+                                                "Message " + block + " " + i, null, null);
+          event.setTimeStamp(BASE_TIME + block * 20 + i);
+          writer.append(serializer.toGenericRecord(event));
+          builder.addEvent(event.getTimeStamp(), level.toInt());
+        }
+        builder.endBlock(writer.sync());
+      }
+    }
+
+    // The index should survive encoding and cover the whole file
+    LogFileTimeIndex timeIndex = LogFileTimeIndex.fromBytes(builder.build().toBytes());
+    Assert.assertTrue(timeIndex.hasBlockStats());
+    Assert.assertEquals(50, timeIndex.size());
+    Assert.assertEquals(location.length(), timeIndex.getFileLength());
+    Assert.assertTrue(timeIndex.mayContain(0, 0L, Long.MAX_VALUE, Level.ERROR_INT));
+    Assert.assertFalse(timeIndex.mayContain(1, 0L, Long.MAX_VALUE, Level.ERROR_INT));
+    Assert.assertFalse(timeIndex.mayContain(0, BASE_TIME + 20, Long.MAX_VALUE, Level.ALL_INT));
+    Assert.assertFalse(timeIndex.mayContain(1, Long.MIN_VALUE, BASE_TIME + 19, Level.ALL_INT));
+
+    LogLocation statsLocation = new LogLocation(LogLocation.VERSION_1, BASE_TIME, BASE_TIME, location,
+                                                NamespaceId.DEFAULT.getNamespace(), null, timeIndex);
+    Assert.assertSame(timeIndex, statsLocation.getTimeIndex());
+    for (String filterStr : new String[] { "loglevel=ERROR", "loglevel=INFO", "loglevel=ERROR OR loglevel=WARN" }) {
+      Filter filter = FilterParser.parse(filterStr);
+      for (long fromTime : new long[] { 0L, BASE_TIME + 10, BASE_TIME + 345, BASE_TIME + 980, BASE_TIME + 1000 }) {
+        List<Long> expected = readNext(statsLocation, filter, fromTime, 1000, null);
+        Assert.assertEquals(expected, readNext(statsLocation, filter, fromTime, 1000, timeIndex));
+        Assert.assertEquals(readPrev(statsLocation, filter, fromTime, 1000, null),
+                            readPrev(statsLocation, filter, fromTime, 1000, timeIndex));
+      }
+    }
+
+    // Only ERROR events of block 0, 5, ..., 45 are returned
+    List<Long> errors = readNext(statsLocation, FilterParser.parse("loglevel=ERROR"), 0L, 1000, timeIndex);
+    Assert.assertEquals(100, errors.size());
+    Assert.assertEquals(BASE_TIME, (long) errors.get(0));
+    Assert.assertEquals(BASE_TIME + 45 * 20 + 18, (long) errors.get(errors.size() - 1));
+  }
+
+  private static DataFileWriter<GenericRecord> createWriter(Location location) throws IOException {
+    Schema schema = new LoggingEventSerializer().getAvroSchema();
+    DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
+    writer.create(schema, location.getOutputStream());
+    writer.setSyncInterval(1024);
+    return writer;
+  }
+
+  /**
+   * Appends INFO events with two events per millisecond, starting from {@link #BASE_TIME}.
+   */
+  private static void appendEvents(DataFileWriter<GenericRecord> writer, int from, int to) throws IOException {
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    ch.qos.logback.classic.Logger logger =
+      (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(LogLocationTest.class);
+    for (int i = from; i < to; i++) {
+      LoggingEvent event = new LoggingEvent(LogLocationTest.class.getName(), logger, Level.INFO,
+                                            "Message " + i, null, null);
+      event.setThreadName("thread");
+      event.setTimeStamp(BASE_TIME + i / 2);
+      writer.append(serializer.toGenericRecord(event));
+    }
+  }
+
+  private List<Long> readNext(long fromTime, int maxEvents, LogFileTimeIndex timeIndex) {
+    return readNext(logLocation, Filter.EMPTY_FILTER, fromTime, maxEvents, timeIndex);
+  }
+
+  private List<Long> readNext(LogLocation logLocation, Filter filter,
+                              long fromTime, int maxEvents, LogFileTimeIndex timeIndex) {
+    List<Long> timestamps = new ArrayList<>();
+    try (CloseableIterator<LogEvent> iterator = logLocation.readLog(filter, fromTime, Long.MAX_VALUE,
+                                                                    maxEvents, timeIndex)) {
+      while (iterator.hasNext()) {
+        timestamps.add(iterator.next().getLoggingEvent().getTimeStamp());
+      }
+    }
+    return timestamps;
+  }
+
+  private List<Long> readPrev(long fromTime, int maxEvents, LogFileTimeIndex timeIndex) throws IOException {
+    return readPrev(logLocation, Filter.EMPTY_FILTER, fromTime, maxEvents, timeIndex);
+  }
+
+  private List<Long> readPrev(LogLocation logLocation, Filter filter,
+                              long fromTime, int maxEvents, LogFileTimeIndex timeIndex) throws IOException {
+    Collection<LogEvent> events = logLocation.readLogPrev(filter, fromTime, maxEvents, timeIndex);
+    List<Long> timestamps = new ArrayList<>();
+    for (LogEvent event : events) {
+      timestamps.add(event.getLoggingEvent().getTimeStamp());
+    }
+    return timestamps;
+  }
+}